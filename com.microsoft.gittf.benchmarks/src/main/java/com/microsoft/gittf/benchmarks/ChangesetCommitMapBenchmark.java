@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.config.ConfigurationConstants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookups in the changeset to commit map of a repository that
+ * has bridged the number of changesets specified. Every third changeset id is
+ * bridged, like a server path that only sees some of the changesets.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChangesetCommitMapBenchmark {
+    private static final int CHANGESET_INTERVAL = 3;
+
+    @Param({"1000", "20000"})
+    public int changesetCount;
+
+    private SyntheticRepository repository;
+    private ChangesetCommitMap changesetCommitMap;
+    private ObjectId[] commitIDs;
+    private int next = 0;
+
+    @Setup
+    public void setUp()
+            throws Exception {
+        repository = SyntheticRepository.create("changeset-commit-map");
+
+        final Repository repo = repository.getRepository();
+        commitIDs = new ObjectId[changesetCount];
+
+        /* Write the map in one go rather than saving it once per changeset */
+        final FileBasedConfig config =
+                new FileBasedConfig(new File(repo.getDirectory(), GitTFConstants.GIT_TF_NAME), FS.DETECTED);
+
+        final ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            final ObjectId treeID = repository.insertTree(inserter, Collections.<String, ObjectId>emptyMap());
+            ObjectId parentID = null;
+
+            for (int i = 0; i < changesetCount; i++) {
+                final ObjectId commitID =
+                        parentID != null ? repository.insertCommit(inserter, treeID, parentID)
+                                : repository.insertCommit(inserter, treeID);
+                final int changesetID = getChangesetID(i);
+
+                config.setString(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.COMMIT_SUBSECTION,
+                        MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT,
+                                Integer.toString(changesetID)),
+                        commitID.getName());
+
+                config.setInt(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.CHANGESET_SUBSECTION,
+                        MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
+                        changesetID);
+
+                commitIDs[i] = commitID;
+                parentID = commitID;
+            }
+
+            inserter.flush();
+        } finally {
+            inserter.release();
+        }
+
+        config.setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_HIGHWATER,
+                getChangesetID(changesetCount - 1));
+        config.save();
+
+        changesetCommitMap = new ChangesetCommitMap(repo);
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public ObjectId getCommitID() {
+        return changesetCommitMap.getCommitID(getChangesetID(nextIndex()), false);
+    }
+
+    @Benchmark
+    public ObjectId getValidatedCommitID() {
+        return changesetCommitMap.getCommitID(getChangesetID(nextIndex()), true);
+    }
+
+    @Benchmark
+    public int getChangesetID() {
+        return changesetCommitMap.getChangesetID(commitIDs[nextIndex()]);
+    }
+
+    @Benchmark
+    public int getPreviousBridgedChangeset() {
+        /* Look up from a changeset id that is not bridged */
+        return changesetCommitMap.getPreviousBridgedChangeset(getChangesetID(nextIndex()) + 1, true);
+    }
+
+    @Benchmark
+    public Map<ObjectId, Integer> getBridgedCommits() {
+        return changesetCommitMap.getBridgedCommits();
+    }
+
+    private int nextIndex() {
+        next = (next + 7919) % changesetCount;
+
+        return next;
+    }
+
+    private static int getChangesetID(final int index) {
+        return (index + 1) * CHANGESET_INTERVAL;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.util.CommitWalker;
+import com.microsoft.gittf.core.util.CommitWalker.CommitDelta;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures walking the commits to check in on synthetic histories: a linear
+ * history and a history where every few commits a topic branch is merged.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommitWalkerBenchmark {
+    private static final AbbreviatedObjectId[] NO_IGNORED_COMMITS = new AbbreviatedObjectId[0];
+
+    @Param({"1000", "10000"})
+    public int commitCount;
+
+    @Param({"10"})
+    public int mergeInterval;
+
+    private SyntheticRepository repository;
+    private ObjectId rootCommitID;
+    private ObjectId linearHeadID;
+    private ObjectId mergeHeadID;
+
+    @Setup
+    public void setUp()
+            throws Exception {
+        repository = SyntheticRepository.create("commit-walker");
+
+        final Repository repo = repository.getRepository();
+        final ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            final ObjectId treeID = repository.insertTree(inserter, Collections.<String, ObjectId>emptyMap());
+
+            rootCommitID = repository.insertCommit(inserter, treeID);
+
+            ObjectId linearHead = rootCommitID;
+            ObjectId mergeHead = rootCommitID;
+
+            for (int i = 1; i < commitCount; i++) {
+                linearHead = repository.insertCommit(inserter, treeID, linearHead);
+
+                if (i % mergeInterval == 0) {
+                    final ObjectId topic = repository.insertCommit(inserter, treeID, mergeHead);
+                    final ObjectId main = repository.insertCommit(inserter, treeID, mergeHead);
+
+                    mergeHead = repository.insertCommit(inserter, treeID, main, topic);
+                } else {
+                    mergeHead = repository.insertCommit(inserter, treeID, mergeHead);
+                }
+            }
+
+            linearHeadID = linearHead;
+            mergeHeadID = mergeHead;
+
+            inserter.flush();
+        } finally {
+            inserter.release();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public List<CommitDelta> getCommitList()
+            throws Exception {
+        return CommitWalker.getCommitList(repository.getRepository(), rootCommitID, linearHeadID, NO_IGNORED_COMMITS);
+    }
+
+    @Benchmark
+    public List<CommitDelta> getAutoSquashedCommitList()
+            throws Exception {
+        return CommitWalker.getAutoSquashedCommitList(repository.getRepository(), rootCommitID, mergeHeadID);
+    }
+
+    @Benchmark
+    public RevCommit findLatestBridgedAncestor()
+            throws Exception {
+        final Map<ObjectId, Integer> bridgedCommits = new HashMap<ObjectId, Integer>();
+        bridgedCommits.put(rootCommitID, 1);
+
+        final RevWalk walker = new RevWalk(repository.getRepository());
+        try {
+            return CommitWalker.findLatestBridgedAncestor(walker, walker.parseCommit(mergeHeadID), bridgedCommits);
+        } finally {
+            walker.release();
+        }
+    }
+}
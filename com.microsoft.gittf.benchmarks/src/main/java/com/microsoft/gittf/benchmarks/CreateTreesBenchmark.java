@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.interfaces.VersionControlService;
+import com.microsoft.gittf.core.tasks.CreateCommitTask;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.util.tree.CommitTreeEntry;
+import com.microsoft.gittf.core.util.tree.CommitTreePath;
+import com.microsoft.gittf.core.util.tree.CommitTreePathComparator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
+
+/**
+ * Measures building the trees of a commit from a flat list of server items,
+ * as done for every changeset fetched from TFS. The object ids are computed
+ * without writing the objects, so only the tree building is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CreateTreesBenchmark {
+    private static final CommitTreePathComparator COMPARATOR = new CommitTreePathComparator();
+
+    @Param({"1000", "10000", "100000"})
+    public int fileCount;
+
+    @Param({"20"})
+    public int filesPerFolder;
+
+    private SyntheticRepository repository;
+    private TreeBuildingTask task;
+
+    private final List<String> serverItemPaths = new ArrayList<String>();
+    private final List<ObjectId> blobIDs = new ArrayList<ObjectId>();
+    private final List<CommitTreePath> folderPaths = new ArrayList<CommitTreePath>();
+
+    @Setup
+    public void setUp()
+            throws Exception {
+        repository = SyntheticRepository.create("create-trees");
+        task = new TreeBuildingTask(repository.getRepository());
+
+        final ObjectInserter formatter = new ObjectInserter.Formatter();
+        final Set<String> folders = new LinkedHashSet<String>();
+
+        for (final String path : SyntheticRepository.createPaths(fileCount, filesPerFolder, 10)) {
+            serverItemPaths.add(SyntheticRepository.SERVER_PATH + "/" + path);
+            blobIDs.add(formatter.idFor(OBJ_BLOB, Constants.encode(path)));
+
+            final int separatorIdx = path.lastIndexOf('/');
+            folders.add(separatorIdx > 0 ? path.substring(0, separatorIdx) : "");
+        }
+
+        for (final String folder : folders) {
+            folderPaths.add(new CommitTreePath(folder, OBJ_TREE));
+        }
+
+        /* Sort from a random order rather than from the generated one */
+        Collections.shuffle(folderPaths, new Random(42));
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public ObjectId createTrees()
+            throws Exception {
+        return task.buildTrees(serverItemPaths, blobIDs);
+    }
+
+    @Benchmark
+    public List<CommitTreePath> sortTreePaths() {
+        final List<CommitTreePath> sorted = new ArrayList<CommitTreePath>(folderPaths);
+        Collections.sort(sorted, COMPARATOR);
+
+        return sorted;
+    }
+
+    /**
+     * Exposes the tree building of {@link CreateCommitTask}, the task is never
+     * run and does not talk to the server
+     */
+    private static class TreeBuildingTask
+            extends CreateCommitTask {
+        private final TaskProgressMonitor progressMonitor = new NullTaskProgressMonitor();
+
+        public TreeBuildingTask(final Repository repository) {
+            super(repository, createOfflineService(), null);
+        }
+
+        public ObjectId buildTrees(final List<String> serverItemPaths, final List<ObjectId> blobIDs)
+                throws Exception {
+            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy =
+                    new TreeMap<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>>(COMPARATOR);
+            final ObjectInserter formatter = new ObjectInserter.Formatter();
+
+            for (int i = 0; i < serverItemPaths.size(); i++) {
+                createBlob(
+                        formatter,
+                        treeHierarchy,
+                        serverItemPaths.get(i),
+                        blobIDs.get(i),
+                        FileMode.REGULAR_FILE,
+                        progressMonitor);
+            }
+
+            return createTrees(formatter, treeHierarchy);
+        }
+
+        @Override
+        public TaskStatus run(final TaskProgressMonitor progressMonitor) {
+            return TaskStatus.OK_STATUS;
+        }
+
+        private static VersionControlService createOfflineService() {
+            return (VersionControlService) Proxy.newProxyInstance(
+                    VersionControlService.class.getClassLoader(),
+                    new Class<?>[]
+                            {
+                                    VersionControlService.class
+                            },
+                    new InvocationHandler() {
+                        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
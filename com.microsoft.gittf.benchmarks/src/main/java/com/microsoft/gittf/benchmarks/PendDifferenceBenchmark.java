@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.pendDiff.CheckinAnalysisChangeCollection;
+import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
+import com.microsoft.gittf.core.tasks.pendDiff.RenameChange;
+import com.microsoft.gittf.core.tasks.pendDiff.RenameMode;
+import com.microsoft.gittf.core.tasks.pendDiff.TfsFolderRenameDetector;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the analysis of the differences between two commits that is done
+ * before pending the changes of a check-in. The target tree edits, deletes and
+ * adds files, and renames the largest top level folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PendDifferenceBenchmark {
+    private static final String RENAMED_FOLDER = "folder0/";
+    private static final String RENAMED_FOLDER_TARGET = "renamed0/";
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    private SyntheticRepository repository;
+    private RevTree fromTree;
+    private RevTree toTree;
+    private final List<RenameChange> fileRenames = new ArrayList<RenameChange>();
+
+    @Setup
+    public void setUp()
+            throws Exception {
+        repository = SyntheticRepository.create("pend-difference");
+
+        final Repository repo = repository.getRepository();
+        final Map<String, ObjectId> fromFiles = new TreeMap<String, ObjectId>();
+        final Map<String, ObjectId> toFiles = new TreeMap<String, ObjectId>();
+        final List<String> paths = SyntheticRepository.createPaths(fileCount, 20, 10);
+
+        final ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                final String path = paths.get(i);
+                final ObjectId blobID = repository.insertBlob(inserter, createContent(path, 0));
+
+                fromFiles.put(path, blobID);
+
+                if (i % 20 == 0) {
+                    /* Deleted */
+                    continue;
+                }
+
+                if (i % 10 == 1) {
+                    toFiles.put(path, repository.insertBlob(inserter, createContent(path, 1)));
+                } else if (path.startsWith(RENAMED_FOLDER)) {
+                    final String newPath = RENAMED_FOLDER_TARGET + path.substring(RENAMED_FOLDER.length());
+
+                    toFiles.put(newPath, blobID);
+                    fileRenames.add(new RenameChange(path, newPath, blobID, false));
+                } else {
+                    toFiles.put(path, blobID);
+                }
+            }
+
+            for (int i = 0; i < fileCount / 20; i++) {
+                final String path = "added/file" + i + ".txt";
+                toFiles.put(path, repository.insertBlob(inserter, createContent(path, 0)));
+            }
+
+            final ObjectId fromTreeID = repository.insertTree(inserter, fromFiles);
+            final ObjectId toTreeID = repository.insertTree(inserter, toFiles);
+            inserter.flush();
+
+            final RevWalk walker = new RevWalk(repo);
+            try {
+                fromTree = walker.parseTree(fromTreeID);
+                toTree = walker.parseTree(toTreeID);
+            } finally {
+                walker.release();
+            }
+        } finally {
+            inserter.release();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        repository.close();
+    }
+
+    @Benchmark
+    public CheckinAnalysisChangeCollection analyzeDifferences()
+            throws Exception {
+        return PendDifferenceTask.analyzeDifferences(
+                repository.getRepository(),
+                fromTree,
+                toTree,
+                RenameMode.ALL,
+                new NullTaskProgressMonitor());
+    }
+
+    @Benchmark
+    public List<RenameChange> detectFolderRenames()
+            throws Exception {
+        final TfsFolderRenameDetector detector =
+                new TfsFolderRenameDetector(repository.getRepository(), fromTree, toTree, fileRenames);
+        detector.compute();
+
+        return detector.getRenames();
+    }
+
+    private static String createContent(final String path, final int revision) {
+        final StringBuilder content = new StringBuilder();
+
+        for (int line = 0; line < 20; line++) {
+            content.append(path).append(" line ").append(line).append(" revision ").append(revision).append('\n');
+        }
+
+        return content.toString();
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.impl.ServiceReplay;
+import com.microsoft.gittf.core.interfaces.VersionControlService;
+import com.microsoft.gittf.core.tasks.CloneTask;
+import com.microsoft.gittf.core.tasks.FetchTask;
+import com.microsoft.gittf.core.tasks.framework.Task;
+import com.microsoft.gittf.core.util.RepositoryUtil;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+
+/**
+ * Replays a clone, and optionally a fetch, recorded with git-tf --record
+ * against a real server and reports the throughput of each phase with a
+ * {@link ThroughputReport}. The recorded latencies are replayed scaled by the
+ * factor specified, 0 measures git-tf alone.
+ *
+ * <pre>
+ * git-tf --record=clone.zip clone http://server:8080/tfs $/Project/Main
+ * git-tf --record=fetch.zip fetch
+ *
+ * java -cp benchmarks.jar com.microsoft.gittf.benchmarks.ReplayCloneBenchmark
+ *     --clone=clone.zip --fetch=fetch.zip --path=$/Project/Main
+ *     --latency-scale=1 --label=2.0.4 --report=replay-2.0.4.json
+ * </pre>
+ */
+public class ReplayCloneBenchmark {
+    private final ThroughputReport report = new ThroughputReport();
+
+    private File cloneArchive = null;
+    private File fetchArchive = null;
+    private String serverPath = SyntheticRepository.SERVER_PATH;
+    private double latencyScale = 1;
+    private int depth = Integer.MAX_VALUE;
+    private boolean bare = false;
+    private String label = null;
+    private File reportFile = null;
+
+    public static void main(final String[] args)
+            throws Exception {
+        final ReplayCloneBenchmark benchmark = new ReplayCloneBenchmark();
+
+        for (final String arg : args) {
+            if (!benchmark.parseArgument(arg)) {
+                System.err.println("Unknown argument: " + arg);
+                System.err.println(
+                        "Arguments: --clone=ARCHIVE --fetch=ARCHIVE --path=SERVER_PATH --latency-scale=FACTOR"
+                                + " --depth=N --bare --label=TEXT --report=FILE");
+                System.exit(1);
+            }
+        }
+
+        if (benchmark.cloneArchive == null) {
+            System.err.println("The --clone archive is required");
+            System.exit(1);
+        }
+
+        System.exit(benchmark.run() ? 0 : 1);
+    }
+
+    private boolean parseArgument(final String arg) {
+        final int separatorIdx = arg.indexOf('=');
+        final String name = separatorIdx > 0 ? arg.substring(0, separatorIdx) : arg;
+        final String value = separatorIdx > 0 ? arg.substring(separatorIdx + 1) : null;
+
+        if (name.equals("--bare")) {
+            bare = true;
+            return true;
+        }
+
+        if (value == null) {
+            return false;
+        }
+
+        if (name.equals("--clone")) {
+            cloneArchive = new File(value);
+        } else if (name.equals("--fetch")) {
+            fetchArchive = new File(value);
+        } else if (name.equals("--path")) {
+            serverPath = value;
+        } else if (name.equals("--latency-scale")) {
+            latencyScale = Double.parseDouble(value);
+        } else if (name.equals("--depth")) {
+            depth = Integer.parseInt(value);
+        } else if (name.equals("--label")) {
+            label = value;
+        } else if (name.equals("--report")) {
+            reportFile = new File(value);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean run()
+            throws Exception {
+        report.addSetting("clone", cloneArchive.getName());
+        report.addSetting("fetch", fetchArchive != null ? fetchArchive.getName() : null);
+        report.addSetting("path", serverPath);
+        report.addSetting("latencyScale", latencyScale);
+        report.addSetting("depth", depth);
+        report.addSetting("bare", bare);
+
+        final File directory = Files.createTempDirectory("git-tf-replay-benchmark").toFile();
+
+        try {
+            final Repository repository =
+                    RepositoryUtil.createNewRepository(new File(directory, "repository").getAbsolutePath(), bare);
+
+            try {
+                final ServiceReplay cloneReplay = ServiceReplay.open(cloneArchive, latencyScale);
+
+                try {
+                    final CloneTask cloneTask = new CloneTask(
+                            URI.create(SyntheticRepository.SERVER_URI),
+                            cloneReplay.getService(VersionControlService.class),
+                            serverPath,
+                            repository);
+                    cloneTask.setDepth(depth);
+                    cloneTask.setBare(bare);
+
+                    if (!runPhase("clone", cloneTask, cloneReplay, repository)) {
+                        return false;
+                    }
+                } finally {
+                    cloneReplay.close();
+                }
+
+                if (fetchArchive != null) {
+                    final ServiceReplay fetchReplay = ServiceReplay.open(fetchArchive, latencyScale);
+
+                    try {
+                        final FetchTask fetchTask =
+                                new FetchTask(repository, fetchReplay.getService(VersionControlService.class));
+                        fetchTask.setDeep(true);
+
+                        if (!runPhase("fetch", fetchTask, fetchReplay, repository)) {
+                            return false;
+                        }
+                    } finally {
+                        fetchReplay.close();
+                    }
+                }
+            } finally {
+                repository.close();
+            }
+        } finally {
+            FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+        }
+
+        report.print(System.out);
+
+        if (reportFile != null) {
+            report.write(reportFile, label);
+        }
+
+        return true;
+    }
+
+    private boolean runPhase(
+            final String name,
+            final Task task,
+            final ServiceReplay replay,
+            final Repository repository)
+            throws IOException {
+        final int commitsBefore = countCommits(repository);
+
+        final boolean succeeded = report.runPhase(name, task, 0, new ThroughputReport.Counters() {
+            public long getCallCount() {
+                return replay.getCallCount();
+            }
+
+            public long getDownloadCount() {
+                return replay.getDownloadCount();
+            }
+
+            public long getBytesDownloaded() {
+                return replay.getBytesDownloaded();
+            }
+
+            public void resetCounters() {
+                replay.resetCounters();
+            }
+        });
+
+        if (!succeeded) {
+            return false;
+        }
+
+        /* Every changeset downloaded becomes a commit */
+        report.setChangesets(countCommits(repository) - commitsBefore);
+
+        if (replay.getMissedCallCount() > 0) {
+            System.err.println(
+                    name + ": " + replay.getMissedCallCount() + " calls did not match the recording exactly");
+        }
+
+        return true;
+    }
+
+    private static int countCommits(final Repository repository)
+            throws IOException {
+        final RevWalk walk = new RevWalk(repository);
+
+        try {
+            for (final Ref ref : repository.getAllRefs().values()) {
+                final ObjectId objectId = ref.getObjectId();
+
+                if (objectId == null) {
+                    continue;
+                }
+
+                final RevObject object = walk.parseAny(objectId);
+
+                if (object instanceof RevCommit) {
+                    walk.markStart((RevCommit) object);
+                }
+            }
+
+            int count = 0;
+            while (walk.next() != null) {
+                count++;
+            }
+
+            return count;
+        } finally {
+            walk.release();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.tasks.CloneTask;
+import com.microsoft.gittf.core.tasks.FetchTask;
+import com.microsoft.gittf.core.util.RepositoryUtil;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+
+/**
+ * Clones a synthetic TFS history and fetches the rest of it, and reports the
+ * throughput of each phase with a {@link ThroughputReport}.
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.microsoft.gittf.benchmarks.SyntheticCloneBenchmark
+ *     --files=100000 --changesets=20000 --churn=20 --renames=2 --fetch=1000
+ *     --latency=5 --bandwidth=10485760 --label=2.0.4 --report=clone-2.0.4.json
+ * </pre>
+ */
+public class SyntheticCloneBenchmark {
+    private final ThroughputReport report = new ThroughputReport();
+
+    private int fileCount = 10000;
+    private int changesetCount = 200;
+    private int churn = 20;
+    private int renames = 2;
+    private int binaryPercent = 10;
+    private int fileSize = 4096;
+    private long seed = 1;
+    private long latencyMillis = 0;
+    private long bytesPerSecond = 0;
+    private int depth = Integer.MAX_VALUE;
+    private int fetchCount = 10;
+    private boolean bare = false;
+    private String label = null;
+    private File reportFile = null;
+
+    public static void main(final String[] args)
+            throws Exception {
+        final SyntheticCloneBenchmark benchmark = new SyntheticCloneBenchmark();
+
+        for (final String arg : args) {
+            if (!benchmark.parseArgument(arg)) {
+                System.err.println("Unknown argument: " + arg);
+                System.err.println(
+                        "Arguments: --files=N --changesets=N --churn=N --renames=N --binary-percent=N --file-size=BYTES"
+                                + " --seed=N --latency=MILLIS --bandwidth=BYTES_PER_SECOND --depth=N --fetch=N --bare"
+                                + " --label=TEXT --report=FILE");
+                System.exit(1);
+            }
+        }
+
+        System.exit(benchmark.run() ? 0 : 1);
+    }
+
+    private boolean parseArgument(final String arg) {
+        final int separatorIdx = arg.indexOf('=');
+        final String name = separatorIdx > 0 ? arg.substring(0, separatorIdx) : arg;
+        final String value = separatorIdx > 0 ? arg.substring(separatorIdx + 1) : null;
+
+        if (name.equals("--bare")) {
+            bare = true;
+            return true;
+        }
+
+        if (value == null) {
+            return false;
+        }
+
+        if (name.equals("--files")) {
+            fileCount = Integer.parseInt(value);
+        } else if (name.equals("--changesets")) {
+            changesetCount = Integer.parseInt(value);
+        } else if (name.equals("--churn")) {
+            churn = Integer.parseInt(value);
+        } else if (name.equals("--renames")) {
+            renames = Integer.parseInt(value);
+        } else if (name.equals("--binary-percent")) {
+            binaryPercent = Integer.parseInt(value);
+        } else if (name.equals("--file-size")) {
+            fileSize = Integer.parseInt(value);
+        } else if (name.equals("--seed")) {
+            seed = Long.parseLong(value);
+        } else if (name.equals("--latency")) {
+            latencyMillis = Long.parseLong(value);
+        } else if (name.equals("--bandwidth")) {
+            bytesPerSecond = Long.parseLong(value);
+        } else if (name.equals("--depth")) {
+            depth = Integer.parseInt(value);
+        } else if (name.equals("--fetch")) {
+            fetchCount = Integer.parseInt(value);
+        } else if (name.equals("--label")) {
+            label = value;
+        } else if (name.equals("--report")) {
+            reportFile = new File(value);
+        } else {
+            return false;
+        }
+
+        return true;
+    }
+
+    private boolean run()
+            throws Exception {
+        fetchCount = Math.max(0, Math.min(fetchCount, changesetCount - 1));
+
+        report.addSetting("files", fileCount);
+        report.addSetting("changesets", changesetCount);
+        report.addSetting("churn", churn);
+        report.addSetting("renames", renames);
+        report.addSetting("binaryPercent", binaryPercent);
+        report.addSetting("fileSize", fileSize);
+        report.addSetting("seed", seed);
+        report.addSetting("latencyMillis", latencyMillis);
+        report.addSetting("bytesPerSecond", bytesPerSecond);
+        report.addSetting("depth", depth);
+        report.addSetting("fetch", fetchCount);
+        report.addSetting("bare", bare);
+
+        final long generateStart = System.nanoTime();
+        final SyntheticHistory history = new SyntheticHistory(
+                SyntheticRepository.SERVER_PATH,
+                fileCount,
+                changesetCount,
+                churn,
+                renames,
+                binaryPercent,
+                fileSize,
+                seed);
+        report.addSetting("generateSeconds", ThroughputReport.round((System.nanoTime() - generateStart) / 1e9));
+
+        final SyntheticVersionControlService service =
+                new SyntheticVersionControlService(history, latencyMillis, bytesPerSecond);
+        final File directory = Files.createTempDirectory("git-tf-clone-benchmark").toFile();
+
+        try {
+            final Repository repository =
+                    RepositoryUtil.createNewRepository(new File(directory, "repository").getAbsolutePath(), bare);
+
+            try {
+                /* Clone the history without the changesets to fetch */
+                final int cloneChangesetID = changesetCount - fetchCount;
+                service.setLatestChangesetID(cloneChangesetID);
+
+                final CloneTask cloneTask = new CloneTask(
+                        URI.create(SyntheticRepository.SERVER_URI),
+                        service,
+                        SyntheticRepository.SERVER_PATH,
+                        repository);
+                cloneTask.setDepth(depth);
+                cloneTask.setBare(bare);
+
+                if (!report.runPhase("clone", cloneTask, Math.min(depth, cloneChangesetID), service)) {
+                    return false;
+                }
+
+                if (fetchCount > 0) {
+                    service.setLatestChangesetID(changesetCount);
+
+                    final FetchTask fetchTask = new FetchTask(repository, service);
+                    fetchTask.setDeep(true);
+
+                    if (!report.runPhase("fetch", fetchTask, fetchCount, service)) {
+                        return false;
+                    }
+                }
+            } finally {
+                repository.close();
+            }
+        } finally {
+            FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+        }
+
+        report.print(System.out);
+
+        if (reportFile != null) {
+            report.write(reportFile, label);
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * A generated TFS history of a single server folder. The first changeset adds
+ * most of the files, every following changeset adds some of the remaining
+ * files and edits and renames existing ones. The history only stores the
+ * changeset ids in which each file changed, so that histories with hundreds of
+ * thousands of files and tens of thousands of changesets fit in memory. The
+ * content of a file version is generated when it is downloaded.
+ */
+public class SyntheticHistory {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int INITIAL_PERCENT = 80;
+    private static final int FILES_PER_FOLDER = 50;
+    private static final int FOLDERS_PER_FOLDER = 10;
+
+    private final String serverPath;
+    private final int fileCount;
+    private final int changesetCount;
+    private final int binaryPercent;
+    private final int fileSize;
+
+    /* The changeset that adds each file */
+    private final int[] addChangesets;
+
+    /* The changesets that add, edit or rename each file, in ascending order */
+    private final int[][] versions;
+    private final int[] versionCounts;
+
+    /* The changesets that rename each file and the paths they rename to */
+    private final Map<Integer, int[]> renameChangesets = new HashMap<Integer, int[]>();
+    private final Map<Integer, String[]> renamePaths = new HashMap<Integer, String[]>();
+
+    private final String[] paths;
+    private final Map<String, Integer> fileIndexes = new HashMap<String, Integer>();
+
+    /**
+     * Generates a history
+     *
+     * @param serverPath     the server folder that holds the files
+     * @param fileCount      the number of files at the latest changeset
+     * @param changesetCount the number of changesets
+     * @param churn          the number of files edited by each changeset
+     * @param renames        the number of files renamed by each changeset
+     * @param binaryPercent  the percentage of binary files
+     * @param fileSize       the average size of a file in bytes
+     * @param seed           the seed of the random choices, the same seed
+     *                       generates the same history
+     */
+    public SyntheticHistory(
+            final String serverPath,
+            final int fileCount,
+            final int changesetCount,
+            final int churn,
+            final int renames,
+            final int binaryPercent,
+            final int fileSize,
+            final long seed) {
+        Check.notNullOrEmpty(serverPath, "serverPath");
+        Check.isTrue(fileCount > 0, "fileCount > 0");
+        Check.isTrue(changesetCount > 0, "changesetCount > 0");
+        Check.isTrue(churn >= 0, "churn >= 0");
+        Check.isTrue(renames >= 0, "renames >= 0");
+        Check.isTrue(binaryPercent >= 0 && binaryPercent <= 100, "binaryPercent");
+        Check.isTrue(fileSize > 0, "fileSize > 0");
+
+        this.serverPath = serverPath;
+        this.fileCount = fileCount;
+        this.changesetCount = changesetCount;
+        this.binaryPercent = binaryPercent;
+        this.fileSize = fileSize;
+
+        this.addChangesets = new int[fileCount];
+        this.versions = new int[fileCount][];
+        this.versionCounts = new int[fileCount];
+
+        final List<String> relativePaths = SyntheticRepository.createPaths(fileCount, FILES_PER_FOLDER, FOLDERS_PER_FOLDER);
+        this.paths = new String[fileCount];
+
+        for (int i = 0; i < fileCount; i++) {
+            paths[i] = serverPath + "/" + relativePaths.get(i);
+            fileIndexes.put(paths[i], i);
+        }
+
+        generate(churn, renames, new Random(seed));
+    }
+
+    public String getServerPath() {
+        return serverPath;
+    }
+
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    public int getChangesetCount() {
+        return changesetCount;
+    }
+
+    /**
+     * Gets the files that exist at the changeset specified, as the items the
+     * server returns for a full recursion query on the server folder
+     *
+     * @param path        the server path queried
+     * @param changesetID the changeset queried
+     * @return
+     */
+    public Item[] getItems(final String path, final int changesetID) {
+        final List<Item> items = new ArrayList<Item>();
+
+        if (changesetID < 1) {
+            return new Item[0];
+        }
+
+        if (isInPath(serverPath, path)) {
+            items.add(createItem(serverPath, changesetID, ItemType.FOLDER));
+        }
+
+        for (int i = 0; i < fileCount && addChangesets[i] <= changesetID; i++) {
+            final String filePath = getPath(i, changesetID);
+
+            if (isInPath(filePath, path)) {
+                items.add(createItem(filePath, getVersion(i, changesetID), ItemType.FILE));
+            }
+        }
+
+        return items.toArray(new Item[items.size()]);
+    }
+
+    /**
+     * Gets the changesets from the newest to the oldest in the range specified
+     *
+     * @param fromChangesetID the oldest changeset, inclusive
+     * @param toChangesetID   the newest changeset, inclusive
+     * @param maxCount        the maximum number of changesets to return
+     * @return
+     */
+    public Changeset[] getChangesets(final int fromChangesetID, final int toChangesetID, final int maxCount) {
+        final List<Changeset> changesets = new ArrayList<Changeset>();
+
+        for (int id = Math.min(toChangesetID, changesetCount);
+             id >= Math.max(fromChangesetID, 1) && changesets.size() < maxCount;
+             id--) {
+            changesets.add(getChangeset(id));
+        }
+
+        return changesets.toArray(new Changeset[changesets.size()]);
+    }
+
+    public Changeset getChangeset(final int changesetID) {
+        if (changesetID < 1 || changesetID > changesetCount) {
+            return null;
+        }
+
+        final Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        date.clear();
+        date.set(2010, Calendar.JANUARY, 1);
+        date.add(Calendar.HOUR_OF_DAY, changesetID);
+
+        final int user = changesetID % 20;
+
+        final Changeset changeset = new Changeset();
+        changeset.setChangesetID(changesetID);
+        changeset.setOwner("DOMAIN\\user" + user);
+        changeset.setOwnerDisplayName("User " + user);
+        changeset.setCommitter("DOMAIN\\user" + user);
+        changeset.setCommitterDisplayName("User " + user);
+        changeset.setComment("Changeset " + changesetID);
+        changeset.setDate(date);
+
+        return changeset;
+    }
+
+    /**
+     * Gets the size of the content of a file version
+     *
+     * @param item the file item
+     * @return
+     */
+    public long getContentLength(final Item item) {
+        final int fileIndex = getFileIndex(item);
+
+        /* Spread the sizes between half and one and a half times the average */
+        return fileSize / 2 + (int) (((fileIndex * 31L + item.getChangeSetID()) & 0x7fffffffL) % (fileSize + 1));
+    }
+
+    /**
+     * Writes the content of a file version, binary files are random bytes and
+     * text files are lines of text
+     *
+     * @param item   the file item
+     * @param output the stream to write to
+     * @return the number of bytes written
+     * @throws IOException
+     */
+    public long writeContent(final Item item, final OutputStream output)
+            throws IOException {
+        final int fileIndex = getFileIndex(item);
+        final long length = getContentLength(item);
+        final byte[] buffer = new byte[8192];
+        final Random random = new Random(fileIndex * 31L + item.getChangeSetID());
+        final boolean binary = fileIndex % 100 < binaryPercent;
+
+        long written = 0;
+        int line = 0;
+
+        while (written < length) {
+            final int count;
+
+            if (binary) {
+                random.nextBytes(buffer);
+                count = (int) Math.min(buffer.length, length - written);
+                output.write(buffer, 0, count);
+            } else {
+                final byte[] text = (item.getServerItem() + " line " + (line++) + " version "
+                        + item.getChangeSetID() + "\n").getBytes(UTF8);
+                count = (int) Math.min(text.length, length - written);
+                output.write(text, 0, count);
+            }
+
+            written += count;
+        }
+
+        return written;
+    }
+
+    private void generate(final int churn, final int renames, final Random random) {
+        final int initialCount = changesetCount > 1 ? Math.max(1, fileCount * INITIAL_PERCENT / 100) : fileCount;
+        final int laterCount = fileCount - initialCount;
+
+        for (int i = 0; i < fileCount; i++) {
+            addChangesets[i] =
+                    i < initialCount ? 1 : 2 + (int) ((long) (i - initialCount) * (changesetCount - 1) / laterCount);
+            versions[i] = new int[]
+                    {
+                            addChangesets[i]
+                    };
+            versionCounts[i] = 1;
+        }
+
+        int addedCount = initialCount;
+
+        for (int changesetID = 2; changesetID <= changesetCount; changesetID++) {
+            while (addedCount < fileCount && addChangesets[addedCount] <= changesetID) {
+                addedCount++;
+            }
+
+            for (int i = 0; i < churn; i++) {
+                addVersion(random.nextInt(addedCount), changesetID);
+            }
+
+            for (int i = 0; i < renames; i++) {
+                final int fileIndex = random.nextInt(addedCount);
+                final int targetIndex = random.nextInt(addedCount);
+
+                if (addVersion(fileIndex, changesetID)) {
+                    addRename(fileIndex, changesetID, getFolder(getPath(targetIndex, changesetID))
+                            + "/" + getFileName(paths[fileIndex]));
+                }
+            }
+        }
+    }
+
+    private boolean addVersion(final int fileIndex, final int changesetID) {
+        final int count = versionCounts[fileIndex];
+
+        if (versions[fileIndex][count - 1] == changesetID) {
+            return false;
+        }
+
+        if (count == versions[fileIndex].length) {
+            versions[fileIndex] = Arrays.copyOf(versions[fileIndex], count * 2);
+        }
+
+        versions[fileIndex][count] = changesetID;
+        versionCounts[fileIndex] = count + 1;
+
+        return true;
+    }
+
+    private void addRename(final int fileIndex, final int changesetID, final String newPath) {
+        final int[] changesets = renameChangesets.get(fileIndex);
+        final String[] renamedPaths = renamePaths.get(fileIndex);
+
+        if (changesets == null) {
+            renameChangesets.put(fileIndex, new int[]
+                    {
+                            changesetID
+                    });
+            renamePaths.put(fileIndex, new String[]
+                    {
+                            newPath
+                    });
+        } else {
+            final int[] newChangesets = Arrays.copyOf(changesets, changesets.length + 1);
+            final String[] newPaths = Arrays.copyOf(renamedPaths, renamedPaths.length + 1);
+
+            newChangesets[changesets.length] = changesetID;
+            newPaths[renamedPaths.length] = newPath;
+
+            renameChangesets.put(fileIndex, newChangesets);
+            renamePaths.put(fileIndex, newPaths);
+        }
+
+        fileIndexes.put(newPath, fileIndex);
+    }
+
+    private int getVersion(final int fileIndex, final int changesetID) {
+        final int index = Arrays.binarySearch(versions[fileIndex], 0, versionCounts[fileIndex], changesetID);
+
+        return versions[fileIndex][index >= 0 ? index : -index - 2];
+    }
+
+    private String getPath(final int fileIndex, final int changesetID) {
+        final int[] changesets = renameChangesets.get(fileIndex);
+
+        if (changesets == null || changesets[0] > changesetID) {
+            return paths[fileIndex];
+        }
+
+        final int index = Arrays.binarySearch(changesets, changesetID);
+
+        return renamePaths.get(fileIndex)[index >= 0 ? index : -index - 2];
+    }
+
+    private int getFileIndex(final Item item) {
+        final Integer fileIndex = fileIndexes.get(item.getServerItem());
+
+        if (fileIndex == null) {
+            throw new IllegalArgumentException(item.getServerItem());
+        }
+
+        return fileIndex;
+    }
+
+    private static Item createItem(final String path, final int changesetID, final ItemType itemType) {
+        final Item item = new Item();
+        item.setServerItem(path);
+        item.setChangeSetID(changesetID);
+        item.setItemType(itemType);
+
+        return item;
+    }
+
+    private static boolean isInPath(final String itemPath, final String path) {
+        return itemPath.equalsIgnoreCase(path)
+                || (itemPath.length() > path.length()
+                && itemPath.regionMatches(true, 0, path, 0, path.length())
+                && itemPath.charAt(path.length()) == '/');
+    }
+
+    private static String getFolder(final String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
+
+    private static String getFileName(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+}
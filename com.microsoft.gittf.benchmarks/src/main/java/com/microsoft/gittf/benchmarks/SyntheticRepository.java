@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.config.GitTFConfiguration;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A git repository in a temporary directory, configured for git-tf, that the
+ * benchmarks fill with synthetic trees and commits. The content is generated
+ * deterministically so that the runs of different versions can be compared.
+ */
+public class SyntheticRepository {
+    public static final String SERVER_URI = "http://localhost:8080/tfs/DefaultCollection";
+    public static final String SERVER_PATH = "$/Project/Main";
+
+    private static final PersonIdent AUTHOR =
+            new PersonIdent("Benchmark", "benchmark@example.com", 1262304000000L, 0);
+
+    private final File directory;
+    private final Repository repository;
+    private int commitTime = 0;
+
+    private SyntheticRepository(final File directory, final Repository repository) {
+        this.directory = directory;
+        this.repository = repository;
+    }
+
+    /**
+     * Creates an empty repository in a new temporary directory and configures
+     * it to be bridged with {@link #SERVER_PATH}
+     *
+     * @param name the name used as the prefix of the temporary directory
+     * @return
+     * @throws IOException
+     */
+    public static SyntheticRepository create(final String name)
+            throws IOException {
+        final File directory = Files.createTempDirectory("git-tf-" + name).toFile();
+        final Repository repository =
+                new FileRepositoryBuilder().setGitDir(new File(directory, Constants.DOT_GIT)).build();
+
+        repository.create();
+        new GitTFConfiguration(URI.create(SERVER_URI), SERVER_PATH).saveTo(repository);
+
+        return new SyntheticRepository(directory, repository);
+    }
+
+    /**
+     * Generates the repository relative paths of a folder hierarchy where each
+     * folder holds the number of files specified and the number of sub folders
+     * specified
+     *
+     * @param fileCount        the number of paths to generate
+     * @param filesPerFolder   the number of files in each folder
+     * @param foldersPerFolder the number of sub folders in each folder
+     * @return
+     */
+    public static List<String> createPaths(final int fileCount, final int filesPerFolder, final int foldersPerFolder) {
+        final List<String> paths = new ArrayList<String>(fileCount);
+
+        for (int i = 0; i < fileCount; i++) {
+            int folder = i / filesPerFolder;
+            final StringBuilder path = new StringBuilder();
+
+            while (folder > 0) {
+                path.insert(0, "folder" + ((folder - 1) % foldersPerFolder) + "/");
+                folder = (folder - 1) / foldersPerFolder;
+            }
+
+            path.append("file").append(i).append(".txt");
+            paths.add(path.toString());
+        }
+
+        return paths;
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Inserts a blob with the content specified
+     *
+     * @param inserter the inserter to use
+     * @param content  the content of the blob
+     * @return
+     * @throws IOException
+     */
+    public ObjectId insertBlob(final ObjectInserter inserter, final String content)
+            throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, Constants.encode(content));
+    }
+
+    /**
+     * Inserts the trees of the files specified
+     *
+     * @param inserter the inserter to use
+     * @param files    the blobs mapped by their repository relative path
+     * @return the id of the root tree
+     * @throws IOException
+     */
+    public ObjectId insertTree(final ObjectInserter inserter, final Map<String, ObjectId> files)
+            throws IOException {
+        final DirCache index = DirCache.newInCore();
+        final DirCacheBuilder builder = index.builder();
+
+        for (final Entry<String, ObjectId> file : files.entrySet()) {
+            final DirCacheEntry entry = new DirCacheEntry(file.getKey());
+            entry.setFileMode(FileMode.REGULAR_FILE);
+            entry.setObjectId(file.getValue());
+            builder.add(entry);
+        }
+
+        builder.finish();
+
+        return index.writeTree(inserter);
+    }
+
+    /**
+     * Inserts a commit of the tree specified
+     *
+     * @param inserter the inserter to use
+     * @param treeID   the root tree of the commit
+     * @param parents  the parents of the commit
+     * @return
+     * @throws IOException
+     */
+    public ObjectId insertCommit(final ObjectInserter inserter, final ObjectId treeID, final ObjectId... parents)
+            throws IOException {
+        final PersonIdent ident = new PersonIdent(
+                AUTHOR,
+                AUTHOR.getWhen().getTime() + (commitTime++) * 1000L,
+                0);
+
+        final CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(treeID);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage("Commit " + commitTime);
+
+        return inserter.insert(commit);
+    }
+
+    /**
+     * Closes the repository and deletes its directory
+     */
+    public void close() {
+        repository.close();
+
+        try {
+            FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+        } catch (final IOException e) {
+        }
+    }
+}
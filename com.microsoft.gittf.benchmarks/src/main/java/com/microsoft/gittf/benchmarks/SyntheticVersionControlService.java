@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.interfaces.VersionControlService;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.clients.versioncontrol.GetItemsOptions;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Changeset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.DeletedState;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Item;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.RecursionType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.LatestVersionSpec;
+import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link VersionControlService} that serves a {@link SyntheticHistory}. Every
+ * call waits for the latency specified and downloads are throttled to the
+ * bandwidth specified, so that the benchmarks can model a remote server.
+ * Shelvesets are not supported.
+ */
+public class SyntheticVersionControlService
+        implements VersionControlService, ThroughputReport.Counters {
+    private final SyntheticHistory history;
+    private final long latencyMillis;
+    private final long bytesPerSecond;
+
+    private volatile int latestChangesetID;
+
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong downloadCount = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    /**
+     * Constructor
+     *
+     * @param history        the history to serve
+     * @param latencyMillis  the latency of every call in milliseconds, 0 for
+     *                       none
+     * @param bytesPerSecond the download bandwidth in bytes per second, 0 for
+     *                       unlimited
+     */
+    public SyntheticVersionControlService(
+            final SyntheticHistory history,
+            final long latencyMillis,
+            final long bytesPerSecond) {
+        Check.notNull(history, "history");
+        Check.isTrue(latencyMillis >= 0, "latencyMillis >= 0");
+        Check.isTrue(bytesPerSecond >= 0, "bytesPerSecond >= 0");
+
+        this.history = history;
+        this.latencyMillis = latencyMillis;
+        this.bytesPerSecond = bytesPerSecond;
+        this.latestChangesetID = history.getChangesetCount();
+    }
+
+    /**
+     * Sets the latest changeset visible to the clients, so that a clone of an
+     * older changeset can be followed by fetches of the newer ones
+     *
+     * @param latestChangesetID the latest changeset id
+     */
+    public void setLatestChangesetID(final int latestChangesetID) {
+        Check.isTrue(latestChangesetID >= 1 && latestChangesetID <= history.getChangesetCount(),
+                "latestChangesetID");
+
+        this.latestChangesetID = latestChangesetID;
+    }
+
+    public int getLatestChangesetID() {
+        return latestChangesetID;
+    }
+
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    public long getDownloadCount() {
+        return downloadCount.get();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    public void resetCounters() {
+        callCount.set(0);
+        downloadCount.set(0);
+        bytesDownloaded.set(0);
+    }
+
+    public Item getItem(
+            final String path,
+            final VersionSpec version,
+            final DeletedState deletedState,
+            final GetItemsOptions options) {
+        call();
+
+        final int changesetID = getChangesetID(version);
+
+        for (final Item item : history.getItems(path, changesetID)) {
+            if (item.getServerItem().equalsIgnoreCase(path)) {
+                return item;
+            }
+        }
+
+        return null;
+    }
+
+    public Item[] getItems(final String path, final ChangesetVersionSpec version, final RecursionType recursion) {
+        call();
+
+        return history.getItems(path, getChangesetID(version));
+    }
+
+    public void downloadFile(final Item item, final String downloadTo)
+            throws IOException {
+        call();
+
+        final long start = System.nanoTime();
+        final long length;
+
+        final OutputStream output = new BufferedOutputStream(new FileOutputStream(downloadTo));
+        try {
+            length = history.writeContent(item, output);
+        } finally {
+            output.close();
+        }
+
+        downloadCount.incrementAndGet();
+        bytesDownloaded.addAndGet(length);
+
+        if (bytesPerSecond > 0) {
+            final long transferMillis = length * 1000L / bytesPerSecond;
+            final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+            sleep(transferMillis - elapsedMillis);
+        }
+    }
+
+    public void downloadShelvedFile(final PendingChange shelvedChange, final String downloadTo) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void downloadBaseFile(final PendingChange pendingChange, final String downloadTo) {
+        throw new UnsupportedOperationException();
+    }
+
+    public Changeset getChangeset(final int changesetID) {
+        call();
+
+        return changesetID <= latestChangesetID ? history.getChangeset(changesetID) : null;
+    }
+
+    public Changeset[] queryHistory(
+            final String serverOrLocalPath,
+            final VersionSpec version,
+            final int deletionID,
+            final RecursionType recursion,
+            final String user,
+            final VersionSpec versionFrom,
+            final VersionSpec versionTo,
+            final int maxCount,
+            final boolean includeFileDetails,
+            final boolean slotMode,
+            final boolean generateDownloadURLs,
+            final boolean sortAscending) {
+        call();
+
+        /* Every changeset of the history changes the server folder */
+        final int fromChangesetID = versionFrom != null ? getChangesetID(versionFrom) : 1;
+        final int toChangesetID =
+                Math.min(getChangesetID(version), versionTo != null ? getChangesetID(versionTo) : latestChangesetID);
+
+        return history.getChangesets(fromChangesetID, toChangesetID, maxCount);
+    }
+
+    public Shelveset[] queryShelvesets(final String shelvesetName, final String shelvesetOwner) {
+        call();
+
+        return new Shelveset[0];
+    }
+
+    public PendingSet[] queryShelvesetChanges(final Shelveset shelveset, final boolean includeDownloadInfo) {
+        call();
+
+        return new PendingSet[0];
+    }
+
+    public void deleteShelveset(final Shelveset shelveset) {
+        throw new UnsupportedOperationException();
+    }
+
+    private int getChangesetID(final VersionSpec version) {
+        if (version == null || version instanceof LatestVersionSpec) {
+            return latestChangesetID;
+        } else if (version instanceof ChangesetVersionSpec) {
+            return Math.min(((ChangesetVersionSpec) version).getChangeset(), latestChangesetID);
+        } else {
+            throw new IllegalArgumentException(version.toString());
+        }
+    }
+
+    private void call() {
+        callCount.incrementAndGet();
+        sleep(latencyMillis);
+    }
+
+    private static void sleep(final long millis) {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.tasks.CloneTask;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.Task;
+import com.microsoft.gittf.core.tasks.framework.TaskExecutor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.util.StringUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TimeZone;
+
+/**
+ * Runs the phases of an end-to-end benchmark and reports the throughput of
+ * each one: changesets, files and megabytes per second, the number of service
+ * calls and the peak heap used. The report can be written as JSON to compare
+ * the runs of different versions.
+ */
+public class ThroughputReport {
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
+    private final Map<String, Object> settings = new LinkedHashMap<String, Object>();
+    private final List<Map<String, Object>> phases = new ArrayList<Map<String, Object>>();
+
+    /**
+     * The counters of the service the tasks call
+     */
+    public interface Counters {
+        long getCallCount();
+
+        long getDownloadCount();
+
+        long getBytesDownloaded();
+
+        void resetCounters();
+    }
+
+    public void addSetting(final String name, final Object value) {
+        settings.put(name, value);
+    }
+
+    /**
+     * Runs a task and records the throughput of the phase
+     *
+     * @param name       the name of the phase
+     * @param task       the task to run
+     * @param changesets the number of changesets the task downloads
+     * @param counters   the counters of the service the task calls
+     * @return true if the task succeeded
+     */
+    public boolean runPhase(final String name, final Task task, final int changesets, final Counters counters) {
+        counters.resetCounters();
+        resetPeakHeap();
+
+        final long start = System.nanoTime();
+        final TaskStatus status = new TaskExecutor(new NullTaskProgressMonitor()).execute(task);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (!status.isOK()) {
+            System.err.println(name + " failed: " + status.getMessage());
+
+            if (status.getException() != null) {
+                status.getException().printStackTrace();
+            }
+
+            return false;
+        }
+
+        final double megabytes = counters.getBytesDownloaded() / MEGABYTE;
+
+        final Map<String, Object> phase = new LinkedHashMap<String, Object>();
+        phase.put("name", name);
+        phase.put("seconds", round(seconds));
+        phase.put("changesets", changesets);
+        phase.put("changesetsPerSecond", round(changesets / seconds));
+        phase.put("files", counters.getDownloadCount());
+        phase.put("filesPerSecond", round(counters.getDownloadCount() / seconds));
+        phase.put("megabytes", round(megabytes));
+        phase.put("megabytesPerSecond", round(megabytes / seconds));
+        phase.put("serviceCalls", counters.getCallCount());
+        phase.put("peakHeapMegabytes", round(getPeakHeap() / MEGABYTE));
+
+        phases.add(phase);
+
+        return true;
+    }
+
+    /**
+     * Sets the number of changesets downloaded by the last phase, for the
+     * phases where it is only known after the task ran
+     *
+     * @param changesets the number of changesets
+     */
+    public void setChangesets(final int changesets) {
+        final Map<String, Object> phase = phases.get(phases.size() - 1);
+
+        phase.put("changesets", changesets);
+        phase.put("changesetsPerSecond", round(changesets / (Double) phase.get("seconds")));
+    }
+
+    public void print(final PrintStream out) {
+        out.println(String.format(
+                Locale.ROOT,
+                "%-6s %10s %12s %12s %12s %12s %10s %12s",
+                "phase",
+                "seconds",
+                "changesets/s",
+                "files/s",
+                "MB/s",
+                "megabytes",
+                "calls",
+                "peak heap MB"));
+
+        for (final Map<String, Object> phase : phases) {
+            out.println(String.format(
+                    Locale.ROOT,
+                    "%-6s %10.2f %12.2f %12.2f %12.2f %12.2f %10d %12.2f",
+                    phase.get("name"),
+                    phase.get("seconds"),
+                    phase.get("changesetsPerSecond"),
+                    phase.get("filesPerSecond"),
+                    phase.get("megabytesPerSecond"),
+                    phase.get("megabytes"),
+                    phase.get("serviceCalls"),
+                    phase.get("peakHeapMegabytes")));
+        }
+    }
+
+    /**
+     * Writes the report as JSON
+     *
+     * @param file  the file to write
+     * @param label the label of the run, e.g. the version benchmarked
+     * @throws IOException
+     */
+    public void write(final File file, final String label)
+            throws IOException {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("{\"label\":");
+            writer.write(StringUtil.toJsonValue(label));
+            writer.write(",\"version\":");
+            writer.write(StringUtil.toJsonValue(CloneTask.class.getPackage().getImplementationVersion()));
+            writer.write(",\"java\":");
+            writer.write(StringUtil.toJsonValue(System.getProperty("java.version")));
+            writer.write(",\"date\":");
+            writer.write(StringUtil.toJsonValue(dateFormat.format(new Date())));
+            writer.write(",\"settings\":");
+            writeJsonObject(writer, settings);
+            writer.write(",\"phases\":[");
+
+            for (int i = 0; i < phases.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+
+                writeJsonObject(writer, phases.get(i));
+            }
+
+            writer.write("]}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    public static double round(final double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private static void writeJsonObject(final Writer writer, final Map<String, Object> values)
+            throws IOException {
+        writer.write('{');
+
+        boolean first = true;
+        for (final Entry<String, Object> value : values.entrySet()) {
+            if (!first) {
+                writer.write(',');
+            }
+
+            writer.write(StringUtil.toJsonValue(value.getKey()));
+            writer.write(':');
+            writer.write(StringUtil.toJsonValue(value.getValue()));
+            first = false;
+        }
+
+        writer.write('}');
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long getPeakHeap() {
+        long peak = 0;
+
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+
+        return peak;
+    }
+}
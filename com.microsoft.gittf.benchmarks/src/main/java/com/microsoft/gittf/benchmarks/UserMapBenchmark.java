@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.benchmarks;
+
+import com.microsoft.gittf.core.identity.GitUser;
+import com.microsoft.gittf.core.identity.TfsUser;
+import com.microsoft.gittf.core.identity.UserMap;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.tfs.core.clients.webservices.IdentitySearchFactor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing a user map with the number of mapped users specified. The
+ * lines are kept in memory so that only the parsing is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UserMapBenchmark {
+    @Param({"100", "10000"})
+    public int userCount;
+
+    private File userMapFile;
+    private final List<String> lines = new ArrayList<String>();
+    private GitUser lastGitUser;
+
+    @Setup
+    public void setUp()
+            throws IOException {
+        /* UserMap only loads a file that exists */
+        userMapFile = File.createTempFile("git-tf-usermap", ".txt");
+
+        lines.add("# Generated user map");
+        lines.add("[mapping]");
+
+        for (int i = 0; i < userCount; i++) {
+            lines.add("    Git User " + i + " <user" + i + "@example.com> = DOMAIN\\user" + i + " ; comment");
+        }
+
+        lines.add("[unknown]");
+        lines.add("    Unknown User <unknown@example.com> = ");
+
+        lastGitUser = new GitUser("Git User " + (userCount - 1), "user" + (userCount - 1) + "@example.com");
+    }
+
+    @TearDown
+    public void tearDown() {
+        userMapFile.delete();
+    }
+
+    @Benchmark
+    public TfsUser load() {
+        final UserMap userMap = new InMemoryUserMap(userMapFile.getPath(), lines);
+        userMap.load();
+
+        return userMap.getTfsUser(lastGitUser);
+    }
+
+    private static class InMemoryUserMap
+            extends UserMap {
+        private final List<String> lines;
+
+        public InMemoryUserMap(final String userMapPath, final List<String> lines) {
+            super(userMapPath);
+
+            this.lines = lines;
+        }
+
+        @Override
+        protected List<String> readUserMapFile() {
+            return lines;
+        }
+
+        @Override
+        protected void writeUserMapFile(final List<String> fileLines) {
+        }
+
+        @Override
+        protected Map<String, List<TfsUser>> findTfsUsers(
+                final TaskProgressMonitor progressMonitor,
+                final List<String> searchValues,
+                final IdentitySearchFactor searchFactor) {
+            return null;
+        }
+    }
+}
@@ -37,14 +37,37 @@ public class Console {
     private static final int CONSOLE_MIN_WIDTH_FOR_OVERWRITE = 8;
 
     ;
-    private static final PrintStream outputStream = System.out;
-    private static final PrintStream errorStream = System.err;
+    private final PrintStream outputStream;
+    private final PrintStream errorStream;
+    private final boolean terminal;
     private Verbosity verbosity = Verbosity.NORMAL;
 
     /**
-     * Constructor
+     * Constructor, the console writes to the standard output and error
+     * streams of the process
      */
     public Console() {
+        this(System.out, System.err, true);
+    }
+
+    /**
+     * Constructor, the console writes to the streams specified, e.g. those of
+     * a client connected to the daemon. Such a console is not interactive.
+     *
+     * @param outputStream the output stream
+     * @param errorStream  the error stream
+     */
+    public Console(final PrintStream outputStream, final PrintStream errorStream) {
+        this(outputStream, errorStream, false);
+    }
+
+    private Console(final PrintStream outputStream, final PrintStream errorStream, final boolean terminal) {
+        Check.notNull(outputStream, "outputStream");
+        Check.notNull(errorStream, "errorStream");
+
+        this.outputStream = outputStream;
+        this.errorStream = errorStream;
+        this.terminal = terminal;
     }
 
     public Verbosity getVerbosity() {
@@ -73,6 +96,17 @@ public class Console {
         return new NullPrintStream();
     }
 
+    /**
+     * Determines whether the user can be prompted, i.e. whether the console
+     * writes to the standard streams of the process, so that the answer can be
+     * read from its standard input
+     *
+     * @return true if the console is interactive
+     */
+    public boolean isInteractive() {
+        return terminal;
+    }
+
     public int getWidth() {
         return ConsoleUtils.getInstance().getConsoleColumns();
     }
@@ -83,9 +117,12 @@ public class Console {
          * running in a console emulator that is incapable of displaying
          * backspaces properly. The Eclipse Console is an example of this. In
          * this case we should suggest clients do not overwrite lines by using
-         * backspace.
+         * backspace. The same applies when the output is redirected, e.g. to
+         * the log of a build.
          */
-        return (ConsoleUtils.getInstance().getConsoleColumns() >= CONSOLE_MIN_WIDTH_FOR_OVERWRITE);
+        return terminal
+                && System.console() != null
+                && ConsoleUtils.getInstance().getConsoleColumns() >= CONSOLE_MIN_WIDTH_FOR_OVERWRITE;
     }
 
     /**
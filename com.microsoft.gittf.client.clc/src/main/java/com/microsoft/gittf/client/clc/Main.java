@@ -32,11 +32,16 @@ import com.microsoft.gittf.client.clc.arguments.parser.ArgumentParserException;
 import com.microsoft.gittf.client.clc.arguments.parser.ArgumentParserOptions;
 import com.microsoft.gittf.client.clc.commands.*;
 import com.microsoft.gittf.client.clc.commands.framework.Command;
+import com.microsoft.gittf.client.clc.daemon.DaemonClient;
 import com.microsoft.gittf.client.clc.util.HelpFormatter;
 import com.microsoft.gittf.client.clc.util.logging.LoggingConfiguration;
+import com.microsoft.gittf.core.impl.ServiceCallMetrics;
+import com.microsoft.gittf.core.impl.ServiceRecorder;
+import com.microsoft.gittf.core.tasks.framework.TaskTracer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import java.io.File;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -104,8 +109,31 @@ public class Main {
                             MultiCheckinCommand.COMMAND_NAME,
                             MultiCheckinCommand.class,
                             Messages.getString("Main.Command.MCheckin.HelpText")),
+
+                    new CommandDefinition(
+                            DaemonCommand.COMMAND_NAME,
+                            DaemonCommand.class,
+                            Messages.getString("Main.Command.Daemon.HelpText")),
+
+                    new CommandDefinition(
+                            BatchCommand.COMMAND_NAME,
+                            BatchCommand.class,
+                            Messages.getString("Main.Command.Batch.HelpText")),
             };
     private static final Console console = new Console();
+
+    /* The console of the command running on the current thread, e.g. for a client of the daemon */
+    private static final ThreadLocal<Console> commandConsole = new ThreadLocal<Console>();
+
+    private static TaskTracer tracer = null;
+    private static File traceFile = null;
+
+    private static ServiceCallMetrics metrics = null;
+    private static boolean printStats = false;
+    private static File statsFile = null;
+
+    private static ServiceRecorder recorder = null;
+
     /**
      * All arguments that are accepted.
      */
@@ -126,6 +154,27 @@ public class Main {
                                     Messages.getString("Command.Argument.Verbose.HelpText"))
                     ),
 
+                    new ValueArgument("trace",
+                            Messages.getString("Main.Argument.Trace.ValueDescription"),
+                            Messages.getString("Main.Argument.Trace.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new SwitchArgument("stats",
+                            Messages.getString("Main.Argument.Stats.HelpText")),
+
+                    new ValueArgument("stats-file",
+                            Messages.getString("Main.Argument.StatsFile.ValueDescription"),
+                            Messages.getString("Main.Argument.StatsFile.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new ValueArgument("record",
+                            Messages.getString("Main.Argument.Record.ValueDescription"),
+                            Messages.getString("Main.Argument.Record.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new SwitchArgument("use-daemon",
+                            Messages.getString("Main.Argument.UseDaemon.HelpText")),
+
                     /*
                      * The first free argument should be the command, remaining free
                      * arguments should be the arguments for that command.
@@ -220,6 +269,94 @@ public class Main {
                         fullCommand.length - 1);
             }
 
+            // Forward the command to the daemon, if it is running.
+            if (mainArguments.contains("use-daemon"))
+            {
+                if (mainArguments.contains("trace")
+                        || mainArguments.contains("stats")
+                        || mainArguments.contains("stats-file")
+                        || mainArguments.contains("record"))
+                {
+                    printError(Messages.getString("Main.DaemonArgumentsNotSupported"));
+                    System.exit(ExitCode.FAILURE);
+                }
+
+                final DaemonClient client = DaemonClient.connect();
+
+                if (client != null)
+                {
+                    System.exit(client.run(console, commandName, commandArgs));
+                }
+
+                log.info("The daemon is not running, running the command in this process");
+            }
+
+            // Start tracing the tasks if a trace file was requested.
+            if (mainArguments.contains("trace"))
+            {
+                traceFile = new File(((ValueArgument) mainArguments.getArgument("trace")).getValue());
+                tracer = TaskTracer.start();
+            }
+
+            // Record the service calls if statistics were requested.
+            if (mainArguments.contains("stats") || mainArguments.contains("stats-file"))
+            {
+                printStats = mainArguments.contains("stats");
+                statsFile = mainArguments.contains("stats-file")
+                        ? new File(((ValueArgument) mainArguments.getArgument("stats-file")).getValue()) : null;
+                metrics = ServiceCallMetrics.start();
+            }
+
+            // Record the service calls to an archive that can be replayed offline.
+            if (mainArguments.contains("record"))
+            {
+                recorder = ServiceRecorder.start(
+                        new File(((ValueArgument) mainArguments.getArgument("record")).getValue()));
+            }
+
+            final int exitCode = runCommand(console, commandName, commandArgs, null);
+
+            writeTrace();
+            writeStats();
+            writeRecording();
+
+            System.exit(exitCode);
+
+        } catch (Exception e) {
+            printError(e.getLocalizedMessage());
+            log.warn(MessageFormat.format("Error executing command: {0}", getCommandLine(args)), e);
+
+            writeTrace();
+            writeStats();
+            writeRecording();
+
+            System.exit(ExitCode.FAILURE);
+        }
+    }
+
+    /**
+     * Runs a command, writing its output to the console specified. Used by
+     * the daemon to run the commands of its clients in the same process.
+     *
+     * @param console          the console of the command
+     * @param commandName      the name of the command, or an unambiguous prefix
+     *                         of it
+     * @param commandArgs      the arguments of the command
+     * @param workingDirectory the directory to run the command in, or null to
+     *                         use the current directory of the process
+     * @return the exit code of the command
+     */
+    public static int runCommand(
+            final Console console,
+            final String commandName,
+            final String[] commandArgs,
+            final File workingDirectory) {
+        final Log log = LogFactory.getLog(ProductInformation.getProductName());
+        final Console previousConsole = commandConsole.get();
+
+        commandConsole.set(console);
+
+        try {
             // Locate the specified command by name
             List<CommandDefinition> possibleCommands = new ArrayList<CommandDefinition>();
 
@@ -236,7 +373,7 @@ public class Main {
             if (possibleCommands.size() == 0) {
                 printError(Messages.formatString(
                         "Main.CommandNotFoundFormat", commandName, ProductInformation.getProductName()));
-                System.exit(1);
+                return ExitCode.FAILURE;
             }
 
             if (possibleCommands.size() > 1) {
@@ -247,7 +384,7 @@ public class Main {
                     printError(Messages.formatString("Main.AmbiguousCommandListFormat", c.getName()), false);
                 }
 
-                System.exit(1);
+                return ExitCode.FAILURE;
             }
 
             // Instantiate the command
@@ -258,11 +395,12 @@ public class Main {
                 command = commandDefinition.getType().newInstance();
             } catch (Exception e) {
                 printError(Messages.formatString("Main.CommandCreationFailedFormat", commandName));
-                System.exit(1);
+                return ExitCode.FAILURE;
             }
 
-            // Set the console
+            // Set the console and the working directory
             command.setConsole(console);
+            command.setWorkingDirectory(workingDirectory);
 
             // Parse the arguments
             ArgumentCollection argumentCollection = null;
@@ -274,14 +412,14 @@ public class Main {
                 Main.printError(getUsage(command));
 
                 log.error("Could not parse arguments", e);
-                System.exit(1);
+                return ExitCode.FAILURE;
             }
 
             // Handle the --help argument directly
             if (argumentCollection.contains("help"))
             {
                 command.showHelp();
-                System.exit(0);
+                return ExitCode.SUCCESS;
             }
 
             // Set the verbosity of the console from the arguments.
@@ -295,17 +433,79 @@ public class Main {
 
             command.setArguments(argumentCollection);
 
-            System.exit(command.run());
-
+            return command.run();
         } catch (Exception e) {
             printError(e.getLocalizedMessage());
-            log.warn(MessageFormat.format("Error executing command: {0}", getCommandLine(args)), e);
+            log.warn(MessageFormat.format(
+                    "Error executing command: {0} {1}", commandName, getCommandLine(commandArgs)), e);
 
-            System.exit(ExitCode.FAILURE);
+            return ExitCode.FAILURE;
+        } finally {
+            commandConsole.set(previousConsole);
+        }
+    }
+
+    private static void writeTrace() {
+        if (tracer == null) {
+            return;
+        }
+
+        tracer.stop();
+
+        try {
+            tracer.writeChromeTrace(traceFile);
+        } catch (Exception e) {
+            printWarning(Messages.formatString(
+                    "Main.TraceWriteFailedFormat", traceFile.getAbsolutePath(), e.getLocalizedMessage()));
         }
+
+        tracer = null;
+    }
+
+    private static void writeStats() {
+        if (metrics == null) {
+            return;
+        }
+
+        metrics.stop();
+
+        if (printStats) {
+            console.getErrorStream().println();
+            metrics.printSummary(console.getErrorStream());
+        }
+
+        if (statsFile != null) {
+            try {
+                metrics.writeJson(statsFile);
+            } catch (Exception e) {
+                printWarning(Messages.formatString(
+                        "Main.StatsWriteFailedFormat", statsFile.getAbsolutePath(), e.getLocalizedMessage()));
+            }
+        }
+
+        metrics = null;
+    }
+
+    private static void writeRecording() {
+        if (recorder == null) {
+            return;
+        }
+
+        try {
+            recorder.stop();
+        } catch (Exception e) {
+            printWarning(Messages.formatString(
+                    "Main.RecordWriteFailedFormat",
+                    recorder.getArchiveFile().getAbsolutePath(),
+                    e.getLocalizedMessage()));
+        }
+
+        recorder = null;
     }
 
     public static void showHelp() {
+        final Console console = getConsole();
+
         console.getOutputStream().println(getUsage());
         console.getOutputStream().println();
 
@@ -329,6 +529,8 @@ public class Main {
     }
 
     public static void printError(String message, boolean addApplicationName) {
+        final Console console = getConsole();
+
         if (addApplicationName) {
             console.getErrorStream().println(
                     MessageFormat.format("{0}: {1}", ProductInformation.getProductName(), message));
@@ -337,6 +539,12 @@ public class Main {
         }
     }
 
+    private static Console getConsole() {
+        final Console current = commandConsole.get();
+
+        return current != null ? current : console;
+    }
+
     private static String getCommandLine(String[] args) {
         StringBuilder s = new StringBuilder();
 
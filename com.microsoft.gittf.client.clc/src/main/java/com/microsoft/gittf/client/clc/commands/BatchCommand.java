@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.commands;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Console.Verbosity;
+import com.microsoft.gittf.client.clc.ExitCode;
+import com.microsoft.gittf.client.clc.Main;
+import com.microsoft.gittf.client.clc.Messages;
+import com.microsoft.gittf.client.clc.arguments.*;
+import com.microsoft.gittf.client.clc.commands.framework.Command;
+import com.microsoft.gittf.client.clc.connection.ConnectionCache;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of commands against several repositories in one process, so that
+ * they share the JVM and the TFS connections. The commands of a repository run
+ * in order, different repositories run in parallel.
+ */
+public class BatchCommand
+        extends Command {
+    public static final String COMMAND_NAME = "batch";
+
+    private static final int DEFAULT_THREADS = 4;
+    private static final String STANDARD_INPUT = "-";
+
+    private static final Argument[] ARGUMENTS = new Argument[]
+            {
+                    new SwitchArgument("help", Messages.getString("Command.Argument.Help.HelpText")),
+
+                    new ChoiceArgument(Messages.getString("Command.Argument.Display.HelpText"),
+                            new SwitchArgument("quiet",
+                                    'q',
+                                    Messages.getString("Command.Argument.Quiet.HelpText")),
+
+                            new SwitchArgument("verbose",
+                                    Messages.getString("Command.Argument.Verbose.HelpText"))
+                    ),
+
+                    new ValueArgument("threads",
+                            Messages.getString("BatchCommand.Argument.Threads.ValueDescription"),
+                            Messages.getString("BatchCommand.Argument.Threads.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new FreeArgument("file",
+                            Messages.getString("BatchCommand.Argument.File.HelpText")),
+            };
+
+    @Override
+    protected String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public Argument[] getPossibleArguments() {
+        return ARGUMENTS;
+    }
+
+    @Override
+    public String getHelpDescription() {
+        return Messages.getString("BatchCommand.HelpDescription");
+    }
+
+    @Override
+    public int run()
+            throws Exception {
+        final int threads = getNumberIfSpecified("threads", DEFAULT_THREADS, 1);
+        final List<BatchEntry> entries = readEntries();
+
+        if (entries.isEmpty()) {
+            return ExitCode.SUCCESS;
+        }
+
+        final Map<File, List<BatchEntry>> repositories = groupEntries(entries);
+
+        /* The output of parallel commands is buffered so that it does not interleave */
+        final boolean buffered = threads > 1 && repositories.size() > 1;
+        final AtomicInteger failed = new AtomicInteger();
+
+        /* Share the connections between the commands, unless the daemon already does */
+        final ConnectionCache connectionCache = ConnectionCache.isStarted() ? null : ConnectionCache.start();
+
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(threads, repositories.size()), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(runnable, "git-tf-batch-" + count.incrementAndGet());
+                    }
+                });
+
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+            for (final List<BatchEntry> repositoryEntries : repositories.values()) {
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        failed.addAndGet(runEntries(repositoryEntries, buffered));
+                    }
+                }));
+            }
+
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new Exception(e.getCause().getLocalizedMessage(), e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdown();
+
+            if (connectionCache != null) {
+                connectionCache.stop();
+            }
+        }
+
+        if (failed.get() > 0) {
+            Main.printError(Messages.formatString(
+                    "BatchCommand.FailedCommandsFormat",
+                    Integer.toString(failed.get()),
+                    Integer.toString(entries.size())));
+
+            return ExitCode.FAILURE;
+        }
+
+        return ExitCode.SUCCESS;
+    }
+
+    /**
+     * Groups the commands by the git directory they run in, keeping their
+     * order, so that the commands run in different directories of the same
+     * repository do not run in parallel
+     *
+     * @param entries the commands of the batch
+     * @return the commands of each git directory
+     */
+    static Map<File, List<BatchEntry>> groupEntries(final List<BatchEntry> entries) {
+        final Map<File, List<BatchEntry>> repositories = new LinkedHashMap<File, List<BatchEntry>>();
+
+        for (final BatchEntry entry : entries) {
+            List<BatchEntry> repositoryEntries = repositories.get(entry.getGitDirectory());
+
+            if (repositoryEntries == null) {
+                repositoryEntries = new ArrayList<BatchEntry>();
+                repositories.put(entry.getGitDirectory(), repositoryEntries);
+            }
+
+            repositoryEntries.add(entry);
+        }
+
+        return repositories;
+    }
+
+    /**
+     * Runs the commands of a repository in order, the commands after a failed
+     * one are skipped
+     *
+     * @param entries  the commands of the repository
+     * @param buffered whether the output of each command is buffered
+     * @return the number of commands that failed or were skipped
+     */
+    int runEntries(final List<BatchEntry> entries, final boolean buffered) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (runEntry(entries.get(i), buffered) != ExitCode.SUCCESS) {
+                /* The next commands of the repository may depend on the failed one */
+                for (int j = i + 1; j < entries.size(); j++) {
+                    printOutput(Messages.formatString(
+                            "BatchCommand.CommandSkippedFormat",
+                            entries.get(j).getDirectory().getPath(),
+                            entries.get(j).getCommandLine()), null, null);
+                }
+
+                return entries.size() - i;
+            }
+        }
+
+        return 0;
+    }
+
+    private int runEntry(final BatchEntry entry, final boolean buffered) {
+        final String header = Messages.formatString(
+                "BatchCommand.CommandHeaderFormat", entry.getDirectory().getPath(), entry.getCommandLine());
+
+        if (!buffered) {
+            printOutput(header, null, null);
+
+            /*
+             * The commands run one at a time, they get the console of the batch
+             * so that they can prompt; their --quiet or --verbose does not
+             * outlive them
+             */
+            final Verbosity verbosity = console.getVerbosity();
+
+            try {
+                return runCommand(console, entry);
+            } finally {
+                console.setVerbosity(verbosity);
+            }
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final ByteArrayOutputStream error = new ByteArrayOutputStream();
+
+        final Console commandConsole = new Console(new PrintStream(output, true), new PrintStream(error, true));
+        commandConsole.setVerbosity(console.getVerbosity());
+
+        final int exitCode = runCommand(commandConsole, entry);
+
+        printOutput(header, output, error);
+
+        return exitCode;
+    }
+
+    int runCommand(final Console commandConsole, final BatchEntry entry) {
+        return Main.runCommand(commandConsole, entry.getCommandName(), entry.getCommandArgs(), entry.getDirectory());
+    }
+
+    private void printOutput(final String header, final ByteArrayOutputStream output, final ByteArrayOutputStream error) {
+        synchronized (console) {
+            console.getOutputStream().println(header);
+
+            if (output != null) {
+                console.getOutputStream().write(output.toByteArray(), 0, output.size());
+            }
+
+            console.getOutputStream().flush();
+
+            if (error != null) {
+                console.getErrorStream().write(error.toByteArray(), 0, error.size());
+                console.getErrorStream().flush();
+            }
+        }
+    }
+
+    private List<BatchEntry> readEntries()
+            throws Exception {
+        final String path = getArguments().contains("file") ?
+                ((FreeArgument) getArguments().getArgument("file")).getValue() : STANDARD_INPUT;
+
+        if (STANDARD_INPUT.equals(path)) {
+            /* The standard input of the daemon is not the one of its client */
+            if (!console.isInteractive()) {
+                throw new Exception(Messages.getString("BatchCommand.StandardInputNotAvailable"));
+            }
+
+            return readEntries(new BufferedReader(new InputStreamReader(System.in)));
+        }
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(resolvePath(path))));
+
+        try {
+            return readEntries(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the commands of the batch, one per line, skipping the empty lines
+     * and the comments
+     *
+     * @param reader the reader of the lines
+     * @return the commands
+     * @throws Exception if a line is invalid
+     */
+    List<BatchEntry> readEntries(final BufferedReader reader)
+            throws Exception {
+        final List<BatchEntry> entries = new ArrayList<BatchEntry>();
+
+        String line;
+        int lineNumber = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (line.trim().length() == 0 || line.trim().startsWith("#")) {
+                continue;
+            }
+
+            final List<String> tokens = tokenize(line);
+
+            if (tokens == null || tokens.size() < 2) {
+                throw new Exception(Messages.formatString(
+                        "BatchCommand.InvalidLineFormat", Integer.toString(lineNumber), line));
+            }
+
+            final File directory = getCanonicalFile(new File(resolvePath(tokens.get(0))).getAbsoluteFile());
+
+            entries.add(new BatchEntry(
+                    directory,
+                    getGitDirectory(directory),
+                    tokens.get(1),
+                    tokens.subList(2, tokens.size()).toArray(new String[tokens.size() - 2])));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Determines the git directory the commands run in a directory use, the
+     * same way the commands search it
+     *
+     * @param directory the directory the commands run in
+     * @return the git directory, or the directory itself if it is a bare
+     * repository or not a repository
+     */
+    private static File getGitDirectory(final File directory) {
+        final RepositoryBuilder repositoryBuilder = new RepositoryBuilder().readEnvironment().findGitDir(directory);
+
+        if (repositoryBuilder.getGitDir() == null) {
+            return directory;
+        }
+
+        return getCanonicalFile(repositoryBuilder.getGitDir().getAbsoluteFile());
+    }
+
+    private static File getCanonicalFile(final File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file;
+        }
+    }
+
+    /**
+     * Splits a line of the batch file on whitespace, double quotes group
+     * arguments that contain whitespace
+     *
+     * @param line the line
+     * @return the tokens, or null if a quote is not closed
+     */
+    static List<String> tokenize(final String line) {
+        final List<String> tokens = new ArrayList<String>();
+        final StringBuilder token = new StringBuilder();
+        boolean inToken = false;
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+
+        if (quoted) {
+            return null;
+        }
+
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+
+        return tokens;
+    }
+
+    private int getNumberIfSpecified(final String argumentName, final int defaultValue, final int minimum)
+            throws Exception {
+        if (!getArguments().contains(argumentName)) {
+            return defaultValue;
+        }
+
+        final String value = ((ValueArgument) getArguments().getArgument(argumentName)).getValue();
+
+        try {
+            final int number = Integer.parseInt(value);
+
+            if (number < minimum) {
+                throw new Exception(Messages.formatString(
+                        "BatchCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+            }
+
+            return number;
+        } catch (NumberFormatException e) {
+            throw new Exception(Messages.formatString(
+                    "BatchCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+        }
+    }
+
+    @Override
+    protected boolean isMultiRepositories() {
+        return false;
+    }
+
+    /**
+     * A command of the batch and the directory to run it in
+     */
+    static class BatchEntry {
+        private final File directory;
+        private final File gitDirectory;
+        private final String commandName;
+        private final String[] commandArgs;
+        private final String commandLine;
+
+        public BatchEntry(
+                final File directory,
+                final File gitDirectory,
+                final String commandName,
+                final String[] commandArgs) {
+            this.directory = directory;
+            this.gitDirectory = gitDirectory;
+            this.commandName = commandName;
+            this.commandArgs = commandArgs;
+
+            final StringBuilder sb = new StringBuilder(commandName);
+
+            for (final String commandArg : commandArgs) {
+                sb.append(' ');
+                sb.append(commandArg);
+            }
+
+            this.commandLine = sb.toString();
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        public File getGitDirectory() {
+            return gitDirectory;
+        }
+
+        public String getCommandName() {
+            return commandName;
+        }
+
+        public String[] getCommandArgs() {
+            return commandArgs;
+        }
+
+        public String getCommandLine() {
+            return commandLine;
+        }
+    }
+}
@@ -138,6 +138,8 @@ public class CheckinCommand
 
                     new SwitchArgument("no-lock", Messages.getString("CheckinCommand.Argument.NoLock.HelpText")),
 
+                    new SwitchArgument("pipeline", Messages.getString("CheckinCommand.Argument.Pipeline.HelpText")),
+
                     new SwitchArgument("preview", 'p', Messages.getString("CheckinCommand.Argument.Preview.HelpText")),
 
                     new ChoiceArgument(Messages.getString("CheckinCommand.Argument.GatedBuild.HelpText"),
@@ -204,6 +206,7 @@ public class CheckinCommand
         }
 
         final boolean noLock = getArguments().contains("no-lock");
+        final boolean pipeline = getArguments().contains("pipeline");
         final boolean preview = getArguments().contains("preview");
         final boolean overrideGatedCheckin = getArguments().contains("bypass");
         final boolean autoSquashMultipleParents = getArguments().contains("autosquash");
@@ -234,7 +237,7 @@ public class CheckinCommand
         }
 
         final String userMapPath = getArguments().contains("user-map") ?
-                ((ValueArgument) getArguments().getArgument("user-map")).getValue() :
+                resolvePath(((ValueArgument) getArguments().getArgument("user-map")).getValue()) :
                 currentConfiguration.getUserMap();
 
         final String codeReviewer = getArguments().contains("reviewer-code") ?
@@ -271,6 +274,7 @@ public class CheckinCommand
         checkinTask.setKeepAuthor(keepAuthor);
         checkinTask.setUserMapPath(userMapPath);
         checkinTask.setCheckinNote(checkinNote);
+        checkinTask.setPipeline(pipeline);
 
         /*
          * Hook up a custom task executor that does not print gated errors to
@@ -165,7 +165,7 @@ public class CloneCommand
         if (repositoryPath == null) {
             repositoryPath = ServerPath.getFileName(tfsPath);
         }
-        repositoryPath = LocalPath.canonicalize(repositoryPath);
+        repositoryPath = LocalPath.canonicalize(resolvePath(repositoryPath));
 
         final File repositoryLocation = new File(repositoryPath);
         File parentLocationCreated = null;
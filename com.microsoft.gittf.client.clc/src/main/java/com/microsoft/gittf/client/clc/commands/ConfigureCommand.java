@@ -266,7 +266,7 @@ public class ConfigureCommand extends Command {
 
         if (getArguments().contains("user-map"))
         {
-            final String userMap = ((ValueArgument) getArguments().getArgument("user-map")).getValue();
+            final String userMap = resolvePath(((ValueArgument) getArguments().getArgument("user-map")).getValue());
             if (isValidPath(userMap)) {
                 configureTask.setUserMap(userMap);
             }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.commands;
+
+import com.microsoft.gittf.client.clc.ExitCode;
+import com.microsoft.gittf.client.clc.Messages;
+import com.microsoft.gittf.client.clc.arguments.*;
+import com.microsoft.gittf.client.clc.commands.framework.Command;
+import com.microsoft.gittf.client.clc.connection.ConnectionCache;
+import com.microsoft.gittf.client.clc.daemon.DaemonServer;
+
+/**
+ * Runs git-tf as a daemon that keeps its TFS connections authenticated and
+ * runs the commands forwarded by the clients started with --use-daemon.
+ */
+public class DaemonCommand
+        extends Command {
+    public static final String COMMAND_NAME = "daemon";
+
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final Argument[] ARGUMENTS = new Argument[]
+            {
+                    new SwitchArgument("help", Messages.getString("Command.Argument.Help.HelpText")),
+
+                    new ValueArgument("port",
+                            Messages.getString("DaemonCommand.Argument.Port.ValueDescription"),
+                            Messages.getString("DaemonCommand.Argument.Port.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new ValueArgument("threads",
+                            Messages.getString("DaemonCommand.Argument.Threads.ValueDescription"),
+                            Messages.getString("DaemonCommand.Argument.Threads.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+            };
+
+    @Override
+    protected String getCommandName() {
+        return COMMAND_NAME;
+    }
+
+    @Override
+    public Argument[] getPossibleArguments() {
+        return ARGUMENTS;
+    }
+
+    @Override
+    public String getHelpDescription() {
+        return Messages.getString("DaemonCommand.HelpDescription");
+    }
+
+    @Override
+    public int run()
+            throws Exception {
+        if (ConnectionCache.isStarted()) {
+            throw new Exception(Messages.getString("DaemonCommand.AlreadyRunning"));
+        }
+
+        final int port = getNumberIfSpecified("port", 0, 0);
+        final int threads = getNumberIfSpecified("threads", DEFAULT_THREADS, 1);
+
+        final ConnectionCache connectionCache = ConnectionCache.start();
+        final DaemonServer server = new DaemonServer(port, threads);
+
+        try {
+            server.start();
+        } catch (Exception e) {
+            connectionCache.stop();
+            throw new Exception(Messages.formatString("DaemonCommand.StartFailedFormat", e.getLocalizedMessage()), e);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                server.close();
+                connectionCache.stop();
+            }
+        }, "git-tf-daemon-shutdown"));
+
+        getConsole().getOutputStream().println(Messages.formatString(
+                "DaemonCommand.ListeningFormat", Integer.toString(server.getPort())));
+
+        server.run();
+
+        return ExitCode.SUCCESS;
+    }
+
+    private int getNumberIfSpecified(final String argumentName, final int defaultValue, final int minimum)
+            throws Exception {
+        if (!getArguments().contains(argumentName)) {
+            return defaultValue;
+        }
+
+        final String value = ((ValueArgument) getArguments().getArgument(argumentName)).getValue();
+
+        try {
+            final int number = Integer.parseInt(value);
+
+            if (number < minimum) {
+                throw new Exception(Messages.formatString(
+                        "DaemonCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+            }
+
+            return number;
+        } catch (NumberFormatException e) {
+            throw new Exception(Messages.formatString(
+                    "DaemonCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+        }
+    }
+
+    @Override
+    protected boolean isMultiRepositories() {
+        return false;
+    }
+}
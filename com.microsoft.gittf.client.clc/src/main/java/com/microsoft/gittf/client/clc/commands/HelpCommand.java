@@ -96,9 +96,10 @@ public class HelpCommand
             command = commandDefinition.getType().newInstance();
         } catch (Exception e) {
             Main.printError(Messages.formatString("Main.CommandCreationFailedFormat", commandName));
-            Runtime.getRuntime().exit(1);
+            return ExitCode.FAILURE;
         }
 
+        command.setConsole(getConsole());
         command.showHelp();
 
         return ExitCode.SUCCESS;
@@ -142,6 +142,8 @@ public class MultiCheckinCommand
 
                     new SwitchArgument("no-lock", Messages.getString("CheckinCommand.Argument.NoLock.HelpText")),
 
+                    new SwitchArgument("pipeline", Messages.getString("CheckinCommand.Argument.Pipeline.HelpText")),
+
                     new SwitchArgument("preview", 'p', Messages.getString("CheckinCommand.Argument.Preview.HelpText")),
 
                     new ChoiceArgument(Messages.getString("CheckinCommand.Argument.GatedBuild.HelpText"),
@@ -206,6 +208,7 @@ public class MultiCheckinCommand
         }
 
         final boolean noLock = getArguments().contains("no-lock");
+        final boolean pipeline = getArguments().contains("pipeline");
         final boolean preview = getArguments().contains("preview");
         final boolean overrideGatedCheckin = getArguments().contains("bypass");
         final boolean autoSquashMultipleParents = getArguments().contains("autosquash");
@@ -234,7 +237,7 @@ public class MultiCheckinCommand
         }
 
         final String userMapPath = getArguments().contains("user-map") ?
-                ((ValueArgument) getArguments().getArgument("user-map")).getValue() : null;
+                resolvePath(((ValueArgument) getArguments().getArgument("user-map")).getValue()) : null;
 
         final String codeReviewer = getArguments().contains("reviewer-code") ?
                 ((ValueArgument) getArguments().getArgument("reviewer-code")).getValue() : null;
@@ -260,6 +263,7 @@ public class MultiCheckinCommand
         checkinTask.setDeep(deep);
         checkinTask.setLock(!noLock);
         checkinTask.setPreview(preview);
+        checkinTask.setPipeline(pipeline);
         checkinTask.setMentions(mentions);
         checkinTask.setOverrideGatedCheckin(overrideGatedCheckin);
         checkinTask.setSquashCommitIDs(getSquashCommitIDs(workingDirsSplitBySemicolon));
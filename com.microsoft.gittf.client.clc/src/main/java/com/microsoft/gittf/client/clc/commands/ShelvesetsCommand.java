@@ -36,10 +36,16 @@ import com.microsoft.gittf.core.tasks.ShelvesetsDisplayTask;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.shelveset.ShelvesetSortOption;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
 public class ShelvesetsCommand
         extends Command {
     public static final String COMMAND_NAME = "shelvesets";
 
+    private static final String DATE_FORMAT = "yyyy-MM-dd";
+
     private static Argument[] ARGUMENTS = new Argument[]
             {
                     new SwitchArgument("help", Messages.getString("Command.Argument.Help.HelpText")),
@@ -67,6 +73,26 @@ public class ShelvesetsCommand
 
                     new SwitchArgument("details", Messages.getString("ShelvesetsCommand.Argument.Details.HelpText")),
 
+                    new ValueArgument("limit",
+                            Messages.getString("ShelvesetsCommand.Argument.Limit.ValueDescription"),
+                            Messages.getString("ShelvesetsCommand.Argument.Limit.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new ValueArgument("offset",
+                            Messages.getString("ShelvesetsCommand.Argument.Offset.ValueDescription"),
+                            Messages.getString("ShelvesetsCommand.Argument.Offset.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new ValueArgument("after",
+                            Messages.getString("ShelvesetsCommand.Argument.After.ValueDescription"),
+                            Messages.getString("ShelvesetsCommand.Argument.After.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
+                    new ValueArgument("before",
+                            Messages.getString("ShelvesetsCommand.Argument.Before.ValueDescription"),
+                            Messages.getString("ShelvesetsCommand.Argument.Before.HelpText"),
+                            ArgumentOptions.VALUE_REQUIRED),
+
                     new SwitchArgument("delete", Messages.getString("ShelvesetsCommand.Argument.Delete.HelpText")),
 
                     new FreeArgument("name", Messages.getString("ShelvesetsCommand.Argument.Name.HelpText"))
@@ -140,6 +166,10 @@ public class ShelvesetsCommand
 
             shelvesetsDisplayTask.setDisplayDetails(displayShelvesetDetails);
             shelvesetsDisplayTask.setSortOption(sortOption);
+            shelvesetsDisplayTask.setLimit(getNumberIfSpecified("limit", -1, 1));
+            shelvesetsDisplayTask.setOffset(getNumberIfSpecified("offset", 0, 0));
+            shelvesetsDisplayTask.setCreatedAfter(getDateIfSpecified("after"));
+            shelvesetsDisplayTask.setCreatedBefore(getDateIfSpecified("before"));
 
             final TaskStatus shelvesetsDisplayTaskResult =
                     new CommandTaskExecutor(getProgressMonitor()).execute(shelvesetsDisplayTask);
@@ -165,6 +195,50 @@ public class ShelvesetsCommand
         }
     }
 
+    private int getNumberIfSpecified(final String argumentName, final int defaultValue, final int minimum)
+            throws Exception {
+        if (!getArguments().contains(argumentName)) {
+            return defaultValue;
+        }
+
+        String value = ((ValueArgument) getArguments().getArgument(argumentName)).getValue();
+
+        try {
+            int number = Integer.parseInt(value);
+
+            if (number < minimum) {
+                throw new Exception(Messages.formatString(
+                        "ShelvesetsCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+            }
+
+            return number;
+        } catch (NumberFormatException e) {
+            throw new Exception(Messages.formatString(
+                    "ShelvesetsCommand.InvalidNumberFormat", argumentName, value, Integer.toString(minimum)));
+        }
+    }
+
+    private Calendar getDateIfSpecified(final String argumentName)
+            throws Exception {
+        if (!getArguments().contains(argumentName)) {
+            return null;
+        }
+
+        String value = ((ValueArgument) getArguments().getArgument(argumentName)).getValue();
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_FORMAT);
+        dateFormat.setLenient(false);
+
+        try {
+            Calendar date = Calendar.getInstance();
+            date.setTime(dateFormat.parse(value));
+
+            return date;
+        } catch (ParseException e) {
+            throw new Exception(Messages.formatString("ShelvesetsCommand.InvalidDateFormat", argumentName, value));
+        }
+    }
+
     @Override
     protected boolean isMultiRepositories() {
         return false;
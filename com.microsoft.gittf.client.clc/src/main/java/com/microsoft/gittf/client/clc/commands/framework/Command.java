@@ -31,10 +31,13 @@ import com.microsoft.gittf.client.clc.arguments.Argument;
 import com.microsoft.gittf.client.clc.arguments.ArgumentOptions;
 import com.microsoft.gittf.client.clc.arguments.ValueArgument;
 import com.microsoft.gittf.client.clc.arguments.parser.ArgumentCollection;
+import com.microsoft.gittf.client.clc.connection.ConnectionCache;
 import com.microsoft.gittf.client.clc.connection.GitTFConnectionAdvisor;
 import com.microsoft.gittf.client.clc.util.HelpFormatter;
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.config.GitTFConfiguration;
+import com.microsoft.gittf.core.impl.ServiceCallMetrics;
+import com.microsoft.gittf.core.impl.ServiceRecorder;
 import com.microsoft.gittf.core.impl.TfsVersionControlService;
 import com.microsoft.gittf.core.interfaces.VersionControlService;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
@@ -72,6 +75,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
@@ -85,6 +89,8 @@ public abstract class Command {
 
     protected Console console;
 
+    private File workingDirectory;
+
     private Credentials userCredentials;
     private TFSTeamProjectCollection connection;
     private VersionControlClient versionControlClient;
@@ -98,7 +104,7 @@ public abstract class Command {
 
     private ArgumentCollection arguments = new ArgumentCollection();
 
-    private static Credentials promptForCredentials(Credentials credentials) {
+    private Credentials promptForCredentials(Credentials credentials) {
         String username;
         String password;
 
@@ -114,18 +120,27 @@ public abstract class Command {
 
         password = promptForPassword();
 
+        if (password == null) {
+            return null;
+        }
+
         return new UsernamePasswordCredentials(username, password);
     }
 
-    private static String promptForUsername() {
+    private String promptForUsername() {
         return prompt(Messages.getString("Command.UsernamePrompt"), true);
     }
 
-    private static String promptForPassword() {
+    private String promptForPassword() {
         return prompt(Messages.getString("Command.PasswordPrompt"), false);
     }
 
-    private static String prompt(String prompt, boolean echo) {
+    private String prompt(String prompt, boolean echo) {
+        /* The answer cannot be read when running for a client of the daemon */
+        if (console != null && !console.isInteractive()) {
+            return null;
+        }
+
         final BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
 
         try {
@@ -158,6 +173,38 @@ public abstract class Command {
         this.console = console;
     }
 
+    protected final File getWorkingDirectory() {
+        return workingDirectory;
+    }
+
+    /**
+     * Sets the directory the command runs in, when it differs from the
+     * current directory of the process (e.g. when the command runs for a
+     * client of the daemon)
+     *
+     * @param workingDirectory the working directory, or null to use the
+     *                         current directory of the process
+     */
+    public final void setWorkingDirectory(final File workingDirectory) {
+        this.workingDirectory = workingDirectory;
+    }
+
+    /**
+     * Resolves a path specified on the command line against the working
+     * directory of the command
+     *
+     * @param path the path
+     * @return the path itself if it is absolute or the command runs in the
+     * current directory of the process, the resolved path otherwise
+     */
+    protected String resolvePath(final String path) {
+        if (StringHelpers.isNullOrEmpty(path) || workingDirectory == null || new File(path).isAbsolute()) {
+            return path;
+        }
+
+        return new File(workingDirectory, path).getPath();
+    }
+
     protected String getUsage() {
         return Messages.formatString("Command.UsageFormat",
                 ProductInformation.getProductName(),
@@ -166,8 +213,10 @@ public abstract class Command {
     }
 
     public void showHelp() {
-        System.out.println(HelpFormatter.wrap(getUsage()));
-        System.out.println();
+        final PrintStream out = console != null ? console.getOutputStream() : System.out;
+
+        out.println(HelpFormatter.wrap(getUsage()));
+        out.println();
 
         boolean showArguments = false;
         for (Argument arg : getPossibleArguments()) {
@@ -178,13 +227,13 @@ public abstract class Command {
         }
 
         if (showArguments) {
-            System.out.println(Messages.getString("Command.HelpArguments"));
-            System.out.print(HelpFormatter.getArgumentHelp(getPossibleArguments()));
+            out.println(Messages.getString("Command.HelpArguments"));
+            out.print(HelpFormatter.getArgumentHelp(getPossibleArguments()));
 
-            System.out.println();
+            out.println();
         }
 
-        System.out.println(HelpFormatter.wrap(getHelpDescription()));
+        out.println(HelpFormatter.wrap(getHelpDescription()));
     }
 
     public abstract Argument[] getPossibleArguments();
@@ -288,7 +337,7 @@ public abstract class Command {
         final String determinedGitDir = arguments.contains("git-dir") ?
                 ((ValueArgument) arguments.getArgument("git-dir")).getValue() : gitDir;
 
-        final Repository repository = RepositoryUtil.findRepository(determinedGitDir);
+        final Repository repository = RepositoryUtil.findRepository(determinedGitDir, workingDirectory);
 
         if (repository == null) {
             throw new Exception(Messages.getString("Command.RepositoryNotFound"));
@@ -305,7 +354,8 @@ public abstract class Command {
             if (workingDirsSplitBySemicolon != null) {
                 final String[] workingDirs = workingDirsSplitBySemicolon.split(WORKING_DIRS_SEPARATOR_REGEX);
                 for (final String workingDir : workingDirs) {
-                    final String gitDir = String.format("%1$s%2$s%3$s", workingDir, File.separator, GIT_DIR);
+                    final String gitDir =
+                            String.format("%1$s%2$s%3$s", resolvePath(workingDir), File.separator, GIT_DIR);
                     gitRepositories.add(getGitRepository(gitDir));
                 }
             } else {
@@ -398,17 +448,33 @@ public abstract class Command {
     protected TFSTeamProjectCollection getConnection(final URI serverURI, final Repository repository)
             throws Exception {
         if (connection == null) {
-            AtomicReference<Credentials> credentials = new AtomicReference<Credentials>();
-            credentials.set(getCredentials(repository));
+            /* Reuse the connection authenticated by a previous command of the daemon or batch */
+            final String username = getConfiguredUsername(repository);
+
+            connection = ConnectionCache.get(serverURI, username);
+
+            if (connection == null) {
+                AtomicReference<Credentials> credentials = new AtomicReference<Credentials>();
+                credentials.set(getCredentials(repository));
 
-            connection = getConnection(serverURI, credentials);
+                connection = ConnectionCache.put(serverURI, username, getConnection(serverURI, credentials));
 
-            userCredentials = credentials.get();
+                userCredentials = credentials.get();
+            }
         }
 
         return connection;
     }
 
+    private String getConfiguredUsername(final Repository repository)
+            throws Exception {
+        if (repository == null) {
+            return GitTFConfiguration.loadFrom(getRepository()).getUsername();
+        }
+
+        return GitTFConfiguration.getUsername(repository);
+    }
+
     private TFSTeamProjectCollection getConnection(final URI serverURI, final AtomicReference<Credentials> credentials)
             throws Exception {
         Check.notNull(serverURI, "serverURI");
@@ -475,7 +541,10 @@ public abstract class Command {
                 throw new Exception(Messages.getString("Command.ConnectionNotAvailable"));
             }
 
-            versionControlClient.getEventEngine().addNonFatalErrorListener(new CommandNonFatalErrorListener());
+            /* A cached client is shared by the commands, add the listener once */
+            if (ConnectionCache.register(versionControlClient)) {
+                versionControlClient.getEventEngine().addNonFatalErrorListener(new CommandNonFatalErrorListener());
+            }
         }
 
         return versionControlClient;
@@ -484,7 +553,12 @@ public abstract class Command {
     protected VersionControlService getVersionControlService()
             throws Exception {
         if (versionControlService == null) {
-            versionControlService = new TfsVersionControlService(getVersionControlClient());
+            versionControlService =
+                    ServiceCallMetrics.instrument(
+                            VersionControlService.class,
+                            ServiceRecorder.record(
+                                    VersionControlService.class,
+                                    new TfsVersionControlService(getVersionControlClient())));
         }
 
         return versionControlService;
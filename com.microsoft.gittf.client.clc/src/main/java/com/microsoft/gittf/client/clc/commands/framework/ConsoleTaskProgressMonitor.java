@@ -37,6 +37,11 @@ import org.apache.commons.logging.LogFactory;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An implementation of {@link TaskProgressMonitor} that will write status
@@ -68,12 +73,29 @@ import java.util.List;
  * instead, their progress reporting will simply roll up to this task. If a task
  * has an {@link TaskProgressMonitor#INDETERMINATE} work, then there will be no
  * percentage of progress displayed.
+ * <p>
+ * The progress is not drawn by the calls that report it: they only update the
+ * state of the task, and a background thread draws the latest state at a
+ * fixed rate, together with the download rate and the estimated time left. If
+ * the console cannot overwrite the progress line (e.g. the output is
+ * redirected to a file) a plain progress line is written at a slower rate
+ * instead.
  */
 public class ConsoleTaskProgressMonitor
         extends BaseTaskProgressMonitor {
     private static final Log log = LogFactory.getLog(ConsoleTaskProgressMonitor.class);
     private static final int CONSOLE_TRUNCATION_PADDING;
 
+    /* Refresh intervals of the progress line in milliseconds */
+    private static final long OVERWRITE_REFRESH_INTERVAL = 100;
+    private static final long PLAIN_REFRESH_INTERVAL = 10000;
+
+    /* Do not estimate the time left before this much of the task is done */
+    private static final double MIN_ESTIMATE_WORKED = 0.01;
+    private static final long MIN_ESTIMATE_ELAPSED = 2000;
+
+    private static final double MEGABYTE = 1024.0 * 1024.0;
+
     static {
         /*
          * Measure how many characters we add for the trailing ... to indicate
@@ -84,19 +106,42 @@ public class ConsoleTaskProgressMonitor
     }
 
     private final Console console;
+    private final long plainRefreshInterval;
     private final List<TaskProgressMonitor> subMonitors = new ArrayList<TaskProgressMonitor>();
+    private final Object workLock = new Object();
     private boolean inTask = false;
-    private String task;
-    private int workTotal;
-    private TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
-    private double worked;
-    private String detail = null;
+    private volatile String task;
+    private volatile int workTotal;
+    private volatile TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
+    private volatile double worked;
+    private volatile String detail = null;
+    private volatile int filesDownloaded;
+    private volatile long bytesDownloaded;
     private String progressLine = "";
 
+    private ScheduledExecutorService renderer = null;
+    private long startTime;
+    private boolean overwrite;
+    private boolean plainLineOpen = false;
+
     public ConsoleTaskProgressMonitor(final Console console) {
+        this(console, PLAIN_REFRESH_INTERVAL);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param console              the console to write to
+     * @param plainRefreshInterval the interval in milliseconds between the
+     *                             plain progress lines, when the console cannot
+     *                             overwrite the progress line
+     */
+    ConsoleTaskProgressMonitor(final Console console, final long plainRefreshInterval) {
         Check.notNull(console, "console");
+        Check.isTrue(plainRefreshInterval > 0, "plainRefreshInterval > 0");
 
         this.console = console;
+        this.plainRefreshInterval = plainRefreshInterval;
     }
 
     private static int getCommonSubstring(final String one, final String two) {
@@ -130,10 +175,12 @@ public class ConsoleTaskProgressMonitor
         this.workTotal = workTotal;
         this.displayOptions = displayOptions;
         this.worked = 0;
+        this.filesDownloaded = 0;
+        this.bytesDownloaded = 0;
 
         /*
-         * If we're displaying progress, let the updateProgress routine handle
-         * all the display.
+         * If we're displaying progress, let the renderer handle all the
+         * display.
          */
         if (this.displayOptions.contains(TaskProgressDisplay.DISPLAY_PROGRESS)) {
             startProgress();
@@ -161,7 +208,7 @@ public class ConsoleTaskProgressMonitor
         return displayOptions;
     }
 
-    public TaskProgressMonitor newSubTask(final int subWork) {
+    public synchronized TaskProgressMonitor newSubTask(final int subWork) {
         final TaskProgressMonitor subMonitor;
 
         /*
@@ -176,7 +223,7 @@ public class ConsoleTaskProgressMonitor
          * Otherwise, just let it print status like it always would.
          */
         else {
-            subMonitor = new ConsoleTaskProgressMonitor(console);
+            subMonitor = new ConsoleTaskProgressMonitor(console, plainRefreshInterval);
         }
 
         subMonitors.add(subMonitor);
@@ -190,7 +237,6 @@ public class ConsoleTaskProgressMonitor
 
     public void setDetail(final String detail) {
         this.detail = detail;
-        updateProgress();
     }
 
     public void worked(final double amount) {
@@ -198,13 +244,20 @@ public class ConsoleTaskProgressMonitor
             return;
         }
 
-        final double newWorked = this.worked + amount;
-        this.worked = newWorked > this.workTotal ? this.workTotal : newWorked;
+        synchronized (workLock) {
+            final double newWorked = this.worked + amount;
+            this.worked = newWorked > this.workTotal ? this.workTotal : newWorked;
+        }
+    }
 
-        updateProgress();
+    public void downloaded(final long bytes) {
+        synchronized (workLock) {
+            filesDownloaded++;
+            bytesDownloaded += bytes;
+        }
     }
 
-    public void displayMessage(final String message) {
+    public synchronized void displayMessage(final String message) {
         if (console.getVerbosity() != Verbosity.QUIET) {
             clearProgressLine();
             console.getOutputStream().println(message);
@@ -212,13 +265,13 @@ public class ConsoleTaskProgressMonitor
         }
     }
 
-    public void displayWarning(final String message) {
+    public synchronized void displayWarning(final String message) {
         clearProgressLine();
         console.getErrorStream().println(Messages.formatString("Main.WarningFormat", message));
         updateProgress();
     }
 
-    public void displayVerbose(final String message) {
+    public synchronized void displayVerbose(final String message) {
         if (console.getVerbosity() == Verbosity.VERBOSE) {
             clearProgressLine();
             console.getOutputStream().println(message);
@@ -227,6 +280,11 @@ public class ConsoleTaskProgressMonitor
     }
 
     private void clearProgressLine() {
+        if (plainLineOpen) {
+            console.getOutputStream().println();
+            plainLineOpen = false;
+        }
+
         for (int i = 0; i < progressLine.length(); i++) {
             console.getOutputStream().print('\b');
         }
@@ -240,16 +298,62 @@ public class ConsoleTaskProgressMonitor
         progressLine = "";
     }
 
-    private void startProgress() {
+    private synchronized void startProgress() {
         if (console.getVerbosity() != Verbosity.QUIET
                 && this.displayOptions.contains(TaskProgressDisplay.DISPLAY_PROGRESS)) {
-            if (this.workTotal == TaskProgressMonitor.INDETERMINATE || !console.supportsOverwrite()) {
+            startTime = System.currentTimeMillis();
+            overwrite = this.workTotal != TaskProgressMonitor.INDETERMINATE && console.supportsOverwrite();
+
+            if (!overwrite) {
                 console.getOutputStream().print(
                         Messages.formatString("ConsoleTaskProgressMonitor.IndeterminateTaskStartedFormat", task));
                 console.getOutputStream().flush();
+                plainLineOpen = true;
             } else {
                 updateProgress();
             }
+
+            startRenderer(overwrite ? OVERWRITE_REFRESH_INTERVAL : plainRefreshInterval);
+        }
+    }
+
+    private void startRenderer(final long interval) {
+        renderer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "git-tf-progress");
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        renderer.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                try {
+                    render();
+                } catch (Exception e) {
+                    log.warn("Could not display the progress", e);
+                }
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopRenderer() {
+        if (renderer != null) {
+            renderer.shutdownNow();
+            renderer = null;
+        }
+    }
+
+    private synchronized void render() {
+        if (renderer == null) {
+            return;
+        }
+
+        if (overwrite) {
+            updateProgress();
+        } else {
+            writePlainProgress();
         }
     }
 
@@ -257,17 +361,11 @@ public class ConsoleTaskProgressMonitor
         if (console.getVerbosity() != Verbosity.QUIET
                 && this.displayOptions.contains(TaskProgressDisplay.DISPLAY_PROGRESS)
                 && this.workTotal > TaskProgressMonitor.INDETERMINATE
-                && console.supportsOverwrite()) {
-            String newProgressLine;
-            if (detail != null && detail.length() > 0) {
-                newProgressLine = Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressWithDetailFormat",
-                        task,
-                        Integer.toString((int) ((worked / workTotal) * 100)),
-                        detail);
-            } else {
-                newProgressLine = Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressFormat",
-                        task,
-                        Integer.toString((int) ((worked / workTotal) * 100)));
+                && overwrite) {
+            String newProgressLine = formatProgressLine();
+
+            if (newProgressLine == null) {
+                return;
             }
 
             /* Truncate overly long progress lines */
@@ -278,11 +376,143 @@ public class ConsoleTaskProgressMonitor
                         newProgressLine.substring(0, (consoleWidth - 1) - CONSOLE_TRUNCATION_PADDING));
             }
 
-            writeProgressLine(newProgressLine);
-            progressLine = newProgressLine;
+            if (!newProgressLine.equals(progressLine)) {
+                writeProgressLine(newProgressLine);
+                progressLine = newProgressLine;
+            }
         }
     }
 
+    /**
+     * Writes the progress as a line of its own, for consoles that cannot
+     * overwrite the progress line
+     */
+    private void writePlainProgress() {
+        final String line = formatProgressLine();
+
+        if (line == null) {
+            return;
+        }
+
+        if (plainLineOpen) {
+            console.getOutputStream().println();
+            plainLineOpen = false;
+        }
+
+        log.info(line);
+        console.getOutputStream().println(line);
+        console.getOutputStream().flush();
+    }
+
+    /**
+     * Formats the progress line of the task
+     *
+     * @return the progress line, or null if there is nothing to report for a
+     * task with an indeterminate work
+     */
+    private String formatProgressLine() {
+        final String statistics =
+                formatStatistics(System.currentTimeMillis() - startTime,
+                        workTotal,
+                        worked,
+                        filesDownloaded,
+                        bytesDownloaded);
+
+        if (workTotal == TaskProgressMonitor.INDETERMINATE) {
+            if (statistics.length() == 0) {
+                return null;
+            }
+
+            return Messages.formatString("ConsoleTaskProgressMonitor.IndeterminateTaskProgressFormat",
+                    task,
+                    statistics);
+        }
+
+        final String percent = Integer.toString((int) ((worked / workTotal) * 100));
+
+        if (detail != null && detail.length() > 0) {
+            if (statistics.length() > 0) {
+                return Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressWithStatisticsAndDetailFormat",
+                        task,
+                        percent,
+                        statistics,
+                        detail);
+            }
+
+            return Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressWithDetailFormat",
+                    task,
+                    percent,
+                    detail);
+        }
+
+        if (statistics.length() > 0) {
+            return Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressWithStatisticsFormat",
+                    task,
+                    percent,
+                    statistics);
+        }
+
+        return Messages.formatString("ConsoleTaskProgressMonitor.TaskProgressFormat",
+                task,
+                percent);
+    }
+
+    /**
+     * Formats the download rate and the estimated time left of a task
+     *
+     * @param elapsed         the time since the task started, in milliseconds
+     * @param workTotal       the total work of the task
+     * @param worked          the work done
+     * @param filesDownloaded the number of files downloaded
+     * @param bytesDownloaded the number of bytes downloaded
+     * @return the statistics, or an empty string if there are none yet
+     */
+    static String formatStatistics(
+            final long elapsed,
+            final int workTotal,
+            final double worked,
+            final int filesDownloaded,
+            final long bytesDownloaded) {
+        final StringBuilder statistics = new StringBuilder();
+
+        if (elapsed <= 0) {
+            return "";
+        }
+
+        if (filesDownloaded > 0) {
+            final double seconds = elapsed / 1000.0;
+
+            statistics.append(Messages.formatString("ConsoleTaskProgressMonitor.ThroughputFormat",
+                    String.format(Locale.ROOT, "%.1f", filesDownloaded / seconds),
+                    String.format(Locale.ROOT, "%.2f", (bytesDownloaded / MEGABYTE) / seconds)));
+        }
+
+        if (workTotal > TaskProgressMonitor.INDETERMINATE && elapsed >= MIN_ESTIMATE_ELAPSED) {
+            final double done = worked / workTotal;
+
+            if (done >= MIN_ESTIMATE_WORKED && done < 1) {
+                if (statistics.length() > 0) {
+                    statistics.append(", ");
+                }
+
+                statistics.append(Messages.formatString("ConsoleTaskProgressMonitor.EstimatedTimeLeftFormat",
+                        formatDuration((long) (elapsed * (1 - done) / done))));
+            }
+        }
+
+        return statistics.toString();
+    }
+
+    private static String formatDuration(final long millis) {
+        final long seconds = millis / 1000;
+
+        if (seconds >= 3600) {
+            return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60);
+        }
+
+        return String.format(Locale.ROOT, "%d:%02d", seconds / 60, seconds % 60);
+    }
+
     /**
      * Write the progress line intelligently to avoid flicker on slow console
      * implementations. (We don't need to overwrite any characters that are
@@ -327,10 +557,12 @@ public class ConsoleTaskProgressMonitor
         }
     }
 
-    private void finishProgress() {
+    private synchronized void finishProgress() {
+        stopRenderer();
+
         if (console.getVerbosity() != Verbosity.QUIET
                 && this.displayOptions.contains(TaskProgressDisplay.DISPLAY_PROGRESS)) {
-            if (this.workTotal == TaskProgressMonitor.INDETERMINATE || !console.supportsOverwrite()) {
+            if (plainLineOpen) {
                 console.getOutputStream().println(Messages.getString("ConsoleTaskProgressMonitor.TaskProgressDone"));
                 console.getOutputStream().flush();
             } else {
@@ -342,6 +574,8 @@ public class ConsoleTaskProgressMonitor
                                 Messages.getString("ConsoleTaskProgressMonitor.TaskProgressDone")));
                 console.getOutputStream().flush();
             }
+
+            plainLineOpen = false;
         }
     }
 
@@ -361,6 +595,10 @@ public class ConsoleTaskProgressMonitor
     }
 
     public void dispose() {
+        synchronized (this) {
+            stopRenderer();
+        }
+
         /*
          * If there's still something on the display, we should print a newline
          * (we likely caught an exception.)
@@ -40,31 +40,41 @@ public class ShelvesetConsoleView
         implements ShelvesetView {
     private final Console console;
 
+    private boolean displayDetails = false;
+    private int displayedCount = 0;
+
     public ShelvesetConsoleView(final Console console) {
         Check.notNull(console, "console");
 
         this.console = console;
     }
 
-    public void displayShelvesets(final Shelveset[] shelvesets, final boolean displayDetails) {
-        displayHeader(shelvesets.length);
+    public void beginShelvesets(final int shelvesetCount, final boolean displayDetails) {
+        this.displayDetails = displayDetails;
+        this.displayedCount = 0;
+
+        displayHeader(shelvesetCount);
 
         if (!displayDetails) {
             displayTableHeader();
         }
+    }
 
-        int count = 0;
-        for (Shelveset shelveset : shelvesets) {
-            displayShelveset(shelveset, displayDetails);
-
-            if (displayDetails) {
-                if (count != shelvesets.length - 1)
-                    displayMessage("");
-            }
+    public void displayShelveset(final Shelveset shelveset, final PendingSet[] shelvesetDetails) {
+        if (displayDetails && displayedCount > 0) {
+            displayMessage("");
+        }
 
-            count++;
+        if (shelvesetDetails != null) {
+            displayShelvesetChanges(shelveset, shelvesetDetails);
+        } else {
+            displayShelveset(shelveset, displayDetails);
         }
 
+        displayedCount++;
+    }
+
+    public void endShelvesets() {
         if (!displayDetails) {
             displayTableFooter();
         }
@@ -73,7 +83,7 @@ public class ShelvesetConsoleView
     public void displayShelvesetDetails(Shelveset shelveset, PendingSet[] shelvesetDetails) {
         displayHeader(1);
 
-        displayShelveset(shelveset, shelvesetDetails);
+        displayShelvesetChanges(shelveset, shelvesetDetails);
     }
 
     private void displayHeader(int shelvesetCount) {
@@ -139,7 +149,7 @@ public class ShelvesetConsoleView
                 associatedWorkItems));
     }
 
-    private void displayShelveset(Shelveset shelveset, PendingSet[] shelvesetDetails) {
+    private void displayShelvesetChanges(Shelveset shelveset, PendingSet[] shelvesetDetails) {
         displayShelveset(shelveset, true);
 
         displayMessage(Messages.getString("ShelvesetConsoleView.ChangesTableHeader"));
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.connection;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.core.TFSTeamProjectCollection;
+import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the authenticated TFS connections of the commands run by a
+ * long-running process (the daemon or a batch), so that the commands do not
+ * have to connect and authenticate again. The connections are cached per server URI
+ * and configured user name while the cache is started.
+ */
+public final class ConnectionCache {
+    private static final Log log = LogFactory.getLog(ConnectionCache.class);
+
+    private static volatile ConnectionCache current = null;
+
+    private final Map<String, TFSTeamProjectCollection> connections = new HashMap<String, TFSTeamProjectCollection>();
+    private final Set<VersionControlClient> registeredClients = new HashSet<VersionControlClient>();
+
+    private ConnectionCache() {
+    }
+
+    /**
+     * Starts caching the connections made from now on
+     *
+     * @return the cache
+     */
+    public static ConnectionCache start() {
+        final ConnectionCache cache = new ConnectionCache();
+        current = cache;
+
+        return cache;
+    }
+
+    /**
+     * Determines whether the connections are cached, i.e. whether the command
+     * runs in a long-running process
+     *
+     * @return true if a cache is started
+     */
+    public static boolean isStarted() {
+        return current != null;
+    }
+
+    /**
+     * Stops caching and closes the cached connections
+     */
+    public void stop() {
+        if (current == this) {
+            current = null;
+        }
+
+        final List<TFSTeamProjectCollection> closed;
+
+        synchronized (connections) {
+            closed = new ArrayList<TFSTeamProjectCollection>(connections.values());
+
+            connections.clear();
+            registeredClients.clear();
+        }
+
+        for (final TFSTeamProjectCollection connection : closed) {
+            try {
+                connection.close();
+            } catch (final Exception e) {
+                log.warn("Could not close the connection to " + connection.getBaseURI(), e);
+            }
+        }
+    }
+
+    /**
+     * Gets the cached connection to the server specified
+     *
+     * @param serverURI the server URI
+     * @param username  the configured user name, null or empty if the default
+     *                  credentials are used
+     * @return the connection, or null if no connection is cached or the cache
+     * is not started
+     */
+    public static TFSTeamProjectCollection get(final URI serverURI, final String username) {
+        Check.notNull(serverURI, "serverURI");
+
+        final ConnectionCache cache = current;
+
+        if (cache == null) {
+            return null;
+        }
+
+        synchronized (cache.connections) {
+            return cache.connections.get(getKey(serverURI, username));
+        }
+    }
+
+    /**
+     * Caches the authenticated connection to the server specified, if the cache
+     * is started. When another command cached a connection to the same server
+     * in the meantime, that connection is kept and the one specified is closed.
+     *
+     * @param serverURI  the server URI
+     * @param username   the configured user name, null or empty if the default
+     *                   credentials are used
+     * @param connection the authenticated connection
+     * @return the connection to use
+     */
+    public static TFSTeamProjectCollection put(
+            final URI serverURI,
+            final String username,
+            final TFSTeamProjectCollection connection) {
+        Check.notNull(serverURI, "serverURI");
+        Check.notNull(connection, "connection");
+
+        final ConnectionCache cache = current;
+
+        if (cache == null) {
+            return connection;
+        }
+
+        final TFSTeamProjectCollection cached;
+
+        synchronized (cache.connections) {
+            final String key = getKey(serverURI, username);
+
+            cached = cache.connections.get(key);
+
+            if (cached == null) {
+                cache.connections.put(key, connection);
+                return connection;
+            }
+        }
+
+        connection.close();
+
+        return cached;
+    }
+
+    /**
+     * Registers the version control client of a connection, so that the
+     * listeners of the commands are added to a cached client only once
+     *
+     * @param client the version control client
+     * @return true if the client was not registered before or the cache is not
+     * started
+     */
+    public static boolean register(final VersionControlClient client) {
+        Check.notNull(client, "client");
+
+        final ConnectionCache cache = current;
+
+        if (cache == null) {
+            return true;
+        }
+
+        synchronized (cache.connections) {
+            return cache.registeredClients.add(client);
+        }
+    }
+
+    private static String getKey(final URI serverURI, final String username) {
+        String uri = serverURI.toString().toLowerCase(Locale.ENGLISH);
+
+        while (uri.endsWith("/")) {
+            uri = uri.substring(0, uri.length() - 1);
+        }
+
+        return uri + '\n' + (username != null ? username.toLowerCase(Locale.ENGLISH) : "");
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.daemon;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Messages;
+import com.microsoft.gittf.core.util.Check;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Forwards a command to the daemon of the current user and copies its output
+ * to the console.
+ */
+public final class DaemonClient {
+    private static final Log log = LogFactory.getLog(DaemonClient.class);
+
+    private static final int CONNECT_TIMEOUT = 5 * 1000;
+
+    private final Socket socket;
+    private final String token;
+
+    private DaemonClient(final Socket socket, final String token) {
+        this.socket = socket;
+        this.token = token;
+    }
+
+    /**
+     * Connects to the daemon of the current user
+     *
+     * @return the client, or null if the daemon is not running
+     */
+    public static DaemonClient connect() {
+        return connect(DaemonProtocol.getDaemonFile());
+    }
+
+    /**
+     * Connects to the daemon that published its port and token in the file
+     * specified
+     *
+     * @param daemonFile the daemon file
+     * @return the client, or null if the daemon is not running
+     */
+    static DaemonClient connect(final File daemonFile) {
+        if (!daemonFile.isFile()) {
+            return null;
+        }
+
+        try {
+            final Properties properties = DaemonProtocol.readDaemonFile(daemonFile);
+
+            final Socket socket = new Socket();
+            socket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), DaemonProtocol.getPort(properties)),
+                    CONNECT_TIMEOUT);
+
+            return new DaemonClient(socket, DaemonProtocol.getToken(properties));
+        } catch (final Exception e) {
+            log.info("Could not connect to the daemon", e);
+            return null;
+        }
+    }
+
+    /**
+     * Runs the command in the daemon, in the current directory of this process
+     *
+     * @param console     the console to copy the output of the command to
+     * @param commandName the name of the command
+     * @param commandArgs the arguments of the command
+     * @return the exit code of the command
+     * @throws IOException
+     */
+    public int run(final Console console, final String commandName, final String[] commandArgs)
+            throws IOException {
+        Check.notNull(console, "console");
+        Check.notNull(commandName, "commandName");
+        Check.notNull(commandArgs, "commandArgs");
+
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeUTF(token);
+            out.writeUTF(new File("").getAbsolutePath());
+            out.writeUTF(console.getVerbosity().name());
+            out.writeUTF(commandName);
+            out.writeInt(commandArgs.length);
+
+            for (final String commandArg : commandArgs) {
+                out.writeUTF(commandArg);
+            }
+
+            out.flush();
+
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            while (true) {
+                final int type = in.readByte();
+
+                if (type == DaemonProtocol.EXIT) {
+                    return in.readInt();
+                }
+
+                final PrintStream target;
+
+                if (type == DaemonProtocol.OUTPUT) {
+                    target = console.getOutputStream();
+                } else if (type == DaemonProtocol.ERROR) {
+                    target = console.getErrorStream();
+                } else {
+                    throw new IOException(Messages.getString("DaemonClient.InvalidResponse"));
+                }
+
+                final int length = in.readInt();
+
+                if (length < 0) {
+                    throw new IOException(Messages.getString("DaemonClient.InvalidResponse"));
+                }
+
+                final byte[] buffer = new byte[length];
+                in.readFully(buffer);
+
+                target.write(buffer, 0, buffer.length);
+                target.flush();
+            }
+        } catch (final EOFException e) {
+            throw new IOException(Messages.getString("DaemonClient.ConnectionClosed"), e);
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.daemon;
+
+import com.microsoft.gittf.client.clc.ProductInformation;
+import com.microsoft.tfs.core.config.persistence.DefaultPersistenceStoreProvider;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.text.MessageFormat;
+import java.util.EnumSet;
+import java.util.Properties;
+
+/**
+ * Defines the protocol between the daemon and its clients. The daemon
+ * publishes its port and a secret token in a file only readable by the user
+ * who started it. A client connects to the port and sends the token, its
+ * working directory, its verbosity and the command line. The daemon answers
+ * with frames of the output and error streams of the command, followed by its
+ * exit code.
+ */
+final class DaemonProtocol {
+    private static final Log log = LogFactory.getLog(DaemonProtocol.class);
+
+    /* Frame types, each output frame is followed by its length and content */
+    static final int OUTPUT = 'O';
+    static final int ERROR = 'E';
+    static final int EXIT = 'X';
+
+    private static final String PORT_PROPERTY = "port";
+    private static final String TOKEN_PROPERTY = "token";
+
+    private DaemonProtocol() {
+    }
+
+    /**
+     * Gets the file the daemon of the current user publishes its port and token
+     * in
+     *
+     * @return the file
+     */
+    static File getDaemonFile() {
+        return DefaultPersistenceStoreProvider.INSTANCE.getConfigurationPersistenceStore().getItemFile(
+                MessageFormat.format("{0}.daemon", ProductInformation.getProductName()));
+    }
+
+    static void writeDaemonFile(final File file, final int port, final String token)
+            throws IOException {
+        if (file.getParentFile() != null && !file.getParentFile().exists()) {
+            file.getParentFile().mkdirs();
+        }
+
+        /* Create the file empty and restrict it to the owner before writing the token */
+        file.delete();
+
+        if (!file.createNewFile()) {
+            throw new IOException("Could not create the daemon file " + file.getAbsolutePath());
+        }
+
+        restrictToOwner(file);
+
+        final Properties properties = new Properties();
+        properties.setProperty(PORT_PROPERTY, Integer.toString(port));
+        properties.setProperty(TOKEN_PROPERTY, token);
+
+        final OutputStream stream = new FileOutputStream(file);
+        try {
+            properties.store(stream, null);
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Restricts the file to its owner. Where the file system has POSIX
+     * permissions, failing to restrict the file fails the start of the daemon.
+     * Elsewhere (e.g. Windows) the file is only protected by the permissions of
+     * the profile of the user it is created in, which is logged.
+     */
+    private static void restrictToOwner(final File file)
+            throws IOException {
+        final Path path = file.toPath();
+
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(path, EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE));
+            return;
+        }
+
+        final boolean othersDenied = file.setReadable(false, false) & file.setWritable(false, false);
+        final boolean ownerAllowed = file.setReadable(true, true) & file.setWritable(true, true);
+
+        if (!ownerAllowed) {
+            throw new IOException("Could not make the daemon file writable by its owner: " + file.getAbsolutePath());
+        }
+
+        if (!othersDenied) {
+            log.warn("Could not restrict the daemon file to its owner, it is protected by the permissions of "
+                    + file.getParentFile().getAbsolutePath());
+        }
+    }
+
+    static Properties readDaemonFile(final File file)
+            throws IOException {
+        final Properties properties = new Properties();
+
+        final InputStream stream = new FileInputStream(file);
+        try {
+            properties.load(stream);
+        } finally {
+            stream.close();
+        }
+
+        return properties;
+    }
+
+    static int getPort(final Properties properties)
+            throws IOException {
+        try {
+            return Integer.parseInt(properties.getProperty(PORT_PROPERTY));
+        } catch (final NumberFormatException e) {
+            throw new IOException("Invalid daemon port: " + properties.getProperty(PORT_PROPERTY), e);
+        }
+    }
+
+    static String getToken(final Properties properties) {
+        return properties.getProperty(TOKEN_PROPERTY, "");
+    }
+}
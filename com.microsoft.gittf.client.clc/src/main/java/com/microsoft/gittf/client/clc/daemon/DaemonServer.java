@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.daemon;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Console.Verbosity;
+import com.microsoft.gittf.client.clc.Main;
+import com.microsoft.gittf.core.util.Check;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accepts the commands of the clients of the daemon on a loopback socket and
+ * runs them in this process, so that they share the warm JVM and the cached
+ * TFS connections. The commands of several clients run concurrently, up to the
+ * number of threads specified.
+ */
+public final class DaemonServer {
+    private static final Log log = LogFactory.getLog(DaemonServer.class);
+
+    private static final int TOKEN_LENGTH = 16;
+    private static final int REQUEST_TIMEOUT = 10 * 1000;
+    static final int MAX_ARGUMENTS = 1024;
+    private static final String ENCODING = "UTF-8";
+
+    private final int port;
+    private final int threads;
+    private final CommandRunner commandRunner;
+
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private String token;
+    private File daemonFile;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param port    the port to listen on, 0 to use any free port
+     * @param threads the maximum number of commands run concurrently
+     */
+    public DaemonServer(final int port, final int threads) {
+        this(port, threads, new CommandRunner() {
+            public int runCommand(
+                    final Console console,
+                    final String commandName,
+                    final String[] commandArgs,
+                    final File workingDirectory) {
+                return Main.runCommand(console, commandName, commandArgs, workingDirectory);
+            }
+        });
+    }
+
+    DaemonServer(final int port, final int threads, final CommandRunner commandRunner) {
+        Check.isTrue(port >= 0, "port >= 0");
+        Check.isTrue(threads > 0, "threads > 0");
+        Check.notNull(commandRunner, "commandRunner");
+
+        this.port = port;
+        this.threads = threads;
+        this.commandRunner = commandRunner;
+    }
+
+    /**
+     * Binds the socket and publishes its port and token for the clients
+     *
+     * @throws IOException
+     */
+    public void start()
+            throws IOException {
+        start(DaemonProtocol.getDaemonFile());
+    }
+
+    /**
+     * Binds the socket and publishes its port and token in the file specified
+     *
+     * @param daemonFile the file to publish the port and token in
+     * @throws IOException
+     */
+    void start(final File daemonFile)
+            throws IOException {
+        Check.notNull(daemonFile, "daemonFile");
+
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        token = createToken();
+
+        try {
+            DaemonProtocol.writeDaemonFile(daemonFile, serverSocket.getLocalPort(), token);
+        } catch (final IOException e) {
+            serverSocket.close();
+            serverSocket = null;
+
+            throw e;
+        }
+
+        this.daemonFile = daemonFile;
+
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "git-tf-daemon-" + count.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        log.info("Daemon listening on port " + serverSocket.getLocalPort());
+    }
+
+    public int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : port;
+    }
+
+    public File getDaemonFile() {
+        return daemonFile;
+    }
+
+    /**
+     * Accepts the clients until the server is closed
+     *
+     * @throws IOException
+     */
+    public void run()
+            throws IOException {
+        Check.notNull(serverSocket, "serverSocket");
+
+        while (!closed) {
+            final Socket socket;
+
+            try {
+                socket = serverSocket.accept();
+            } catch (final SocketException e) {
+                if (closed) {
+                    return;
+                }
+
+                throw e;
+            }
+
+            executor.execute(new Session(socket));
+        }
+    }
+
+    /**
+     * Stops accepting clients and removes the daemon file, the commands that
+     * are running are given some time to finish
+     */
+    public void close() {
+        closed = true;
+
+        if (daemonFile != null) {
+            daemonFile.delete();
+        }
+
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (final IOException e) {
+            }
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static String createToken() {
+        final byte[] bytes = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(bytes);
+
+        final StringBuilder sb = new StringBuilder();
+
+        for (final byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Runs the command of a client
+     */
+    private class Session
+            implements Runnable {
+        private final Socket socket;
+
+        public Session(final Socket socket) {
+            this.socket = socket;
+        }
+
+        public void run() {
+            try {
+                socket.setSoTimeout(REQUEST_TIMEOUT);
+
+                final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+                if (!MessageDigest.isEqual(token.getBytes(ENCODING), in.readUTF().getBytes(ENCODING))) {
+                    log.warn("Rejected a client of the daemon with an invalid token");
+                    return;
+                }
+
+                final File workingDirectory = new File(in.readUTF());
+                final Verbosity verbosity = Verbosity.valueOf(in.readUTF());
+                final String commandName = in.readUTF();
+                final int argumentCount = in.readInt();
+
+                if (argumentCount < 0 || argumentCount > MAX_ARGUMENTS) {
+                    log.warn("Rejected a client of the daemon with " + argumentCount + " arguments");
+                    return;
+                }
+
+                final String[] commandArgs = new String[argumentCount];
+
+                for (int i = 0; i < argumentCount; i++) {
+                    commandArgs[i] = in.readUTF();
+                }
+
+                /* The command may run for a long time, only the request is timed out */
+                socket.setSoTimeout(0);
+
+                final PrintStream outputStream = new PrintStream(new FrameOutputStream(out, DaemonProtocol.OUTPUT), true);
+                final PrintStream errorStream = new PrintStream(new FrameOutputStream(out, DaemonProtocol.ERROR), true);
+
+                final Console console = new Console(outputStream, errorStream);
+                console.setVerbosity(verbosity);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Running " + commandName + " in " + workingDirectory.getPath());
+                }
+
+                final int exitCode = commandRunner.runCommand(console, commandName, commandArgs, workingDirectory);
+
+                outputStream.flush();
+                errorStream.flush();
+
+                synchronized (out) {
+                    out.writeByte(DaemonProtocol.EXIT);
+                    out.writeInt(exitCode);
+                    out.flush();
+                }
+            } catch (final Exception e) {
+                log.warn("Could not run the command of a client of the daemon", e);
+            } finally {
+                try {
+                    socket.close();
+                } catch (final IOException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the commands of the clients, {@link Main#runCommand} outside of the
+     * tests
+     */
+    interface CommandRunner {
+        int runCommand(Console console, String commandName, String[] commandArgs, File workingDirectory);
+    }
+
+    /**
+     * Writes the bytes written to it as frames of the type specified
+     */
+    private static class FrameOutputStream
+            extends OutputStream {
+        private final DataOutputStream out;
+        private final int type;
+
+        public FrameOutputStream(final DataOutputStream out, final int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(final int b)
+                throws IOException {
+            write(new byte[]
+                    {
+                            (byte) b
+                    }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush()
+                throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -31,26 +31,55 @@ import com.microsoft.tfs.core.persistence.VersionedVendorFilesystemPersistenceSt
 import com.microsoft.tfs.util.FileLastModifiedComparator;
 import com.microsoft.tfs.util.locking.AdvisoryFileLock;
 import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
 
 import java.io.File;
 import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An extension of Log4J's normal FileAppender with the following properties: 1)
  * The log file is written to the Team Explorer settings directory, instead of
  * the process working directory as is the default with FileAppender. 2) Each
  * LogAppender will use a separate log file (old log files are pruned after a
- * certain threshold is met)
+ * certain threshold is met) 3) The events are written to the file by a
+ * background thread from a bounded queue, so logging does not wait for the
+ * disk. When the queue is full, events below WARN are dropped (and the number
+ * dropped is logged) unless Blocking is set, warnings and errors always wait
+ * for room.
  */
 public class LogAppender
         extends FileAppender {
     private static final int CLEANUP_THRESHOLD = 5;
 
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /* The most events written before the file is flushed */
+    private static final int MAX_BATCH_SIZE = 512;
+
+    private static final long CLOSE_TIMEOUT = 5000;
+
     private static final Map<String, File> logTypesToInUseLogFiles = new HashMap<String, File>();
 
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean blocking = false;
+
+    private BlockingQueue<LoggingEvent> queue = null;
+    private Thread dispatcher = null;
+    private volatile boolean closing = false;
+    private final AtomicLong discarded = new AtomicLong();
+
     /**
      * Creates a File object appropriate for use for a log file of the given
      * type.
@@ -155,6 +184,180 @@ public class LogAppender
         super.setFile(logFile.getAbsolutePath());
     }
 
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the number of events the queue holds, 0 writes the events on the
+     * calling thread
+     *
+     * @param bufferSize
+     */
+    public void setBufferSize(final int bufferSize) {
+        this.bufferSize = Math.max(0, bufferSize);
+    }
+
+    public boolean getBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Sets whether the callers wait for room in a full queue instead of
+     * dropping the events below WARN
+     *
+     * @param blocking
+     */
+    public void setBlocking(final boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    @Override
+    public void activateOptions() {
+        super.activateOptions();
+
+        if (bufferSize > 0 && dispatcher == null) {
+            /* The file is flushed by the dispatcher once the queue is empty */
+            setImmediateFlush(false);
+
+            queue = new ArrayBlockingQueue<LoggingEvent>(bufferSize);
+            dispatcher = new Thread(new Runnable() {
+                public void run() {
+                    dispatch();
+                }
+            }, "git-tf-log");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+        }
+    }
+
+    @Override
+    public void append(final LoggingEvent event) {
+        if (queue == null || closing || Thread.currentThread() == dispatcher) {
+            super.append(event);
+            return;
+        }
+
+        /* Capture the state of the calling thread before handing it off */
+        event.getThreadName();
+        event.getNDC();
+        event.getMDCCopy();
+        event.getRenderedMessage();
+        event.getThrowableStrRep();
+
+        if (queue.offer(event)) {
+            return;
+        }
+
+        if (blocking || event.getLevel().isGreaterOrEqual(Level.WARN)) {
+            try {
+                queue.put(event);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            discarded.incrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+
+        closing = true;
+
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+
+            try {
+                dispatcher.join(CLOSE_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            /*
+             * The dispatcher may still be writing, leave the file open rather
+             * than writing to it from two threads, a later close tries again
+             */
+            if (dispatcher.isAlive()) {
+                errorHandler.error("The log dispatcher did not stop, the log file is not closed", null, 0);
+                return;
+            }
+
+            dispatcher = null;
+        }
+
+        /* Write what the dispatcher did not get to */
+        if (queue != null) {
+            writeEvents(drain(Integer.MAX_VALUE));
+            queue = null;
+        }
+
+        super.close();
+    }
+
+    /**
+     * Writes the queued events to the file until the appender is closed
+     */
+    private void dispatch() {
+        while (!closing) {
+            try {
+                final LoggingEvent event = queue.poll(1, TimeUnit.SECONDS);
+
+                if (event == null) {
+                    continue;
+                }
+
+                final List<LoggingEvent> events = drain(MAX_BATCH_SIZE - 1);
+                events.add(0, event);
+
+                writeEvents(events);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                errorHandler.error("Could not write the log events", e, 0);
+            }
+        }
+    }
+
+    private List<LoggingEvent> drain(final int maxEvents) {
+        final List<LoggingEvent> events = new ArrayList<LoggingEvent>();
+
+        queue.drainTo(events, maxEvents);
+
+        return events;
+    }
+
+    /**
+     * Writes the events to the file. This is called by the dispatcher without
+     * the lock of the appender, which a caller waiting for room in the queue
+     * holds, or by close once the dispatcher has stopped.
+     *
+     * @param events
+     */
+    private void writeEvents(final List<LoggingEvent> events) {
+        for (final LoggingEvent event : events) {
+            super.append(event);
+        }
+
+        final long discardedCount = discarded.getAndSet(0);
+
+        if (discardedCount > 0) {
+            super.append(new LoggingEvent(
+                    LogAppender.class.getName(),
+                    Logger.getLogger(LogAppender.class),
+                    Level.WARN,
+                    MessageFormat.format("Discarded {0} log events, the log queue was full", discardedCount),
+                    null));
+        }
+
+        if (qw != null && (queue == null || queue.isEmpty())) {
+            qw.flush();
+        }
+    }
+
     private void cleanup(final String logType, final FilesystemPersistenceStore logStore) {
         /*
          * The basic algorithm here is to get an exclusive lock on the settings
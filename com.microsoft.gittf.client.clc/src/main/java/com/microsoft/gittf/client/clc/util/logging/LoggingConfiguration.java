@@ -28,6 +28,7 @@ import com.microsoft.gittf.client.clc.ProductInformation;
 import com.microsoft.tfs.core.config.persistence.DefaultPersistenceStoreProvider;
 import com.microsoft.tfs.core.persistence.FilesystemPersistenceStore;
 import com.microsoft.tfs.logging.config.*;
+import org.apache.log4j.LogManager;
 
 import java.io.File;
 import java.text.MessageFormat;
@@ -113,5 +114,15 @@ public class LoggingConfiguration {
              */
             Thread.currentThread().setContextClassLoader(currentContextClassLoader);
         }
+
+        /*
+         * The log files are written asynchronously, close the appenders on
+         * exit so that the queued events are written
+         */
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                LogManager.shutdown();
+            }
+        }, "git-tf-log-shutdown"));
     }
 }
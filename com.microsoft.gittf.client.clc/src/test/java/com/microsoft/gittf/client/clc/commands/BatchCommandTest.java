@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.commands;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Console.Verbosity;
+import com.microsoft.gittf.client.clc.ExitCode;
+import com.microsoft.gittf.client.clc.arguments.parser.ArgumentParser;
+import com.microsoft.gittf.client.clc.commands.BatchCommand.BatchEntry;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class BatchCommandTest
+        extends TestCase {
+    private File directory;
+    private ByteArrayOutputStream output;
+    private Console console;
+    private RecordingBatchCommand command;
+
+    protected void setUp()
+            throws Exception {
+        directory = File.createTempFile("git-tf-batch", "");
+        assertTrue(directory.delete() && directory.mkdirs());
+
+        output = new ByteArrayOutputStream();
+        console = new Console(new PrintStream(output, true, "UTF-8"), new PrintStream(new ByteArrayOutputStream()));
+
+        command = new RecordingBatchCommand();
+        command.setConsole(console);
+        command.setWorkingDirectory(directory);
+    }
+
+    protected void tearDown()
+            throws Exception {
+        delete(directory);
+    }
+
+    public void testTokenize() {
+        assertEquals(Arrays.asList("repo", "fetch", "--deep"), BatchCommand.tokenize("  repo\tfetch   --deep "));
+
+        /* Quotes group whitespace, also in the middle of an argument, and may be empty */
+        assertEquals(
+                Arrays.asList("my repo", "checkin", "--message=fix the build", ""),
+                BatchCommand.tokenize("\"my repo\" checkin --message=\"fix the build\" \"\""));
+
+        assertEquals(new ArrayList<String>(), BatchCommand.tokenize("   "));
+    }
+
+    public void testTokenizeUnclosedQuote() {
+        assertNull(BatchCommand.tokenize("repo checkin --message=\"fix the build"));
+        assertNull(BatchCommand.tokenize("\"repo fetch"));
+    }
+
+    public void testReadEntries()
+            throws Exception {
+        final List<BatchEntry> entries = readEntries(
+                "# fetch then check in",
+                "",
+                "repo fetch --deep",
+                "   # indented comment",
+                "   ",
+                "repo checkin --message=\"a # b\"");
+
+        assertEquals(2, entries.size());
+
+        assertEquals(new File(directory, "repo").getCanonicalFile(), entries.get(0).getDirectory());
+        assertEquals("fetch", entries.get(0).getCommandName());
+        assertEquals(Arrays.asList("--deep"), Arrays.asList(entries.get(0).getCommandArgs()));
+
+        /* A # inside a line is an argument, not a comment */
+        assertEquals("checkin", entries.get(1).getCommandName());
+        assertEquals(Arrays.asList("--message=a # b"), Arrays.asList(entries.get(1).getCommandArgs()));
+    }
+
+    public void testReadEntriesInvalidLine()
+            throws Exception {
+        assertInvalidLine("2", "repo fetch", "repo");
+        assertInvalidLine("1", "repo checkin --message=\"unclosed");
+    }
+
+    public void testGroupByGitDirectory()
+            throws Exception {
+        createRepository(new File(directory, "repo"));
+        assertTrue(new File(directory, "repo/sub").mkdirs());
+        assertTrue(new File(directory, "other").mkdirs());
+
+        final List<BatchEntry> entries = readEntries(
+                "repo fetch",
+                "other fetch",
+                "repo/sub checkin",
+                "repo/ pull");
+
+        final Map<File, List<BatchEntry>> repositories = BatchCommand.groupEntries(entries);
+
+        /* The subdirectory runs in the same repository, in order */
+        assertEquals(2, repositories.size());
+
+        final List<BatchEntry> repositoryEntries =
+                repositories.get(new File(directory, "repo/.git").getCanonicalFile());
+
+        assertEquals(3, repositoryEntries.size());
+        assertSame(entries.get(0), repositoryEntries.get(0));
+        assertSame(entries.get(2), repositoryEntries.get(1));
+        assertSame(entries.get(3), repositoryEntries.get(2));
+
+        /* A directory outside of a repository is its own group */
+        assertEquals(Arrays.asList(entries.get(1)), repositories.get(new File(directory, "other").getCanonicalFile()));
+    }
+
+    public void testSkipAfterFailure()
+            throws Exception {
+        command.failingCommands.add("checkin");
+
+        final List<BatchEntry> entries = readEntries(
+                "repo fetch",
+                "repo checkin",
+                "repo pull",
+                "repo shelve --message=next");
+
+        /* The failed command and the two after it count */
+        assertEquals(3, command.runEntries(entries, false));
+        assertEquals(Arrays.asList("fetch", "checkin"), command.commandNames);
+
+        final String text = output.toString("UTF-8");
+
+        assertTrue(text.contains("pull (skipped because a previous command failed)"));
+        assertTrue(text.contains("shelve --message=next (skipped because a previous command failed)"));
+        assertFalse(text.contains("fetch (skipped"));
+    }
+
+    public void testNoFailure()
+            throws Exception {
+        assertEquals(0, command.runEntries(readEntries("repo fetch", "repo pull"), false));
+        assertEquals(Arrays.asList("fetch", "pull"), command.commandNames);
+    }
+
+    public void testUnbufferedConsole()
+            throws Exception {
+        command.verbosity = Verbosity.QUIET;
+
+        command.runEntries(readEntries("repo fetch --quiet", "repo pull"), false);
+
+        /* The console of the batch is passed through, its verbosity is restored after each command */
+        assertSame(console, command.consoles.get(0));
+        assertSame(console, command.consoles.get(1));
+        assertEquals(Verbosity.NORMAL, console.getVerbosity());
+
+        final String text = output.toString("UTF-8");
+        assertTrue(text.indexOf("== ") < text.indexOf("output of fetch"));
+    }
+
+    public void testBufferedConsole()
+            throws Exception {
+        command.verbosity = Verbosity.QUIET;
+
+        command.runEntries(readEntries("repo fetch --quiet"), true);
+
+        /* The output is printed after the header, once the command completed */
+        assertNotSame(console, command.consoles.get(0));
+        assertEquals(Verbosity.NORMAL, console.getVerbosity());
+
+        final String text = output.toString("UTF-8");
+        assertTrue(text.indexOf("== ") >= 0);
+        assertTrue(text.indexOf("== ") < text.indexOf("output of fetch"));
+    }
+
+    public void testRunCounts()
+            throws Exception {
+        command.failingCommands.add("checkin");
+
+        final File batchFile = new File(directory, "batch.txt");
+        write(batchFile,
+                "# two repositories, the first one fails",
+                "first fetch",
+                "first checkin",
+                "first pull",
+                "second fetch",
+                "second pull");
+
+        assertTrue(new File(directory, "first").mkdirs());
+        assertTrue(new File(directory, "second").mkdirs());
+
+        command.setArguments(ArgumentParser.parse(new String[]
+                {
+                        "--threads=1", batchFile.getName()
+                }, command.getPossibleArguments()));
+
+        assertEquals(ExitCode.FAILURE, command.run());
+
+        /* The other repository still runs all its commands */
+        assertEquals(Arrays.asList("fetch", "checkin", "fetch", "pull"), command.commandNames);
+        assertEquals(1, countOccurrences(output.toString("UTF-8"), "skipped because a previous command failed"));
+    }
+
+    private void assertInvalidLine(final String lineNumber, final String... lines) {
+        try {
+            readEntries(lines);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("invalid batch line " + lineNumber + ","));
+        }
+    }
+
+    private List<BatchEntry> readEntries(final String... lines)
+            throws Exception {
+        final StringBuilder sb = new StringBuilder();
+
+        for (final String line : lines) {
+            sb.append(line).append('\n');
+        }
+
+        return command.readEntries(new BufferedReader(new StringReader(sb.toString())));
+    }
+
+    private static void write(final File file, final String... lines)
+            throws IOException {
+        final PrintStream out = new PrintStream(new FileOutputStream(file), true, "UTF-8");
+
+        try {
+            for (final String line : lines) {
+                out.println(line);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void createRepository(final File workTree)
+            throws IOException {
+        final Repository repository = new FileRepositoryBuilder().setWorkTree(workTree).build();
+
+        try {
+            repository.create();
+        } finally {
+            repository.close();
+        }
+    }
+
+    private static int countOccurrences(final String text, final String value) {
+        int count = 0;
+
+        for (int i = text.indexOf(value); i >= 0; i = text.indexOf(value, i + 1)) {
+            count++;
+        }
+
+        return count;
+    }
+
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    /**
+     * Records the commands instead of running them, the commands in
+     * failingCommands fail
+     */
+    private static class RecordingBatchCommand
+            extends BatchCommand {
+        private final List<String> failingCommands = new ArrayList<String>();
+        private final List<String> commandNames = new ArrayList<String>();
+        private final List<Console> consoles = new ArrayList<Console>();
+        private Verbosity verbosity = null;
+
+        @Override
+        int runCommand(final Console commandConsole, final BatchEntry entry) {
+            synchronized (this) {
+                commandNames.add(entry.getCommandName());
+                consoles.add(commandConsole);
+            }
+
+            /* As Main does for --quiet */
+            if (verbosity != null) {
+                commandConsole.setVerbosity(verbosity);
+            }
+
+            commandConsole.getOutputStream().println("output of " + entry.getCommandName());
+
+            return failingCommands.contains(entry.getCommandName()) ? ExitCode.FAILURE : ExitCode.SUCCESS;
+        }
+    }
+}
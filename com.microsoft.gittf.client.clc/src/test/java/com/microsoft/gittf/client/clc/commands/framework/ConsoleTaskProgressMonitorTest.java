@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.commands.framework;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConsoleTaskProgressMonitorTest
+        extends TestCase {
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private ByteArrayOutputStream output;
+    private Console console;
+
+    protected void setUp()
+            throws Exception {
+        output = new ByteArrayOutputStream();
+
+        /* A console over streams cannot overwrite the progress line */
+        console = new Console(new PrintStream(output, true, "UTF-8"), new PrintStream(new ByteArrayOutputStream()));
+        assertFalse(console.supportsOverwrite());
+    }
+
+    public void testPlainProgress()
+            throws Exception {
+        ConsoleTaskProgressMonitor monitor = new ConsoleTaskProgressMonitor(console);
+
+        monitor.beginTask("Downloading", 10, TaskProgressDisplay.DISPLAY_PROGRESS);
+        monitor.worked(5);
+        monitor.endTask();
+        monitor.dispose();
+
+        assertEquals("Downloading: done.", getOutput().trim());
+    }
+
+    public void testPlainProgressLines()
+            throws Exception {
+        ConsoleTaskProgressMonitor monitor = new ConsoleTaskProgressMonitor(console, 20);
+
+        monitor.beginTask("Downloading", 10, TaskProgressDisplay.DISPLAY_PROGRESS);
+        monitor.worked(5);
+
+        for (int i = 0; i < 250 && !readLines().contains("Downloading: 50%"); i++) {
+            Thread.sleep(20);
+        }
+
+        monitor.endTask();
+        monitor.dispose();
+
+        List<String> lines = readLines();
+
+        /* The progress is written as lines of their own, never overwritten */
+        assertEquals("Downloading:", lines.get(0).trim());
+        assertTrue(lines.contains("Downloading: 50%"));
+        assertEquals("Downloading: 100%, done.", lines.get(lines.size() - 1));
+        assertEquals(-1, getOutput().indexOf('\b'));
+    }
+
+    public void testDetailAlone()
+            throws Exception {
+        ConsoleTaskProgressMonitor monitor = new ConsoleTaskProgressMonitor(console);
+
+        monitor.beginTask("Checking in", 10, TaskProgressDisplay.DISPLAY_PROGRESS);
+        int written = output.size();
+
+        /* The detail is only drawn with the next progress line */
+        monitor.setDetail("$/project/file.txt");
+        monitor.setDetail("$/project/other.txt");
+
+        assertEquals(written, output.size());
+        assertEquals("$/project/other.txt", monitor.getDetail());
+
+        monitor.endTask();
+        monitor.dispose();
+    }
+
+    public void testFormatStatistics() {
+        /* 10 files, 8 MB in 4 seconds, a quarter of the work done */
+        assertEquals(
+                "2.5 files/s, 2.00 MB/s, 0:12 left",
+                ConsoleTaskProgressMonitor.formatStatistics(4000, 100, 25, 10, 8 * MEGABYTE));
+
+        /* No download */
+        assertEquals("0:12 left", ConsoleTaskProgressMonitor.formatStatistics(4000, 100, 25, 0, 0));
+
+        /* Half of the work done in an hour */
+        assertEquals("1:00:00 left", ConsoleTaskProgressMonitor.formatStatistics(3600 * 1000, 10, 5, 0, 0));
+
+        /* Too early to estimate the time left */
+        assertEquals(
+                "10.0 files/s, 1.00 MB/s",
+                ConsoleTaskProgressMonitor.formatStatistics(1000, 100, 25, 10, MEGABYTE));
+        assertEquals("", ConsoleTaskProgressMonitor.formatStatistics(60 * 1000, 1000, 5, 0, 0));
+
+        /* No estimate for an indeterminate or finished task */
+        assertEquals(
+                "1.0 files/s, 0.00 MB/s",
+                ConsoleTaskProgressMonitor.formatStatistics(4000, TaskProgressMonitor.INDETERMINATE, 0, 4, 0));
+        assertEquals("", ConsoleTaskProgressMonitor.formatStatistics(4000, 100, 100, 0, 0));
+
+        assertEquals("", ConsoleTaskProgressMonitor.formatStatistics(0, 100, 25, 10, MEGABYTE));
+    }
+
+    private String getOutput()
+            throws Exception {
+        return output.toString("UTF-8");
+    }
+
+    private List<String> readLines()
+            throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new StringReader(getOutput()));
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.add(line);
+        }
+
+        return lines;
+    }
+}
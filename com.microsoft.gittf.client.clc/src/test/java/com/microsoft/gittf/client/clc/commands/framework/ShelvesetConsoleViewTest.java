@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.commands.framework;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Console.Verbosity;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkItemCheckinInfo;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+public class ShelvesetConsoleViewTest
+        extends TestCase {
+    private ByteArrayOutputStream output;
+    private Console console;
+    private ShelvesetConsoleView view;
+
+    protected void setUp()
+            throws Exception {
+        output = new ByteArrayOutputStream();
+        console = new Console(new PrintStream(output, true, "UTF-8"), new PrintStream(new ByteArrayOutputStream()));
+        view = new ShelvesetConsoleView(console);
+    }
+
+    public void testDetailsPage()
+            throws Exception {
+        /* The calls made for a page of several shelvesets with --details */
+        view.beginShelvesets(2, true);
+        view.displayShelveset(shelveset("first"), changes("$/project/a.txt", "$/project/b.txt"));
+        view.displayShelveset(shelveset("second"), changes("$/project/c.txt"));
+        view.endShelvesets();
+
+        List<String> lines = readLines();
+
+        assertEquals("2 shelvesets found.", lines.get(1));
+        assertFalse(lines.contains("Shelveset Full Name"));
+
+        int first = lines.indexOf("Name: first");
+        int second = lines.indexOf("Name: second");
+
+        assertTrue(first > 0);
+        assertTrue(second > first);
+
+        /* Each shelveset lists its own changes, separated by a blank line */
+        assertEquals(2, countChanges(lines.subList(first, second)));
+        assertEquals(1, countChanges(lines.subList(second, lines.size())));
+        assertEquals("", lines.get(second - 1));
+
+        assertTrue(lines.get(second - 2).endsWith("$/project/b.txt"));
+        assertTrue(lines.get(lines.size() - 1).endsWith("$/project/c.txt"));
+    }
+
+    public void testListPage()
+            throws Exception {
+        view.beginShelvesets(2, false);
+        view.displayShelveset(shelveset("first"), null);
+        view.displayShelveset(shelveset("second"), null);
+        view.endShelvesets();
+
+        List<String> lines = readLines();
+
+        assertEquals("2 shelvesets found.", lines.get(1));
+        assertEquals("Shelveset Full Name", lines.get(3));
+        assertEquals("first;ownerName", lines.get(5));
+        assertEquals("second;ownerName", lines.get(6));
+        assertEquals(lines.get(4), lines.get(7));
+        assertEquals(8, lines.size());
+    }
+
+    public void testSingleShelvesetDetails()
+            throws Exception {
+        view.displayShelvesetDetails(shelveset("single"), changes("$/project/a.txt"));
+
+        List<String> lines = readLines();
+
+        assertEquals("1 shelvesets found.", lines.get(1));
+        assertTrue(lines.contains("Name: single"));
+        assertEquals(1, countChanges(lines));
+    }
+
+    public void testQuiet()
+            throws Exception {
+        console.setVerbosity(Verbosity.QUIET);
+
+        view.beginShelvesets(1, true);
+        view.displayShelveset(shelveset("first"), changes("$/project/a.txt"));
+        view.endShelvesets();
+
+        assertEquals(0, output.size());
+    }
+
+    private List<String> readLines()
+            throws Exception {
+        BufferedReader reader = new BufferedReader(new StringReader(output.toString("UTF-8")));
+        List<String> lines = new ArrayList<String>();
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lines.add(line);
+        }
+
+        return lines;
+    }
+
+    private static int countChanges(List<String> lines) {
+        int count = 0;
+
+        for (String line : lines) {
+            if (line.contains("\t\t$/project/")) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static Shelveset shelveset(String name) {
+        return new Shelveset(
+                name,
+                "ownerName",
+                "ownerDisplayName",
+                "comment",
+                null,
+                null,
+                new WorkItemCheckinInfo[0],
+                Calendar.getInstance(),
+                false,
+                null);
+    }
+
+    private static PendingSet[] changes(String... serverItems) {
+        PendingChange[] pendingChanges = new PendingChange[serverItems.length];
+
+        for (int i = 0; i < serverItems.length; i++) {
+            pendingChanges[i] = new PendingChange();
+            pendingChanges[i].setChangeType(ChangeType.EDIT);
+            pendingChanges[i].setServerItem(serverItems[i]);
+        }
+
+        PendingSet pendingSet = new PendingSet();
+        pendingSet.setPendingChanges(pendingChanges);
+
+        return new PendingSet[]
+                {
+                        pendingSet
+                };
+    }
+}
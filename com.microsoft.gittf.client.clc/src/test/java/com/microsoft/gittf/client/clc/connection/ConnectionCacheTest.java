@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.connection;
+
+import com.microsoft.tfs.core.TFSTeamProjectCollection;
+import com.microsoft.tfs.core.httpclient.DefaultNTCredentials;
+import junit.framework.TestCase;
+
+import java.net.URI;
+
+public class ConnectionCacheTest
+        extends TestCase {
+    private static final URI SERVER_URI = URI.create("http://tfs.example.com:8080/tfs/DefaultCollection");
+
+    private ConnectionCache cache;
+
+    protected void setUp()
+            throws Exception {
+        cache = ConnectionCache.start();
+    }
+
+    protected void tearDown()
+            throws Exception {
+        cache.stop();
+    }
+
+    public void testKeyNormalized()
+            throws Exception {
+        final TestConnection connection = new TestConnection(SERVER_URI);
+
+        assertSame(connection, ConnectionCache.put(SERVER_URI, "DOMAIN\\User", connection));
+
+        /* The trailing slash and the case of the URI and of the user name do not matter */
+        assertSame(connection, ConnectionCache.get(URI.create(SERVER_URI + "/"), "DOMAIN\\User"));
+        assertSame(connection, ConnectionCache.get(URI.create(SERVER_URI + "//"), "DOMAIN\\User"));
+        assertSame(connection, ConnectionCache.get(
+                URI.create("HTTP://TFS.EXAMPLE.COM:8080/tfs/defaultcollection"), "domain\\user"));
+
+        assertNull(ConnectionCache.get(SERVER_URI, "DOMAIN\\Other"));
+        assertNull(ConnectionCache.get(SERVER_URI, null));
+        assertNull(ConnectionCache.get(URI.create("http://tfs.example.com:8080/tfs/Other"), "DOMAIN\\User"));
+    }
+
+    public void testDefaultCredentialsKey()
+            throws Exception {
+        final TestConnection connection = new TestConnection(SERVER_URI);
+
+        ConnectionCache.put(SERVER_URI, null, connection);
+
+        assertSame(connection, ConnectionCache.get(SERVER_URI, null));
+        assertSame(connection, ConnectionCache.get(SERVER_URI, ""));
+    }
+
+    public void testPutKeepsFirstConnection()
+            throws Exception {
+        final TestConnection first = new TestConnection(SERVER_URI);
+        final TestConnection second = new TestConnection(URI.create(SERVER_URI + "/"));
+
+        assertSame(first, ConnectionCache.put(SERVER_URI, "user", first));
+        assertSame(first, ConnectionCache.put(URI.create(SERVER_URI + "/"), "USER", second));
+
+        assertFalse(first.closed);
+        assertTrue(second.closed);
+        assertSame(first, ConnectionCache.get(SERVER_URI, "user"));
+    }
+
+    public void testStopClosesConnections()
+            throws Exception {
+        final TestConnection connection = new TestConnection(SERVER_URI);
+
+        ConnectionCache.put(SERVER_URI, "user", connection);
+        cache.stop();
+
+        assertTrue(connection.closed);
+        assertFalse(ConnectionCache.isStarted());
+        assertNull(ConnectionCache.get(SERVER_URI, "user"));
+    }
+
+    public void testNotStarted()
+            throws Exception {
+        cache.stop();
+
+        final TestConnection first = new TestConnection(SERVER_URI);
+        final TestConnection second = new TestConnection(SERVER_URI);
+
+        /* Without a cache every command keeps its own connection */
+        assertSame(first, ConnectionCache.put(SERVER_URI, "user", first));
+        assertSame(second, ConnectionCache.put(SERVER_URI, "user", second));
+        assertNull(ConnectionCache.get(SERVER_URI, "user"));
+
+        assertFalse(first.closed);
+        assertFalse(second.closed);
+    }
+
+    private static class TestConnection
+            extends TFSTeamProjectCollection {
+        private volatile boolean closed = false;
+
+        public TestConnection(final URI serverURI) {
+            super(serverURI, new DefaultNTCredentials());
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
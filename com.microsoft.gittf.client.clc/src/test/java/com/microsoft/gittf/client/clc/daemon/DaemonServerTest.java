@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.daemon;
+
+import com.microsoft.gittf.client.clc.Console;
+import com.microsoft.gittf.client.clc.Console.Verbosity;
+import junit.framework.TestCase;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DaemonServerTest
+        extends TestCase {
+    private File daemonFile;
+    private RecordingCommandRunner runner;
+    private DaemonServer server;
+    private Thread serverThread;
+
+    protected void setUp()
+            throws Exception {
+        daemonFile = File.createTempFile("git-tf-daemon", ".properties");
+
+        runner = new RecordingCommandRunner();
+        server = new DaemonServer(0, 2, runner);
+        server.start(daemonFile);
+
+        serverThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.run();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        serverThread.start();
+    }
+
+    protected void tearDown()
+            throws Exception {
+        server.close();
+        serverThread.join(10000);
+
+        daemonFile.delete();
+    }
+
+    public void testDaemonFileRestrictedToOwner()
+            throws Exception {
+        assertTrue(daemonFile.isFile());
+        assertEquals(server.getPort(), DaemonProtocol.getPort(DaemonProtocol.readDaemonFile(daemonFile)));
+
+        if (Files.getFileAttributeView(daemonFile.toPath(), PosixFileAttributeView.class) != null) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(daemonFile.toPath())));
+        }
+    }
+
+    public void testInterleavedFrames()
+            throws Exception {
+        runner.exitCode = 3;
+
+        /* Both streams of the client console record into the same log, in order */
+        final List<String> events = new ArrayList<String>();
+        final Console console = new Console(
+                new PrintStream(new RecordingStream(events, "out:"), true, "UTF-8"),
+                new PrintStream(new RecordingStream(events, "err:"), true, "UTF-8"));
+        console.setVerbosity(Verbosity.VERBOSE);
+
+        final DaemonClient client = DaemonClient.connect(daemonFile);
+        assertNotNull(client);
+
+        assertEquals(3, client.run(console, "checkin", new String[]
+                {
+                        "--deep", "--message=été"
+                }));
+
+        assertEquals(1, runner.calls.get());
+        assertEquals("checkin", runner.commandName);
+        assertEquals(2, runner.commandArgs.length);
+        assertEquals("--message=été", runner.commandArgs[1]);
+        assertEquals(Verbosity.VERBOSE, runner.verbosity);
+        assertEquals(new File("").getAbsoluteFile(), runner.workingDirectory);
+
+        assertEquals(3, events.size());
+        assertEquals("out:first\n", events.get(0));
+        assertEquals("err:second\n", events.get(1));
+        assertEquals("out:third\n", events.get(2));
+    }
+
+    public void testInvalidTokenRejected()
+            throws Exception {
+        final Socket socket = connect();
+
+        try {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF("0123456789abcdef0123456789abcdef");
+            out.flush();
+
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+
+        assertEquals(0, runner.calls.get());
+    }
+
+    public void testTooManyArgumentsRejected()
+            throws Exception {
+        assertRequestRejected(DaemonServer.MAX_ARGUMENTS + 1);
+        assertRequestRejected(-1);
+
+        assertEquals(0, runner.calls.get());
+    }
+
+    private void assertRequestRejected(final int argumentCount)
+            throws Exception {
+        final Socket socket = connect();
+
+        try {
+            final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeUTF(DaemonProtocol.getToken(DaemonProtocol.readDaemonFile(daemonFile)));
+            out.writeUTF(new File("").getAbsolutePath());
+            out.writeUTF(Verbosity.NORMAL.name());
+            out.writeUTF("checkin");
+            out.writeInt(argumentCount);
+            out.flush();
+
+            assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Socket connect()
+            throws IOException {
+        final Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        socket.setSoTimeout(10000);
+
+        return socket;
+    }
+
+    private static class RecordingCommandRunner
+            implements DaemonServer.CommandRunner {
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int exitCode;
+        private volatile String commandName;
+        private volatile String[] commandArgs;
+        private volatile Verbosity verbosity;
+        private volatile File workingDirectory;
+
+        public int runCommand(
+                final Console console,
+                final String commandName,
+                final String[] commandArgs,
+                final File workingDirectory) {
+            calls.incrementAndGet();
+
+            this.commandName = commandName;
+            this.commandArgs = commandArgs;
+            this.verbosity = console.getVerbosity();
+            this.workingDirectory = workingDirectory;
+
+            console.getOutputStream().print("first\n");
+            console.getErrorStream().print("second\n");
+            console.getOutputStream().print("third\n");
+
+            return exitCode;
+        }
+    }
+
+    /**
+     * Records each write as an event of the stream, the client writes each
+     * frame at once
+     */
+    private static class RecordingStream
+            extends OutputStream {
+        private final List<String> events;
+        private final String name;
+
+        public RecordingStream(final List<String> events, final String name) {
+            this.events = events;
+            this.name = name;
+        }
+
+        @Override
+        public void write(final int b)
+                throws IOException {
+            write(new byte[]
+                    {
+                            (byte) b
+                    }, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            events.add(name + new String(b, off, len, "UTF-8"));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.client.clc.util.logging;
+
+import junit.framework.TestCase;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LogAppenderTest
+        extends TestCase {
+    private File logFile;
+    private BlockingLayout layout;
+    private LogAppender appender;
+
+    protected void setUp()
+            throws Exception {
+        logFile = File.createTempFile("git-tf", ".log");
+
+        layout = new BlockingLayout();
+
+        appender = new LogAppender();
+        appender.setLayout(layout);
+        appender.setBufferSize(2);
+        appender.setFile(logFile.getAbsolutePath(), false, false, 8192);
+        appender.activateOptions();
+    }
+
+    protected void tearDown()
+            throws Exception {
+        layout.release.countDown();
+        appender.close();
+
+        logFile.delete();
+    }
+
+    public void testQueueOverflow()
+            throws Exception {
+        /* The dispatcher is stuck writing the first event */
+        log(Level.INFO, "block");
+        assertTrue(layout.blocked.await(10, TimeUnit.SECONDS));
+
+        /* The queue is full, the next events below WARN are dropped */
+        log(Level.INFO, "info-1");
+        log(Level.INFO, "info-2");
+        log(Level.INFO, "dropped-1");
+        log(Level.DEBUG, "dropped-2");
+
+        /* A warning waits for room in the queue */
+        Thread warning = new Thread(new Runnable() {
+            public void run() {
+                log(Level.WARN, "warning");
+            }
+        });
+        warning.start();
+        warning.join(500);
+
+        assertTrue(warning.isAlive());
+
+        layout.release.countDown();
+        warning.join(10000);
+
+        assertFalse(warning.isAlive());
+
+        /* Close writes the events still queued to the file */
+        appender.close();
+
+        List<String> lines = readLines();
+
+        assertEquals("block", lines.get(0));
+        assertTrue(lines.contains("info-1"));
+        assertTrue(lines.contains("info-2"));
+        assertTrue(lines.contains("warning"));
+        assertFalse(lines.contains("dropped-1"));
+        assertFalse(lines.contains("dropped-2"));
+        assertTrue(lines.contains("Discarded 2 log events, the log queue was full"));
+    }
+
+    public void testCloseFlushes()
+            throws Exception {
+        for (int i = 0; i < 2; i++) {
+            log(Level.WARN, "warning-" + i);
+        }
+
+        appender.close();
+
+        List<String> lines = readLines();
+
+        assertEquals(2, lines.size());
+        assertEquals("warning-0", lines.get(0));
+        assertEquals("warning-1", lines.get(1));
+    }
+
+    private void log(Level level, String message) {
+        appender.doAppend(new LoggingEvent(
+                LogAppenderTest.class.getName(),
+                Logger.getLogger(LogAppenderTest.class),
+                level,
+                message,
+                null));
+    }
+
+    private List<String> readLines()
+            throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(logFile), "UTF-8"));
+
+        try {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return lines;
+    }
+
+    /**
+     * Writes the message of the events, and blocks the dispatcher on the
+     * "block" event until released
+     */
+    private static class BlockingLayout
+            extends Layout {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        public String format(LoggingEvent event) {
+            if ("block".equals(event.getRenderedMessage())) {
+                blocked.countDown();
+
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return event.getRenderedMessage() + "\n";
+        }
+
+        public boolean ignoresThrowable() {
+            return true;
+        }
+
+        public void activateOptions() {
+        }
+    }
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.config;
+
+import com.microsoft.gittf.core.util.Check;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An in-memory index of the changeset to commit mapping stored in the git-tf
+ * file of a repository. There is one index per file, shared by all the
+ * ChangesetCommitMap objects of the repository. The index is built once from
+ * the file and only rebuilt when the file changes. The file is only read and
+ * written through the index, while holding its lock.
+ *
+ * The indexes are softly referenced, an index that no ChangesetCommitMap uses
+ * any more is dropped when memory runs low.
+ *
+ * Whether the bridged commits exist is only remembered for the repository
+ * object it was checked against. Every command opens the repository again, so
+ * a gc or a ref rewrite between the commands of the daemon or of a batch is
+ * noticed.
+ */
+final class ChangesetCommitIndex {
+    private static final Map<File, SoftReference<ChangesetCommitIndex>> indexes =
+            new HashMap<File, SoftReference<ChangesetCommitIndex>>();
+
+    private final FileBasedConfig configFile;
+
+    private boolean built = false;
+
+    /* The bridged changesets sorted by id, with the commit each refers to */
+    private int[] changesetIDs;
+    private ObjectId[] commitIDs;
+
+    /* Whether the commit of each changeset exists, null until validated */
+    private boolean[] commitsExist;
+
+    /* The repository the commits have been validated against */
+    private WeakReference<Repository> validatedRepository;
+
+    private Map<ObjectId, Integer> changesetIDsByCommit;
+    private int highWaterMark;
+
+    private ChangesetCommitIndex(final File file) {
+        this.configFile = new FileBasedConfig(file, FS.DETECTED);
+    }
+
+    /**
+     * Gets the index of the git-tf file specified
+     *
+     * @param file the git-tf file
+     * @return
+     */
+    static ChangesetCommitIndex getIndex(final File file) {
+        Check.notNull(file, "file");
+
+        final File key = file.getAbsoluteFile();
+
+        synchronized (indexes) {
+            /* Forget the indexes that have been collected */
+            for (Iterator<SoftReference<ChangesetCommitIndex>> i = indexes.values().iterator(); i.hasNext(); ) {
+                if (i.next().get() == null) {
+                    i.remove();
+                }
+            }
+
+            final SoftReference<ChangesetCommitIndex> reference = indexes.get(key);
+            ChangesetCommitIndex index = reference != null ? reference.get() : null;
+
+            if (index == null) {
+                index = new ChangesetCommitIndex(key);
+                indexes.put(key, new SoftReference<ChangesetCommitIndex>(index));
+            }
+
+            return index;
+        }
+    }
+
+    /**
+     * Reloads the config file and drops the index if the file has changed
+     */
+    private void ensureUpToDate() {
+        try {
+            if (configFile.isOutdated()) {
+                configFile.load();
+                invalidate();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Drops the index after the config file has been changed in memory
+     */
+    private void invalidate() {
+        built = false;
+        changesetIDs = null;
+        commitIDs = null;
+        commitsExist = null;
+        validatedRepository = null;
+        changesetIDsByCommit = null;
+    }
+
+    /**
+     * Sets the commit id that the changeset refers to and saves the file
+     *
+     * @param changesetID    the changeset id
+     * @param commitID       the commit id
+     * @param forceHWMUpdate whether to set the high water mark even if the
+     *                       changeset is older than the current one
+     * @throws IOException
+     */
+    synchronized void setChangesetCommit(final int changesetID, final ObjectId commitID, final boolean forceHWMUpdate)
+            throws IOException {
+        ensureUpToDate();
+
+        try {
+            cleanupPreviousEntries(changesetID);
+
+            configFile.setString(
+                    ConfigurationConstants.CONFIGURATION_SECTION,
+                    ConfigurationConstants.COMMIT_SUBSECTION,
+                    MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)),
+                    commitID.getName());
+
+            configFile.setInt(
+                    ConfigurationConstants.CONFIGURATION_SECTION,
+                    ConfigurationConstants.CHANGESET_SUBSECTION,
+                    MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
+                    changesetID);
+
+            final int currentHighWaterMark =
+                    configFile.getInt(
+                            ConfigurationConstants.CONFIGURATION_SECTION,
+                            ConfigurationConstants.CHANGESET_SUBSECTION,
+                            ConfigurationConstants.CHANGESET_HIGHWATER,
+                            -1);
+
+            /* Update the high water mark automatically */
+            if ((changesetID > currentHighWaterMark) || forceHWMUpdate) {
+                configFile.setInt(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.CHANGESET_SUBSECTION,
+                        ConfigurationConstants.CHANGESET_HIGHWATER,
+                        changesetID);
+            }
+
+            configFile.save();
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * Cleans the entries for the changeset specified
+     *
+     * @param changesetID
+     */
+    private void cleanupPreviousEntries(final int changesetID) {
+        final String commitHash =
+                configFile.getString(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.COMMIT_SUBSECTION,
+                        MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
+
+        if (commitHash == null || commitHash.length() == 0) {
+            return;
+        }
+
+        configFile.unset(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.COMMIT_SUBSECTION,
+                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
+
+        configFile.unset(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitHash));
+    }
+
+    synchronized int getHighWaterMark() {
+        ensureBuilt();
+
+        return highWaterMark;
+    }
+
+    synchronized int getChangesetID(final ObjectId commitID) {
+        ensureBuilt();
+
+        final Integer changesetID = changesetIDsByCommit.get(commitID);
+
+        return changesetID != null ? changesetID : -1;
+    }
+
+    synchronized ObjectId getCommitID(final int changesetID, final Repository repository) {
+        ensureBuilt();
+
+        final int position = Arrays.binarySearch(changesetIDs, changesetID);
+
+        if (position < 0) {
+            return null;
+        }
+
+        if (repository != null && !commitExists(position, repository)) {
+            return null;
+        }
+
+        return commitIDs[position];
+    }
+
+    /**
+     * Gets the latest changeset before the changeset specified, or -1
+     *
+     * @param changesetID the changeset id
+     * @param repository  the repository to validate the commits against, or
+     *                    null to skip the validation
+     * @return
+     */
+    synchronized int getPreviousChangesetID(final int changesetID, final Repository repository) {
+        ensureBuilt();
+
+        int position = Arrays.binarySearch(changesetIDs, changesetID);
+        position = position >= 0 ? position - 1 : -position - 2;
+
+        for (; position >= 0; position--) {
+            if (repository == null || commitExists(position, repository)) {
+                return changesetIDs[position];
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Gets all the bridged commits, each mapped to the latest changeset id that
+     * refers to it
+     *
+     * @return
+     */
+    synchronized Map<ObjectId, Integer> getBridgedCommits() {
+        ensureBuilt();
+
+        final Map<ObjectId, Integer> bridgedCommits = new HashMap<ObjectId, Integer>();
+
+        /* Ascending order, so the latest changeset of a commit wins */
+        for (int i = 0; i < changesetIDs.length; i++) {
+            if (!ObjectId.zeroId().equals(commitIDs[i])) {
+                bridgedCommits.put(commitIDs[i], changesetIDs[i]);
+            }
+        }
+
+        return bridgedCommits;
+    }
+
+    private boolean commitExists(final int position, final Repository repository) {
+        if (commitsExist == null || validatedRepository.get() != repository) {
+            validateCommits(repository);
+        }
+
+        return commitsExist[position];
+    }
+
+    /**
+     * Checks that the commit of every bridged changeset exists, with a single
+     * object reader
+     *
+     * @param repository
+     */
+    private void validateCommits(final Repository repository) {
+        final boolean[] exist = new boolean[commitIDs.length];
+        final ObjectReader objectReader = repository.newObjectReader();
+
+        try {
+            for (int i = 0; i < commitIDs.length; i++) {
+                if (ObjectId.zeroId().equals(commitIDs[i])) {
+                    continue;
+                }
+
+                try {
+                    exist[i] = objectReader.has(commitIDs[i]);
+                } catch (IOException exception) {
+                    exist[i] = false;
+                }
+            }
+        } finally {
+            objectReader.release();
+        }
+
+        commitsExist = exist;
+        validatedRepository = new WeakReference<Repository>(repository);
+    }
+
+    private void ensureBuilt() {
+        ensureUpToDate();
+
+        if (built) {
+            return;
+        }
+
+        final int prefixLength = MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, "").length();
+
+        final Set<String> commitEntries =
+                configFile.getNames(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.COMMIT_SUBSECTION);
+
+        final int[] ids = new int[commitEntries.size()];
+        final Map<Integer, ObjectId> commitsByChangeset = new HashMap<Integer, ObjectId>();
+        int count = 0;
+
+        for (String commitEntry : commitEntries) {
+            final String commitHash =
+                    configFile.getString(
+                            ConfigurationConstants.CONFIGURATION_SECTION,
+                            ConfigurationConstants.COMMIT_SUBSECTION,
+                            commitEntry);
+
+            if (commitHash == null || commitHash.length() == 0) {
+                continue;
+            }
+
+            final int changesetID = Integer.parseInt(commitEntry.substring(prefixLength));
+
+            ids[count++] = changesetID;
+            commitsByChangeset.put(changesetID, ObjectId.fromString(commitHash));
+        }
+
+        changesetIDs = Arrays.copyOf(ids, count);
+        Arrays.sort(changesetIDs);
+
+        commitIDs = new ObjectId[count];
+        for (int i = 0; i < count; i++) {
+            commitIDs[i] = commitsByChangeset.get(changesetIDs[i]);
+        }
+
+        final String commitPrefix = MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, "");
+
+        final Set<String> changesetEntries =
+                configFile.getNames(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.CHANGESET_SUBSECTION);
+
+        changesetIDsByCommit = new HashMap<ObjectId, Integer>(changesetEntries.size() * 2);
+
+        for (String changesetEntry : changesetEntries) {
+            if (!changesetEntry.startsWith(commitPrefix)
+                    || !ObjectId.isId(changesetEntry.substring(commitPrefix.length()))) {
+                continue;
+            }
+
+            final int changesetID =
+                    configFile.getInt(
+                            ConfigurationConstants.CONFIGURATION_SECTION,
+                            ConfigurationConstants.CHANGESET_SUBSECTION,
+                            changesetEntry,
+                            -1);
+
+            changesetIDsByCommit.put(ObjectId.fromString(changesetEntry.substring(commitPrefix.length())), changesetID);
+        }
+
+        highWaterMark =
+                configFile.getInt(
+                        ConfigurationConstants.CONFIGURATION_SECTION,
+                        ConfigurationConstants.CHANGESET_SUBSECTION,
+                        ConfigurationConstants.CHANGESET_HIGHWATER,
+                        -1);
+
+        commitsExist = null;
+        validatedRepository = null;
+        built = true;
+    }
+}
@@ -28,7 +28,6 @@ import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.util.Check;
 import com.microsoft.gittf.core.util.TagUtil;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
@@ -36,21 +35,20 @@ import org.eclipse.jgit.util.FS;
 
 import java.io.File;
 import java.io.IOException;
-import java.text.MessageFormat;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
 
 /**
  * The ChangesetCommitMap class maintains the mapping between changesets and
  * commits. It also maintains the HWM which is the latest changeset downloaded
  * from TFS. All this information is stored in the .git\git-tf file in the
  * repository. This file uses the same format used by the config files.
+ * Lookups are served from an index of the file that is shared by all the
+ * ChangesetCommitMap objects of the repository.
  */
 public class ChangesetCommitMap {
     private final Repository repository;
-    private final FileBasedConfig configFile;
+    private final ChangesetCommitIndex index;
 
     /**
      * Constructor
@@ -61,8 +59,7 @@ public class ChangesetCommitMap {
         Check.notNull(repository, "repository");
 
         this.repository = repository;
-        this.configFile =
-                new FileBasedConfig(new File(repository.getDirectory(), GitTFConstants.GIT_TF_NAME), FS.DETECTED);
+        this.index = ChangesetCommitIndex.getIndex(new File(repository.getDirectory(), GitTFConstants.GIT_TF_NAME));
     }
 
     /**
@@ -149,32 +146,7 @@ public class ChangesetCommitMap {
         Check.isTrue(changesetID >= 0, "changesetID >= 0");
         Check.notNull(commitID, "commitID");
 
-        ensureConfigUptoDate();
-
-        cleanupPreviousEntries(changesetID);
-
-        configFile.setString(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.COMMIT_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)),
-                commitID.getName());
-
-        configFile.setInt(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.CHANGESET_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
-                changesetID);
-
-        /* Update the high water mark automatically */
-        if ((changesetID > getLastBridgedChangesetID(false)) || forceHWMUpdate) {
-            configFile.setInt(
-                    ConfigurationConstants.CONFIGURATION_SECTION,
-                    ConfigurationConstants.CHANGESET_SUBSECTION,
-                    ConfigurationConstants.CHANGESET_HIGHWATER,
-                    changesetID);
-        }
-
-        configFile.save();
+        index.setChangesetCommit(changesetID, commitID, forceHWMUpdate);
 
         TagUtil.createTFSChangesetTag(repository, commitID, changesetID);
     }
@@ -188,13 +160,7 @@ public class ChangesetCommitMap {
     public int getChangesetID(ObjectId commitID) {
         Check.notNull(commitID, "commitID");
 
-        ensureConfigUptoDate();
-
-        return configFile.getInt(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.CHANGESET_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
-                -1);
+        return index.getChangesetID(commitID);
     }
 
     /**
@@ -209,43 +175,7 @@ public class ChangesetCommitMap {
     public ObjectId getCommitID(int changesetID, boolean validate) {
         Check.isTrue(changesetID >= 0, "changesetID >= 0");
 
-        ensureConfigUptoDate();
-
-        String commitHash =
-                configFile.getString(
-                        ConfigurationConstants.CONFIGURATION_SECTION,
-                        ConfigurationConstants.COMMIT_SUBSECTION,
-                        MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
-
-        if (commitHash == null) {
-            return null;
-        }
-
-        ObjectId changesetCommitId = ObjectId.fromString(commitHash);
-
-        if (!validate) {
-            return changesetCommitId;
-        }
-
-        ObjectReader objectReader = null;
-        try {
-            objectReader = repository.newObjectReader();
-            if (changesetCommitId != null && !ObjectId.zeroId().equals(changesetCommitId)) {
-                try {
-                    if (objectReader.has(changesetCommitId)) {
-                        return changesetCommitId;
-                    }
-                } catch (IOException exception) {
-                    return null;
-                }
-            }
-
-            return null;
-        } finally {
-            if (objectReader != null) {
-                objectReader.release();
-            }
-        }
+        return index.getCommitID(changesetID, validate ? repository : null);
     }
 
     /**
@@ -259,36 +189,17 @@ public class ChangesetCommitMap {
      * @return
      */
     public int getLastBridgedChangesetID(boolean validate) {
-        ensureConfigUptoDate();
+        int changeset = index.getHighWaterMark();
 
-        int changeset =
-                configFile.getInt(
-                        ConfigurationConstants.CONFIGURATION_SECTION,
-                        ConfigurationConstants.CHANGESET_SUBSECTION,
-                        ConfigurationConstants.CHANGESET_HIGHWATER,
-                        -1);
-
-        if (changeset < 0) {
+        if (changeset < 0 || !validate) {
             return changeset;
         }
 
-        if (!validate) {
+        if (index.getCommitID(changeset, repository) != null) {
             return changeset;
         }
 
-        while (true) {
-            if (changeset < 0) {
-                return changeset;
-            }
-
-            ObjectId changesetCommitId = getCommitID(changeset, true);
-
-            if (changesetCommitId != null && !ObjectId.zeroId().equals(changesetCommitId)) {
-                return changeset;
-            }
-
-            changeset = getPreviousBridgedChangeset(changeset, false);
-        }
+        return index.getPreviousChangesetID(changeset, repository);
     }
 
     /**
@@ -299,82 +210,16 @@ public class ChangesetCommitMap {
      * @return
      */
     public int getPreviousBridgedChangeset(int changesetID, boolean validate) {
-        ensureConfigUptoDate();
-
-        Set<String> downloadedChangesetEntries =
-                configFile.getNames(ConfigurationConstants.CONFIGURATION_SECTION, ConfigurationConstants.COMMIT_SUBSECTION);
-
-        Set<Integer> sortedDownloadedChangesetEntries = new TreeSet<Integer>(Collections.reverseOrder());
-
-        for (String downloadedChangesetEntry : downloadedChangesetEntries) {
-            String changesetNumberString =
-                    downloadedChangesetEntry.substring(MessageFormat.format(
-                            ConfigurationConstants.COMMIT_CHANGESET_FORMAT,
-                            "").length());
-
-            int changesetIDEntry = Integer.parseInt(changesetNumberString);
-
-            sortedDownloadedChangesetEntries.add(changesetIDEntry);
-        }
-
-        Iterator<Integer> changesetIterator = sortedDownloadedChangesetEntries.iterator();
-        while (changesetIterator.hasNext()) {
-            int currentChangeset = changesetIterator.next();
-
-            if (currentChangeset >= changesetID) {
-                continue;
-            }
-
-            if (!validate) {
-                return currentChangeset;
-            } else {
-                ObjectId commitId = getCommitID(currentChangeset, true);
-                if (commitId != null && !ObjectId.zeroId().equals(commitId)) {
-                    return currentChangeset;
-                }
-            }
-        }
-
-        return -1;
+        return index.getPreviousChangesetID(changesetID, validate ? repository : null);
     }
 
     /**
-     * Cleans the entries for the changeset specified
+     * Gets all the bridged commits, each mapped to the latest changeset id that
+     * refers to it.
      *
-     * @param changesetID
-     */
-    private void cleanupPreviousEntries(int changesetID) {
-        String commitHash =
-                configFile.getString(
-                        ConfigurationConstants.CONFIGURATION_SECTION,
-                        ConfigurationConstants.COMMIT_SUBSECTION,
-                        MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
-
-        if (commitHash == null || commitHash.length() == 0) {
-            return;
-        }
-
-        configFile.unset(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.COMMIT_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)));
-
-        configFile.unset(
-                ConfigurationConstants.CONFIGURATION_SECTION,
-                ConfigurationConstants.CHANGESET_SUBSECTION,
-                MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitHash));
-    }
-
-    /**
-     * Ensures that the config cache is up to date before reading it
+     * @return
      */
-    private void ensureConfigUptoDate() {
-        try {
-            if (configFile != null && configFile.isOutdated()) {
-                configFile.load();
-            }
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
+    public Map<ObjectId, Integer> getBridgedCommits() {
+        return index.getBridgedCommits();
     }
 }
@@ -61,14 +61,44 @@ public final class ChangesetCommitMapUtil {
             VersionControlClient versionControlClient,
             final String serverPath) {
         Check.notNull(commitMap, "commitMap");
+
+        return getLatestChangeset(commitMap, getLatestChangesetID(versionControlClient, serverPath));
+    }
+
+    /**
+     * Gets the details of the latest changeset of a server path from the id
+     * returned by getLatestChangesetID, so that the server can be queried once
+     * and the result shared.
+     *
+     * @param commitMap
+     * @param latestChangesetID
+     * @return
+     */
+    public static ChangesetCommitDetails getLatestChangeset(ChangesetCommitMap commitMap, int latestChangesetID) {
+        Check.notNull(commitMap, "commitMap");
+
+        if (latestChangesetID < 0) {
+            return null;
+        }
+
+        final ObjectId latestCommitID = commitMap.getCommitID(latestChangesetID, true);
+
+        return new ChangesetCommitDetails(latestChangesetID, latestCommitID);
+    }
+
+    /**
+     * Queries the id of the last changeset on the server to determine if the
+     * destination path exists and its current changeset.
+     *
+     * @param versionControlClient
+     * @param serverPath
+     * @return the changeset id, or -1 if the path does not exist
+     */
+    public static int getLatestChangesetID(VersionControlClient versionControlClient, final String serverPath) {
         Check.notNull(versionControlClient, "versionControlClient");
         Check.notNull(serverPath, "serverPath");
         Check.isTrue(ServerPath.isServerPath(serverPath), "serverPath.isServerPath");
 
-        /*
-         * Query the last changeset on the server to determine if the
-         * destination path exists and its current changeset.
-         */
         Changeset[] changesets =
                 versionControlClient.queryHistory(
                         serverPath,
@@ -85,12 +115,9 @@ public final class ChangesetCommitMapUtil {
                         false);
 
         if (changesets.length == 1) {
-            final int latestChangesetID = changesets[0].getChangesetID();
-            final ObjectId latestCommitID = commitMap.getCommitID(latestChangesetID, true);
-
-            return new ChangesetCommitDetails(latestChangesetID, latestCommitID);
+            return changesets[0].getChangesetID();
         } else {
-            return null;
+            return -1;
         }
     }
 
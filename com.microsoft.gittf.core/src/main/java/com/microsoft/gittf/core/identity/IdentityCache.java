@@ -0,0 +1,317 @@
+package com.microsoft.gittf.core.identity;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.EnvironmentUtil;
+import com.microsoft.tfs.util.StringHelpers;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Caches the results of TFS identity searches in a file next to the user map,
+ * so that only new or expired search values have to be sent to the server.
+ * Searches that did not find any identity are cached as well, but expire
+ * sooner.
+ */
+public class IdentityCache {
+    private static final String CACHE_FILE_SUFFIX = ".identities";
+    private static final String ENCODING = "UTF-8";
+    private static final char SEPARATOR = '\t';
+
+    private static final String IDENTITY_CACHE_TTL_NAME = "GITTF_IDENTITY_CACHE_TTL";
+    private static final String IDENTITY_CACHE_TTL_NAME_ALTERNATE = "gittf_identity_cache_ttl";
+
+    /* Time to live in minutes */
+    private static final int DEFAULT_TTL = 24 * 60;
+    private static final int MAX_NEGATIVE_TTL = 60;
+
+    final Log log = LogFactory.getLog(IdentityCache.class.getName());
+
+    private final File cacheFile;
+    private final long ttl;
+    private final long negativeTtl;
+    private final Map<String, CacheEntry> entries = new HashMap<String, CacheEntry>();
+    private boolean loaded = false;
+    private boolean changed = false;
+
+    /**
+     * Constructor, the time to live is read from the GITTF_IDENTITY_CACHE_TTL
+     * environment variable in minutes
+     *
+     * @param cacheFile the file to store the cache in
+     */
+    public IdentityCache(final File cacheFile) {
+        this(cacheFile, getTtlFromEnvironment());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param cacheFile the file to store the cache in
+     * @param ttl       the time to live of the entries in minutes, 0 disables
+     *                  the cache
+     */
+    public IdentityCache(final File cacheFile, final int ttl) {
+        Check.notNull(cacheFile, "cacheFile");
+
+        this.cacheFile = cacheFile;
+        this.ttl = ttl * 60L * 1000L;
+        this.negativeTtl = Math.min(ttl, MAX_NEGATIVE_TTL) * 60L * 1000L;
+    }
+
+    /**
+     * Gets the cache file that belongs to the user map file specified
+     *
+     * @param userMapFile
+     * @return
+     */
+    public static File getCacheFile(final File userMapFile) {
+        Check.notNull(userMapFile, "userMapFile");
+
+        return new File(userMapFile.getPath() + CACHE_FILE_SUFFIX);
+    }
+
+    public File getFile() {
+        return cacheFile;
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+    /**
+     * Gets the cached search result for the value specified
+     *
+     * @param searchFactor the name of the search factor used
+     * @param searchValue  the value searched for
+     * @return the identities found, an empty list if the search did not find
+     * any, or null if the value is not cached or the entry has expired
+     */
+    public List<TfsUser> get(final String searchFactor, final String searchValue) {
+        if (ttl <= 0 || !isCacheable(searchValue)) {
+            return null;
+        }
+
+        ensureLoaded();
+
+        final CacheEntry entry = entries.get(getKey(searchFactor, searchValue));
+
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+
+        return entry.users;
+    }
+
+    /**
+     * Caches the search result for the value specified
+     *
+     * @param searchFactor the name of the search factor used
+     * @param searchValue  the value searched for
+     * @param users        the identities found, null or empty if none
+     */
+    public void put(final String searchFactor, final String searchValue, final List<TfsUser> users) {
+        if (ttl <= 0 || !isCacheable(searchValue)) {
+            return;
+        }
+
+        ensureLoaded();
+
+        final List<TfsUser> cachedUsers = new ArrayList<TfsUser>();
+
+        if (users != null) {
+            for (final TfsUser user : users) {
+                if (isCacheable(user.getName()) && isCacheable(user.getDisplayName())) {
+                    cachedUsers.add(user);
+                }
+            }
+
+            /* Do not cache a partial result */
+            if (cachedUsers.size() != users.size()) {
+                return;
+            }
+        }
+
+        entries.put(
+                getKey(searchFactor, searchValue),
+                new CacheEntry(searchFactor, searchValue, System.currentTimeMillis(), cachedUsers));
+        changed = true;
+    }
+
+    /**
+     * Loads the cache file if it exists, a cache file that cannot be read is
+     * ignored
+     */
+    public void load() {
+        entries.clear();
+        loaded = true;
+        changed = false;
+
+        if (!cacheFile.exists() || cacheFile.isDirectory()) {
+            return;
+        }
+
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), ENCODING));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final CacheEntry entry = parseEntry(line);
+
+                if (entry != null) {
+                    entries.put(getKey(entry.searchFactor, entry.searchValue), entry);
+                }
+            }
+        } catch (final Exception e) {
+            log.warn("Could not read the identity cache " + cacheFile.getPath(), e);
+            entries.clear();
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (final Exception e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the cache file if it has changed, dropping the expired entries. A
+     * cache file that cannot be written is ignored.
+     */
+    public void save() {
+        if (!changed) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+
+        BufferedWriter writer = null;
+        try {
+            if (cacheFile.getParentFile() != null && !cacheFile.getParentFile().exists()) {
+                cacheFile.getParentFile().mkdirs();
+            }
+
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), ENCODING));
+
+            for (final Entry<String, CacheEntry> entry : entries.entrySet()) {
+                if (!entry.getValue().isExpired(now)) {
+                    writer.write(formatEntry(entry.getValue()));
+                    writer.newLine();
+                }
+            }
+
+            changed = false;
+        } catch (final Exception e) {
+            log.warn("Could not write the identity cache " + cacheFile.getPath(), e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (final Exception e) {
+                }
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            load();
+        }
+    }
+
+    private String formatEntry(final CacheEntry entry) {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(entry.searchFactor);
+        sb.append(SEPARATOR);
+        sb.append(entry.searchValue);
+        sb.append(SEPARATOR);
+        sb.append(entry.timestamp);
+
+        for (final TfsUser user : entry.users) {
+            sb.append(SEPARATOR);
+            sb.append(user.getName());
+            sb.append(SEPARATOR);
+            sb.append(user.getDisplayName());
+        }
+
+        return sb.toString();
+    }
+
+    private CacheEntry parseEntry(final String line) {
+        final String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+
+        if (fields.length < 3 || fields.length % 2 == 0) {
+            return null;
+        }
+
+        final long timestamp;
+        try {
+            timestamp = Long.parseLong(fields[2]);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+
+        final List<TfsUser> users = new ArrayList<TfsUser>();
+
+        for (int i = 3; i < fields.length; i += 2) {
+            users.add(new TfsUser(fields[i], fields[i + 1]));
+        }
+
+        return new CacheEntry(fields[0], fields[1], timestamp, users);
+    }
+
+    private static String getKey(final String searchFactor, final String searchValue) {
+        return searchFactor + SEPARATOR + searchValue.toLowerCase();
+    }
+
+    private static boolean isCacheable(final String value) {
+        return !StringHelpers.isNullOrEmpty(value)
+                && value.indexOf(SEPARATOR) < 0
+                && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0;
+    }
+
+    private static int getTtlFromEnvironment() {
+        return EnvironmentUtil.getIntegerValue(IDENTITY_CACHE_TTL_NAME, IDENTITY_CACHE_TTL_NAME_ALTERNATE, 0, DEFAULT_TTL);
+    }
+
+    private class CacheEntry {
+        private final String searchFactor;
+        private final String searchValue;
+        private final long timestamp;
+        private final List<TfsUser> users;
+
+        public CacheEntry(
+                final String searchFactor,
+                final String searchValue,
+                final long timestamp,
+                final List<TfsUser> users) {
+            this.searchFactor = searchFactor;
+            this.searchValue = searchValue;
+            this.timestamp = timestamp;
+            this.users = Collections.unmodifiableList(users);
+        }
+
+        public boolean isExpired(final long now) {
+            final long age = now - timestamp;
+
+            return age < 0 || age > (users.isEmpty() ? negativeTtl : ttl);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.microsoft.gittf.core.identity;
 
+import com.microsoft.gittf.core.impl.ServiceCallMetrics;
 import com.microsoft.gittf.core.impl.TfsIdentityManagementService;
 import com.microsoft.gittf.core.interfaces.IdentityManagementService;
 import com.microsoft.gittf.core.tasks.SearchIdentitesTask;
@@ -17,6 +18,7 @@ import org.apache.commons.logging.LogFactory;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.text.MessageFormat;
@@ -40,8 +42,16 @@ public class TfsUserMap
     public TfsUserMap(final TFSConnection connection, final String userMapPath, final List<CommitDelta> commitsToCheckin) {
         super(userMapPath);
 
-        this.IMS = new TfsIdentityManagementService(connection);
+        this.IMS =
+                ServiceCallMetrics.instrument(
+                        IdentityManagementService.class,
+                        new TfsIdentityManagementService(connection));
         this.commitsToCheckin = commitsToCheckin;
+
+        final File userMapFile = getUserMapFile();
+        if (userMapFile != null) {
+            setIdentityCache(new IdentityCache(IdentityCache.getCacheFile(userMapFile)));
+        }
     }
 
     @Override
@@ -108,52 +118,61 @@ public class TfsUserMap
         searchTask = new SearchIdentitesTask(IMS, searchFactor, searchValues.toArray(new String[searchValues.size()]));
         searchStatus = new TaskExecutor(progressMonitor.newSubTask(1)).execute(searchTask);
 
-        if (searchStatus.isOK()) {
-            final TeamFoundationIdentity[][] identitiesList = searchTask.getIdentities();
-            if (identitiesList != null) {
-                for (int k = 0; k < identitiesList.length; k++) {
-                    log.debug("Search for:    " + searchValues.get(k));
+        /*
+         * Nothing is cached unless the search succeeded: a cancelled search
+         * stops the lookup, any other status returns null to the caller
+         */
+        if (!searchStatus.isOK()) {
+            if (searchStatus.getSeverity().equals(TaskStatus.CANCEL)) {
+                throw new CanceledException();
+            }
 
-                    final TeamFoundationIdentity[] mappedIdentites = identitiesList[k];
-                    if (mappedIdentites != null && mappedIdentites.length > 0) {
-                        log.debug("Found:         " + String.valueOf(mappedIdentites.length));
+            log.warn("TFS identites look-up failed");
+            return null;
+        }
 
-                        final List<TfsUser> tfsUsers = new ArrayList<TfsUser>();
+        final TeamFoundationIdentity[][] identitiesList = searchTask.getIdentities();
+        if (identitiesList != null) {
+            for (int k = 0; k < identitiesList.length; k++) {
+                log.debug("Search for:    " + searchValues.get(k));
 
-                        for (int j = 0; j < mappedIdentites.length; j++) {
-                            final TeamFoundationIdentity identity = mappedIdentites[j];
+                final TeamFoundationIdentity[] mappedIdentites = identitiesList[k];
+                if (mappedIdentites != null && mappedIdentites.length > 0) {
+                    log.debug("Found:         " + String.valueOf(mappedIdentites.length));
 
-                            final Iterable<Entry<String, Object>> properties = identity.getProperties();
+                    final List<TfsUser> tfsUsers = new ArrayList<TfsUser>();
 
-                            log.debug("Identity:      " + identity.getUniqueName());
-                            log.debug("Identity Type: " + identity.getDescriptor().getIdentityType());
-                            for (final Entry<String, Object> property : properties) {
-                                log.debug(property.getKey() + " = " + property.getValue().toString());
-                            }
+                    for (int j = 0; j < mappedIdentites.length; j++) {
+                        final TeamFoundationIdentity identity = mappedIdentites[j];
 
-                            final String type = identity.getDescriptor().getIdentityType();
-                            final String schema = (String) identity.getProperty(SCHEMA_PROPERTY);
+                        final Iterable<Entry<String, Object>> properties = identity.getProperties();
 
-                            if (identity != null
-                                    && USER_SCHEMA.equalsIgnoreCase(schema)
-                                    && (WINDOWS_IDENTITY.equalsIgnoreCase(type) || CLAIMS_IDENTITY.equalsIgnoreCase(type))) {
-                                tfsUsers.add(new TfsUser(identity.getUniqueName(), identity.getDisplayName()));
-                            } else {
-                                log.warn(MessageFormat.format(
-                                        "Incorrect identity type \"{0}\" or schema class \"{1}\". Identity ignored.", type, schema));
-                            }
+                        log.debug("Identity:      " + identity.getUniqueName());
+                        log.debug("Identity Type: " + identity.getDescriptor().getIdentityType());
+                        for (final Entry<String, Object> property : properties) {
+                            log.debug(property.getKey() + " = " + property.getValue().toString());
                         }
 
-                        if (tfsUsers.size() > 0) {
-                            userMap.put(searchValues.get(k), tfsUsers);
+                        final String type = identity.getDescriptor().getIdentityType();
+                        final String schema = (String) identity.getProperty(SCHEMA_PROPERTY);
+
+                        if (identity != null
+                                && USER_SCHEMA.equalsIgnoreCase(schema)
+                                && (WINDOWS_IDENTITY.equalsIgnoreCase(type) || CLAIMS_IDENTITY.equalsIgnoreCase(type))) {
+                            tfsUsers.add(new TfsUser(identity.getUniqueName(), identity.getDisplayName()));
+                        } else {
+                            log.warn(MessageFormat.format(
+                                    "Incorrect identity type \"{0}\" or schema class \"{1}\". Identity ignored.", type, schema));
                         }
-                    } else {
-                        log.debug("Found:         0");
                     }
+
+                    if (tfsUsers.size() > 0) {
+                        userMap.put(searchValues.get(k), tfsUsers);
+                    }
+                } else {
+                    log.debug("Found:         0");
                 }
             }
-        } else if (searchStatus.getSeverity().equals(TaskStatus.CANCEL)) {
-            throw new CanceledException();
         }
 
         return userMap;
@@ -50,6 +50,7 @@ public abstract class UserMap {
     private boolean changed = false;
     private boolean consistent = true;
     private boolean complete = false;
+    private IdentityCache identityCache = null;
 
     protected UserMap(final String userMapPath) {
         this.userMapPath =
@@ -322,6 +323,88 @@ public abstract class UserMap {
             final List<String> searchValues,
             final IdentitySearchFactor searchFactor);
 
+    protected IdentityCache getIdentityCache() {
+        return identityCache;
+    }
+
+    protected void setIdentityCache(final IdentityCache identityCache) {
+        this.identityCache = identityCache;
+    }
+
+    /**
+     * Looks up the TFS users for the search values specified, only the values
+     * that are not in the identity cache or have expired there are sent to
+     * the server, in a single search.
+     *
+     * @param progressMonitor
+     * @param searchValues
+     * @param searchFactor
+     * @return
+     */
+    private Map<String, List<TfsUser>> lookupTfsUsers(
+            final TaskProgressMonitor progressMonitor,
+            final List<String> searchValues,
+            final IdentitySearchFactor searchFactor) {
+        final String searchFactorName = getSearchFactorName(searchFactor);
+
+        if (identityCache == null || searchFactorName == null) {
+            final Map<String, List<TfsUser>> foundUsers = findTfsUsers(progressMonitor, searchValues, searchFactor);
+
+            return foundUsers != null ? foundUsers : new HashMap<String, List<TfsUser>>();
+        }
+
+        final Map<String, List<TfsUser>> userMapping = new HashMap<String, List<TfsUser>>();
+        final List<String> notCachedValues = new ArrayList<String>();
+
+        for (final String searchValue : searchValues) {
+            final List<TfsUser> cachedUsers = identityCache.get(searchFactorName, searchValue);
+
+            if (cachedUsers == null) {
+                notCachedValues.add(searchValue);
+            } else if (cachedUsers.size() > 0) {
+                userMapping.put(searchValue, cachedUsers);
+            }
+        }
+
+        log.debug(MessageFormat.format("Identities found in the cache: {0}, to search for: {1}",
+                searchValues.size() - notCachedValues.size(), notCachedValues.size()));
+
+        if (notCachedValues.size() == 0) {
+            return userMapping;
+        }
+
+        final Map<String, List<TfsUser>> foundUsers = findTfsUsers(progressMonitor, notCachedValues, searchFactor);
+
+        /* The search failed, do not cache anything */
+        if (foundUsers == null) {
+            return userMapping;
+        }
+
+        for (final String searchValue : notCachedValues) {
+            final List<TfsUser> users = foundUsers.get(searchValue);
+
+            identityCache.put(searchFactorName, searchValue, users);
+
+            if (users != null) {
+                userMapping.put(searchValue, users);
+            }
+        }
+
+        identityCache.save();
+
+        return userMapping;
+    }
+
+    private static String getSearchFactorName(final IdentitySearchFactor searchFactor) {
+        if (IdentitySearchFactor.GENERAL.equals(searchFactor)) {
+            return "general";
+        } else if (IdentitySearchFactor.MAIL_ADDRESS.equals(searchFactor)) {
+            return "mail";
+        }
+
+        return null;
+    }
+
     protected Map<GitUser, List<TfsUser>> getUserMap() {
         return userMap;
     }
@@ -377,7 +460,7 @@ public abstract class UserMap {
 
         final List<String> searchValues = getMappedTfsUserNames();
         final Map<String, List<TfsUser>> identityMapping =
-                findTfsUsers(progressMonitor, searchValues, IdentitySearchFactor.GENERAL);
+                lookupTfsUsers(progressMonitor, searchValues, IdentitySearchFactor.GENERAL);
 
         for (final String tfsUserName : searchValues) {
             final List<TfsUser> foundIdentities = identityMapping.get(tfsUserName);
@@ -463,7 +546,7 @@ public abstract class UserMap {
                 complete = true;
             }
 
-            final Map<String, List<TfsUser>> newMapping = findTfsUsers(progressMonitor, searchValues, searchFactor);
+            final Map<String, List<TfsUser>> newMapping = lookupTfsUsers(progressMonitor, searchValues, searchFactor);
 
             if (newMapping.size() > 0) {
                 for (final GitUser gitUser : getNotMappedUsers()) {
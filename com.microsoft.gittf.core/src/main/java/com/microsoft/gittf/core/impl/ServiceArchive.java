@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.Charset;
+
+/**
+ * The format of the service archives written by {@link ServiceRecorder} and
+ * read by {@link ServiceReplay}. An archive is a zip file with a "calls" entry
+ * that lists the calls in the order they were made, and a "content/" entry
+ * for every distinct file content downloaded.
+ * <p>
+ * The TFS objects returned by the services wrap the generated web service
+ * objects, which are stored as the XML the web service uses for them.
+ */
+final class ServiceArchive {
+    private static final Log log = LogFactory.getLog(ServiceArchive.class);
+
+    static final String CALLS_ENTRY = "calls";
+    static final String CONTENT_ENTRY_PREFIX = "content/";
+    static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int TYPE_NULL = 0;
+    private static final int TYPE_INTEGER = 1;
+    private static final int TYPE_LONG = 2;
+    private static final int TYPE_BOOLEAN = 3;
+    private static final int TYPE_STRING = 4;
+    private static final int TYPE_ARRAY = 5;
+    private static final int TYPE_WEB_SERVICE_OBJECT = 6;
+    private static final int TYPE_CONSTANT = 7;
+    private static final int TYPE_UNSUPPORTED = 8;
+
+    private static final String WEB_SERVICE_OBJECT_ELEMENT = "value";
+
+    private ServiceArchive() {
+    }
+
+    /**
+     * Builds the key replayed calls are matched by. The path a download
+     * writes to is local to the run and is not part of the key.
+     */
+    static String getArgumentKey(final Method method, final Object[] args) {
+        final StringBuilder key = new StringBuilder();
+
+        if (args != null) {
+            final int count = isDownload(method) ? args.length - 1 : args.length;
+
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    key.append('|');
+                }
+
+                appendKey(key, args[i]);
+            }
+        }
+
+        return key.toString();
+    }
+
+    static boolean isDownload(final Method method) {
+        return method.getName().startsWith("download")
+                && method.getParameterTypes().length > 0
+                && method.getParameterTypes()[method.getParameterTypes().length - 1] == String.class;
+    }
+
+    private static void appendKey(final StringBuilder key, final Object value) {
+        if (value == null) {
+            key.append("null");
+        } else if (value.getClass().isArray()) {
+            key.append('[');
+
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (i > 0) {
+                    key.append(',');
+                }
+
+                appendKey(key, Array.get(value, i));
+            }
+
+            key.append(']');
+        } else if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+            key.append(value);
+        } else {
+            final Object serverItem = invokeGetter(value, "getServerItem");
+
+            if (serverItem != null) {
+                /* Items and pending changes */
+                key.append(value.getClass().getSimpleName()).append(':').append(serverItem);
+
+                final Object version = invokeGetter(value, "getChangeSetID");
+                if (version != null) {
+                    key.append('@').append(version);
+                }
+            } else if (overridesToString(value.getClass())) {
+                key.append(value);
+            } else {
+                key.append(value.getClass().getSimpleName());
+            }
+        }
+    }
+
+    static void writeValue(final DataOutput output, final Object value)
+            throws Exception {
+        if (value == null) {
+            output.writeByte(TYPE_NULL);
+        } else if (value instanceof Integer) {
+            output.writeByte(TYPE_INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(TYPE_LONG);
+            output.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(TYPE_BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof String) {
+            output.writeByte(TYPE_STRING);
+            writeString(output, (String) value);
+        } else if (value.getClass().isArray()) {
+            output.writeByte(TYPE_ARRAY);
+            writeString(output, value.getClass().getComponentType().getName());
+            output.writeInt(Array.getLength(value));
+
+            for (int i = 0; i < Array.getLength(value); i++) {
+                writeValue(output, Array.get(value, i));
+            }
+        } else if (getWebServiceObject(value) != null) {
+            final Object webServiceObject = getWebServiceObject(value);
+            final StringWriter xml = new StringWriter();
+            final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(xml);
+
+            webServiceObject.getClass()
+                    .getMethod("writeAsElement", XMLStreamWriter.class, String.class)
+                    .invoke(webServiceObject, writer, WEB_SERVICE_OBJECT_ELEMENT);
+            writer.flush();
+            writer.close();
+
+            output.writeByte(TYPE_WEB_SERVICE_OBJECT);
+            writeString(output, value.getClass().getName());
+            writeString(output, webServiceObject.getClass().getName());
+            writeString(output, xml.toString());
+        } else if (getConstantName(value) != null) {
+            output.writeByte(TYPE_CONSTANT);
+            writeString(output, value.getClass().getName());
+            writeString(output, getConstantName(value));
+        } else {
+            log.warn("Cannot record a value of " + value.getClass().getName() + ", replaying the call will fail");
+
+            output.writeByte(TYPE_UNSUPPORTED);
+            writeString(output, value.getClass().getName());
+        }
+    }
+
+    static Object readValue(final DataInput input)
+            throws Exception {
+        final int type = input.readByte();
+
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_INTEGER:
+                return input.readInt();
+            case TYPE_LONG:
+                return input.readLong();
+            case TYPE_BOOLEAN:
+                return input.readBoolean();
+            case TYPE_STRING:
+                return readString(input);
+            case TYPE_ARRAY: {
+                final Class<?> componentType = Class.forName(readString(input));
+                final Object array = Array.newInstance(componentType, input.readInt());
+
+                for (int i = 0; i < Array.getLength(array); i++) {
+                    Array.set(array, i, readValue(input));
+                }
+
+                return array;
+            }
+            case TYPE_WEB_SERVICE_OBJECT: {
+                final Class<?> wrapperClass = Class.forName(readString(input));
+                final Class<?> webServiceClass = Class.forName(readString(input));
+                final String xml = readString(input);
+
+                final Object webServiceObject = webServiceClass.newInstance();
+                final XMLStreamReader reader =
+                        XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+
+                reader.nextTag();
+                webServiceClass.getMethod("readFromElement", XMLStreamReader.class).invoke(webServiceObject, reader);
+                reader.close();
+
+                for (final Constructor<?> constructor : wrapperClass.getConstructors()) {
+                    final Class<?>[] parameterTypes = constructor.getParameterTypes();
+
+                    if (parameterTypes.length == 1 && parameterTypes[0].isAssignableFrom(webServiceClass)) {
+                        return constructor.newInstance(webServiceObject);
+                    }
+                }
+
+                throw new IOException("No constructor of " + wrapperClass.getName() + " takes a " + webServiceClass.getName());
+            }
+            case TYPE_CONSTANT:
+                return Class.forName(readString(input)).getField(readString(input)).get(null);
+            case TYPE_UNSUPPORTED:
+                throw new IllegalStateException("Unsupported recorded value " + readString(input));
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    static void writeString(final DataOutput output, final String value)
+            throws IOException {
+        final byte[] bytes = value.getBytes(UTF8);
+
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(final DataInput input)
+            throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * The TFS objects keep the web service object they wrap, which knows how
+     * to write itself as XML
+     */
+    private static Object getWebServiceObject(final Object value) {
+        final Object webServiceObject = invokeGetter(value, "getWebServiceObject");
+
+        if (webServiceObject == null) {
+            return null;
+        }
+
+        try {
+            webServiceObject.getClass().getMethod("writeAsElement", XMLStreamWriter.class, String.class);
+            webServiceObject.getClass().getMethod("readFromElement", XMLStreamReader.class);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        }
+
+        return webServiceObject;
+    }
+
+    /**
+     * Finds the public static field that holds the value, for enumerations
+     * and the TFS type safe enumerations
+     */
+    private static String getConstantName(final Object value) {
+        for (final Field field : value.getClass().getFields()) {
+            final int modifiers = field.getModifiers();
+
+            if (Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers) && field.getType() == value.getClass()) {
+                try {
+                    if (field.get(null) == value) {
+                        return field.getName();
+                    }
+                } catch (final IllegalAccessException e) {
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private static Object invokeGetter(final Object value, final String name) {
+        try {
+            return value.getClass().getMethod(name).invoke(value);
+        } catch (final Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean overridesToString(final Class<?> type) {
+        try {
+            return type.getMethod("toString").getDeclaringClass() != Object.class;
+        } catch (final NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
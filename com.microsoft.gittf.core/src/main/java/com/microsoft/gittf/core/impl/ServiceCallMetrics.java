@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.StringUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the call count, latency, downloaded bytes and errors of every call
+ * made through the service interfaces (VersionControlService,
+ * WorkspaceService and IdentityManagementService). The services are
+ * instrumented with a decorator when they are created while the metrics are
+ * started.
+ */
+public final class ServiceCallMetrics {
+    /* Upper bounds of the latency histogram buckets in milliseconds */
+    private static final long[] LATENCY_BUCKETS = new long[]
+            {
+                    1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000
+            };
+
+    private static volatile ServiceCallMetrics current = null;
+
+    private final Map<String, MethodMetrics> methods = new TreeMap<String, MethodMetrics>();
+
+    private ServiceCallMetrics() {
+    }
+
+    /**
+     * Starts recording the calls of the services created from now on
+     *
+     * @return the metrics
+     */
+    public static ServiceCallMetrics start() {
+        final ServiceCallMetrics metrics = new ServiceCallMetrics();
+        current = metrics;
+
+        return metrics;
+    }
+
+    /**
+     * Stops instrumenting new services, the calls recorded so far are kept
+     */
+    public void stop() {
+        if (current == this) {
+            current = null;
+        }
+    }
+
+    /**
+     * Wraps the service specified in a decorator that records its calls, if
+     * the metrics are started
+     *
+     * @param serviceInterface the service interface
+     * @param service          the service to instrument
+     * @return the decorated service, or the service itself if the metrics are
+     * not started
+     */
+    public static <T> T instrument(final Class<T> serviceInterface, final T service) {
+        Check.notNull(serviceInterface, "serviceInterface");
+        Check.notNull(service, "service");
+
+        final ServiceCallMetrics metrics = current;
+
+        if (metrics == null
+                || (Proxy.isProxyClass(service.getClass())
+                && Proxy.getInvocationHandler(service) instanceof InstrumentedService)) {
+            return service;
+        }
+
+        return serviceInterface.cast(Proxy.newProxyInstance(
+                serviceInterface.getClassLoader(),
+                new Class<?>[]
+                        {
+                                serviceInterface
+                        },
+                new InstrumentedService(metrics, serviceInterface.getSimpleName(), service)));
+    }
+
+    /**
+     * Records a call
+     *
+     * @param methodName      the name of the service method
+     * @param elapsedNanos    the duration of the call
+     * @param bytesDownloaded the number of bytes downloaded by the call
+     * @param failed          whether the call threw an exception
+     */
+    public void record(final String methodName, final long elapsedNanos, final long bytesDownloaded, final boolean failed) {
+        synchronized (methods) {
+            MethodMetrics method = methods.get(methodName);
+
+            if (method == null) {
+                method = new MethodMetrics();
+                methods.put(methodName, method);
+            }
+
+            method.record(elapsedNanos, bytesDownloaded, failed);
+        }
+    }
+
+    /**
+     * Prints a summary table of the calls
+     *
+     * @param out the stream to print to
+     */
+    public void printSummary(final PrintStream out) {
+        Check.notNull(out, "out");
+
+        final String format = "%-52s %7s %7s %10s %9s %9s %9s %12s";
+
+        out.println(String.format(format, "Service call", "Calls", "Errors", "Total ms", "Mean ms", "p90 ms", "Max ms",
+                "Bytes"));
+
+        for (Map.Entry<String, MethodMetrics> entry : getMethods().entrySet()) {
+            final MethodMetrics method = entry.getValue();
+
+            out.println(String.format(format,
+                    entry.getKey(),
+                    method.calls,
+                    method.errors,
+                    toMilliseconds(method.totalNanos),
+                    toMilliseconds(method.totalNanos / Math.max(1, method.calls)),
+                    formatBucket(method.getPercentileBucket(0.9)),
+                    toMilliseconds(method.maxNanos),
+                    method.bytesDownloaded));
+        }
+    }
+
+    /**
+     * Writes the calls as JSON
+     *
+     * @param file the file to write
+     * @throws IOException
+     */
+    public void writeJson(final File file)
+            throws IOException {
+        Check.notNull(file, "file");
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+        try {
+            writeJson(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the calls as JSON
+     *
+     * @param writer the writer to write to
+     * @throws IOException
+     */
+    public void writeJson(final Writer writer)
+            throws IOException {
+        Check.notNull(writer, "writer");
+
+        writer.write("{\"latencyBucketsMs\":[");
+
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            writer.write(i > 0 ? "," : "");
+            writer.write(Long.toString(LATENCY_BUCKETS[i]));
+        }
+
+        writer.write("],\"calls\":[");
+
+        boolean first = true;
+
+        for (Map.Entry<String, MethodMetrics> entry : getMethods().entrySet()) {
+            final MethodMetrics method = entry.getValue();
+
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            writer.write("{\"method\":");
+            writer.write(StringUtil.toJsonValue(entry.getKey()));
+            writer.write(",\"calls\":");
+            writer.write(Long.toString(method.calls));
+            writer.write(",\"errors\":");
+            writer.write(Long.toString(method.errors));
+            writer.write(",\"totalMs\":");
+            writer.write(Long.toString(toMilliseconds(method.totalNanos)));
+            writer.write(",\"maxMs\":");
+            writer.write(Long.toString(toMilliseconds(method.maxNanos)));
+            writer.write(",\"bytesDownloaded\":");
+            writer.write(Long.toString(method.bytesDownloaded));
+            writer.write(",\"latencyHistogram\":[");
+
+            for (int i = 0; i < method.histogram.length; i++) {
+                writer.write(i > 0 ? "," : "");
+                writer.write(Long.toString(method.histogram[i]));
+            }
+
+            writer.write("]}");
+        }
+
+        writer.write("\n]}\n");
+    }
+
+    private Map<String, MethodMetrics> getMethods() {
+        final Map<String, MethodMetrics> copy = new TreeMap<String, MethodMetrics>();
+
+        synchronized (methods) {
+            for (Map.Entry<String, MethodMetrics> entry : methods.entrySet()) {
+                copy.put(entry.getKey(), entry.getValue().copy());
+            }
+        }
+
+        return copy;
+    }
+
+    private static long toMilliseconds(final long nanoseconds) {
+        return nanoseconds / 1000000L;
+    }
+
+    private static String formatBucket(final int bucket) {
+        return bucket < LATENCY_BUCKETS.length ? "<" + LATENCY_BUCKETS[bucket]
+                : ">" + LATENCY_BUCKETS[LATENCY_BUCKETS.length - 1];
+    }
+
+    private static final class MethodMetrics {
+        private long calls = 0;
+        private long errors = 0;
+        private long totalNanos = 0;
+        private long maxNanos = 0;
+        private long bytesDownloaded = 0;
+
+        /* The last bucket counts the calls slower than the last bound */
+        private final long[] histogram = new long[LATENCY_BUCKETS.length + 1];
+
+        public void record(final long elapsedNanos, final long bytes, final boolean failed) {
+            calls++;
+            totalNanos += elapsedNanos;
+            maxNanos = Math.max(maxNanos, elapsedNanos);
+            bytesDownloaded += bytes;
+
+            if (failed) {
+                errors++;
+            }
+
+            final long elapsedMillis = toMilliseconds(elapsedNanos);
+            int bucket = 0;
+
+            while (bucket < LATENCY_BUCKETS.length && elapsedMillis >= LATENCY_BUCKETS[bucket]) {
+                bucket++;
+            }
+
+            histogram[bucket]++;
+        }
+
+        public int getPercentileBucket(final double percentile) {
+            final long target = (long) Math.ceil(calls * percentile);
+            long count = 0;
+
+            for (int i = 0; i < histogram.length; i++) {
+                count += histogram[i];
+
+                if (count >= target) {
+                    return i;
+                }
+            }
+
+            return histogram.length - 1;
+        }
+
+        public MethodMetrics copy() {
+            final MethodMetrics copy = new MethodMetrics();
+
+            copy.calls = calls;
+            copy.errors = errors;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.bytesDownloaded = bytesDownloaded;
+            System.arraycopy(histogram, 0, copy.histogram, 0, histogram.length);
+
+            return copy;
+        }
+    }
+
+    /**
+     * The decorator that times the calls to a service
+     */
+    private static final class InstrumentedService
+            implements InvocationHandler {
+        private final ServiceCallMetrics metrics;
+        private final String serviceName;
+        private final Object service;
+
+        public InstrumentedService(final ServiceCallMetrics metrics, final String serviceName, final Object service) {
+            this.metrics = metrics;
+            this.serviceName = serviceName;
+            this.service = service;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(service, args);
+            }
+
+            final long startTime = System.nanoTime();
+            boolean failed = true;
+
+            try {
+                final Object result = method.invoke(service, args);
+                failed = false;
+
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                final long elapsedNanos = System.nanoTime() - startTime;
+
+                metrics.record(
+                        serviceName + "." + method.getName(),
+                        elapsedNanos,
+                        failed ? 0 : getBytesDownloaded(method, args),
+                        failed);
+            }
+        }
+
+        /**
+         * The download methods take the path to download to as their last
+         * argument, the size of that file is the number of bytes downloaded
+         */
+        private static long getBytesDownloaded(final Method method, final Object[] args) {
+            if (!method.getName().startsWith("download") || args == null || args.length == 0) {
+                return 0;
+            }
+
+            final Object downloadTo = args[args.length - 1];
+
+            if (!(downloadTo instanceof String)) {
+                return 0;
+            }
+
+            final File file = new File((String) downloadTo);
+
+            return file.isFile() ? file.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.util.Check;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Records the calls made through the service interfaces (VersionControlService
+ * and WorkspaceService), their results, latencies and the content of the files
+ * downloaded, to an archive that {@link ServiceReplay} serves back offline.
+ * The services are wrapped in a recording decorator when they are created
+ * while a recording is started.
+ */
+public final class ServiceRecorder {
+    private static final Log log = LogFactory.getLog(ServiceRecorder.class);
+
+    private static volatile ServiceRecorder current = null;
+
+    private final File archiveFile;
+    private final File callsFile;
+    private final ZipOutputStream archive;
+    private final DataOutputStream calls;
+    private final Set<String> contentNames = new HashSet<String>();
+    private int callCount = 0;
+    private boolean closed = false;
+
+    private ServiceRecorder(final File archiveFile)
+            throws IOException {
+        this.archiveFile = archiveFile;
+        this.callsFile = File.createTempFile(GitTFConstants.GIT_TF_NAME, ".calls");
+        this.archive = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archiveFile)));
+        this.calls = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(callsFile)));
+
+        calls.writeInt(ServiceArchive.FORMAT_VERSION);
+    }
+
+    /**
+     * Starts recording the calls of the services created from now on
+     *
+     * @param archiveFile the archive to write
+     * @return the recorder
+     * @throws IOException
+     */
+    public static ServiceRecorder start(final File archiveFile)
+            throws IOException {
+        Check.notNull(archiveFile, "archiveFile");
+
+        final ServiceRecorder recorder = new ServiceRecorder(archiveFile);
+        current = recorder;
+
+        return recorder;
+    }
+
+    /**
+     * Wraps the service specified in a decorator that records its calls, if a
+     * recording is started
+     *
+     * @param serviceInterface the service interface
+     * @param service          the service to record
+     * @return the decorated service, or the service itself if no recording is
+     * started
+     */
+    public static <T> T record(final Class<T> serviceInterface, final T service) {
+        Check.notNull(serviceInterface, "serviceInterface");
+        Check.notNull(service, "service");
+
+        final ServiceRecorder recorder = current;
+
+        if (recorder == null) {
+            return service;
+        }
+
+        return serviceInterface.cast(Proxy.newProxyInstance(
+                serviceInterface.getClassLoader(),
+                new Class<?>[]
+                        {
+                                serviceInterface
+                        },
+                new RecordedService(recorder, serviceInterface.getSimpleName(), service)));
+    }
+
+    public File getArchiveFile() {
+        return archiveFile;
+    }
+
+    /**
+     * Stops recording and writes the archive
+     *
+     * @throws IOException
+     */
+    public void stop()
+            throws IOException {
+        if (current == this) {
+            current = null;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+
+            try {
+                /* End of the calls */
+                calls.writeBoolean(false);
+                calls.close();
+
+                archive.putNextEntry(new ZipEntry(ServiceArchive.CALLS_ENTRY));
+                copy(callsFile, archive);
+                archive.closeEntry();
+            } finally {
+                archive.close();
+                callsFile.delete();
+            }
+        }
+
+        log.info("Recorded " + callCount + " service calls to " + archiveFile.getAbsolutePath());
+    }
+
+    private void record(
+            final String serviceName,
+            final Method method,
+            final Object[] args,
+            final long elapsedNanos,
+            final Object result,
+            final Throwable exception)
+            throws Exception {
+        String contentName = "";
+        byte[] content = null;
+
+        /* Hash and read the downloaded content before taking the lock */
+        if (exception == null && ServiceArchive.isDownload(method)) {
+            final File downloaded = new File((String) args[args.length - 1]);
+
+            if (downloaded.isFile()) {
+                final ByteArrayOutputStream contentBuffer = new ByteArrayOutputStream();
+
+                contentName = readContent(downloaded, contentBuffer);
+                content = contentBuffer.toByteArray();
+            }
+        }
+
+        /* Encode the whole call first so that a value that cannot be written does not corrupt the archive */
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final DataOutputStream call = new DataOutputStream(buffer);
+
+        ServiceArchive.writeString(call, serviceName);
+        ServiceArchive.writeString(call, method.getName());
+        ServiceArchive.writeString(call, ServiceArchive.getArgumentKey(method, args));
+        call.writeLong(elapsedNanos);
+        call.writeBoolean(exception != null);
+
+        if (exception != null) {
+            ServiceArchive.writeString(call, exception.getClass().getName());
+            ServiceArchive.writeString(call, exception.getMessage() != null ? exception.getMessage() : "");
+        } else {
+            /* The value is length prefixed so that the replay can decode it again for every use */
+            final ByteArrayOutputStream value = new ByteArrayOutputStream();
+            ServiceArchive.writeValue(new DataOutputStream(value), result);
+
+            call.writeInt(value.size());
+            value.writeTo(call);
+            ServiceArchive.writeString(call, contentName);
+        }
+
+        call.flush();
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            /* Files with the same content share an entry */
+            if (content != null && contentNames.add(contentName)) {
+                archive.putNextEntry(new ZipEntry(contentName));
+                archive.write(content);
+                archive.closeEntry();
+            }
+
+            calls.writeBoolean(true);
+            buffer.writeTo(calls);
+
+            callCount++;
+        }
+    }
+
+    /**
+     * Reads the content of the file to the output specified
+     *
+     * @return the name of the archive entry of the content
+     */
+    private static String readContent(final File file, final OutputStream output)
+            throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        final byte[] buffer = new byte[8192];
+
+        final InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                digest.update(buffer, 0, count);
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+
+        final StringBuilder name = new StringBuilder(ServiceArchive.CONTENT_ENTRY_PREFIX);
+        for (final byte b : digest.digest()) {
+            name.append(String.format("%02x", b & 0xff));
+        }
+
+        return name.toString();
+    }
+
+    private static void copy(final File file, final OutputStream output)
+            throws IOException {
+        final byte[] buffer = new byte[8192];
+
+        final InputStream input = new FileInputStream(file);
+        try {
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * The decorator that records the calls to a service
+     */
+    private static final class RecordedService
+            implements InvocationHandler {
+        private final ServiceRecorder recorder;
+        private final String serviceName;
+        private final Object service;
+
+        public RecordedService(final ServiceRecorder recorder, final String serviceName, final Object service) {
+            this.recorder = recorder;
+            this.serviceName = serviceName;
+            this.service = service;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(service, args);
+            }
+
+            final long startTime = System.nanoTime();
+            Object result = null;
+            Throwable exception = null;
+
+            try {
+                result = method.invoke(service, args);
+
+                return result;
+            } catch (InvocationTargetException e) {
+                exception = e.getCause();
+
+                throw exception;
+            } finally {
+                try {
+                    recorder.record(serviceName, method, args, System.nanoTime() - startTime, result, exception);
+                } catch (Exception e) {
+                    log.warn("Could not record the call to " + serviceName + "." + method.getName(), e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.WorkspaceOperationErrorListener;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Serves the calls recorded by {@link ServiceRecorder} back, so that clone,
+ * fetch and the other tasks can be run and profiled offline against the
+ * responses of a real server. A call is answered with the next recorded call
+ * of the same method and arguments, or with the next recorded call of the
+ * same method if the arguments differ (e.g. local paths of a temporary
+ * workspace). The recorded latencies are replayed scaled by the factor
+ * specified.
+ */
+public final class ServiceReplay {
+    private final File archiveFile;
+    private final ZipFile archive;
+    private final double latencyScale;
+
+    private final Map<String, CallQueue> callsByArguments = new HashMap<String, CallQueue>();
+    private final Map<String, CallQueue> callsByMethod = new HashMap<String, CallQueue>();
+
+    private final AtomicLong callCount = new AtomicLong();
+    private final AtomicLong missedCallCount = new AtomicLong();
+    private final AtomicLong downloadCount = new AtomicLong();
+    private final AtomicLong bytesDownloaded = new AtomicLong();
+
+    private ServiceReplay(final File archiveFile, final double latencyScale)
+            throws IOException {
+        this.archiveFile = archiveFile;
+        this.archive = new ZipFile(archiveFile);
+        this.latencyScale = latencyScale;
+
+        load();
+    }
+
+    /**
+     * Opens an archive written by {@link ServiceRecorder}
+     *
+     * @param archiveFile  the archive
+     * @param latencyScale the factor the recorded latencies are multiplied by,
+     *                     0 to answer the calls immediately
+     * @return
+     * @throws IOException
+     */
+    public static ServiceReplay open(final File archiveFile, final double latencyScale)
+            throws IOException {
+        Check.notNull(archiveFile, "archiveFile");
+        Check.isTrue(latencyScale >= 0, "latencyScale >= 0");
+
+        return new ServiceReplay(archiveFile, latencyScale);
+    }
+
+    /**
+     * Gets a service that answers the calls with the recorded ones
+     *
+     * @param serviceInterface the service interface that was recorded
+     * @return
+     */
+    public <T> T getService(final Class<T> serviceInterface) {
+        Check.notNull(serviceInterface, "serviceInterface");
+
+        return serviceInterface.cast(Proxy.newProxyInstance(
+                serviceInterface.getClassLoader(),
+                new Class<?>[]
+                        {
+                                serviceInterface
+                        },
+                new ReplayedService(serviceInterface.getSimpleName())));
+    }
+
+    public File getArchiveFile() {
+        return archiveFile;
+    }
+
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Gets the number of calls that did not match any recorded call
+     *
+     * @return
+     */
+    public long getMissedCallCount() {
+        return missedCallCount.get();
+    }
+
+    public long getDownloadCount() {
+        return downloadCount.get();
+    }
+
+    public long getBytesDownloaded() {
+        return bytesDownloaded.get();
+    }
+
+    public void resetCounters() {
+        callCount.set(0);
+        missedCallCount.set(0);
+        downloadCount.set(0);
+        bytesDownloaded.set(0);
+    }
+
+    public void close()
+            throws IOException {
+        archive.close();
+    }
+
+    private void load()
+            throws IOException {
+        final ZipEntry callsEntry = archive.getEntry(ServiceArchive.CALLS_ENTRY);
+
+        if (callsEntry == null) {
+            throw new IOException("Not a service archive: " + archiveFile.getAbsolutePath());
+        }
+
+        final DataInputStream input =
+                new DataInputStream(new BufferedInputStream(archive.getInputStream(callsEntry)));
+        try {
+            final int version = input.readInt();
+
+            if (version != ServiceArchive.FORMAT_VERSION) {
+                throw new IOException("Unsupported service archive version " + version);
+            }
+
+            while (input.readBoolean()) {
+                final RecordedCall call = new RecordedCall();
+
+                final String serviceName = ServiceArchive.readString(input);
+                final String methodName = ServiceArchive.readString(input);
+                final String argumentKey = ServiceArchive.readString(input);
+
+                call.elapsedNanos = input.readLong();
+                call.failed = input.readBoolean();
+
+                if (call.failed) {
+                    call.exceptionClass = ServiceArchive.readString(input);
+                    call.exceptionMessage = ServiceArchive.readString(input);
+                } else {
+                    call.value = new byte[input.readInt()];
+                    input.readFully(call.value);
+                    call.contentName = ServiceArchive.readString(input);
+                }
+
+                add(callsByArguments, getCallKey(serviceName, methodName, argumentKey), call);
+                add(callsByMethod, getCallKey(serviceName, methodName, null), call);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    private Object replay(final String serviceName, final Method method, final Object[] args)
+            throws Throwable {
+        callCount.incrementAndGet();
+
+        final RecordedCall call = next(serviceName, method.getName(), ServiceArchive.getArgumentKey(method, args));
+
+        if (call == null) {
+            missedCallCount.incrementAndGet();
+
+            if (method.getReturnType() == WorkspaceOperationErrorListener.class) {
+                return WorkspaceOperationErrorListener.EMPTY;
+            }
+
+            throw new IllegalStateException("No recorded call of " + serviceName + "." + method.getName());
+        }
+
+        sleep(call.elapsedNanos);
+
+        if (call.failed) {
+            throw createException(call, method);
+        }
+
+        if (call.contentName.length() > 0 && ServiceArchive.isDownload(method)) {
+            downloadCount.incrementAndGet();
+            bytesDownloaded.addAndGet(extractContent(call.contentName, (String) args[args.length - 1]));
+        }
+
+        final Object value = ServiceArchive.readValue(new DataInputStream(new ByteArrayInputStream(call.value)));
+
+        if (value == null) {
+            if (method.getReturnType() == WorkspaceOperationErrorListener.class) {
+                return WorkspaceOperationErrorListener.EMPTY;
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            } else if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Takes the next recorded call with the same arguments, a call repeated
+     * more often than recorded gets the last recorded answer again
+     */
+    private synchronized RecordedCall next(final String serviceName, final String methodName, final String argumentKey) {
+        final CallQueue sameArguments = callsByArguments.get(getCallKey(serviceName, methodName, argumentKey));
+
+        if (sameArguments != null) {
+            return sameArguments.next();
+        }
+
+        final CallQueue sameMethod = callsByMethod.get(getCallKey(serviceName, methodName, null));
+
+        return sameMethod != null ? sameMethod.next() : null;
+    }
+
+    private long extractContent(final String contentName, final String downloadTo)
+            throws IOException {
+        final ZipEntry entry = archive.getEntry(contentName);
+
+        if (entry == null) {
+            throw new IOException("The service archive does not contain " + contentName);
+        }
+
+        final byte[] buffer = new byte[8192];
+        long length = 0;
+
+        final InputStream input = archive.getInputStream(entry);
+        try {
+            final OutputStream output = new FileOutputStream(downloadTo);
+            try {
+                int count;
+                while ((count = input.read(buffer)) >= 0) {
+                    output.write(buffer, 0, count);
+                    length += count;
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+
+        return length;
+    }
+
+    private void sleep(final long recordedNanos) {
+        final long nanos = (long) (recordedNanos * latencyScale);
+
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(nanos / 1000000L, (int) (nanos % 1000000L));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Throwable createException(final RecordedCall call, final Method method) {
+        try {
+            final Class<?> exceptionClass = Class.forName(call.exceptionClass);
+            final Throwable exception =
+                    (Throwable) exceptionClass.getConstructor(String.class).newInstance(call.exceptionMessage);
+
+            if (exception instanceof RuntimeException || exception instanceof Error) {
+                return exception;
+            }
+
+            for (final Class<?> declared : method.getExceptionTypes()) {
+                if (declared.isInstance(exception)) {
+                    return exception;
+                }
+            }
+        } catch (final Exception e) {
+        }
+
+        return new RuntimeException(call.exceptionClass + ": " + call.exceptionMessage);
+    }
+
+    private static String getCallKey(final String serviceName, final String methodName, final String argumentKey) {
+        return argumentKey != null ? serviceName + "." + methodName + "(" + argumentKey + ")" : serviceName + "." + methodName;
+    }
+
+    private static void add(final Map<String, CallQueue> queues, final String key, final RecordedCall call) {
+        CallQueue queue = queues.get(key);
+
+        if (queue == null) {
+            queue = new CallQueue();
+            queues.put(key, queue);
+        }
+
+        queue.calls.add(call);
+    }
+
+    private static final class RecordedCall {
+        private long elapsedNanos;
+        private boolean failed;
+        private String exceptionClass;
+        private String exceptionMessage;
+        private byte[] value;
+        private String contentName;
+        private boolean used;
+    }
+
+    /**
+     * The recorded calls of a method, or of a method with the same arguments,
+     * in the order they were made
+     */
+    private static final class CallQueue {
+        private final List<RecordedCall> calls = new ArrayList<RecordedCall>();
+        private int next = 0;
+
+        public RecordedCall next() {
+            while (next < calls.size() && calls.get(next).used) {
+                next++;
+            }
+
+            if (next < calls.size()) {
+                final RecordedCall call = calls.get(next++);
+                call.used = true;
+
+                return call;
+            }
+
+            return calls.isEmpty() ? null : calls.get(calls.size() - 1);
+        }
+    }
+
+    /**
+     * The service that answers the calls with the recorded ones
+     */
+    private final class ReplayedService
+            implements InvocationHandler {
+        private final String serviceName;
+
+        public ReplayedService(final String serviceName) {
+            this.serviceName = serviceName;
+        }
+
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                } else if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else {
+                    return "Replay of " + serviceName + " from " + archiveFile.getName();
+                }
+            }
+
+            return replay(serviceName, method, args);
+        }
+    }
+}
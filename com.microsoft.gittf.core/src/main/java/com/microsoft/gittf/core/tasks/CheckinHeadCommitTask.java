@@ -35,6 +35,7 @@ import com.microsoft.gittf.core.identity.TfsUserMap;
 import com.microsoft.gittf.core.identity.UserMap;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
 import com.microsoft.gittf.core.tasks.framework.*;
+import com.microsoft.gittf.core.tasks.pendDiff.CaseSensitivityValidator;
 import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
 import com.microsoft.gittf.core.tasks.pendDiff.RenameMode;
 import com.microsoft.gittf.core.util.*;
@@ -92,6 +93,7 @@ public class CheckinHeadCommitTask
     private boolean keepAuthor = false;
     private String userMapPath = GitTFConstants.GIT_TF_DEFAULT_USER_MAP;
     private CheckinNote checkinNote;
+    private boolean pipeline = false;
 
     /**
      * Constructor
@@ -246,6 +248,18 @@ public class CheckinHeadCommitTask
         this.checkinNote = checkinNote;
     }
 
+    /**
+     * Sets whether the task should analyze and stage the next commit while
+     * the current commit is being checked in. This option is only used in
+     * deep checkin and is ignored in shallow checkin and preview mode. The
+     * default is false.
+     *
+     * @param pipeline
+     */
+    public void setPipeline(final boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor) {
         progressMonitor.beginTask(Messages.formatString("CheckinHeadCommitTask.CheckingInToPathFormat",
@@ -254,6 +268,7 @@ public class CheckinHeadCommitTask
 
         WorkspaceInfo workspaceData = null;
         UserMap userMap = null;
+        PendDifferenceStagingPipeline stagingPipeline = null;
 
         try {
             /* Create the temporary workspace */
@@ -441,6 +456,27 @@ public class CheckinHeadCommitTask
 
             log.debug("Processing commit deltas.");
 
+            /*
+             * Share the case sensitivity validator between the commits so that
+             * only the differences of each commit need to be validated
+             */
+            final CaseSensitivityValidator caseSensitivityValidator = new CaseSensitivityValidator(repository);
+
+            /*
+             * In pipelined deep mode the next commit is analyzed and staged in
+             * the background while the current one is being checked in
+             */
+            if (pipeline && deep && !preview && commitsToCheckin.size() > 1) {
+                log.debug("Starting the checkin staging pipeline.");
+
+                final List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+                for (final CommitDelta commitDelta : commitsToCheckin) {
+                    pendTasks.add(createPendTask(commitDelta, workspace, workingFolder, caseSensitivityValidator));
+                }
+
+                stagingPipeline = new PendDifferenceStagingPipeline(pendTasks, DirectoryUtil.getTempDir(repository));
+            }
+
             /*
              * Loop the list of commit sequence and checkin the difference one
              * by one
@@ -448,12 +484,14 @@ public class CheckinHeadCommitTask
             for (int i = 0; i < commitsToCheckin.size(); i++) {
                 CommitDelta commitDelta = commitsToCheckin.get(i);
 
-                log.debug("Committing delta "
-                        + i
-                        + ": from "
-                        + (commitDelta.getFromCommit() == null ? "initial commit" : commitDelta.getFromCommit().getName())
-                        + " to "
-                        + commitDelta.getToCommit().getName());
+                if (log.isDebugEnabled()) {
+                    log.debug("Committing delta "
+                            + i
+                            + ": from "
+                            + (commitDelta.getFromCommit() == null ? "initial commit" : commitDelta.getFromCommit().getName())
+                            + " to "
+                            + commitDelta.getToCommit().getName());
+                }
 
                 progressMonitor.setDetail(Messages.formatString("CheckinHeadCommitTask.CommitFormat",
                         ObjectIdUtil.abbreviate(repository, commitDelta.getToCommit())));
@@ -468,18 +506,15 @@ public class CheckinHeadCommitTask
                 }
 
                 /* Pend the differences between the two commits */
-                final PendDifferenceTask pendTask =
-                        new PendDifferenceTask(
-                                repository,
-                                commitDelta.getFromCommit(),
-                                commitDelta.getToCommit(),
-                                workspace,
-                                serverPath,
-                                workingFolder);
+                final PendDifferenceTask pendTask;
 
-                pendTask.setRenameMode(renameMode);
+                if (stagingPipeline != null) {
+                    pendTask = stagingPipeline.next(progressMonitor);
+                } else {
+                    pendTask = createPendTask(commitDelta, workspace, workingFolder, caseSensitivityValidator);
 
-                pendTask.validate();
+                    pendTask.validate();
+                }
 
                 /* If this is preview mode, display the commit details HEADER */
                 if (preview) {
@@ -624,12 +659,36 @@ public class CheckinHeadCommitTask
         } catch (Exception e) {
             return new TaskStatus(TaskStatus.ERROR, e);
         } finally {
+            if (stagingPipeline != null) {
+                stagingPipeline.close();
+            }
+
             if (workspaceData != null) {
                 cleanupWorkspace(new NullTaskProgressMonitor(), workspaceData);
             }
         }
     }
 
+    private PendDifferenceTask createPendTask(
+            final CommitDelta commitDelta,
+            final WorkspaceService workspace,
+            final File workingFolder,
+            final CaseSensitivityValidator caseSensitivityValidator) {
+        final PendDifferenceTask pendTask =
+                new PendDifferenceTask(
+                        repository,
+                        commitDelta.getFromCommit(),
+                        commitDelta.getToCommit(),
+                        workspace,
+                        serverPath,
+                        workingFolder);
+
+        pendTask.setRenameMode(renameMode);
+        pendTask.setCaseSensitivityValidator(caseSensitivityValidator);
+
+        return pendTask;
+    }
+
     /**
      * Builds the commit comment to use when checking in
      *
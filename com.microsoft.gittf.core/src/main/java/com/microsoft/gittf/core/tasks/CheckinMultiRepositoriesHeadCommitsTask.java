@@ -35,6 +35,7 @@ import com.microsoft.gittf.core.identity.TfsUserMap;
 import com.microsoft.gittf.core.identity.UserMap;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
 import com.microsoft.gittf.core.tasks.framework.*;
+import com.microsoft.gittf.core.tasks.pendDiff.CaseSensitivityValidator;
 import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
 import com.microsoft.gittf.core.tasks.pendDiff.RenameMode;
 import com.microsoft.gittf.core.util.*;
@@ -57,6 +58,8 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import java.io.File;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -82,6 +85,7 @@ public class CheckinMultiRepositoriesHeadCommitsTask
     private boolean overrideGatedCheckin;
     private boolean autoSquashMultipleParents;
     private boolean preview = false;
+    private boolean pipeline = false;
     private String comment = null;
     private String buildDefinition = null;
     private boolean includeMetaDataInComment = false;
@@ -187,6 +191,18 @@ public class CheckinMultiRepositoriesHeadCommitsTask
         this.preview = preview;
     }
 
+    /**
+     * Sets whether the task should analyze and stage the next commits of the
+     * repositories while the current commit is being checked in. This option
+     * is only used in deep checkin and is ignored in shallow checkin and
+     * preview mode. The default is false.
+     *
+     * @param pipeline
+     */
+    public void setPipeline(final boolean pipeline) {
+        this.pipeline = pipeline;
+    }
+
     /**
      * Sets the checkin comment that should be used when creating the changeset
      * in TFS
@@ -260,6 +276,9 @@ public class CheckinMultiRepositoriesHeadCommitsTask
 
         WorkspaceInfo workspaceData = null;
         UserMap userMap = null;
+        ExecutorService repositoryExecutor = null;
+        final List<List<PendDifferenceTask>> repositoryPendTasks = new ArrayList<>();
+        final List<PendDifferenceStagingPipeline> stagingPipelines = new ArrayList<>();
 
         try {
             /* Create the temporary workspace */
@@ -277,18 +296,17 @@ public class CheckinMultiRepositoriesHeadCommitsTask
             final List<WorkItemCheckinInfo[]> workItemArrays = new ArrayList<>();
             final Map<File, List<CommitDelta>> gitDirToCommitsToCheckIn = new HashMap<>();
             final Map<File, TaskStatus> gitDirToUserMapErrorStatus = new HashMap<>();
+            final List<RepositoryCheckin> repositoryCheckins = new ArrayList<>();
             int expectedChangesetNumber = -1;
             boolean anyThingCheckedIn = false;
 
-            for (final Repository repository : repositories) {
-                final File workingFolder = repoFolderToWorkingFolder.get(repository.getDirectory());
-                final GitTFConfiguration config = GitTFConfiguration.loadFrom(repository);
-                final String serverPath = config.getServerPath();
-                log.debug("Workspace " + workspace.getName() + " created for the folder " + workingFolder.getAbsolutePath());
+            repositoryExecutor = createRepositoryExecutor();
 
+            /* In deep mode we should always lock the workspace */
+            if (lock && deep) {
+                for (final Repository repository : repositories) {
+                    final String serverPath = GitTFConfiguration.loadFrom(repository).getServerPath();
 
-                /* In deep mode we should always lock the workspace */
-                if (lock && deep) {
                     log.debug("Locking TFS resource");
                     final TaskStatus lockStatus =
                             new TaskExecutor(progressMonitor.newSubTask(1)).execute(new LockTask(workspace, serverPath));
@@ -297,37 +315,56 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                         return lockStatus;
                     }
                 }
-                /*
-                 * if we are not locking we should attempt to detect if other users
-                 * sneaked in a checkin while this checkin is being processed
-                 */
-                else if (!deep) {
-                    log.debug("No lock requested. Checking the latest change set.");
+            }
+            /*
+             * if we are not locking we should attempt to detect if other users
+             * sneaked in a checkin while this checkin is being processed. The
+             * latest changeset on the server is the same for all the
+             * repositories, so it is queried once.
+             */
+            else if (!deep) {
+                log.debug("No lock requested. Checking the latest change set.");
+
+                Changeset[] latestChangesets =
+                        versionControlClient.queryHistory(
+                                ServerPath.ROOT,
+                                LatestVersionSpec.INSTANCE,
+                                0,
+                                RecursionType.FULL,
+                                null,
+                                null,
+                                null,
+                                1,
+                                false,
+                                false,
+                                false,
+                                false);
+
+                Check.notNull(latestChangesets, "latestChangesets");
+                expectedChangesetNumber = latestChangesets[0].getChangesetID() + 1;
+
+                log.debug("Expected change set number = " + expectedChangesetNumber);
+            }
 
-                    Changeset[] latestChangesets =
-                            versionControlClient.queryHistory(
-                                    ServerPath.ROOT,
-                                    LatestVersionSpec.INSTANCE,
-                                    0,
-                                    RecursionType.FULL,
-                                    null,
-                                    null,
-                                    null,
-                                    1,
-                                    false,
-                                    false,
-                                    false,
-                                    false);
-
-                    Check.notNull(latestChangesets, "latestChangesets");
-                    int currentChangesetNumber = latestChangesets[0].getChangesetID();
-
-                    if (expectedChangesetNumber <= currentChangesetNumber) {
-                        expectedChangesetNumber = latestChangesets[0].getChangesetID() + 1;
-                    }
+            /*
+             * Query the latest changeset of every mapped server path once,
+             * concurrently, after the paths have been locked
+             */
+            final Map<String, Future<Integer>> serverPathToLatestChangesetID = new HashMap<>();
+            for (final Repository repository : repositories) {
+                final String serverPath = GitTFConfiguration.loadFrom(repository).getServerPath();
 
-                    log.debug("Expected change set number = " + expectedChangesetNumber);
+                if (!serverPathToLatestChangesetID.containsKey(serverPath)) {
+                    serverPathToLatestChangesetID.put(serverPath, repositoryExecutor.submit(
+                            () -> ChangesetCommitMapUtil.getLatestChangesetID(versionControlClient, serverPath)));
                 }
+            }
+
+            for (final Repository repository : repositories) {
+                final File workingFolder = repoFolderToWorkingFolder.get(repository.getDirectory());
+                final GitTFConfiguration config = GitTFConfiguration.loadFrom(repository);
+                final String serverPath = config.getServerPath();
+                log.debug("Workspace " + workspace.getName() + " created for the folder " + workingFolder.getAbsolutePath());
 
                 log.debug("Obtaining the HEAD commit in the master barnch.");
                 /* Get the HEAD commit id */
@@ -342,7 +379,9 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                 final ChangesetCommitDetails lastBridgedChangeset =
                         ChangesetCommitMapUtil.getLastBridgedChangeset(commitMap);
                 final ChangesetCommitDetails latestChangeset =
-                        ChangesetCommitMapUtil.getLatestChangeset(commitMap, versionControlClient, serverPath);
+                        ChangesetCommitMapUtil.getLatestChangeset(
+                                commitMap,
+                                getRepositoryResult(serverPathToLatestChangesetID.get(serverPath)));
 
                 /*
                  * This is a repository that has been configured and never checked
@@ -397,17 +436,44 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                     return new TaskStatus(TaskStatus.OK, CheckinMultiRepositoriesHeadCommitsTask.ALREADY_UP_TO_DATE);
                 }
 
-                log.debug("Examining the repository");
-                progressMonitor.setDetail(Messages.getString("CheckinHeadCommitTask.ExaminingRepository"));
+                repositoryCheckins.add(new RepositoryCheckin(
+                        repository,
+                        workingFolder,
+                        serverPath,
+                        latestChangeset != null ? latestChangeset.getCommitID() : null,
+                        headCommitID));
+            }
 
-                log.debug("Building the list of commit sequence we need to checkin");
+            /*
+             * The git side work of the repositories runs concurrently, only
+             * the calls to the shared workspace are serialized
+             */
+            log.debug("Examining the repositories");
+            progressMonitor.setDetail(Messages.getString("CheckinHeadCommitTask.ExaminingRepository"));
+
+            log.debug("Building the list of commit sequence we need to checkin");
+
+            /* Build the list of commit sequence we need to checkin */
+            final List<Future<List<CommitDelta>>> commitListFutures = new ArrayList<>();
+            for (final RepositoryCheckin repositoryCheckin : repositoryCheckins) {
+                commitListFutures.add(repositoryExecutor.submit(() -> getCommitsToCheckin(
+                        repositoryCheckin.repository,
+                        repositoryCheckin.sourceCommitID,
+                        repositoryCheckin.headCommitID)));
+            }
+
+            for (int r = 0; r < repositoryCheckins.size(); r++) {
+                final RepositoryCheckin repositoryCheckin = repositoryCheckins.get(r);
+
+                repositoryCheckin.commitsToCheckin = getRepositoryResult(commitListFutures.get(r));
+                gitDirToCommitsToCheckIn.put(repositoryCheckin.repository.getDirectory(), repositoryCheckin.commitsToCheckin);
+            }
 
-                /* Build the list of commit sequence we need to checkin */
-                List<CommitDelta> commitsToCheckin =
-                        getCommitsToCheckin(repository, latestChangeset != null ? latestChangeset.getCommitID() : null, headCommitID);
-                gitDirToCommitsToCheckIn.put(repository.getDirectory(), commitsToCheckin);
+            progressMonitor.setDetail(null);
 
-                progressMonitor.setDetail(null);
+            for (final RepositoryCheckin repositoryCheckin : repositoryCheckins) {
+                final Repository repository = repositoryCheckin.repository;
+                final List<CommitDelta> commitsToCheckin = repositoryCheckin.commitsToCheckin;
 
                 log.debug("Number of commits to checkin: " + commitsToCheckin.size());
 
@@ -452,6 +518,70 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                     progressMonitor.setDetail(null);
                 }
 
+                gitDirToUserMapErrorStatus.put(repository.getDirectory(), userMapErrorStatus);
+
+                /*
+                 * Share the case sensitivity validator between the commits so that
+                 * only the differences of each commit need to be validated
+                 */
+                final CaseSensitivityValidator caseSensitivityValidator = new CaseSensitivityValidator(repository);
+
+                final List<PendDifferenceTask> pendTasks = new ArrayList<>();
+                for (final CommitDelta commitDelta : commitsToCheckin) {
+                    final PendDifferenceTask pendTask =
+                            new PendDifferenceTask(
+                                    repository,
+                                    commitDelta.getFromCommit(),
+                                    commitDelta.getToCommit(),
+                                    workspace,
+                                    repositoryCheckin.serverPath,
+                                    repositoryCheckin.workingFolder);
+
+                    pendTask.setRenameMode(renameMode);
+                    pendTask.setCaseSensitivityValidator(caseSensitivityValidator);
+
+                    pendTasks.add(pendTask);
+                }
+
+                repositoryPendTasks.add(pendTasks);
+
+                /*
+                 * In pipelined deep mode start analyzing and staging the
+                 * commits of this repository while the other repositories are
+                 * being prepared and pended
+                 */
+                if (pipeline && deep && !preview && commitsToCheckin.size() > 1) {
+                    log.debug("Starting the checkin staging pipeline.");
+
+                    stagingPipelines.add(new PendDifferenceStagingPipeline(
+                            pendTasks,
+                            DirectoryUtil.getTempDir(repository),
+                            repositoryExecutor));
+                } else {
+                    stagingPipelines.add(null);
+                }
+            }
+
+            /*
+             * Analyze the differences of the repositories that are not
+             * pipelined concurrently, only pending them in the shared
+             * workspace and checking in is serialized
+             */
+            final List<List<PendDifferenceTask>> pendTasksToAnalyze = new ArrayList<>();
+            for (int r = 0; r < repositoryCheckins.size(); r++) {
+                if (stagingPipelines.get(r) == null) {
+                    pendTasksToAnalyze.add(repositoryPendTasks.get(r));
+                }
+            }
+
+            analyzeRepositories(pendTasksToAnalyze, repositoryExecutor, progressMonitor.newSubTask(1));
+
+            for (int r = 0; r < repositoryCheckins.size(); r++) {
+                final Repository repository = repositoryCheckins.get(r).repository;
+                final File workingFolder = repositoryCheckins.get(r).workingFolder;
+                final List<CommitDelta> commitsToCheckin = repositoryCheckins.get(r).commitsToCheckin;
+                final PendDifferenceStagingPipeline stagingPipeline = stagingPipelines.get(r);
+
                 log.debug("Processing commit deltas.");
 
                 /*
@@ -481,18 +611,13 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                     }
 
                     /* Pend the differences between the two commits */
-                    final PendDifferenceTask pendTask =
-                            new PendDifferenceTask(
-                                    repository,
-                                    commitDelta.getFromCommit(),
-                                    commitDelta.getToCommit(),
-                                    workspace,
-                                    serverPath,
-                                    workingFolder);
+                    final PendDifferenceTask pendTask;
 
-                    pendTask.setRenameMode(renameMode);
-
-                    pendTask.validate();
+                    if (stagingPipeline != null) {
+                        pendTask = stagingPipeline.next(progressMonitor);
+                    } else {
+                        pendTask = repositoryPendTasks.get(r).get(i);
+                    }
 
                     /* If this is preview mode, display the commit details HEADER */
                     if (preview) {
@@ -558,7 +683,6 @@ public class CheckinMultiRepositoriesHeadCommitsTask
                             comment,
                             isLastCommit));
                 }
-                gitDirToUserMapErrorStatus.put(repository.getDirectory(), userMapErrorStatus);
             }
 
             /*
@@ -651,12 +775,66 @@ public class CheckinMultiRepositoriesHeadCommitsTask
         } catch (Exception e) {
             return new TaskStatus(TaskStatus.ERROR, e);
         } finally {
+            shutdownRepositoryExecutor(repositoryExecutor);
+
+            for (final PendDifferenceStagingPipeline stagingPipeline : stagingPipelines) {
+                if (stagingPipeline != null) {
+                    stagingPipeline.close();
+                }
+            }
+
             if (workspaceData != null) {
                 cleanupWorkspace(new NullTaskProgressMonitor(), workspaceData);
             }
         }
     }
 
+    /**
+     * Analyzes the pend tasks of the repositories concurrently on the
+     * repository pool and waits for all of them. The tasks of a repository are
+     * analyzed in order, on one thread, since they share the case sensitivity
+     * validator of the repository.
+     *
+     * @param repositoryPendTasks the pend tasks of each repository, in checkin
+     *                            order
+     * @param repositoryExecutor  the repository pool
+     * @param progressMonitor     the progress monitor, not used by the calling
+     *                            thread until the analysis is done
+     * @throws Exception if the analysis of a repository failed
+     */
+    static void analyzeRepositories(
+            final List<List<PendDifferenceTask>> repositoryPendTasks,
+            final ExecutorService repositoryExecutor,
+            final TaskProgressMonitor progressMonitor)
+            throws Exception {
+        final ConcurrentTaskProgressMonitor analyzeMonitor = new ConcurrentTaskProgressMonitor(progressMonitor);
+        analyzeMonitor.beginTask(
+                Messages.getString("CheckinHeadCommitTask.ExaminingRepository"),
+                repositoryPendTasks.size(),
+                TaskProgressDisplay.NONE);
+
+        final List<Future<Void>> analysisFutures = new ArrayList<>();
+        for (final List<PendDifferenceTask> pendTasks : repositoryPendTasks) {
+            final TaskProgressMonitor repositoryMonitor = analyzeMonitor.newSubTask(1);
+
+            analysisFutures.add(repositoryExecutor.submit(() -> {
+                for (final PendDifferenceTask pendTask : pendTasks) {
+                    pendTask.analyze(repositoryMonitor);
+                }
+
+                repositoryMonitor.endTask();
+
+                return null;
+            }));
+        }
+
+        for (final Future<Void> analysisFuture : analysisFutures) {
+            getRepositoryResult(analysisFuture);
+        }
+
+        analyzeMonitor.endTask();
+    }
+
     private String indentString(String input) {
         String[] lines = input.split(OutputConstants.NEW_LINE);
 
@@ -857,4 +1035,29 @@ public class CheckinMultiRepositoriesHeadCommitsTask
 
         return workItem;
     }
+
+    /**
+     * The state of a repository that is being checked in
+     */
+    private static final class RepositoryCheckin {
+        private final Repository repository;
+        private final File workingFolder;
+        private final String serverPath;
+        private final ObjectId sourceCommitID;
+        private final ObjectId headCommitID;
+        private List<CommitDelta> commitsToCheckin;
+
+        private RepositoryCheckin(
+                final Repository repository,
+                final File workingFolder,
+                final String serverPath,
+                final ObjectId sourceCommitID,
+                final ObjectId headCommitID) {
+            this.repository = repository;
+            this.workingFolder = workingFolder;
+            this.serverPath = serverPath;
+            this.sourceCommitID = sourceCommitID;
+            this.headCommitID = headCommitID;
+        }
+    }
 }
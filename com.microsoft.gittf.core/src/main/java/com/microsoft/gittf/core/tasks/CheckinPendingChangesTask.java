@@ -57,7 +57,9 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CheckinPendingChangesTask
         extends Task {
@@ -106,6 +108,23 @@ public class CheckinPendingChangesTask
         return changesetID;
     }
 
+    @Override
+    public Map<String, Object> getTraceArguments() {
+        final Map<String, Object> arguments = new LinkedHashMap<String, Object>();
+
+        if (commit != null) {
+            arguments.put("commit", commit.getName());
+        }
+
+        if (changes != null) {
+            arguments.put("changes", changes.length);
+        }
+
+        arguments.put("changeset", changesetID);
+
+        return arguments;
+    }
+
     public void setWorkItemCheckinInfo(WorkItemCheckinInfo[] workItems) {
         this.workItems = workItems;
     }
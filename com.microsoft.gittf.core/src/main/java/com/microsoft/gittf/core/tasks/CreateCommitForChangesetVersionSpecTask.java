@@ -107,6 +107,19 @@ public class CreateCommitForChangesetVersionSpecTask
         return commitTreeID;
     }
 
+    @Override
+    public Map<String, Object> getTraceArguments() {
+        final Map<String, Object> arguments = super.getTraceArguments();
+
+        arguments.put("changeset", changesetID);
+
+        if (committedItems != null) {
+            arguments.put("items", committedItems.length);
+        }
+
+        return arguments;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor) {
         progressMonitor.beginTask(Messages.formatString("CreateCommitForChangesetVersionSpecTask.CreatingCommitFormat",
@@ -284,6 +297,8 @@ public class CreateCommitForChangesetVersionSpecTask
                 }
 
                 if (tempFile.exists()) {
+                    progressMonitor.downloaded(tempFile.length());
+
                     tempInputStream = new FileInputStream(tempFile);
                     blobID = repositoryInserter.insert(OBJ_BLOB, tempFile.length(), tempInputStream);
                 } else {
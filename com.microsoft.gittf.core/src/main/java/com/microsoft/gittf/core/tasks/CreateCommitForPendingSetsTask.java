@@ -32,6 +32,7 @@ import com.microsoft.gittf.core.tasks.framework.TaskProgressDisplay;
 import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.EnvironmentUtil;
 import com.microsoft.gittf.core.util.StashUtil;
 import com.microsoft.gittf.core.util.tree.CommitTreeEntry;
 import com.microsoft.gittf.core.util.tree.CommitTreePath;
@@ -60,6 +61,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
 
@@ -67,6 +70,10 @@ public abstract class CreateCommitForPendingSetsTask
         extends CreateCommitTask {
     private static final Log log = LogFactory.getLog(CreateCommitForPendingSetsTask.class);
 
+    private static final String DOWNLOAD_THREADS_NAME = "GITTF_DOWNLOAD_THREADS";
+    private static final String DOWNLOAD_THREADS_NAME_ALTERNATE = "gittf_download_threads";
+    private static final int DEFAULT_DOWNLOAD_THREADS = 4;
+
     private boolean createStashCommit = false;
 
     public CreateCommitForPendingSetsTask(
@@ -105,6 +112,7 @@ public abstract class CreateCommitForPendingSetsTask
         ObjectInserter repositoryInserter = null;
         TreeWalk treeWalker = null;
         RevWalk walk = null;
+        ExecutorService downloadExecutor = null;
 
         try {
             validateTempDirectory();
@@ -218,7 +226,38 @@ public abstract class CreateCommitForPendingSetsTask
             final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> pendingSetTreeHeirarchy =
                     new TreeMap<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>>(new CommitTreePathComparator());
 
-            treeWalker.setRecursive(true);
+            /*
+             * Only the folders that lead to a pending change, a renamed folder
+             * or a deleted folder have to be rebuilt. Everything under a
+             * renamed folder and under its new name is rebuilt as well so that
+             * moved items merge with the content that is already there. All
+             * other subtrees of the base tree are reused as they are.
+             */
+            final FolderTrie folders = new FolderTrie();
+
+            for (String folder : foldersRenamedInPendingSet) {
+                folders.add(folder).renamed = true;
+                folders.add(folder).rebuilt = true;
+                folders.add(pendingSetMap.get(folder).getServerItem()).rebuilt = true;
+            }
+
+            for (String folder : foldersDeletedInPendingSet) {
+                folders.add(folder).deleted = true;
+            }
+
+            for (String item : pendingSetItemPath) {
+                folders.add(ServerPath.getParent(item));
+                folders.add(ServerPath.getParent(pendingSetMap.get(item).getServerItem()));
+            }
+
+            /*
+             * The content of the pending changes is downloaded once all the
+             * blobs that need it are known, so that the downloads can run
+             * concurrently.
+             */
+            final List<PendingBlob> pendingBlobs = new ArrayList<PendingBlob>();
+
+            treeWalker.setRecursive(false);
             treeWalker.addTree(baseCommitTree);
 
             /*
@@ -231,33 +270,47 @@ public abstract class CreateCommitForPendingSetsTask
             while (treeWalker.next()) {
                 String itemServerPath = ServerPath.combine(serverPathToUse, treeWalker.getPathString());
 
+                if (treeWalker.isSubtree()) {
+                    FolderLookup lookup = folders.lookup(itemServerPath);
+
+                    if (lookup.found || lookup.rebuilt) {
+                        treeWalker.enterSubtree();
+                    } else {
+                        /* nothing under this folder changed, reuse its tree */
+                        if (createStashCommit) {
+                            addTree(baseTreeHeirarchy, itemServerPath, treeWalker.getObjectId(0));
+                        }
+
+                        if (!lookup.deletedParent) {
+                            addTree(pendingSetTreeHeirarchy, itemServerPath, treeWalker.getObjectId(0));
+                        }
+                    }
+
+                    continue;
+                }
+
                 /* if the item has a pending change apply the pending change */
                 if (pendingSetItemPath.contains(itemServerPath)) {
                     progressMonitor.displayVerbose(itemServerPath);
 
                     if (createStashCommit) {
-                        createBlob(
-                                repositoryInserter,
-                                baseTreeHeirarchy,
-                                pendingSetMap.get(itemServerPath),
-                                true,
-                                progressMonitor);
+                        addPendingBlob(pendingBlobs, baseTreeHeirarchy, pendingSetMap.get(itemServerPath), true);
                     }
 
                     if (!itemsDeletedInPendingSet.contains(itemServerPath)
                             && !itemsRenamedInPendingSet.contains(itemServerPath)) {
-                        createBlob(
-                                repositoryInserter,
-                                pendingSetTreeHeirarchy,
-                                pendingSetMap.get(itemServerPath),
-                                false,
-                                progressMonitor);
+                        addPendingBlob(pendingBlobs, pendingSetTreeHeirarchy, pendingSetMap.get(itemServerPath), false);
                     }
 
                     progressMonitor.worked(1);
+
+                    continue;
                 }
+
+                FolderLookup lookup = folders.lookup(itemServerPath);
+
                 /* if the item parent is renamed handle this case */
-                else if (isParentInCollection(foldersRenamedInPendingSet, itemServerPath)) {
+                if (lookup.renamedParent != null) {
                     if (createStashCommit) {
                         createBlob(
                                 repositoryInserter,
@@ -269,7 +322,7 @@ public abstract class CreateCommitForPendingSetsTask
                     }
 
                     String destinationServerItem =
-                            updateServerItemWithParentRename(foldersRenamedInPendingSet, itemServerPath, pendingSetMap);
+                            updateServerItemWithParentRename(lookup.renamedParent, itemServerPath, pendingSetMap);
                     if (ServerPath.isChild(serverPathToUse, destinationServerItem)) {
                         createBlob(
                                 repositoryInserter,
@@ -295,7 +348,7 @@ public abstract class CreateCommitForPendingSetsTask
                                 progressMonitor);
                     }
 
-                    if (!isParentInCollection(foldersDeletedInPendingSet, itemServerPath)) {
+                    if (!lookup.deletedParent) {
                         createBlob(
                                 repositoryInserter,
                                 pendingSetTreeHeirarchy,
@@ -322,12 +375,7 @@ public abstract class CreateCommitForPendingSetsTask
 
                 progressMonitor.displayVerbose(newItem);
 
-                createBlob(
-                        repositoryInserter,
-                        pendingSetTreeHeirarchy,
-                        pendingSetMap.get(newItem),
-                        false,
-                        progressMonitor);
+                addPendingBlob(pendingBlobs, pendingSetTreeHeirarchy, pendingSetMap.get(newItem), false);
 
                 progressMonitor.worked(1);
             }
@@ -343,11 +391,35 @@ public abstract class CreateCommitForPendingSetsTask
 
                 progressMonitor.displayVerbose(renamedItem);
 
-                createBlob(repositoryInserter, pendingSetTreeHeirarchy, change, false, progressMonitor);
+                addPendingBlob(pendingBlobs, pendingSetTreeHeirarchy, change, false);
 
                 progressMonitor.worked(1);
             }
 
+            /*
+             * Download the content of the pending changes with a bounded pool
+             * and insert each blob as soon as its download has finished. At
+             * most twice as many downloads as there are threads are started
+             * ahead of the insertion, so that only a few downloaded files wait
+             * in the temp directory at any time.
+             */
+            if (pendingBlobs.size() > 0) {
+                final int downloadThreads = Math.max(1, Math.min(pendingBlobs.size(), getDownloadThreadCount()));
+                final int maxDownloadsInFlight = 2 * downloadThreads;
+                int downloadsStarted = 0;
+
+                downloadExecutor = createDownloadExecutor(downloadThreads);
+
+                for (int i = 0; i < pendingBlobs.size(); i++) {
+                    while (downloadsStarted < pendingBlobs.size() && downloadsStarted < i + maxDownloadsInFlight) {
+                        PendingBlob pendingBlob = pendingBlobs.get(downloadsStarted++);
+                        pendingBlob.download = downloadExecutor.submit(createDownload(pendingBlob));
+                    }
+
+                    createBlob(repositoryInserter, pendingBlobs.get(i), progressMonitor);
+                }
+            }
+
             progressMonitor.displayVerbose("");
 
             /* Phase two: add child trees to their parents. */
@@ -383,6 +455,18 @@ public abstract class CreateCommitForPendingSetsTask
             log.error(e);
             return new TaskStatus(TaskStatus.ERROR, e);
         } finally {
+            if (downloadExecutor != null) {
+                downloadExecutor.shutdownNow();
+
+                try {
+                    if (!downloadExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                        log.warn("The download threads did not terminate");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
             FileHelpers.deleteDirectory(tempDir);
 
             if (repositoryInserter != null) {
@@ -400,11 +484,9 @@ public abstract class CreateCommitForPendingSetsTask
     }
 
     private String updateServerItemWithParentRename(
-            Set<String> folderCollection,
+            String parentToUpdate,
             String serverPath,
             Map<String, PendingChange> pendingSetMap) {
-        String parentToUpdate = getParentInCollection(folderCollection, serverPath);
-
         Check.notNull(parentToUpdate, "parentToUpdate");
 
         PendingChange pendingChange = pendingSetMap.get(parentToUpdate);
@@ -416,50 +498,69 @@ public abstract class CreateCommitForPendingSetsTask
         return newParentName + serverPath.substring(parentToUpdate.length());
     }
 
-    private boolean isParentInCollection(Set<String> folderCollection, String serverPath) {
-        return getParentInCollection(folderCollection, serverPath) != null;
+    private void addPendingBlob(
+            final List<PendingBlob> pendingBlobs,
+            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+            final PendingChange pendingChange,
+            final boolean addBaseContent) {
+        if (pendingChange.getItemType() == ItemType.FOLDER) {
+            return;
+        }
+
+        pendingBlobs.add(new PendingBlob(treeHierarchy, pendingChange, addBaseContent));
     }
 
-    private String getParentInCollection(Set<String> folderCollection, String serverPath) {
-        String currentPath = ServerPath.getParent(serverPath);
-        while (currentPath != null && currentPath.length() > 0 && !currentPath.equals(ServerPath.ROOT)) {
-            if (folderCollection.contains(currentPath)) {
-                return currentPath;
-            }
+    private Callable<File> createDownload(final PendingBlob pendingBlob) {
+        return new Callable<File>() {
+            public File call()
+                    throws Exception {
+                File tempFile = File.createTempFile(GitTFConstants.GIT_TF_NAME, null, tempDir);
 
-            currentPath = ServerPath.getParent(currentPath);
-        }
+                if (pendingBlob.addBaseContent) {
+                    versionControlService.downloadBaseFile(pendingBlob.pendingChange, tempFile.getAbsolutePath());
+                } else {
+                    versionControlService.downloadShelvedFile(pendingBlob.pendingChange, tempFile.getAbsolutePath());
+                }
 
-        return null;
+                return tempFile;
+            }
+        };
     }
 
     private void createBlob(
             final ObjectInserter repositoryInserter,
-            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
-            final PendingChange pendingChange,
-            final boolean addBaseContent,
+            final PendingBlob pendingBlob,
             final TaskProgressMonitor progressMonitor)
             throws Exception {
-        if (pendingChange.getItemType() == ItemType.FOLDER) {
-            return;
-        }
+        final PendingChange pendingChange = pendingBlob.pendingChange;
+        final boolean addBaseContent = pendingBlob.addBaseContent;
 
         File tempFile = null;
         InputStream tempInputStream = null;
         ObjectId blobID = null;
 
         try {
-            tempFile = File.createTempFile(GitTFConstants.GIT_TF_NAME, null, tempDir);
+            try {
+                tempFile = pendingBlob.download.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
 
-            if (addBaseContent) {
-                versionControlService.downloadBaseFile(pendingChange, tempFile.getAbsolutePath());
-            } else {
-                versionControlService.downloadShelvedFile(pendingChange, tempFile.getAbsolutePath());
+                throw e;
             }
 
             if (tempFile.exists()) {
+                progressMonitor.downloaded(tempFile.length());
+
                 tempInputStream = new FileInputStream(tempFile);
                 blobID = repositoryInserter.insert(OBJ_BLOB, tempFile.length(), tempInputStream);
+
+                /* The content is in the repository now, free the disk space */
+                tempInputStream.close();
+                tempInputStream = null;
+
+                tempFile.delete();
             } else {
                 blobID = ObjectId.zeroId();
             }
@@ -483,7 +584,7 @@ public abstract class CreateCommitForPendingSetsTask
                     pendingChange.getSourceServerItem() != null && addBaseContent ? pendingChange.getSourceServerItem()
                             : pendingChange.getServerItem();
 
-            createBlob(repositoryInserter, treeHierarchy, serverItem, blobID, fileMode, progressMonitor);
+            createBlob(repositoryInserter, pendingBlob.treeHierarchy, serverItem, blobID, fileMode, progressMonitor);
         } finally {
             if (tempInputStream != null) {
                 tempInputStream.close();
@@ -495,6 +596,26 @@ public abstract class CreateCommitForPendingSetsTask
         }
     }
 
+    private static ExecutorService createDownloadExecutor(final int threadCount) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "git-tf-download-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static int getDownloadThreadCount() {
+        return EnvironmentUtil.getIntegerValue(
+                DOWNLOAD_THREADS_NAME,
+                DOWNLOAD_THREADS_NAME_ALTERNATE,
+                1,
+                DEFAULT_DOWNLOAD_THREADS);
+    }
+
     private ObjectId createCommit(ObjectInserter repositoryInserter, ObjectId rootPendingSetTree, ObjectId parentId)
             throws IOException {
         Check.notNull(repositoryInserter, "repositoryInserter");
@@ -511,4 +632,127 @@ public abstract class CreateCommitForPendingSetsTask
                 getCommitDate(),
                 getComment());
     }
+
+    /**
+     * A trie of the folders that are affected by the pending changes, keyed by
+     * server path segment, so that everything known about the folders above
+     * an item is found in a single descent
+     */
+    private static final class FolderTrie {
+        private final FolderTrieNode root = new FolderTrieNode();
+
+        /**
+         * Gets the node of the folder specified, creating it and its parents
+         * if needed
+         *
+         * @param folder
+         * @return
+         */
+        public FolderTrieNode add(String folder) {
+            FolderTrieNode node = root;
+
+            if (folder == null || folder.length() == 0 || folder.equals(ServerPath.ROOT)) {
+                return node;
+            }
+
+            int start = 0;
+            while (start <= folder.length()) {
+                int end = folder.indexOf(ServerPath.PREFERRED_SEPARATOR_CHARACTER, start);
+                if (end < 0) {
+                    end = folder.length();
+                }
+
+                String segment = folder.substring(start, end);
+                FolderTrieNode child = node.children.get(segment);
+
+                if (child == null) {
+                    child = new FolderTrieNode();
+                    node.children.put(segment, child);
+                }
+
+                node = child;
+                start = end + 1;
+            }
+
+            return node;
+        }
+
+        /**
+         * Looks up the item specified and the folders above it
+         *
+         * @param serverPath
+         * @return
+         */
+        public FolderLookup lookup(String serverPath) {
+            FolderLookup lookup = new FolderLookup();
+            FolderTrieNode node = root;
+
+            int start = 0;
+            while (start <= serverPath.length()) {
+                int end = serverPath.indexOf(ServerPath.PREFERRED_SEPARATOR_CHARACTER, start);
+                if (end < 0) {
+                    end = serverPath.length();
+                }
+
+                node = node.children.get(serverPath.substring(start, end));
+
+                if (node == null) {
+                    break;
+                }
+
+                if (end == serverPath.length()) {
+                    /* the item itself */
+                    lookup.found = true;
+                    lookup.rebuilt |= node.rebuilt;
+                    break;
+                }
+
+                /* a parent of the item, the deepest renamed parent wins */
+                if (node.renamed) {
+                    lookup.renamedParent = serverPath.substring(0, end);
+                }
+
+                lookup.deletedParent |= node.deleted;
+                lookup.rebuilt |= node.rebuilt;
+
+                start = end + 1;
+            }
+
+            return lookup;
+        }
+    }
+
+    private static final class FolderTrieNode {
+        private final Map<String, FolderTrieNode> children = new HashMap<String, FolderTrieNode>();
+        private boolean renamed = false;
+        private boolean deleted = false;
+        private boolean rebuilt = false;
+    }
+
+    private static final class FolderLookup {
+        private boolean found = false;
+        private boolean rebuilt = false;
+        private boolean deletedParent = false;
+        private String renamedParent = null;
+    }
+
+    /**
+     * A blob whose content has to be downloaded from the server before it can
+     * be added to a tree hierarchy
+     */
+    private static final class PendingBlob {
+        private final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy;
+        private final PendingChange pendingChange;
+        private final boolean addBaseContent;
+        private Future<File> download;
+
+        public PendingBlob(
+                final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+                final PendingChange pendingChange,
+                final boolean addBaseContent) {
+            this.treeHierarchy = treeHierarchy;
+            this.pendingChange = pendingChange;
+            this.addBaseContent = addBaseContent;
+        }
+    }
 }
@@ -40,6 +40,7 @@ import org.eclipse.jgit.lib.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.Calendar;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TimeZone;
@@ -86,6 +87,21 @@ public abstract class CreateCommitTask
         return commitId;
     }
 
+    @Override
+    public Map<String, Object> getTraceArguments() {
+        final Map<String, Object> arguments = new LinkedHashMap<String, Object>();
+
+        if (parentCommitID != null) {
+            arguments.put("parent", parentCommitID.getName());
+        }
+
+        if (commitId != null) {
+            arguments.put("commit", commitId.getName());
+        }
+
+        return arguments;
+    }
+
     protected void validateTempDirectory()
             throws Exception {
         /* Sanity-check the temporary directory */
@@ -133,6 +149,30 @@ public abstract class CreateCommitTask
         parentTree.put(new CommitTreePath(fileName, OBJ_BLOB), new CommitTreeEntry(fileMode, blobID));
     }
 
+    protected void addTree(
+            final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
+            final String serverItemPath,
+            final ObjectId treeID)
+            throws Exception {
+        Check.notNull(treeHierarchy, "treeHierarchy");
+        Check.notNull(serverItemPath, "serverItemPath");
+        Check.notNull(treeID, "treeID");
+
+        String folderName = ServerPath.makeRelative(ServerPath.getParent(serverItemPath), serverPath);
+        String treeName = ServerPath.getFileName(serverItemPath);
+
+        addToTreeHierarchy(treeHierarchy, folderName);
+
+        Map<CommitTreePath, CommitTreeEntry> parentTree = treeHierarchy.get(new CommitTreePath(folderName, OBJ_TREE));
+
+        if (parentTree == null) {
+            throw new RuntimeException(Messages.formatString("CreateCommitTask.CouldNotLocateParentTreeFormat",
+                    folderName));
+        }
+
+        parentTree.put(new CommitTreePath(treeName, OBJ_TREE), new CommitTreeEntry(FileMode.TREE, treeID));
+    }
+
     protected void addToTreeHierarchy(
             final Map<CommitTreePath, Map<CommitTreePath, CommitTreeEntry>> treeHierarchy,
             final String folderPath)
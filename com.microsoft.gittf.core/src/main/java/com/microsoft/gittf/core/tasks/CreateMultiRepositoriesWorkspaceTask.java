@@ -28,6 +28,8 @@ import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.config.GitTFConfiguration;
 import com.microsoft.gittf.core.impl.PreviewOnlyWorkspace;
+import com.microsoft.gittf.core.impl.ServiceCallMetrics;
+import com.microsoft.gittf.core.impl.ServiceRecorder;
 import com.microsoft.gittf.core.impl.TfsWorkspace;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
 import com.microsoft.gittf.core.tasks.framework.*;
@@ -145,7 +147,10 @@ public class CreateMultiRepositoriesWorkspaceTask extends Task {
                     }
                 }
 
-                this.workspace = new TfsWorkspace(tempWorkspace);
+                this.workspace =
+                        ServiceCallMetrics.instrument(
+                                WorkspaceService.class,
+                                ServiceRecorder.record(WorkspaceService.class, new TfsWorkspace(tempWorkspace)));
             } else {
                 this.workspace = new PreviewOnlyWorkspace(progressMonitor);
             }
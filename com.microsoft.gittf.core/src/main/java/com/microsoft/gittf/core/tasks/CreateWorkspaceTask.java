@@ -27,6 +27,8 @@ package com.microsoft.gittf.core.tasks;
 import com.microsoft.gittf.core.GitTFConstants;
 import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.impl.PreviewOnlyWorkspace;
+import com.microsoft.gittf.core.impl.ServiceCallMetrics;
+import com.microsoft.gittf.core.impl.ServiceRecorder;
 import com.microsoft.gittf.core.impl.TfsWorkspace;
 import com.microsoft.gittf.core.interfaces.WorkspaceService;
 import com.microsoft.gittf.core.tasks.framework.*;
@@ -143,7 +145,10 @@ public class CreateWorkspaceTask
                     }
                 }
 
-                this.workspace = new TfsWorkspace(tempWorkspace);
+                this.workspace =
+                        ServiceCallMetrics.instrument(
+                                WorkspaceService.class,
+                                ServiceRecorder.record(WorkspaceService.class, new TfsWorkspace(tempWorkspace)));
             } else {
                 this.workspace = new PreviewOnlyWorkspace(progressMonitor);
             }
@@ -40,6 +40,12 @@ import java.io.File;
 import java.text.MessageFormat;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -161,6 +167,68 @@ public abstract class MultiRepositoriesWorkspaceTask
         }
     }
 
+    /**
+     * Creates the pool that runs the git side work of the repositories, such
+     * as walking the commits and analyzing the differences, concurrently. The
+     * work that talks to the shared workspace stays on the calling thread. The
+     * caller must shut the pool down with shutdownRepositoryExecutor.
+     *
+     * @return
+     */
+    protected ExecutorService createRepositoryExecutor() {
+        final int threadCount =
+                Math.max(1, Math.min(repositories.size(), Runtime.getRuntime().availableProcessors()));
+        final AtomicInteger threadNumber = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(threadCount, runnable -> {
+            final Thread thread = new Thread(runnable, "git-tf-repository-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the repository pool and waits for the running work to finish
+     *
+     * @param executor
+     */
+    protected void shutdownRepositoryExecutor(final ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+
+        executor.shutdownNow();
+
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("The repository threads did not terminate");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the result of work submitted to the repository pool,
+     * rethrowing the exception that failed it
+     *
+     * @param future
+     * @return
+     * @throws Exception
+     */
+    protected static <T> T getRepositoryResult(final Future<T> future)
+            throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
     protected static final class WorkspaceInfo {
         private final WorkspaceService workspace;
         private final Map<File, File> repoFolderToWorkingFolder;
@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks;
+
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.tfs.util.FileHelpers;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.File;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Analyzes and stages a sequence of pend difference tasks on a background
+ * thread, one task ahead of the task that is being pended and checked in. The
+ * analysis of a commit (validation, diff, rename detection and blob
+ * extraction) only reads the git repository, so it can run while the server
+ * is still processing the checkin of the previous commit. The tasks are handed
+ * out strictly in order, so pending and checking in stay sequential. The
+ * warnings displayed by the analysis are replayed on the progress monitor of
+ * the checkin when the task is handed out.
+ */
+final class PendDifferenceStagingPipeline {
+    private static final Log log = LogFactory.getLog(PendDifferenceStagingPipeline.class);
+
+    private final List<PendDifferenceTask> pendTasks;
+    private final File stagingRoot;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    private StagingCall nextCall = null;
+    private Future<PendDifferenceTask> nextTask = null;
+    private int nextIndex = 0;
+
+    /**
+     * Constructor
+     *
+     * @param pendTasks   the pend tasks to analyze and stage, in checkin order
+     * @param stagingRoot the folder to stage the items in, it is deleted when
+     *                    the pipeline is closed
+     */
+    public PendDifferenceStagingPipeline(final List<PendDifferenceTask> pendTasks, final File stagingRoot) {
+        this(pendTasks, stagingRoot, Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "git-tf-checkin-staging");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), true);
+    }
+
+    /**
+     * Constructor for a pipeline that stages on an executor shared with other
+     * pipelines. Closing the pipeline cancels its staging and waits for it to
+     * stop, the owner of the executor shuts it down.
+     *
+     * @param pendTasks   the pend tasks to analyze and stage, in checkin order
+     * @param stagingRoot the folder to stage the items in, it is deleted when
+     *                    the pipeline is closed
+     * @param executor    the executor to stage the items on
+     */
+    public PendDifferenceStagingPipeline(
+            final List<PendDifferenceTask> pendTasks,
+            final File stagingRoot,
+            final ExecutorService executor) {
+        this(pendTasks, stagingRoot, executor, false);
+    }
+
+    private PendDifferenceStagingPipeline(
+            final List<PendDifferenceTask> pendTasks,
+            final File stagingRoot,
+            final ExecutorService executor,
+            final boolean ownsExecutor) {
+        Check.notNull(pendTasks, "pendTasks");
+        Check.notNull(stagingRoot, "stagingRoot");
+        Check.notNull(executor, "executor");
+
+        this.pendTasks = pendTasks;
+        this.stagingRoot = stagingRoot;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+
+        submitNext();
+    }
+
+    /**
+     * Waits until the next task has been analyzed and staged, then starts
+     * staging the task after it.
+     *
+     * @param progressMonitor the progress monitor to display the warnings of
+     *                        the analysis on
+     * @return the next task, ready to be pended
+     * @throws Exception if the analysis of the task failed
+     */
+    public PendDifferenceTask next(final TaskProgressMonitor progressMonitor)
+            throws Exception {
+        Check.notNull(progressMonitor, "progressMonitor");
+        Check.isTrue(nextTask != null, "nextTask != null");
+
+        /* The items of the previous task have been pended by now */
+        if (nextIndex > 1) {
+            deleteFolder(getStagingFolder(nextIndex - 2));
+        }
+
+        final PendDifferenceTask pendTask;
+
+        try {
+            pendTask = nextTask.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        } finally {
+            for (final String warning : nextCall.getWarnings()) {
+                progressMonitor.displayWarning(warning);
+            }
+
+            nextCall = null;
+            nextTask = null;
+        }
+
+        submitNext();
+
+        return pendTask;
+    }
+
+    /**
+     * Stops staging and deletes the staging area
+     */
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+
+            try {
+                if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    log.warn("The checkin staging thread did not terminate");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (nextTask != null) {
+            nextTask.cancel(true);
+
+            /* The staging may have started before it was cancelled, it must not write into the deleted folder */
+            if (!nextCall.awaitStopped(30, TimeUnit.SECONDS)) {
+                log.warn("The checkin staging task did not stop, the staging directory may not be cleaned up");
+            }
+        }
+
+        deleteFolder(stagingRoot);
+    }
+
+    private void submitNext() {
+        if (nextIndex >= pendTasks.size()) {
+            return;
+        }
+
+        nextCall = new StagingCall(pendTasks.get(nextIndex), getStagingFolder(nextIndex));
+        nextTask = executor.submit(nextCall);
+
+        nextIndex++;
+    }
+
+    private File getStagingFolder(final int index) {
+        return new File(stagingRoot, Integer.toString(index));
+    }
+
+    /**
+     * Analyzes and stages a task, recording the warnings of the analysis
+     */
+    private static final class StagingCall
+            implements Callable<PendDifferenceTask> {
+        private final PendDifferenceTask pendTask;
+        private final File stagingFolder;
+        private final List<String> warnings = new ArrayList<String>();
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final CountDownLatch stopped = new CountDownLatch(1);
+
+        public StagingCall(final PendDifferenceTask pendTask, final File stagingFolder) {
+            this.pendTask = pendTask;
+            this.stagingFolder = stagingFolder;
+        }
+
+        public PendDifferenceTask call()
+                throws Exception {
+            /* The pipeline was closed before the call started */
+            if (!started.compareAndSet(false, true)) {
+                return null;
+            }
+
+            try {
+                pendTask.analyze(new WarningProgressMonitor(warnings));
+                pendTask.stage(stagingFolder);
+
+                return pendTask;
+            } finally {
+                stopped.countDown();
+            }
+        }
+
+        public List<String> getWarnings() {
+            synchronized (warnings) {
+                return new ArrayList<String>(warnings);
+            }
+        }
+
+        /**
+         * Waits for the call to stop if it started, it never starts afterwards
+         *
+         * @return false if the call is still running after the timeout
+         */
+        public boolean awaitStopped(final long timeout, final TimeUnit unit) {
+            if (started.compareAndSet(false, true)) {
+                return true;
+            }
+
+            try {
+                return stopped.await(timeout, unit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Ignores the progress of the analysis and records its warnings
+     */
+    private static final class WarningProgressMonitor
+            extends NullTaskProgressMonitor {
+        private final List<String> warnings;
+
+        public WarningProgressMonitor(final List<String> warnings) {
+            this.warnings = warnings;
+        }
+
+        @Override
+        public TaskProgressMonitor newSubTask(final int subWork) {
+            return new WarningProgressMonitor(warnings);
+        }
+
+        @Override
+        public void displayWarning(final String message) {
+            synchronized (warnings) {
+                warnings.add(message);
+            }
+        }
+    }
+
+    private static void deleteFolder(final File folder) {
+        try {
+            if (folder.exists()) {
+                FileHelpers.deleteDirectory(folder);
+            }
+        } catch (Exception e) {
+            /* Not fatal */
+            log.warn(MessageFormat.format("Could not clean up staging directory {0}", folder.getAbsolutePath()), e);
+        }
+    }
+}
@@ -48,7 +48,7 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 
 import java.io.File;
-import java.util.List;
+import java.util.Map;
 
 /**
  * Pends the difference between the Commit Id specified and the latest bridged
@@ -233,42 +233,22 @@ public class ShelveDifferenceTask
                     Integer.toString(shelvesetChangesetId)));
         }
 
-        List<CommitDelta> commitDeltas = null;
+        final Map<ObjectId, Integer> bridgedCommits = commitMap.getBridgedCommits();
 
-        int currentChangesetId = commitMap.getLastBridgedChangesetID(true);
-        while (currentChangesetId > 0) {
-            ObjectId changesetCommitId = commitMap.getCommitID(currentChangesetId, true);
-
-            try {
-                commitDeltas = CommitWalker.getAutoSquashedCommitList(repository, changesetCommitId, shelveCommitID);
-            } catch (Exception exception) {
-                // eat exception here we do not care if the path does not exist
-            }
+        RevWalk walker = new RevWalk(repository);
+        try {
+            final RevCommit toCommit = walker.parseCommit(shelveCommitID);
+            final RevCommit fromCommit = CommitWalker.findLatestBridgedAncestor(walker, toCommit, bridgedCommits);
 
-            if (commitDeltas == null) {
-                currentChangesetId = commitMap.getPreviousBridgedChangeset(currentChangesetId, true);
-            } else {
-                break;
+            if (fromCommit != null) {
+                shelveAgainstVersion = new ChangesetVersionSpec(bridgedCommits.get(fromCommit));
             }
-        }
 
-        if (commitDeltas == null) {
-            RevWalk walker = new RevWalk(repository);
-            try {
-                RevCommit toCommit = walker.parseCommit(shelveCommitID);
-                return new CommitDelta(null, toCommit);
-            } finally {
-                if (walker != null) {
-                    walker.release();
-                }
+            return new CommitDelta(fromCommit, toCommit);
+        } finally {
+            if (walker != null) {
+                walker.release();
             }
         }
-
-        shelveAgainstVersion = new ChangesetVersionSpec(currentChangesetId);
-
-        final RevCommit fromCommit = commitDeltas.get(0).getFromCommit();
-        final RevCommit toCommit = commitDeltas.get(commitDeltas.size() - 1).getToCommit();
-
-        return new CommitDelta(fromCommit, toCommit);
     }
 }
@@ -34,12 +34,14 @@ import com.microsoft.gittf.core.tasks.pendDiff.RenameMode;
 import com.microsoft.gittf.core.util.Check;
 import com.microsoft.gittf.core.util.CommitWalker;
 import com.microsoft.gittf.core.util.CommitWalker.CommitDelta;
+import com.microsoft.gittf.core.util.DirectoryUtil;
 import com.microsoft.gittf.core.util.RepositoryUtil;
 import com.microsoft.tfs.core.clients.versioncontrol.VersionControlClient;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkItemCheckinInfo;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.ChangesetVersionSpec;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.version.VersionSpec;
+import com.microsoft.tfs.util.FileHelpers;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.jgit.lib.ObjectId;
@@ -48,7 +50,10 @@ import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 
 import java.io.File;
+import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Pends the difference between the Commit Id specified and the latest bridged
@@ -66,8 +71,6 @@ public class ShelveMultiRepositoriesDifferencesTask
     private RenameMode renameMode = RenameMode.JUSTFILES;
     private String message = null;
 
-    private VersionSpec shelveAgainstVersion = null;
-
     /**
      * Constructor
      *
@@ -137,23 +140,83 @@ public class ShelveMultiRepositoriesDifferencesTask
                 TaskProgressDisplay.DISPLAY_PROGRESS.combine(TaskProgressDisplay.DISPLAY_SUBTASK_DETAIL));
 
         WorkspaceInfo workspaceInfo = null;
+        ExecutorService repositoryExecutor = null;
+        final List<File> stagingFolders = new ArrayList<>();
         try {
+            final List<Repository> repositoryList = new ArrayList<>(repositories);
+
+            /*
+             * Find the commits to shelve for all the repositories concurrently,
+             * the workspace is created at the latest changeset any of them is
+             * based on
+             */
+            repositoryExecutor = createRepositoryExecutor();
+
+            final List<Future<ShelveDelta>> deltaFutures = new ArrayList<>();
+            for (final Repository repository : repositoryList) {
+                deltaFutures.add(repositoryExecutor.submit(() -> getOptimalCommitDelta(repository)));
+            }
+
+            final List<CommitDelta> deltasToShelve = new ArrayList<>();
+            int shelveAgainstChangeset = -1;
+
+            for (final Future<ShelveDelta> deltaFuture : deltaFutures) {
+                final ShelveDelta shelveDelta = getRepositoryResult(deltaFuture);
+
+                deltasToShelve.add(shelveDelta.getCommitDelta());
+                shelveAgainstChangeset = Math.max(shelveAgainstChangeset, shelveDelta.getBaseChangeset());
+            }
+
+            final VersionSpec shelveAgainstVersion =
+                    shelveAgainstChangeset > 0 ? new ChangesetVersionSpec(shelveAgainstChangeset) : null;
+
             workspaceInfo = createWorkspace(progressMonitor.newSubTask(1), false, shelveAgainstVersion);
             final List<PendingChange[]> pendingChanges = new ArrayList<>();
             final WorkspaceService workspace = workspaceInfo.getWorkspace();
-            for (final Repository repository : repositories) {
-                final CommitDelta deltaToShelve = getOptimalCommitDelta(repository);
-                final RevCommit fromCommit = deltaToShelve.getFromCommit();
-                final RevCommit toCommit = deltaToShelve.getToCommit();
-                final GitTFConfiguration config = GitTFConfiguration.loadFrom(repository);
-
-                progressMonitor.setDetail(Messages.getString("ShelveDifferenceTask.PreparingWorkspace"));
 
+            /*
+             * Analyze the differences and stage their content for all the
+             * repositories concurrently, only pending the changes in the
+             * shared workspace is serialized
+             */
+
+            final ConcurrentTaskProgressMonitor analyzeMonitor =
+                    new ConcurrentTaskProgressMonitor(progressMonitor.newSubTask(1));
+            analyzeMonitor.beginTask(
+                    Messages.getString("ShelveDifferenceTask.ExaminingRepository"),
+                    repositoryList.size(),
+                    TaskProgressDisplay.NONE);
+
+            final List<Future<PendDifferenceTask>> pendTaskFutures = new ArrayList<>();
+            for (int r = 0; r < repositoryList.size(); r++) {
+                final Repository repository = repositoryList.get(r);
+                final CommitDelta deltaToShelve = deltasToShelve.get(r);
                 final File workingFolder = workspaceInfo.getRepoFolderToWorkingFolder().get(repository.getDirectory());
+                final File stagingFolder = DirectoryUtil.getTempDir(repository);
+                final TaskProgressMonitor repositoryMonitor = analyzeMonitor.newSubTask(1);
+                stagingFolders.add(stagingFolder);
 
-                final PendDifferenceTask pendTask =
-                        new PendDifferenceTask(repository, fromCommit, toCommit, workspace, config.getServerPath(), workingFolder);
-                pendTask.setRenameMode(renameMode);
+                pendTaskFutures.add(repositoryExecutor.submit(() -> {
+                    final RevCommit fromCommit = deltaToShelve.getFromCommit();
+                    final RevCommit toCommit = deltaToShelve.getToCommit();
+                    final GitTFConfiguration config = GitTFConfiguration.loadFrom(repository);
+
+                    final PendDifferenceTask pendTask =
+                            new PendDifferenceTask(repository, fromCommit, toCommit, workspace, config.getServerPath(), workingFolder);
+                    pendTask.setRenameMode(renameMode);
+
+                    pendTask.analyze(repositoryMonitor);
+                    pendTask.stage(stagingFolder);
+
+                    return pendTask;
+                }));
+            }
+
+            progressMonitor.setDetail(Messages.getString("ShelveDifferenceTask.PreparingWorkspace"));
+
+            for (int r = 0; r < repositoryList.size(); r++) {
+                final Repository repository = repositoryList.get(r);
+                final PendDifferenceTask pendTask = getRepositoryResult(pendTaskFutures.get(r));
 
                 final TaskStatus pendStatus = new TaskExecutor(progressMonitor.newSubTask(1)).execute(pendTask);
 
@@ -168,6 +231,9 @@ public class ShelveMultiRepositoriesDifferencesTask
                 }
 
             }
+
+            analyzeMonitor.endTask();
+
             if (pendingChanges.isEmpty()) {
                 throw new RuntimeException(Messages.getString("ShelveDifferenceTask.NoChangesToShelve"));
             }
@@ -207,22 +273,33 @@ public class ShelveMultiRepositoriesDifferencesTask
 
             return new TaskStatus(TaskStatus.ERROR, e);
         } finally {
+            shutdownRepositoryExecutor(repositoryExecutor);
+
+            for (final File stagingFolder : stagingFolders) {
+                deleteStagingFolder(stagingFolder);
+            }
+
             if (workspaceInfo != null) {
                 disposeWorkspace(new NullTaskProgressMonitor());
             }
         }
     }
 
-    private CommitDelta getOptimalCommitDelta(final Repository r) {
+    private void deleteStagingFolder(final File stagingFolder) {
         try {
-            return getOptimalCommitDelta(r, gitDirWithShelveCommitID.get(r.getDirectory()));
+            if (stagingFolder.exists()) {
+                FileHelpers.deleteDirectory(stagingFolder);
+            }
         } catch (Exception e) {
-            throw new RuntimeException(e);
+            /* Not fatal */
+            log.warn(MessageFormat.format("Could not clean up staging directory {0}",
+                    stagingFolder.getAbsolutePath()), e);
         }
     }
 
-    private CommitDelta getOptimalCommitDelta(final Repository repository, final ObjectId shelveCommitID)
+    private ShelveDelta getOptimalCommitDelta(final Repository repository)
             throws Exception {
+        final ObjectId shelveCommitID = gitDirWithShelveCommitID.get(repository.getDirectory());
         final ChangesetCommitMap commitMap = new ChangesetCommitMap(repository);
         final int shelvesetChangesetId = commitMap.getChangesetID(shelveCommitID);
 
@@ -232,42 +309,42 @@ public class ShelveMultiRepositoriesDifferencesTask
                     Integer.toString(shelvesetChangesetId)));
         }
 
-        List<CommitDelta> commitDeltas = null;
-
-        int currentChangesetId = commitMap.getLastBridgedChangesetID(true);
-        while (currentChangesetId > 0) {
-            ObjectId changesetCommitId = commitMap.getCommitID(currentChangesetId, true);
+        final Map<ObjectId, Integer> bridgedCommits = commitMap.getBridgedCommits();
 
-            try {
-                commitDeltas = CommitWalker.getAutoSquashedCommitList(repository, changesetCommitId, shelveCommitID);
-            } catch (Exception exception) {
-                // eat exception here we do not care if the path does not exist
-            }
+        RevWalk walker = new RevWalk(repository);
+        try {
+            final RevCommit toCommit = walker.parseCommit(shelveCommitID);
+            final RevCommit fromCommit = CommitWalker.findLatestBridgedAncestor(walker, toCommit, bridgedCommits);
 
-            if (commitDeltas == null) {
-                currentChangesetId = commitMap.getPreviousBridgedChangeset(currentChangesetId, true);
-            } else {
-                break;
+            return new ShelveDelta(
+                    new CommitDelta(fromCommit, toCommit),
+                    fromCommit != null ? bridgedCommits.get(fromCommit) : -1);
+        } finally {
+            if (walker != null) {
+                walker.release();
             }
         }
+    }
 
-        if (commitDeltas == null) {
-            RevWalk walker = new RevWalk(repository);
-            try {
-                RevCommit toCommit = walker.parseCommit(shelveCommitID);
-                return new CommitDelta(null, toCommit);
-            } finally {
-                if (walker != null) {
-                    walker.release();
-                }
-            }
-        }
+    /**
+     * The commits to shelve for a repository and the changeset the first of
+     * them is bridged to, -1 if none
+     */
+    private static final class ShelveDelta {
+        private final CommitDelta commitDelta;
+        private final int baseChangeset;
 
-        shelveAgainstVersion = new ChangesetVersionSpec(currentChangesetId);
+        private ShelveDelta(final CommitDelta commitDelta, final int baseChangeset) {
+            this.commitDelta = commitDelta;
+            this.baseChangeset = baseChangeset;
+        }
 
-        final RevCommit fromCommit = commitDeltas.get(0).getFromCommit();
-        final RevCommit toCommit = commitDeltas.get(commitDeltas.size() - 1).getToCommit();
+        public CommitDelta getCommitDelta() {
+            return commitDelta;
+        }
 
-        return new CommitDelta(fromCommit, toCommit);
+        public int getBaseChangeset() {
+            return baseChangeset;
+        }
     }
 }
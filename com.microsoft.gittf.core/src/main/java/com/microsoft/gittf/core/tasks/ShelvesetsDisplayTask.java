@@ -38,8 +38,11 @@ import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
 
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Looks up and displays the shelveset(s) queried using the shelveset name and
@@ -47,6 +50,9 @@ import java.util.List;
  */
 public class ShelvesetsDisplayTask
         extends Task {
+    /* The maximum number of shelveset details queried at the same time */
+    private static final int MAX_DETAIL_QUERIES = 4;
+
     private final VersionControlService versionControlService;
     private final ShelvesetView view;
     private final String shelvesetName;
@@ -54,6 +60,10 @@ public class ShelvesetsDisplayTask
 
     private boolean displayDetails = false;
     private ShelvesetSortOption sortOption = ShelvesetSortOption.DATE;
+    private int offset = 0;
+    private int limit = -1;
+    private Calendar createdAfter = null;
+    private Calendar createdBefore = null;
 
     /**
      * Constructor
@@ -95,6 +105,49 @@ public class ShelvesetsDisplayTask
         this.sortOption = sortOption;
     }
 
+    /**
+     * Sets the number of shelvesets to skip, after sorting
+     *
+     * @param offset
+     */
+    public void setOffset(final int offset) {
+        Check.isTrue(offset >= 0, "offset >= 0");
+
+        this.offset = offset;
+    }
+
+    /**
+     * Sets the maximum number of shelvesets to display, a negative value
+     * displays all of them. When details are displayed for several
+     * shelvesets, only a limited listing queries the changes of each
+     * shelveset.
+     *
+     * @param limit
+     */
+    public void setLimit(final int limit) {
+        Check.isTrue(limit != 0, "limit != 0");
+
+        this.limit = limit;
+    }
+
+    /**
+     * Only display the shelvesets created at or after the date specified
+     *
+     * @param createdAfter the date, null for no lower bound
+     */
+    public void setCreatedAfter(final Calendar createdAfter) {
+        this.createdAfter = createdAfter;
+    }
+
+    /**
+     * Only display the shelvesets created before the date specified
+     *
+     * @param createdBefore the date, null for no upper bound
+     */
+    public void setCreatedBefore(final Calendar createdBefore) {
+        this.createdBefore = createdBefore;
+    }
+
     @Override
     public TaskStatus run(TaskProgressMonitor progressMonitor)
             throws Exception {
@@ -105,8 +158,22 @@ public class ShelvesetsDisplayTask
         /* Queries the server for the matching shelvesets */
         Shelveset[] results = versionControlService.queryShelvesets(shelvesetName, shelvesetOwnerName);
 
+        /* Apply the date range, then sort and page the shelvesets */
+        List<Shelveset> shelvesets = new ArrayList<Shelveset>(results.length);
+        for (Shelveset shelveset : results) {
+            if (isInDateRange(shelveset)) {
+                shelvesets.add(shelveset);
+            }
+        }
+
+        Collections.sort(shelvesets, new ShelvesetCompartor(sortOption));
+
+        int fromIndex = Math.min(offset, shelvesets.size());
+        int toIndex = limit < 0 ? shelvesets.size() : Math.min(shelvesets.size(), fromIndex + limit);
+        shelvesets = shelvesets.subList(fromIndex, toIndex);
+
         /* If there are no shelvesets that match the criteria show an error */
-        if (results.length == 0) {
+        if (shelvesets.size() == 0) {
             progressMonitor.endTask();
             return new TaskStatus(TaskStatus.ERROR, Messages.getString("ShelvesetsDisplayTask.NoShelvesetsFound"));
         }
@@ -115,26 +182,105 @@ public class ShelvesetsDisplayTask
          * If there is one shelveset matching and details is specified show the
          * super detailed view which displays the pending changes as well
          */
-        if (displayDetails && results.length == 1) {
+        if (displayDetails && shelvesets.size() == 1) {
             // display shelveset details
-            PendingSet[] shelvesetDetails = versionControlService.queryShelvesetChanges(results[0], false);
+            PendingSet[] shelvesetDetails = versionControlService.queryShelvesetChanges(shelvesets.get(0), false);
+            progressMonitor.endTask();
+
+            view.displayShelvesetDetails(shelvesets.get(0), shelvesetDetails);
+        } else if (displayDetails && limit > 0) {
             progressMonitor.endTask();
 
-            view.displayShelvesetDetails(results[0], shelvesetDetails);
+            /*
+             * The changes of several shelvesets are only queried for a limited
+             * listing, a query per shelveset is too costly for all of them
+             */
+            displayShelvesetsWithDetails(shelvesets);
         } else {
             progressMonitor.endTask();
 
-            // Sort shelvesets
-            List<Shelveset> shelvesets = new ArrayList<Shelveset>(results.length);
-            for (Shelveset shelveset : results) {
-                shelvesets.add(shelveset);
-            }
+            // display all shelvesets
+            view.beginShelvesets(shelvesets.size(), displayDetails);
 
-            Collections.sort(shelvesets, new ShelvesetCompartor(sortOption));
+            for (Shelveset shelveset : shelvesets) {
+                view.displayShelveset(shelveset, null);
+            }
 
-            // display all shelvesets
-            view.displayShelvesets(shelvesets.toArray(new Shelveset[shelvesets.size()]), displayDetails);
+            view.endShelvesets();
         }
+
         return TaskStatus.OK_STATUS;
     }
+
+    /**
+     * Queries the details of the shelvesets with a bounded number of
+     * concurrent queries, and displays each shelveset, in order, as soon as
+     * its details have arrived
+     *
+     * @param shelvesets
+     * @throws Exception
+     */
+    private void displayShelvesetsWithDetails(final List<Shelveset> shelvesets)
+            throws Exception {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(shelvesets.size(), MAX_DETAIL_QUERIES), new ThreadFactory() {
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread =
+                                new Thread(runnable, "git-tf-shelveset-details-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        try {
+            final List<Future<PendingSet[]>> details = new ArrayList<Future<PendingSet[]>>(shelvesets.size());
+
+            for (final Shelveset shelveset : shelvesets) {
+                details.add(executor.submit(new Callable<PendingSet[]>() {
+                    public PendingSet[] call()
+                            throws Exception {
+                        return versionControlService.queryShelvesetChanges(shelveset, false);
+                    }
+                }));
+            }
+
+            view.beginShelvesets(shelvesets.size(), true);
+
+            for (int i = 0; i < shelvesets.size(); i++) {
+                PendingSet[] shelvesetDetails;
+
+                try {
+                    shelvesetDetails = details.get(i).get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception) {
+                        throw (Exception) e.getCause();
+                    }
+
+                    throw e;
+                }
+
+                view.displayShelveset(shelvesets.get(i), shelvesetDetails != null ? shelvesetDetails
+                        : new PendingSet[0]);
+            }
+
+            view.endShelvesets();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean isInDateRange(final Shelveset shelveset) {
+        final Calendar creationDate = shelveset.getCreationDate();
+
+        if (createdAfter != null && creationDate.before(createdAfter)) {
+            return false;
+        }
+
+        if (createdBefore != null && !creationDate.before(createdBefore)) {
+            return false;
+        }
+
+        return true;
+    }
 }
@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.framework;
+
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.util.Check;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A progress monitor for work that is split into sub tasks running
+ * concurrently, e.g. one per repository. The sub tasks may be used from any
+ * thread, each by one thread at a time: their work is accounted atomically and
+ * rolled up into the parent monitor, and the detail of the sub tasks still
+ * running is combined into the detail of the parent.
+ * <p>
+ * The parent monitor is only called while holding the lock of this monitor,
+ * so it does not have to be thread safe itself, as long as its own task does
+ * not use it while the sub tasks run.
+ */
+public class ConcurrentTaskProgressMonitor
+        extends BaseTaskProgressMonitor {
+    private final TaskProgressMonitor parent;
+
+    /* The work done as the bits of a double */
+    private final AtomicLong worked = new AtomicLong(Double.doubleToLongBits(0));
+
+    /* The detail of the sub tasks running, in the order they were set */
+    private final Map<ConcurrentSubTaskProgressMonitor, String> subTaskDetails =
+            new LinkedHashMap<ConcurrentSubTaskProgressMonitor, String>();
+
+    private volatile String task;
+    private volatile boolean inTask = false;
+    private volatile int workTotal = 0;
+    private volatile TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
+    private volatile String detail;
+
+    /**
+     * Constructor
+     *
+     * @param parent the monitor to report the work to, typically a sub task
+     *               of the monitor of the calling task
+     */
+    public ConcurrentTaskProgressMonitor(final TaskProgressMonitor parent) {
+        Check.notNull(parent, "parent");
+
+        this.parent = parent;
+    }
+
+    public void beginTask(String task, int work, TaskProgressDisplay displayOptions) {
+        Check.notNull(task, "task");
+        Check.isTrue(work >= TaskProgressMonitor.INDETERMINATE, "work >= INDETERMINATE");
+        Check.notNull(displayOptions, "displayOptions");
+
+        synchronized (this) {
+            if (this.inTask) {
+                return;
+            }
+
+            this.task = task;
+            this.inTask = true;
+            this.workTotal = work;
+            this.displayOptions = displayOptions;
+            this.worked.set(Double.doubleToLongBits(0));
+
+            parent.beginTask(task, work, displayOptions);
+        }
+    }
+
+    public String getTask() {
+        return task;
+    }
+
+    public int getWork() {
+        return workTotal;
+    }
+
+    public synchronized void setWork(int workTotal) {
+        this.workTotal = workTotal;
+        parent.setWork(workTotal);
+    }
+
+    public TaskProgressDisplay getTaskProgressDisplayOptions() {
+        return displayOptions;
+    }
+
+    /**
+     * Creates a sub task that may be used from another thread
+     */
+    public TaskProgressMonitor newSubTask(int subWork) {
+        return new ConcurrentSubTaskProgressMonitor(subWork);
+    }
+
+    public String getDetail() {
+        return detail;
+    }
+
+    public synchronized void setDetail(String detail) {
+        this.detail = detail;
+        parent.setDetail(detail);
+    }
+
+    public void worked(double amount) {
+        if (!this.inTask || amount <= 0) {
+            return;
+        }
+
+        /* Clamp the work done to the total without a lock */
+        long current;
+        double accepted;
+        do {
+            current = worked.get();
+
+            final double currentWorked = Double.longBitsToDouble(current);
+            accepted = Math.min(amount, workTotal - currentWorked);
+
+            if (accepted <= 0) {
+                return;
+            }
+        } while (!worked.compareAndSet(current, Double.doubleToLongBits(Double.longBitsToDouble(current) + accepted)));
+
+        synchronized (this) {
+            parent.worked(accepted);
+        }
+    }
+
+    public synchronized void downloaded(long bytes) {
+        parent.downloaded(bytes);
+    }
+
+    public synchronized void displayMessage(String message) {
+        parent.displayMessage(message);
+    }
+
+    public synchronized void displayWarning(String message) {
+        parent.displayWarning(message);
+    }
+
+    public synchronized void displayVerbose(String message) {
+        parent.displayVerbose(message);
+    }
+
+    public void endTask() {
+        synchronized (this) {
+            if (!this.inTask) {
+                return;
+            }
+
+            final double remaining = workTotal - Double.longBitsToDouble(worked.get());
+
+            if (remaining > 0) {
+                parent.worked(remaining);
+            }
+
+            subTaskDetails.clear();
+            parent.endTask();
+
+            this.inTask = false;
+            this.task = null;
+            this.workTotal = 0;
+            this.detail = null;
+            this.worked.set(Double.doubleToLongBits(0));
+            this.displayOptions = TaskProgressDisplay.NONE;
+        }
+    }
+
+    public void dispose() {
+    }
+
+    private synchronized void setSubTaskDetail(final ConcurrentSubTaskProgressMonitor subTask, final String subTaskDetail) {
+        /* Move the sub task to the end so that its detail is the latest */
+        subTaskDetails.remove(subTask);
+
+        if (subTaskDetail != null && subTaskDetail.length() > 0) {
+            subTaskDetails.put(subTask, subTaskDetail);
+        }
+
+        if (!displayOptions.contains(TaskProgressDisplay.DISPLAY_SUBTASK_DETAIL)) {
+            return;
+        }
+
+        String latestDetail = null;
+        for (final String value : subTaskDetails.values()) {
+            latestDetail = value;
+        }
+
+        String subTasksDetail = null;
+        if (subTaskDetails.size() > 1) {
+            subTasksDetail = Messages.formatString(
+                    "ConcurrentTaskProgressMonitor.ConcurrentDetailFormat",
+                    latestDetail,
+                    Integer.toString(subTaskDetails.size() - 1));
+        } else {
+            subTasksDetail = latestDetail;
+        }
+
+        if (detail != null && detail.length() > 0 && subTasksDetail != null) {
+            parent.setDetail(Messages.formatString("SubTaskProgressMonitor.DetailFormat", detail, subTasksDetail));
+        } else if (subTasksDetail != null) {
+            parent.setDetail(subTasksDetail);
+        } else {
+            parent.setDetail(detail);
+        }
+    }
+
+    /**
+     * A sub task of a {@link ConcurrentTaskProgressMonitor}, used by one
+     * thread at a time
+     */
+    private class ConcurrentSubTaskProgressMonitor
+            extends BaseTaskProgressMonitor {
+        private final int parentWork;
+
+        private String task;
+        private boolean inTask = false;
+        private double worked = 0;
+        private int workTotal = 0;
+
+        private String detail;
+        private TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
+
+        public ConcurrentSubTaskProgressMonitor(final int parentWork) {
+            Check.isTrue(parentWork >= 0, "parentWork >= 0");
+
+            this.parentWork = parentWork;
+        }
+
+        public void beginTask(String task, int work, TaskProgressDisplay displayOptions) {
+            Check.notNull(task, "task");
+            Check.isTrue(work >= TaskProgressMonitor.INDETERMINATE, "work >= INDETERMINATE");
+
+            if (this.inTask) {
+                return;
+            }
+
+            this.task = task;
+            this.inTask = true;
+            this.workTotal = work;
+            this.displayOptions = displayOptions;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        public int getWork() {
+            return workTotal;
+        }
+
+        public void setWork(int workTotal) {
+            this.workTotal = workTotal;
+        }
+
+        public TaskProgressDisplay getTaskProgressDisplayOptions() {
+            return displayOptions;
+        }
+
+        public TaskProgressMonitor newSubTask(int subWork) {
+            return new SubTaskProgressMonitor(this, subWork);
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public void setDetail(String detail) {
+            this.detail = detail;
+            setSubTaskDetail(this, detail);
+        }
+
+        public void worked(double amount) {
+            if (workTotal <= 0) {
+                return;
+            }
+
+            if (worked + amount > workTotal) {
+                amount = workTotal - worked;
+                worked = workTotal;
+            } else {
+                this.worked += amount;
+            }
+
+            ConcurrentTaskProgressMonitor.this.worked((amount / workTotal) * (double) parentWork);
+        }
+
+        public void downloaded(long bytes) {
+            ConcurrentTaskProgressMonitor.this.downloaded(bytes);
+        }
+
+        public void displayMessage(String message) {
+            ConcurrentTaskProgressMonitor.this.displayMessage(message);
+        }
+
+        public void displayWarning(String message) {
+            ConcurrentTaskProgressMonitor.this.displayWarning(message);
+        }
+
+        public void displayVerbose(String message) {
+            ConcurrentTaskProgressMonitor.this.displayVerbose(message);
+        }
+
+        public void endTask() {
+            if (!this.inTask) {
+                return;
+            }
+
+            /* This task is done, notify the parent of the remaining work */
+            if (workTotal > 0 && worked < workTotal) {
+                worked(workTotal - worked);
+            } else if (workTotal <= 0) {
+                ConcurrentTaskProgressMonitor.this.worked(parentWork);
+            }
+
+            setSubTaskDetail(this, null);
+
+            this.inTask = false;
+            this.task = null;
+            this.workTotal = 0;
+            this.worked = 0;
+            this.displayOptions = TaskProgressDisplay.NONE;
+        }
+
+        public void dispose() {
+        }
+    }
+}
@@ -29,11 +29,11 @@ package com.microsoft.gittf.core.tasks.framework;
  */
 public class NullTaskProgressMonitor
         extends BaseTaskProgressMonitor {
-    private boolean inTask = false;
-    private String task;
-    private int work;
-    private TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
-    private String detail;
+    private volatile boolean inTask = false;
+    private volatile String task;
+    private volatile int work;
+    private volatile TaskProgressDisplay displayOptions = TaskProgressDisplay.NONE;
+    private volatile String detail;
 
     public NullTaskProgressMonitor() {
     }
@@ -80,6 +80,9 @@ public class NullTaskProgressMonitor
     public void worked(final double amount) {
     }
 
+    public void downloaded(final long bytes) {
+    }
+
     public void displayMessage(final String message) {
     }
 
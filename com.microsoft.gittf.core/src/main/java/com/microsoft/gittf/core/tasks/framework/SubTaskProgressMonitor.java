@@ -28,7 +28,9 @@ import com.microsoft.gittf.core.Messages;
 import com.microsoft.gittf.core.util.Check;
 
 /**
- * A progress monitor for sub tasks
+ * A progress monitor for sub tasks. The work is accounted atomically, so the
+ * monitor may be shared by threads; to run sub tasks concurrently use a
+ * {@link ConcurrentTaskProgressMonitor}.
  */
 public class SubTaskProgressMonitor
         extends BaseTaskProgressMonitor {
@@ -81,7 +83,7 @@ public class SubTaskProgressMonitor
         return workTotal;
     }
 
-    public void setWork(int workTotal) {
+    public synchronized void setWork(int workTotal) {
         this.workTotal = workTotal;
         worked(0);
     }
@@ -112,7 +114,7 @@ public class SubTaskProgressMonitor
         }
     }
 
-    public void worked(double amount) {
+    public synchronized void worked(double amount) {
         if (worked + amount > workTotal) {
             amount = workTotal - worked;
             worked = workTotal;
@@ -123,6 +125,10 @@ public class SubTaskProgressMonitor
         parent.worked(((amount / workTotal) * (double) parentWork));
     }
 
+    public void downloaded(long bytes) {
+        parent.downloaded(bytes);
+    }
+
     public void displayMessage(String message) {
         parent.displayMessage(message);
     }
@@ -135,7 +141,7 @@ public class SubTaskProgressMonitor
         parent.displayVerbose(message);
     }
 
-    public void endTask() {
+    public synchronized void endTask() {
         if (!this.inTask) {
             return;
         }
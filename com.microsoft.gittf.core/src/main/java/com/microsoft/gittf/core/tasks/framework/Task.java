@@ -24,6 +24,8 @@
 
 package com.microsoft.gittf.core.tasks.framework;
 
+import java.util.Map;
+
 /**
  * Task abstract class
  */
@@ -37,4 +39,15 @@ public abstract class Task {
      */
     public abstract TaskStatus run(final TaskProgressMonitor progressMonitor)
             throws Exception;
+
+    /**
+     * Gets the values that describe what the task worked on, such as a
+     * changeset id, a commit id or a number of items. They are recorded when
+     * the execution of the task is traced.
+     *
+     * @return the values by name, or null if there are none
+     */
+    public Map<String, Object> getTraceArguments() {
+        return null;
+    }
 }
@@ -31,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The task executor class that is responsible for executing any Task
@@ -38,6 +39,12 @@ import java.util.List;
 public class TaskExecutor {
     private static final Log log = LogFactory.getLog(TaskExecutor.class);
 
+    /* Handlers called for the tasks of every executor, such as the tracer */
+    private static final List<TaskStartedHandler> globalTaskStartedHandlers =
+            new CopyOnWriteArrayList<TaskStartedHandler>();
+    private static final List<TaskCompletedHandler> globalTaskCompletedHandlers =
+            new CopyOnWriteArrayList<TaskCompletedHandler>();
+
     private final TaskProgressMonitor progressMonitor;
 
     private final List<TaskStartedHandler> taskStartedHandlers = new ArrayList<TaskStartedHandler>();
@@ -102,6 +109,55 @@ public class TaskExecutor {
         return taskCompletedHandlers.remove(handler);
     }
 
+    /**
+     * Adds a TaskStartedHandler that is called for the tasks of every executor
+     *
+     * @param handler
+     * @return
+     */
+    public static boolean addGlobalTaskStartedHandler(TaskStartedHandler handler) {
+        Check.notNull(handler, "handler");
+
+        return globalTaskStartedHandlers.add(handler);
+    }
+
+    /**
+     * Removes a global TaskStartedHandler
+     *
+     * @param handler
+     * @return
+     */
+    public static boolean removeGlobalTaskStartedHandler(TaskStartedHandler handler) {
+        Check.notNull(handler, "handler");
+
+        return globalTaskStartedHandlers.remove(handler);
+    }
+
+    /**
+     * Adds a TaskCompletedHandler that is called for the tasks of every
+     * executor
+     *
+     * @param handler
+     * @return
+     */
+    public static boolean addGlobalTaskCompletedHandler(TaskCompletedHandler handler) {
+        Check.notNull(handler, "handler");
+
+        return globalTaskCompletedHandlers.add(handler);
+    }
+
+    /**
+     * Removes a global TaskCompletedHandler
+     *
+     * @param handler
+     * @return
+     */
+    public static boolean removeGlobalTaskCompletedHandler(TaskCompletedHandler handler) {
+        Check.notNull(handler, "handler");
+
+        return globalTaskCompletedHandlers.remove(handler);
+    }
+
     /**
      * Executes the specified task
      *
@@ -113,16 +169,12 @@ public class TaskExecutor {
 
         TaskStatus status;
 
-        /* Calls the task started handlers */
-        for (TaskStartedHandler handler : taskStartedHandlers) {
-            try {
-                handler.onTaskStarted(task);
-            } catch (Exception e) {
-                log.warn(MessageFormat.format("Exception while notifying task start handler {0} for task {1}",
-                        handler.getClass().getSimpleName(),
-                        task.getClass().getSimpleName()), e);
-            }
-        }
+        /*
+         * Calls the task started handlers, the global handlers last so that
+         * they are as close as possible to the task itself
+         */
+        notifyTaskStarted(taskStartedHandlers, task);
+        notifyTaskStarted(globalTaskStartedHandlers, task);
 
         /* Runs the task */
         try {
@@ -133,8 +185,30 @@ public class TaskExecutor {
             progressMonitor.dispose();
         }
 
-        /* Calls the task completed handlers */
-        for (TaskCompletedHandler handler : taskCompletedHandlers) {
+        /* Calls the task completed handlers, the global handlers first */
+        notifyTaskCompleted(globalTaskCompletedHandlers, task, status);
+        notifyTaskCompleted(taskCompletedHandlers, task, status);
+
+        return status;
+    }
+
+    private static void notifyTaskStarted(final List<TaskStartedHandler> handlers, final Task task) {
+        for (TaskStartedHandler handler : handlers) {
+            try {
+                handler.onTaskStarted(task);
+            } catch (Exception e) {
+                log.warn(MessageFormat.format("Exception while notifying task start handler {0} for task {1}",
+                        handler.getClass().getSimpleName(),
+                        task.getClass().getSimpleName()), e);
+            }
+        }
+    }
+
+    private static void notifyTaskCompleted(
+            final List<TaskCompletedHandler> handlers,
+            final Task task,
+            final TaskStatus status) {
+        for (TaskCompletedHandler handler : handlers) {
             try {
                 handler.onTaskCompleted(task, status);
             } catch (Exception e) {
@@ -143,7 +217,5 @@ public class TaskExecutor {
                         task.getClass().getSimpleName()), e);
             }
         }
-
-        return status;
     }
 }
@@ -163,6 +163,14 @@ public interface TaskProgressMonitor {
      */
     void worked(final double amount);
 
+    /**
+     * Indicates that the task has downloaded a file, so that the progress
+     * monitor can report the transfer rate.
+     *
+     * @param bytes The size of the file downloaded
+     */
+    void downloaded(final long bytes);
+
     /**
      * Displays a message to the progress monitor (if the progress monitor is so
      * configured to display messages.)
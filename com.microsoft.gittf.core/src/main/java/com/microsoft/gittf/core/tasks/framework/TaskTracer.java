@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.framework;
+
+import com.microsoft.gittf.core.tasks.framework.TaskStatus.TaskStatusSeverity;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.StringUtil;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Records a span for every task executed by any TaskExecutor while tracing is
+ * started. Spans of tasks executed from within another task are nested in the
+ * span of that task. The spans can be written in the Chrome trace event
+ * format, so that they can be loaded in a trace viewer.
+ */
+public final class TaskTracer
+        implements TaskStartedHandler, TaskCompletedHandler {
+    private final long startTime = System.nanoTime();
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTimeSupported;
+
+    private final ThreadLocal<Deque<Span>> openSpans = new ThreadLocal<Deque<Span>>() {
+        @Override
+        protected Deque<Span> initialValue() {
+            return new ArrayDeque<Span>();
+        }
+    };
+
+    private final List<Span> spans = new ArrayList<Span>();
+    private final Map<Long, String> threadNames = new HashMap<Long, String>();
+
+    private TaskTracer() {
+        boolean supported = false;
+
+        try {
+            supported = threadBean.isCurrentThreadCpuTimeSupported();
+
+            if (supported && !threadBean.isThreadCpuTimeEnabled()) {
+                threadBean.setThreadCpuTimeEnabled(true);
+            }
+        } catch (Exception e) {
+            supported = false;
+        }
+
+        this.cpuTimeSupported = supported;
+    }
+
+    /**
+     * Starts tracing the tasks of every TaskExecutor
+     *
+     * @return the tracer, call stop to stop tracing
+     */
+    public static TaskTracer start() {
+        final TaskTracer tracer = new TaskTracer();
+
+        TaskExecutor.addGlobalTaskStartedHandler(tracer);
+        TaskExecutor.addGlobalTaskCompletedHandler(tracer);
+
+        return tracer;
+    }
+
+    /**
+     * Stops tracing, the spans recorded so far are kept
+     */
+    public void stop() {
+        TaskExecutor.removeGlobalTaskStartedHandler(this);
+        TaskExecutor.removeGlobalTaskCompletedHandler(this);
+    }
+
+    public void onTaskStarted(final Task task) {
+        openSpans.get().push(new Span(task, System.nanoTime(), getCpuTime()));
+    }
+
+    public void onTaskCompleted(final Task task, final TaskStatus status) {
+        final long endTime = System.nanoTime();
+        final long endCpuTime = getCpuTime();
+
+        /* Drop the spans of tasks that did not complete through the executor */
+        final Deque<Span> stack = openSpans.get();
+        Span span = null;
+
+        while (!stack.isEmpty()) {
+            span = stack.pop();
+
+            if (span.task == task) {
+                break;
+            }
+
+            span = null;
+        }
+
+        if (span == null) {
+            return;
+        }
+
+        span.duration = endTime - span.startTime;
+        span.cpuDuration = endCpuTime >= 0 && span.startCpuTime >= 0 ? endCpuTime - span.startCpuTime : -1;
+        span.severity = status != null ? status.getSeverity() : TaskStatus.OK;
+
+        try {
+            span.arguments = task.getTraceArguments();
+        } catch (Exception e) {
+            span.arguments = null;
+        }
+
+        final Thread thread = Thread.currentThread();
+
+        synchronized (spans) {
+            spans.add(span);
+
+            if (!threadNames.containsKey(span.threadID)) {
+                threadNames.put(span.threadID, thread.getName());
+            }
+        }
+    }
+
+    /**
+     * Writes the spans recorded so far as Chrome trace event JSON
+     *
+     * @param file the file to write
+     * @throws IOException
+     */
+    public void writeChromeTrace(final File file)
+            throws IOException {
+        Check.notNull(file, "file");
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+        try {
+            writeChromeTrace(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the spans recorded so far as Chrome trace event JSON
+     *
+     * @param writer the writer to write to
+     * @throws IOException
+     */
+    public void writeChromeTrace(final Writer writer)
+            throws IOException {
+        Check.notNull(writer, "writer");
+
+        final List<Span> completedSpans;
+        final Map<Long, String> names;
+
+        synchronized (spans) {
+            completedSpans = new ArrayList<Span>(spans);
+            names = new HashMap<Long, String>(threadNames);
+        }
+
+        writer.write("{\"traceEvents\":[");
+
+        boolean first = true;
+
+        for (Entry<Long, String> threadName : names.entrySet()) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(threadName.getKey()));
+            writer.write(",\"args\":{\"name\":");
+            writer.write(StringUtil.toJsonValue(threadName.getValue()));
+            writer.write("}}");
+        }
+
+        for (Span span : completedSpans) {
+            writer.write(first ? "\n" : ",\n");
+            first = false;
+
+            writer.write("{\"name\":");
+            writer.write(StringUtil.toJsonValue(span.task.getClass().getSimpleName()));
+            writer.write(",\"cat\":\"task\",\"ph\":\"X\",\"pid\":1,\"tid\":");
+            writer.write(Long.toString(span.threadID));
+            writer.write(",\"ts\":");
+            writer.write(toMicroseconds(span.startTime - startTime));
+            writer.write(",\"dur\":");
+            writer.write(toMicroseconds(span.duration));
+
+            if (span.cpuDuration >= 0) {
+                writer.write(",\"tts\":");
+                writer.write(toMicroseconds(span.startCpuTime));
+                writer.write(",\"tdur\":");
+                writer.write(toMicroseconds(span.cpuDuration));
+            }
+
+            writer.write(",\"args\":{\"class\":");
+            writer.write(StringUtil.toJsonValue(span.task.getClass().getName()));
+            writer.write(",\"status\":");
+            writer.write(StringUtil.toJsonValue(getSeverityName(span.severity)));
+
+            if (span.cpuDuration >= 0) {
+                writer.write(",\"cpu_ms\":");
+                writer.write(Long.toString(span.cpuDuration / 1000000L));
+            }
+
+            if (span.arguments != null) {
+                final Iterator<Entry<String, Object>> arguments = span.arguments.entrySet().iterator();
+
+                while (arguments.hasNext()) {
+                    final Entry<String, Object> argument = arguments.next();
+
+                    writer.write(",");
+                    writer.write(StringUtil.toJsonValue(argument.getKey()));
+                    writer.write(":");
+                    writer.write(StringUtil.toJsonValue(argument.getValue()));
+                }
+            }
+
+            writer.write("}}");
+        }
+
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+    }
+
+    private long getCpuTime() {
+        return cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : -1;
+    }
+
+    private static String toMicroseconds(final long nanoseconds) {
+        return Long.toString(nanoseconds / 1000L);
+    }
+
+    private static String getSeverityName(final TaskStatusSeverity severity) {
+        if (severity == TaskStatus.ERROR) {
+            return "error";
+        } else if (severity == TaskStatus.WARNING) {
+            return "warning";
+        } else if (severity == TaskStatus.CANCEL) {
+            return "cancel";
+        } else if (severity == TaskStatus.INFO) {
+            return "info";
+        }
+
+        return "ok";
+    }
+
+    private static final class Span {
+        private final Task task;
+        private final long threadID = Thread.currentThread().getId();
+        private final long startTime;
+        private final long startCpuTime;
+
+        private long duration;
+        private long cpuDuration;
+        private TaskStatusSeverity severity;
+        private Map<String, Object> arguments;
+
+        public Span(final Task task, final long startTime, final long startCpuTime) {
+            this.task = task;
+            this.startTime = startTime;
+            this.startCpuTime = startCpuTime;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.EnvironmentUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.diff.DiffConfig;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.*;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
+
+/**
+ * Detects file renames in a list of differences in two stages. The first stage
+ * pairs deletes and adds of the exact same content in linear time. The second
+ * stage runs the content similarity scoring of JGit on the remaining
+ * candidates only, within a rename limit and a time budget, since scoring is
+ * quadratic and can take much longer than the checkin itself on commits with
+ * tens of thousands of adds and deletes.
+ */
+public class BoundedRenameDetector {
+    private static final Log log = LogFactory.getLog(BoundedRenameDetector.class);
+
+    private static final String RENAME_LIMIT_NAME = "GITTF_RENAME_LIMIT";
+    private static final String RENAME_LIMIT_NAME_ALTERNATE = "gittf_rename_limit";
+    private static final String RENAME_TIMEOUT_NAME = "GITTF_RENAME_TIMEOUT";
+    private static final String RENAME_TIMEOUT_NAME_ALTERNATE = "gittf_rename_timeout";
+
+    /**
+     * The default time budget for the similarity scoring, in seconds
+     */
+    public static final int DEFAULT_RENAME_TIMEOUT = 60;
+
+    private static final Comparator<DiffEntry> DIFF_COMPARATOR = new Comparator<DiffEntry>() {
+        public int compare(DiffEntry a, DiffEntry b) {
+            int cmp = nameOf(a).compareTo(nameOf(b));
+            if (cmp == 0) {
+                cmp = sortOf(a.getChangeType()) - sortOf(b.getChangeType());
+            }
+            return cmp;
+        }
+
+        private String nameOf(DiffEntry entry) {
+            return entry.getChangeType() == ChangeType.DELETE ? entry.getOldPath() : entry.getNewPath();
+        }
+
+        private int sortOf(ChangeType changeType) {
+            switch (changeType) {
+                case DELETE:
+                    return 1;
+                case ADD:
+                    return 2;
+                default:
+                    return 10;
+            }
+        }
+    };
+
+    private final Repository repository;
+    private final List<DiffEntry> entries = new ArrayList<DiffEntry>();
+
+    private int renameLimit;
+    private long timeBudget;
+
+    private int exactRenameCount = 0;
+    private boolean budgetExceeded = false;
+
+    /**
+     * Constructor
+     *
+     * @param repository the git repository
+     */
+    public BoundedRenameDetector(final Repository repository) {
+        Check.notNull(repository, "repository");
+
+        this.repository = repository;
+
+        /* Default to the diff.renamelimit of the repository */
+        final int configuredRenameLimit = repository.getConfig().get(DiffConfig.KEY).getRenameLimit();
+
+        this.renameLimit = EnvironmentUtil.getIntegerValue(RENAME_LIMIT_NAME, RENAME_LIMIT_NAME_ALTERNATE, 0, configuredRenameLimit);
+        this.timeBudget =
+                EnvironmentUtil.getIntegerValue(RENAME_TIMEOUT_NAME, RENAME_TIMEOUT_NAME_ALTERNATE, 0, DEFAULT_RENAME_TIMEOUT) * 1000L;
+    }
+
+    /**
+     * Sets the maximum number of adds or deletes that are scored for content
+     * similarity. Zero means no limit.
+     *
+     * @param renameLimit
+     */
+    public void setRenameLimit(final int renameLimit) {
+        Check.isTrue(renameLimit >= 0, "renameLimit >= 0");
+
+        this.renameLimit = renameLimit;
+    }
+
+    public int getRenameLimit() {
+        return renameLimit;
+    }
+
+    /**
+     * Sets the time budget of the similarity scoring in milliseconds. Zero
+     * means no budget.
+     *
+     * @param timeBudget
+     */
+    public void setTimeBudget(final long timeBudget) {
+        Check.isTrue(timeBudget >= 0, "timeBudget >= 0");
+
+        this.timeBudget = timeBudget;
+    }
+
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Adds the differences to detect renames in
+     *
+     * @param entries
+     */
+    public void addAll(final Collection<DiffEntry> entries) {
+        Check.notNull(entries, "entries");
+
+        this.entries.addAll(entries);
+    }
+
+    /**
+     * Determines whether the content similarity scoring was skipped or stopped
+     * because the rename limit or the time budget was exceeded. Only exact
+     * renames were detected for the remaining candidates in that case.
+     *
+     * @return
+     */
+    public boolean isBudgetExceeded() {
+        return budgetExceeded;
+    }
+
+    /**
+     * Gets the number of renames detected by matching identical content
+     *
+     * @return
+     */
+    public int getExactRenameCount() {
+        return exactRenameCount;
+    }
+
+    /**
+     * Detects the renames in the differences added
+     *
+     * @return the differences with the detected adds and deletes replaced by
+     * renames
+     * @throws IOException
+     */
+    public List<DiffEntry> compute()
+            throws IOException {
+        final List<DiffEntry> result = new ArrayList<DiffEntry>(entries.size());
+
+        final Map<ObjectId, List<DiffEntry>> deletesById = new HashMap<ObjectId, List<DiffEntry>>();
+        final List<DiffEntry> adds = new ArrayList<DiffEntry>();
+
+        for (final DiffEntry entry : entries) {
+            if (entry.getChangeType() == ChangeType.DELETE && isFile(entry.getOldMode())) {
+                final ObjectId id = entry.getOldId().toObjectId();
+
+                List<DiffEntry> deletes = deletesById.get(id);
+                if (deletes == null) {
+                    deletes = new ArrayList<DiffEntry>(1);
+                    deletesById.put(id, deletes);
+                }
+
+                deletes.add(entry);
+            } else if (entry.getChangeType() == ChangeType.ADD && isFile(entry.getNewMode())) {
+                adds.add(entry);
+            } else {
+                result.add(entry);
+            }
+        }
+
+        /* Stage 1: pair the adds and deletes with the same content */
+        final List<DiffEntry> remainingAdds = new ArrayList<DiffEntry>();
+
+        for (final DiffEntry add : adds) {
+            final DiffEntry delete = removeBestExactMatch(deletesById.get(add.getNewId().toObjectId()), add);
+
+            if (delete != null) {
+                result.add(new ExactRenameEntry(delete, add));
+                exactRenameCount++;
+            } else {
+                remainingAdds.add(add);
+            }
+        }
+
+        final List<DiffEntry> remainingDeletes = new ArrayList<DiffEntry>();
+        for (final List<DiffEntry> deletes : deletesById.values()) {
+            remainingDeletes.addAll(deletes);
+        }
+
+        log.debug(MessageFormat.format("Exact renames: {0}, remaining adds: {1}, remaining deletes: {2}",
+                exactRenameCount, remainingAdds.size(), remainingDeletes.size()));
+
+        /* Stage 2: score the remaining candidates for content similarity */
+        if (!remainingAdds.isEmpty() && !remainingDeletes.isEmpty()) {
+            result.addAll(computeContentRenames(remainingAdds, remainingDeletes));
+        } else {
+            result.addAll(remainingAdds);
+            result.addAll(remainingDeletes);
+        }
+
+        Collections.sort(result, DIFF_COMPARATOR);
+
+        return result;
+    }
+
+    private List<DiffEntry> computeContentRenames(final List<DiffEntry> adds, final List<DiffEntry> deletes)
+            throws IOException {
+        final List<DiffEntry> unmatched = new ArrayList<DiffEntry>(adds.size() + deletes.size());
+        unmatched.addAll(adds);
+        unmatched.addAll(deletes);
+
+        final int candidateCount = Math.max(adds.size(), deletes.size());
+
+        if (renameLimit > 0 && candidateCount > renameLimit) {
+            log.warn(MessageFormat.format(
+                    "Skipping content rename detection for {0} candidates, the rename limit is {1}",
+                    candidateCount,
+                    renameLimit));
+
+            budgetExceeded = true;
+            return unmatched;
+        }
+
+        final RenameDetector similarityDetector = new RenameDetector(repository);
+        similarityDetector.setRenameLimit(renameLimit);
+        similarityDetector.addAll(unmatched);
+
+        final ObjectReader reader = repository.newObjectReader();
+
+        try {
+            final long start = System.currentTimeMillis();
+            final List<DiffEntry> detected =
+                    similarityDetector.compute(reader, new BudgetProgressMonitor(timeBudget > 0
+                            ? start + timeBudget : Long.MAX_VALUE));
+
+            log.debug(MessageFormat.format("Content rename detection took {0} ms",
+                    System.currentTimeMillis() - start));
+
+            if (similarityDetector.isOverRenameLimit()) {
+                budgetExceeded = true;
+            }
+
+            return detected;
+        } catch (BudgetExceededException e) {
+            log.warn(MessageFormat.format(
+                    "Content rename detection for {0} candidates exceeded the time budget of {1} ms",
+                    candidateCount,
+                    timeBudget));
+
+            budgetExceeded = true;
+            return unmatched;
+        } finally {
+            reader.release();
+        }
+    }
+
+    /**
+     * Removes the delete that is the best match for the add from the list of
+     * deletes with the same content. A delete with the same file name is
+     * preferred, so that files moved between folders are paired correctly.
+     */
+    private static DiffEntry removeBestExactMatch(final List<DiffEntry> deletes, final DiffEntry add) {
+        if (deletes == null || deletes.isEmpty()) {
+            return null;
+        }
+
+        final String addName = getFileName(add.getNewPath());
+        int bestIndex = -1;
+
+        for (int i = 0; i < deletes.size(); i++) {
+            final DiffEntry delete = deletes.get(i);
+
+            if (!isSameType(delete.getOldMode(), add.getNewMode())) {
+                continue;
+            }
+
+            if (bestIndex < 0) {
+                bestIndex = i;
+            }
+
+            if (getFileName(delete.getOldPath()).equals(addName)) {
+                bestIndex = i;
+                break;
+            }
+        }
+
+        return bestIndex < 0 ? null : deletes.remove(bestIndex);
+    }
+
+    private static String getFileName(final String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static boolean isFile(final FileMode mode) {
+        return mode.getObjectType() == OBJ_BLOB;
+    }
+
+    private static boolean isSameType(final FileMode a, final FileMode b) {
+        return (a.getBits() & FileMode.TYPE_MASK) == (b.getBits() & FileMode.TYPE_MASK);
+    }
+
+    /**
+     * A rename detected by matching identical content
+     */
+    private static final class ExactRenameEntry
+            extends DiffEntry {
+        private ExactRenameEntry(final DiffEntry delete, final DiffEntry add) {
+            oldPath = delete.getOldPath();
+            oldMode = delete.getOldMode();
+            oldId = delete.getOldId();
+
+            newPath = add.getNewPath();
+            newMode = add.getNewMode();
+            newId = add.getNewId();
+
+            changeType = ChangeType.RENAME;
+            score = 100;
+        }
+    }
+
+    /**
+     * Stops the similarity scoring once the deadline has passed
+     */
+    private static final class BudgetProgressMonitor
+            implements ProgressMonitor {
+        private final long deadline;
+
+        private BudgetProgressMonitor(final long deadline) {
+            this.deadline = deadline;
+        }
+
+        public void start(int totalTasks) {
+        }
+
+        public void beginTask(String title, int totalWork) {
+            checkBudget();
+        }
+
+        public void update(int completed) {
+            checkBudget();
+        }
+
+        public void endTask() {
+        }
+
+        public boolean isCancelled() {
+            return System.currentTimeMillis() > deadline;
+        }
+
+        private void checkBudget() {
+            if (isCancelled()) {
+                throw new BudgetExceededException();
+            }
+        }
+    }
+
+    private static final class BudgetExceededException
+            extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.Messages;
+import com.microsoft.gittf.core.util.Check;
+import com.microsoft.gittf.core.util.ObjectIdUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.NameConflictTreeWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
+
+/**
+ * Validates that commit trees do not contain the same item twice with names
+ * that only differ in case. TFS does not support having the same item with
+ * different case so we should not allow that.
+ * <p/>
+ * The validator keeps a case folded index of the last tree it validated. The
+ * first commit is validated by walking its entire tree, every following
+ * commit is validated by walking only the differences between the indexed
+ * tree and the commit tree, which keeps deep checkins of large trees linear in
+ * the size of the changes rather than the size of the tree.
+ */
+public class CaseSensitivityValidator {
+    private static final Log log = LogFactory.getLog(CaseSensitivityValidator.class);
+
+    private final Repository repository;
+
+    /* The lower cased paths of every item in the indexed tree */
+    private final Set<String> caseFoldedIndex = new HashSet<String>();
+
+    private RevTree indexedTree = null;
+
+    /**
+     * Constructor
+     *
+     * @param repository the git repository
+     */
+    public CaseSensitivityValidator(final Repository repository) {
+        Check.notNull(repository, "repository");
+
+        this.repository = repository;
+    }
+
+    /**
+     * Validates that the commit tree does not have any item twice with the
+     * same name only different in case.
+     *
+     * @param commit the commit to validate
+     * @throws Exception
+     */
+    public void validate(final RevCommit commit)
+            throws Exception {
+        Check.notNull(commit, "commit");
+
+        final RevTree tree = commit.getTree();
+        Check.notNull(tree, "tree");
+
+        if (indexedTree != null && indexedTree.equals(tree)) {
+            return;
+        }
+
+        try {
+            if (indexedTree == null) {
+                log.debug("Building the case folded index for the tree of " + commit.getName());
+
+                buildIndex(commit);
+            } else {
+                log.debug("Updating the case folded index with the differences in " + commit.getName());
+
+                updateIndex(commit);
+            }
+
+            indexedTree = tree;
+        } catch (Exception e) {
+            /* The index is only partially updated, start over next time */
+            caseFoldedIndex.clear();
+            indexedTree = null;
+
+            throw e;
+        }
+    }
+
+    /**
+     * Builds the index by walking every item in the commit tree
+     *
+     * @param commit the commit to index
+     * @throws Exception
+     */
+    private void buildIndex(final RevCommit commit)
+            throws Exception {
+        caseFoldedIndex.clear();
+
+        final TreeWalk treeWalker = new NameConflictTreeWalk(repository);
+
+        try {
+            treeWalker.addTree(commit.getTree());
+            treeWalker.setFilter(TreeFilter.ALL);
+
+            /* Walk the tree looking for duplicates in the tree */
+            while (treeWalker.next()) {
+                addToIndex(treeWalker.getPathString(), commit);
+
+                int objectType = treeWalker.getFileMode(0).getObjectType();
+                if (objectType == OBJ_TREE) {
+                    treeWalker.enterSubtree();
+                }
+            }
+        } finally {
+            treeWalker.release();
+        }
+    }
+
+    /**
+     * Updates the index by walking only the items that differ between the
+     * indexed tree and the commit tree
+     *
+     * @param commit the commit to index
+     * @throws Exception
+     */
+    private void updateIndex(final RevCommit commit)
+            throws Exception {
+        final List<String> removedPaths = new ArrayList<String>();
+        final List<String> addedPaths = new ArrayList<String>();
+
+        final TreeWalk treeWalker = new NameConflictTreeWalk(repository);
+
+        try {
+            treeWalker.addTree(indexedTree);
+            treeWalker.addTree(commit.getTree());
+            treeWalker.setFilter(TreeFilter.ANY_DIFF);
+
+            while (treeWalker.next()) {
+                final int oldMode = treeWalker.getRawMode(0);
+                final int newMode = treeWalker.getRawMode(1);
+
+                final boolean existedBefore = !FileMode.MISSING.equals(oldMode);
+                final boolean existsAfter = !FileMode.MISSING.equals(newMode);
+
+                /*
+                 * An item that exists on both sides with the same type has only
+                 * its content changed, its name is already in the index
+                 */
+                if (!existedBefore
+                        || !existsAfter
+                        || FileMode.fromBits(oldMode).getObjectType() != FileMode.fromBits(newMode).getObjectType()) {
+                    if (existedBefore) {
+                        removedPaths.add(treeWalker.getPathString());
+                    }
+
+                    if (existsAfter) {
+                        addedPaths.add(treeWalker.getPathString());
+                    }
+                }
+
+                if (treeWalker.isSubtree()) {
+                    treeWalker.enterSubtree();
+                }
+            }
+        } finally {
+            treeWalker.release();
+        }
+
+        /*
+         * Apply the removals first so that items that were only renamed to a
+         * different case are not reported as duplicates
+         */
+        for (final String removedPath : removedPaths) {
+            caseFoldedIndex.remove(removedPath.toLowerCase());
+        }
+
+        for (final String addedPath : addedPaths) {
+            addToIndex(addedPath, commit);
+        }
+    }
+
+    private void addToIndex(final String path, final RevCommit commit)
+            throws Exception {
+        final String pathString = path.toLowerCase();
+
+        if (caseFoldedIndex.contains(pathString)) {
+            throw new Exception(
+                    Messages.formatString(
+                            "PendDifferenceTask.SimilarItemWithDifferentCaseInCommitFormat", pathString, ObjectIdUtil.abbreviate(repository, commit.getId())));
+        }
+
+        caseFoldedIndex.add(pathString);
+    }
+}
@@ -33,6 +33,7 @@ import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
 import com.microsoft.gittf.core.tasks.framework.TaskStatus;
 import com.microsoft.gittf.core.util.Check;
 import com.microsoft.gittf.core.util.CommitUtil;
+import com.microsoft.gittf.core.util.EnvironmentUtil;
 import com.microsoft.gittf.core.util.ObjectIdUtil;
 import com.microsoft.gittf.core.util.WorkspaceOperationErrorListener;
 import com.microsoft.tfs.core.clients.versioncontrol.GetOptions;
@@ -41,12 +42,10 @@ import com.microsoft.tfs.core.clients.versioncontrol.WebServiceLevel;
 import com.microsoft.tfs.core.clients.versioncontrol.path.ServerPath;
 import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.*;
 import com.microsoft.tfs.core.clients.versioncontrol.specs.ItemSpec;
-import com.microsoft.tfs.jni.PlatformMiscUtils;
-import com.microsoft.tfs.util.StringHelpers;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.RenameDetector;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
@@ -63,7 +62,6 @@ import java.text.MessageFormat;
 import java.util.*;
 
 import static org.eclipse.jgit.lib.Constants.OBJ_BLOB;
-import static org.eclipse.jgit.lib.Constants.OBJ_TREE;
 
 /**
  * The task converts the differences between two commits into a list of pending
@@ -93,6 +91,14 @@ public class PendDifferenceTask
 
     private boolean validated = false;
 
+    private CaseSensitivityValidator caseSensitivityValidator;
+
+    private CheckinAnalysisChangeCollection analysis;
+
+    private List<List<RenameChange>> renameBatches;
+
+    private File stagingFolder;
+
     /**
      * Constructor
      *
@@ -170,7 +176,6 @@ public class PendDifferenceTask
 
         /* Init the tree walker object */
         final TreeWalk treeWalker = new NameConflictTreeWalk(repository);
-        final RenameDetector repositoryRenameDetector = new RenameDetector(repository);
 
         try {
             treeWalker.setRecursive(true);
@@ -189,8 +194,15 @@ public class PendDifferenceTask
              * analayze the differences first
              */
             if (renameMode != RenameMode.NONE) {
+                final BoundedRenameDetector repositoryRenameDetector = new BoundedRenameDetector(repository);
+
                 repositoryRenameDetector.addAll(treeDifferences);
                 treeDifferences = repositoryRenameDetector.compute();
+
+                if (repositoryRenameDetector.isBudgetExceeded()) {
+                    progressMonitor.displayWarning(Messages.getString(
+                            "PendDifferencesTask.RenameDetectionBudgetExceeded"));
+                }
             }
 
             /*
@@ -218,18 +230,22 @@ public class PendDifferenceTask
                 }
             }
 
-            /* Append each change in to the analysis object */
+            /*
+             * Append each change in to the analysis object. The ids of the
+             * entries come from the tree walk and are complete, so they are
+             * converted directly rather than resolved in the object database.
+             */
             for (DiffEntry change : treeDifferences) {
                 switch (change.getChangeType()) {
                     case ADD:
                     case COPY:
                         if (!isCaseSensitiveRename(change, deleteChanges, addChanges)) {
-                            analysis.pendAdd(new AddChange(change.getNewPath(), CommitUtil.resolveAbbreviatedId(
-                                    repository,
-                                    change.getNewId())));
+                            final ObjectId newObjectId = toObjectId(repository, change.getNewId());
+
+                            analysis.pendAdd(new AddChange(change.getNewPath(), newObjectId));
                             analysis.pendPropertyIfChanged(new PropertyChange(
                                     change.getNewPath(),
-                                    CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                                    newObjectId,
                                     change.getNewMode()));
                         }
                         break;
@@ -237,15 +253,16 @@ public class PendDifferenceTask
                     case DELETE:
                         if (isCaseSensitiveRename(change, deleteChanges, addChanges)) {
                             DiffEntry addChange = addChanges.get(change.getOldPath().toUpperCase());
+                            final ObjectId newObjectId = toObjectId(repository, addChange.getNewId());
 
                             analysis.pendRename(new RenameChange(
                                     change.getOldPath(),
                                     addChange.getNewPath(),
-                                    CommitUtil.resolveAbbreviatedId(repository, addChange.getNewId()),
+                                    newObjectId,
                                     !change.getOldId().equals(addChange.getNewId())));
                             analysis.pendPropertyIfChanged(new PropertyChange(
                                     addChange.getNewPath(),
-                                    CommitUtil.resolveAbbreviatedId(repository, addChange.getNewId()),
+                                    newObjectId,
                                     change.getOldMode(),
                                     addChange.getNewMode()));
                         } else {
@@ -253,28 +270,32 @@ public class PendDifferenceTask
                         }
                         break;
 
-                    case MODIFY:
-                        analysis.pendEdit(new EditChange(change.getNewPath(), CommitUtil.resolveAbbreviatedId(
-                                repository,
-                                change.getNewId())));
+                    case MODIFY: {
+                        final ObjectId newObjectId = toObjectId(repository, change.getNewId());
+
+                        analysis.pendEdit(new EditChange(change.getNewPath(), newObjectId));
                         analysis.pendPropertyIfChanged(new PropertyChange(
                                 change.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                                newObjectId,
                                 change.getOldMode(),
                                 change.getNewMode()));
                         break;
+                    }
+
+                    case RENAME: {
+                        final ObjectId newObjectId = toObjectId(repository, change.getNewId());
 
-                    case RENAME:
                         analysis.pendRename(new RenameChange(
                                 change.getOldPath(),
                                 change.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                                newObjectId,
                                 !change.getOldId().equals(change.getNewId())));
                         analysis.pendPropertyIfChanged(new PropertyChange(
                                 change.getNewPath(),
-                                CommitUtil.resolveAbbreviatedId(repository, change.getNewId()),
+                                newObjectId,
                                 change.getOldMode(),
                                 change.getNewMode()));
+                    }
                 }
             }
         } finally {
@@ -290,6 +311,22 @@ public class PendDifferenceTask
         return analysis;
     }
 
+    /**
+     * Converts the id of a diff entry to an object id, only looking it up in
+     * the object database when it is abbreviated
+     *
+     * @param repository the git repository
+     * @param objectID   the id to convert
+     * @return
+     */
+    private static ObjectId toObjectId(Repository repository, AbbreviatedObjectId objectID) {
+        if (objectID.isComplete()) {
+            return objectID.toObjectId();
+        }
+
+        return CommitUtil.resolveAbbreviatedId(repository, objectID);
+    }
+
     private static boolean isCaseSensitiveRename(
             DiffEntry change,
             Map<String, DiffEntry> deleteChanges,
@@ -344,7 +381,7 @@ public class PendDifferenceTask
 
                 if (!ObjectId.zeroId().equals(toID)) {
                     analysis.pendAdd(new AddChange(treeWalker.getPathString(), toID));
-                } else {
+                } else if (log.isInfoEnabled()) {
                     log.info(MessageFormat.format("Ignoring item {0} - type {1}",
                             treeWalker.getPathString(),
                             (toRootTree != null ? treeWalker.getFileMode(1).getObjectType() : "none")));
@@ -368,23 +405,11 @@ public class PendDifferenceTask
         final String MAX_CHANGES_TO_PEND_NAME_ALTERNATE = "gittf_max_changes";
         final int DEFAULT_MAX_CHANGES_TO_PEND = 10;
 
-        int count = -1;
-
-        String value = PlatformMiscUtils.getInstance().getEnvironmentVariable(MAX_CHANGES_TO_PEND_NAME);
-
-        if (StringHelpers.isNullOrEmpty(value)) {
-            value = PlatformMiscUtils.getInstance().getEnvironmentVariable(MAX_CHANGES_TO_PEND_NAME_ALTERNATE);
-        }
-
-        try {
-            if (!StringHelpers.isNullOrEmpty(value)) {
-                count = Integer.parseInt(value);
-            }
-
-        } catch (final Exception e) {
-        }
-
-        return count > 0 ? count : DEFAULT_MAX_CHANGES_TO_PEND;
+        return EnvironmentUtil.getIntegerValue(
+                MAX_CHANGES_TO_PEND_NAME,
+                MAX_CHANGES_TO_PEND_NAME_ALTERNATE,
+                1,
+                DEFAULT_MAX_CHANGES_TO_PEND);
     }
 
     /**
@@ -396,6 +421,25 @@ public class PendDifferenceTask
         return pendingChanges;
     }
 
+    @Override
+    public Map<String, Object> getTraceArguments() {
+        final Map<String, Object> arguments = new LinkedHashMap<String, Object>();
+
+        if (commitFrom != null) {
+            arguments.put("from", commitFrom.getName());
+        }
+
+        if (commitTo != null) {
+            arguments.put("to", commitTo.getName());
+        }
+
+        if (pendingChanges != null) {
+            arguments.put("changes", pendingChanges.length);
+        }
+
+        return arguments;
+    }
+
     /**
      * Sets the rename mode to use when determining the changes that needs to be
      * pended
@@ -406,6 +450,17 @@ public class PendDifferenceTask
         this.renameMode = renameMode;
     }
 
+    /**
+     * Sets the case sensitivity validator to use when validating the target
+     * commit. Sharing one validator between the tasks of a sequence of commits
+     * lets every commit after the first one be validated incrementally.
+     *
+     * @param caseSensitivityValidator
+     */
+    public void setCaseSensitivityValidator(CaseSensitivityValidator caseSensitivityValidator) {
+        this.caseSensitivityValidator = caseSensitivityValidator;
+    }
+
     @Override
     public TaskStatus run(final TaskProgressMonitor progressMonitor) {
         log.debug("Pend differences task started.");
@@ -445,42 +500,17 @@ public class PendDifferenceTask
         progressMonitor.worked(5);
         progressMonitor.setDetail(null);
 
-        /* Get the RevTree objects for the to and from commits */
-        RevTree fromTree = (commitFrom != null) ? commitFrom.getTree() : null;
-        RevTree toTree = commitTo.getTree();
-        Check.notNull(toTree, "toTree");
-
         final TaskProgressMonitor analyzeMonitor = progressMonitor.newSubTask(75);
-        final CheckinAnalysisChangeCollection analysis;
-
-        try {
-            log.debug("Validate the commit tree objects for any violations");
-
-            /* Validate the commit tree objects for any violations */
-            validate();
 
-            /*
-             * If we are comparing two commits analyze the difference between
-             * both commits
-             */
-            if (fromTree != null) {
-                log.debug("Analyzing differences");
-
-                analysis = analyzeDifferences(repository, fromTree, toTree, renameMode, analyzeMonitor);
-            }
-            /*
-             * Otherwise we need to create ADD changes for all the items in the
-             * tree
-             */
-            else {
-                log.debug("Analyzing entire tree to pend ADDs");
+        /* The analysis may have been done ahead of time by a staging pass */
+        if (analysis == null) {
+            try {
+                analyze(analyzeMonitor);
+            } catch (Exception e) {
+                log.debug("Pend differences task error:", e);
 
-                analysis = analyzeTree(repository, toTree, analyzeMonitor);
+                return new TaskStatus(TaskStatus.ERROR, e);
             }
-        } catch (Exception e) {
-            log.debug("Pend differences task error:", e);
-
-            return new TaskStatus(TaskStatus.ERROR, e);
         }
 
         analyzeMonitor.endTask();
@@ -517,6 +547,105 @@ public class PendDifferenceTask
         return TaskStatus.OK_STATUS;
     }
 
+    /**
+     * Validates the commits and analyzes the differences between them. The
+     * analysis is kept by the task and used when the task runs. The analysis
+     * does not talk to the server and thus can run ahead of the checkin of a
+     * previous commit.
+     *
+     * @param progressMonitor the progress monitor to use to report progress
+     * @return
+     * @throws Exception
+     */
+    public CheckinAnalysisChangeCollection analyze(final TaskProgressMonitor progressMonitor)
+            throws Exception {
+        Check.notNull(progressMonitor, "progressMonitor");
+
+        if (analysis != null) {
+            return analysis;
+        }
+
+        /* Get the RevTree objects for the to and from commits */
+        RevTree fromTree = (commitFrom != null) ? commitFrom.getTree() : null;
+        RevTree toTree = commitTo.getTree();
+        Check.notNull(toTree, "toTree");
+
+        log.debug("Validate the commit tree objects for any violations");
+
+        /* Validate the commit tree objects for any violations */
+        validate();
+
+        final CheckinAnalysisChangeCollection result;
+
+        /*
+         * If we are comparing two commits analyze the difference between
+         * both commits
+         */
+        if (fromTree != null) {
+            log.debug("Analyzing differences");
+
+            result = analyzeDifferences(repository, fromTree, toTree, renameMode, progressMonitor);
+        }
+        /*
+         * Otherwise we need to create ADD changes for all the items in the
+         * tree
+         */
+        else {
+            log.debug("Analyzing entire tree to pend ADDs");
+
+            result = analyzeTree(repository, toTree, progressMonitor);
+        }
+
+        /*
+         * If the rename mode was to detect all renames including folder
+         * renames compute the folder rename batches now, so that they are
+         * ready by the time the renames are pended.
+         */
+        if (renameMode == RenameMode.ALL && !result.isEmpty()) {
+            final TfsFolderRenameDetector folderRenameDetector = result.createFolderRenameDetector();
+            folderRenameDetector.compute();
+
+            renameBatches = folderRenameDetector.getRenameBatches();
+        }
+
+        analysis = result;
+
+        return analysis;
+    }
+
+    /**
+     * Extracts the content of every item that will be uploaded to the server
+     * into the staging folder specified. The staged items are moved into the
+     * working folder when the changes are pended instead of being extracted
+     * from the git repository again. The task must have been analyzed first.
+     *
+     * @param stagingFolder the folder to extract the items to
+     * @throws Exception
+     */
+    public void stage(final File stagingFolder)
+            throws Exception {
+        Check.notNull(stagingFolder, "stagingFolder");
+        Check.notNull(analysis, "analysis");
+
+        log.debug("Staging the content of the changes in " + stagingFolder.getAbsolutePath());
+
+        for (final AddChange add : analysis.getAdds()) {
+            extractToFolder(stagingFolder, add.getPath(), add.getObjectID());
+        }
+
+        for (final EditChange edit : analysis.getEdits()) {
+            extractToFolder(stagingFolder, edit.getPath(), edit.getObjectID());
+        }
+
+        for (final RenameChange rename : analysis.getRenames()) {
+            if (rename.isEdit()) {
+                extractToFolder(stagingFolder, rename.getNewPath(), rename.getObjectID());
+            }
+        }
+
+        this.stagingFolder = stagingFolder;
+    }
+
     /**
      * Runs all the validations required on the source and destination commits
      *
@@ -553,42 +682,11 @@ public class PendDifferenceTask
      */
     private void validateCaseSensitivityRequirements(RevCommit commit)
             throws Exception {
-        /* Create a tree walker */
-        RevTree tree = commit.getTree();
-        final TreeWalk treeWalker = new NameConflictTreeWalk(repository);
-
-        try {
-            treeWalker.addTree(tree);
-            treeWalker.setFilter(TreeFilter.ALL);
-
-            /*
-             * Build a list of items in the tree in a hash set for quicker
-             * lookup
-             */
-            Set<String> existingTreeItems = new HashSet<String>();
-
-            /* Walk the tree looking for duplicates in the tree */
-            while (treeWalker.next()) {
-                String pathString = treeWalker.getPathString().toLowerCase();
-
-                if (existingTreeItems.contains(pathString)) {
-                    throw new Exception(
-                            Messages.formatString(
-                                    "PendDifferenceTask.SimilarItemWithDifferentCaseInCommitFormat", pathString, ObjectIdUtil.abbreviate(repository, commit.getId())));
-                }
-
-                existingTreeItems.add(pathString);
-
-                int objectType = treeWalker.getFileMode(0).getObjectType();
-                if (objectType == OBJ_TREE) {
-                    treeWalker.enterSubtree();
-                }
-            }
-        } finally {
-            if (treeWalker != null) {
-                treeWalker.release();
-            }
+        if (caseSensitivityValidator == null) {
+            caseSensitivityValidator = new CaseSensitivityValidator(repository);
         }
+
+        caseSensitivityValidator.validate(commit);
     }
 
     /**
@@ -695,14 +793,20 @@ public class PendDifferenceTask
             return;
         }
 
-        log.debug(MessageFormat.format("Sending DELETE changes for {0} files:", deletes.size()));
+        final boolean debug = log.isDebugEnabled();
+
+        if (debug) {
+            log.debug(MessageFormat.format("Sending DELETE changes for {0} files:", deletes.size()));
+        }
 
         /* Build the delete specs */
         ItemSpec[] deleteSpecs = new ItemSpec[deletes.size()];
         for (int i = 0; i < deletes.size(); i++) {
             final DeleteChange delete = deletes.get(i);
 
-            log.debug(MessageFormat.format("    {0}, mode={1}", delete.getPath(), delete.getType()));
+            if (debug) {
+                log.debug(MessageFormat.format("    {0}, mode={1}", delete.getPath(), delete.getType()));
+            }
 
             deleteSpecs[i] =
                     new ItemSpec(ServerPath.combine(serverPathRoot, delete.getPath()), delete.getType() == FileMode.TREE
@@ -759,14 +863,20 @@ public class PendDifferenceTask
             return;
         }
 
-        log.debug(MessageFormat.format("Sending EDIT changes for {0} files:", edits.size()));
+        final boolean debug = log.isDebugEnabled();
+
+        if (debug) {
+            log.debug(MessageFormat.format("Sending EDIT changes for {0} files:", edits.size()));
+        }
 
         /* Builds the edit specs */
         final List<ItemSpec> editSpecs = new ArrayList<ItemSpec>();
         final List<LockLevel> lockLevels = new ArrayList<LockLevel>();
 
         for (final EditChange edit : edits) {
-            log.debug(MessageFormat.format("    {0}", edit.getPath()));
+            if (debug) {
+                log.debug(MessageFormat.format("    {0}", edit.getPath()));
+            }
 
             extractToWorkingFolder(edit.getPath(), edit.getObjectID());
 
@@ -837,7 +947,11 @@ public class PendDifferenceTask
             return;
         }
 
-        log.debug(MessageFormat.format("Sending PROPERTIES changes for {0} files:", propertiesCount));
+        final boolean debug = log.isDebugEnabled();
+
+        if (debug) {
+            log.debug(MessageFormat.format("Sending PROPERTIES changes for {0} files:", propertiesCount));
+        }
 
         /* Build the adds item spec */
         for (int i = 0; i < propertiesCount; i++) {
@@ -850,7 +964,9 @@ public class PendDifferenceTask
             final List<PropertyValue> properties = new ArrayList<PropertyValue>();
 
             if (propertyChange.isExecutablePropertyChanged()) {
-                log.debug(MessageFormat.format("    {0}, property=executable", path));
+                if (debug) {
+                    log.debug(MessageFormat.format("    {0}, property=executable", path));
+                }
                 properties.add(propertyChange.getExecutablePropertyValue());
             }
 
@@ -896,16 +1012,20 @@ public class PendDifferenceTask
          * have stale folders.
          */
         if (renameMode == RenameMode.ALL) {
-            /* Compute folder renames */
-            final TfsFolderRenameDetector folderRenameDetector = analysis.createFolderRenameDetector();
-            folderRenameDetector.compute();
+            /* Compute folder renames unless the analysis already did */
+            if (renameBatches == null) {
+                final TfsFolderRenameDetector folderRenameDetector = analysis.createFolderRenameDetector();
+                folderRenameDetector.compute();
+
+                renameBatches = folderRenameDetector.getRenameBatches();
+            }
 
             /*
              * Due to a tfs limitation we cannot pend a rename for a folder and
              * an item inside the folder in the same pendRename call, thus we
              * are batching the rename calls by the depth of the item path
              */
-            for (final List<RenameChange> renames : folderRenameDetector.getRenameBatches()) {
+            for (final List<RenameChange> renames : renameBatches) {
                 pendBatchRenames(renames, errorListener);
             }
         } else {
@@ -978,10 +1098,12 @@ public class PendDifferenceTask
         }
 
         if (renameOldPaths.size() > 0) {
-            log.debug(MessageFormat.format("Sending RENAME changes for {0} files:", renameOldPaths.size()));
+            if (log.isDebugEnabled()) {
+                log.debug(MessageFormat.format("Sending RENAME changes for {0} files:", renameOldPaths.size()));
 
-            for (int i = 0; i < renameOldPaths.size(); i++) {
-                log.debug(MessageFormat.format("    {0} ==> {1}", renameOldPaths.get(i), renameNewPaths.get(i)));
+                for (int i = 0; i < renameOldPaths.size(); i++) {
+                    log.debug(MessageFormat.format("    {0} ==> {1}", renameOldPaths.get(i), renameNewPaths.get(i)));
+                }
             }
 
             final int renamesCount =
@@ -1006,10 +1128,12 @@ public class PendDifferenceTask
 
         /* Pend the edited renames */
         if (editRenameOldPaths.size() > 0) {
-            log.debug(MessageFormat.format("Sending RENAME changes for {0} files:", editRenameOldPaths.size()));
+            if (log.isDebugEnabled()) {
+                log.debug(MessageFormat.format("Sending RENAME changes for {0} files:", editRenameOldPaths.size()));
 
-            for (int i = 0; i < renameOldPaths.size(); i++) {
-                log.debug(MessageFormat.format("    {0} ==> {1}", editRenameOldPaths.get(i), editRenameNewPaths.get(i)));
+                for (int i = 0; i < editRenameOldPaths.size(); i++) {
+                    log.debug(MessageFormat.format("    {0} ==> {1}", editRenameOldPaths.get(i), editRenameNewPaths.get(i)));
+                }
             }
 
             final int count =
@@ -1039,10 +1163,12 @@ public class PendDifferenceTask
                 }
             }
 
-            log.debug(MessageFormat.format("Sending EDIT changes for {0} files:", editSpecs.size()));
+            if (log.isDebugEnabled()) {
+                log.debug(MessageFormat.format("Sending EDIT changes for {0} files:", editSpecs.size()));
 
-            for (int i = 0; i < editSpecs.size(); i++) {
-                log.debug(MessageFormat.format("    {0}", editSpecs.get(i).getItem()));
+                for (int i = 0; i < editSpecs.size(); i++) {
+                    log.debug(MessageFormat.format("    {0}", editSpecs.get(i).getItem()));
+                }
             }
 
             final int editsCount =
@@ -1101,7 +1227,11 @@ public class PendDifferenceTask
             return;
         }
 
-        log.debug(MessageFormat.format("Sending ADD changes for {0} files:", addCount));
+        final boolean debug = log.isDebugEnabled();
+
+        if (debug) {
+            log.debug(MessageFormat.format("Sending ADD changes for {0} files:", addCount));
+        }
 
         /* Build the adds item spec */
         final String[] addPaths = new String[addCount];
@@ -1111,7 +1241,10 @@ public class PendDifferenceTask
             extractToWorkingFolder(add.getPath(), add.getObjectID());
 
             addPaths[i] = ServerPath.combine(serverPathRoot, add.getPath());
-            log.debug(MessageFormat.format("    {0}", addPaths[i]));
+
+            if (debug) {
+                log.debug(MessageFormat.format("    {0}", addPaths[i]));
+            }
         }
 
         /* Pend the adds in the workspace */
@@ -1130,26 +1263,66 @@ public class PendDifferenceTask
     /**
      * Extracts an item for the git repository to the path specified. This is
      * used to extract files whose content have changed and will need to be
-     * uploaded to pend an edit for
+     * uploaded to pend an edit for. If the item has been staged it is moved
+     * from the staging folder instead.
      *
      * @param itemPath the path on disk to extract the item to
      * @param objectID the object id of the blob to extract to the file
      * @throws Exception
      */
-    private void extractToWorkingFolder(String itemPath, ObjectId objectID)
+    void extractToWorkingFolder(String itemPath, ObjectId objectID)
             throws Exception {
-        /* Ensure that the location exits */
-        File workingFile = new File(localWorkingFolder, itemPath);
+        if (stagingFolder != null) {
+            final File stagedFile = new File(stagingFolder, itemPath);
+
+            if (stagedFile.isFile()) {
+                final File workingFile = new File(localWorkingFolder, itemPath);
 
-        File parentDir = workingFile.getParentFile();
-        boolean parentDirExist = parentDir.exists();
-        if (!parentDirExist) {
-            parentDirExist = parentDir.mkdirs();
+                if (createParentFolder(workingFile)) {
+                    if (workingFile.exists()) {
+                        workingFile.delete();
+                    }
+
+                    if (moveStagedItem(stagedFile, workingFile)) {
+                        return;
+                    }
+                }
+
+                log.debug(MessageFormat.format("Could not move the staged item {0}, extracting it from git", itemPath));
+            }
         }
 
-        if (!parentDirExist) {
+        extractToFolder(localWorkingFolder, itemPath, objectID);
+    }
+
+    /**
+     * Moves a staged item into the working folder
+     *
+     * @param stagedFile  the staged item
+     * @param workingFile the location of the item in the working folder
+     * @return true if the item was moved, false if it has to be extracted from
+     * git instead
+     */
+    boolean moveStagedItem(File stagedFile, File workingFile) {
+        return stagedFile.renameTo(workingFile);
+    }
+
+    /**
+     * Extracts an item for the git repository to the folder specified
+     *
+     * @param folder   the root folder to extract the item under
+     * @param itemPath the path of the item relative to the folder
+     * @param objectID the object id of the blob to extract to the file
+     * @throws Exception
+     */
+    private void extractToFolder(File folder, String itemPath, ObjectId objectID)
+            throws Exception {
+        /* Ensure that the location exits */
+        File workingFile = new File(folder, itemPath);
+
+        if (!createParentFolder(workingFile)) {
             throw new Exception(Messages.formatString(
-                    "PendDifferenceTask.CouldNotCreateItemPathFormat", parentDir.getAbsolutePath()));
+                    "PendDifferenceTask.CouldNotCreateItemPathFormat", workingFile.getParentFile().getAbsolutePath()));
         }
 
         if (workingFile.exists()) {
@@ -1170,4 +1343,10 @@ public class PendDifferenceTask
             workingOutput.close();
         }
     }
+
+    private static boolean createParentFolder(File file) {
+        File parentDir = file.getParentFile();
+
+        return parentDir.exists() || parentDir.mkdirs();
+    }
 }
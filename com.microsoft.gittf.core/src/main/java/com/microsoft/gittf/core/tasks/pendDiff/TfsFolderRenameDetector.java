@@ -29,11 +29,13 @@ import com.microsoft.tfs.util.Check;
 import org.eclipse.jgit.errors.CorruptObjectException;
 import org.eclipse.jgit.errors.IncorrectObjectTypeException;
 import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 
 import java.io.IOException;
 import java.util.*;
@@ -52,6 +54,11 @@ import java.util.*;
  * The purpose of this class is to process a list of file renames and try to
  * figure out a possible combination of folder renames as accurately as
  * possible.
+ * <p>
+ * Processed renames are kept in a path trie so that the renames of the
+ * ancestors of a path are found in time proportional to the depth of the path,
+ * and the folders of the source and target trees are loaded once per folder,
+ * which keeps the detection near linear in the number of renames.
  */
 public class TfsFolderRenameDetector {
     private final Repository repository;
@@ -61,7 +68,10 @@ public class TfsFolderRenameDetector {
 
     private Set<RenameChange> sortedFileRenames = new TreeSet<RenameChange>(new RenameChangeOldPathCompartor());
     private Map<String, RenameChange> processedRenames = new HashMap<String, RenameChange>();
-    private Set<String> processedOldPaths = new TreeSet<String>(Collections.reverseOrder());
+    private ProcessedPathNode processedOldPaths = new ProcessedPathNode();
+
+    private TreeIndex sourceTreeIndex;
+    private TreeIndex targetTreeIndex;
 
     private List<RenameChange> resultRenames = new ArrayList<RenameChange>();
     private List<List<RenameChange>> resultBatchedRenames = new ArrayList<List<RenameChange>>();
@@ -137,21 +147,37 @@ public class TfsFolderRenameDetector {
         /* Sort the file renames to process them in the correct sequence */
         buildSortedFileRenames();
 
-        for (RenameChange rename : sortedFileRenames) {
-            /*
-             * If this is a file only rename e.g. Folder\SubFolder\a.txt ->
-             * Folder\SubFolder\a-r.txt OR if this is descendant destination
-             * rename e.g. Folder\SubFolder\a.txt ->
-             * Folder\SubFolder\NewFolder\a.txt then just add the rename as is
-             * to the list since there is no folder rename involved.
-             */
-            if (isFileOnlyRename(rename) || isDecendantDestinationRename(rename)) {
-                addRenameToResult(rename.getOldPath(), rename);
-            }
-            /* Otherwise process the file rename */
-            else {
-                processRename(rename);
+        if (sortedFileRenames.isEmpty()) {
+            return;
+        }
+
+        final ObjectReader objectReader = repository.newObjectReader();
+
+        try {
+            sourceTreeIndex = new TreeIndex(objectReader, sourceTree);
+            targetTreeIndex = new TreeIndex(objectReader, targetTree);
+
+            for (RenameChange rename : sortedFileRenames) {
+                /*
+                 * If this is a file only rename e.g. Folder\SubFolder\a.txt ->
+                 * Folder\SubFolder\a-r.txt OR if this is descendant destination
+                 * rename e.g. Folder\SubFolder\a.txt ->
+                 * Folder\SubFolder\NewFolder\a.txt then just add the rename as
+                 * is to the list since there is no folder rename involved.
+                 */
+                if (isFileOnlyRename(rename) || isDecendantDestinationRename(rename)) {
+                    addRenameToResult(rename.getOldPath(), rename);
+                }
+                /* Otherwise process the file rename */
+                else {
+                    processRename(rename);
+                }
             }
+        } finally {
+            sourceTreeIndex = null;
+            targetTreeIndex = null;
+
+            objectReader.release();
         }
     }
 
@@ -275,7 +301,7 @@ public class TfsFolderRenameDetector {
             newPathToUse = newPath;
 
             /* If this path has already been renamed then ignore */
-            if (processedOldPaths.contains(oldPath)) {
+            if (processedRenames.containsKey(oldPath)) {
                 return false;
             }
 
@@ -284,7 +310,7 @@ public class TfsFolderRenameDetector {
              * old folder path does not exist in the target tree then this
              * folder can be renamed
              */
-            if (!folderExistsInTree(newPathToUse, sourceTree) && !folderExistsInTree(oldPathToUse, targetTree)) {
+            if (!sourceTreeIndex.exists(newPathToUse) && !targetTreeIndex.exists(oldPathToUse)) {
                 addRenameToResult(oldPath, oldPathToUse, newPathToUse);
 
                 return false;
@@ -330,7 +356,7 @@ public class TfsFolderRenameDetector {
      * @param rename
      */
     private void ensureEditAccountedFor(RenameChange rename) {
-        if (processedOldPaths.contains(rename.getOldPath())) {
+        if (processedRenames.containsKey(rename.getOldPath())) {
             processedRenames.get(rename.getOldPath()).updateEditInformation(rename.getObjectID());
         } else {
             String updatedOldPath = updateOldPathWithProcessed(rename.getOldPath(), rename.getNewPath());
@@ -358,7 +384,7 @@ public class TfsFolderRenameDetector {
      * @param rename             the rename change to add to results
      */
     private void addRenameToResult(String unprocessedOldPath, RenameChange rename) {
-        if (processedOldPaths.contains(rename.getOldPath())) {
+        if (processedRenames.containsKey(rename.getOldPath())) {
             RenameChange addedRenameObject = processedRenames.get(rename.getOldPath());
             if (addedRenameObject.isEdit() != rename.isEdit()) {
                 addedRenameObject.updateEditInformation(rename.getObjectID());
@@ -425,15 +451,22 @@ public class TfsFolderRenameDetector {
      * @return
      */
     private String updateOldPathWithProcessed(String oldPath, String newPath) {
-        /* Loop over all the processed renames so far */
-        for (String processedPath : processedOldPaths) {
+        /*
+         * Only the old path itself and its ancestors can affect the old path,
+         * loop over the ones that have been processed starting with the
+         * deepest
+         */
+        final List<String> processedPaths = processedOldPaths.getProcessedPaths(oldPath);
+
+        for (int i = processedPaths.size() - 1; i >= 0; i--) {
+            final String processedPath = processedPaths.get(i);
+            final RenameChange processedRename = processedRenames.get(processedPath);
+
             /*
              * if the processed rename is a parent of the old path then update
              * the old path only if the new Path match the processed data
              */
-            if (RepositoryPath.isAncestor(oldPath, processedPath)) {
-                RenameChange processedRename = processedRenames.get(processedPath);
-
+            if (processedPath.length() < oldPath.length()) {
                 if (RepositoryPath.isAncestor(newPath, processedRename.getNewPath())) {
                     return processedRename.getNewPath() + oldPath.substring(processedPath.length());
                 }
@@ -443,47 +476,195 @@ public class TfsFolderRenameDetector {
              * if the processed rename is equal to the old path then update the
              * old path only if the new Path match the processed data
              */
-            if (oldPath.equals(processedPath)) {
-                RenameChange processedRename = processedRenames.get(processedPath);
+            else if (newPath.equals(processedRename.getNewPath())) {
+                return processedRename.getNewPath();
+            }
+        }
+
+        return oldPath;
+    }
 
-                if (newPath.equals(processedRename.getNewPath())) {
-                    return processedRename.getNewPath();
+    private static int indexOfSeparator(String path, int fromIndex) {
+        int index = -1;
+
+        for (int i = 0; i < RepositoryPath.SEPARATOR_CHARACTERS.length; i++) {
+            int separatorIndex = path.indexOf(RepositoryPath.SEPARATOR_CHARACTERS[i], fromIndex);
+
+            if (separatorIndex >= 0 && (index < 0 || separatorIndex < index)) {
+                index = separatorIndex;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * A node in the trie of processed old paths. Every edge is a path segment
+     * including its leading separator, so that every node maps to exactly one
+     * path string.
+     */
+    private static final class ProcessedPathNode {
+        private final Map<String, ProcessedPathNode> children = new HashMap<String, ProcessedPathNode>();
+        private String processedPath;
+
+        /**
+         * Marks the path specified as processed
+         *
+         * @param path
+         */
+        public void add(String path) {
+            ProcessedPathNode node = this;
+            int start = 0;
+
+            while (true) {
+                int end = indexOfSeparator(path, start + 1);
+                if (end < 0) {
+                    end = path.length();
+                }
+
+                final String segment = path.substring(start, end);
+
+                ProcessedPathNode child = node.children.get(segment);
+                if (child == null) {
+                    child = new ProcessedPathNode();
+                    node.children.put(segment, child);
+                }
+
+                node = child;
+
+                if (end == path.length()) {
+                    break;
                 }
+
+                start = end;
             }
+
+            node.processedPath = path;
         }
 
-        return oldPath;
+        /**
+         * Returns the processed paths that are either equal to the path
+         * specified or one of its ancestors, ordered from the shallowest to the
+         * deepest
+         *
+         * @param path
+         * @return
+         */
+        public List<String> getProcessedPaths(String path) {
+            final List<String> processedPaths = new ArrayList<String>();
+
+            ProcessedPathNode node = this;
+            int start = 0;
+
+            while (true) {
+                int end = indexOfSeparator(path, start + 1);
+                if (end < 0) {
+                    end = path.length();
+                }
+
+                node = node.children.get(path.substring(start, end));
+
+                if (node == null) {
+                    break;
+                }
+
+                if (node.processedPath != null && node.processedPath.length() > 0) {
+                    processedPaths.add(node.processedPath);
+                }
+
+                if (end == path.length()) {
+                    break;
+                }
+
+                start = end;
+            }
+
+            return processedPaths;
+        }
     }
 
     /**
-     * Returns true if the folder path specifies exist in the tree
-     *
-     * @param filePath
-     * @param commitRevTree
-     * @return
-     * @throws MissingObjectException
-     * @throws IncorrectObjectTypeException
-     * @throws CorruptObjectException
-     * @throws IOException
+     * The items of a git tree, loaded one folder at a time as they are looked
+     * up so that every tree object is read at most once
      */
-    private boolean folderExistsInTree(String filePath, RevObject commitRevTree)
-            throws MissingObjectException,
-            IncorrectObjectTypeException,
-            CorruptObjectException,
-            IOException {
-        ObjectReader objectReader = repository.newObjectReader();
-        TreeWalk folder = null;
-        try {
-            folder = TreeWalk.forPath(objectReader, filePath, commitRevTree);
-            return folder != null;
-        } finally {
-            if (folder != null) {
-                folder.release();
+    private static final class TreeIndex {
+        private final ObjectReader objectReader;
+        private final AnyObjectId rootTree;
+
+        /*
+         * Maps the folder path to its items, every item maps to its tree id or
+         * to null if it is not a tree. Folders that do not exist map to null.
+         */
+        private final Map<String, Map<String, ObjectId>> folders = new HashMap<String, Map<String, ObjectId>>();
+
+        public TreeIndex(ObjectReader objectReader, AnyObjectId rootTree) {
+            this.objectReader = objectReader;
+            this.rootTree = rootTree;
+        }
+
+        /**
+         * Returns true if an item exists in the tree at the path specified
+         *
+         * @param path
+         * @return
+         * @throws IOException
+         */
+        public boolean exists(String path)
+                throws IOException {
+            final int separator = path.lastIndexOf('/');
+            final Map<String, ObjectId> items = getFolder(separator < 0 ? "" : path.substring(0, separator));
+
+            return items != null && items.containsKey(path.substring(separator + 1));
+        }
+
+        private Map<String, ObjectId> getFolder(String folderPath)
+                throws IOException {
+            if (folders.containsKey(folderPath)) {
+                return folders.get(folderPath);
+            }
+
+            if (folderPath.length() == 0) {
+                final Map<String, ObjectId> items = readFolder(rootTree);
+                folders.put(folderPath, items);
+
+                return items;
+            }
+
+            final int separator = folderPath.lastIndexOf('/');
+            final Map<String, ObjectId> parentItems =
+                    getFolder(separator < 0 ? "" : folderPath.substring(0, separator));
+
+            Map<String, ObjectId> items = null;
+
+            if (parentItems != null) {
+                final ObjectId folderId = parentItems.get(folderPath.substring(separator + 1));
+
+                if (folderId != null) {
+                    items = readFolder(folderId);
+                }
             }
 
-            if (objectReader != null) {
-                objectReader.release();
+            folders.put(folderPath, items);
+
+            return items;
+        }
+
+        private Map<String, ObjectId> readFolder(AnyObjectId treeId)
+                throws IOException {
+            final Map<String, ObjectId> items = new HashMap<String, ObjectId>();
+            final CanonicalTreeParser parser = new CanonicalTreeParser();
+
+            parser.reset(objectReader, treeId);
+
+            while (!parser.eof()) {
+                items.put(
+                        parser.getEntryPathString(),
+                        FileMode.TREE.equals(parser.getEntryRawMode()) ? parser.getEntryObjectId() : null);
+
+                parser.next();
             }
+
+            return items;
         }
     }
 }
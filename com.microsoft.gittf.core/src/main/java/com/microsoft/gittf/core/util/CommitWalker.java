@@ -29,11 +29,13 @@ import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevWalk;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 public final class CommitWalker {
     private CommitWalker() {
@@ -241,52 +243,184 @@ public final class CommitWalker {
         }
     }
 
-    private static List<RevCommit> detectAutoSquashedPath(RevWalk walker, RevCommit start, RevCommit end)
+    /**
+     * Walks the ancestry of the commit specified once and returns the bridged
+     * ancestor that maps to the latest changeset. The ancestors of a bridged
+     * commit are not walked since they were bridged before it.
+     *
+     * @param walker         the walker used to parse the commits
+     * @param start          the commit to start from
+     * @param bridgedCommits the bridged commits mapped to their changeset ids
+     * @return the bridged ancestor, or null if there is no bridged ancestor
+     * @throws Exception
+     */
+    public static RevCommit findLatestBridgedAncestor(
+            final RevWalk walker,
+            final RevCommit start,
+            final Map<ObjectId, Integer> bridgedCommits)
             throws Exception {
         Check.notNull(walker, "walker");
         Check.notNull(start, "start");
+        Check.notNull(bridgedCommits, "bridgedCommits");
 
-        List<RevCommit> path = null;
+        if (bridgedCommits.isEmpty()) {
+            return null;
+        }
 
-        /*
-         * We need to parse the start here since at this point only the id is
-         * loaded. This is essential for the getParents method to complete
-         * results.
-         */
-        walker.parseHeaders(start);
+        final int lastBridgedChangesetID = Collections.max(bridgedCommits.values());
+        final RevFlag seen = walker.newFlag("BRIDGED_ANCESTOR_SEEN");
 
-        // parents are sorted in order of oldest first
-        RevCommit[] parents = start.getParents();
+        try {
+            final List<RevCommit> pending = new ArrayList<RevCommit>();
 
-        /*
-         * If start == end, we've reached our target and should stop following
-         * this path. Likewise, if there are no parents and end == null, then we
-         * are simply looking for the initial commit and we've found that also.
-         */
-        if (end == null && parents.length == 0) {
-            path = new ArrayList<RevCommit>();
-            path.add(null);
-        } else if (end != null && start.getId().equals(end.getId())) {
-            path = new ArrayList<RevCommit>();
-        } else {
-            /* Recurse last parent first */
-            for (int parentIdx = parents.length - 1; parentIdx >= 0; parentIdx--) {
-                RevCommit parentCommit = parents[parentIdx];
-
-                path = detectAutoSquashedPath(walker, parentCommit, end);
-
-                if (path != null) {
-                    break;
+            RevCommit latestAncestor = null;
+            int latestAncestorChangesetID = -1;
+
+            start.add(seen);
+            pending.add(start);
+
+            while (!pending.isEmpty()) {
+                final RevCommit commit = pending.remove(pending.size() - 1);
+                final Integer changesetID = bridgedCommits.get(commit);
+
+                if (changesetID != null) {
+                    if (changesetID > latestAncestorChangesetID) {
+                        latestAncestor = commit;
+                        latestAncestorChangesetID = changesetID;
+
+                        /* Nothing can be more recent than the last bridged */
+                        if (changesetID == lastBridgedChangesetID) {
+                            break;
+                        }
+                    }
+
+                    continue;
+                }
+
+                walker.parseHeaders(commit);
+
+                for (RevCommit parent : commit.getParents()) {
+                    if (!parent.has(seen)) {
+                        parent.add(seen);
+                        pending.add(parent);
+                    }
                 }
             }
+
+            if (latestAncestor != null) {
+                walker.parseHeaders(latestAncestor);
+            }
+
+            return latestAncestor;
+        } finally {
+            walker.disposeFlag(seen);
         }
+    }
 
-        /* If we found a path, add the start to the end of the path. */
-        if (path != null) {
-            path.add(start);
+    /**
+     * Finds the path from the start commit down to the end commit (or to the
+     * initial commit when end is null), following the last parent first. The
+     * search is iterative and every commit is explored at most once: a commit
+     * that was already explored did not lead to the end, otherwise the search
+     * would have stopped there, so it never needs to be explored again.
+     *
+     * @param walker the walker used to parse the commits
+     * @param start  the commit to start from
+     * @param end    the commit to find, or null for the initial commit
+     * @return the path ordered from the end to the start, or null if there is
+     * no path
+     * @throws Exception
+     */
+    private static List<RevCommit> detectAutoSquashedPath(RevWalk walker, RevCommit start, RevCommit end)
+            throws Exception {
+        Check.notNull(walker, "walker");
+        Check.notNull(start, "start");
+
+        final RevFlag explored = walker.newFlag("AUTO_SQUASH_EXPLORED");
+
+        try {
+            /*
+             * The commits on the current path and, for each of them, the index
+             * of the next parent to explore. Parents are sorted in order of
+             * oldest first and are explored last parent first.
+             */
+            final List<RevCommit> pathStack = new ArrayList<RevCommit>();
+            final List<Integer> nextParentStack = new ArrayList<Integer>();
+
+            start.add(explored);
+            pathStack.add(start);
+            nextParentStack.add(null);
+
+            while (!pathStack.isEmpty()) {
+                final int top = pathStack.size() - 1;
+                final RevCommit current = pathStack.get(top);
+                Integer nextParent = nextParentStack.get(top);
+
+                if (nextParent == null) {
+                    /*
+                     * We need to parse the commit here since at this point only
+                     * the id is loaded. This is essential for the getParents
+                     * method to complete results.
+                     */
+                    walker.parseHeaders(current);
+
+                    final RevCommit[] parents = current.getParents();
+
+                    /*
+                     * If current == end, we've reached our target and should
+                     * stop following this path. Likewise, if there are no
+                     * parents and end == null, then we are simply looking for
+                     * the initial commit and we've found that also.
+                     */
+                    if (end == null && parents.length == 0) {
+                        final List<RevCommit> path = new ArrayList<RevCommit>();
+                        path.add(null);
+                        addReversed(path, pathStack);
+                        return path;
+                    } else if (end != null && current.getId().equals(end.getId())) {
+                        final List<RevCommit> path = new ArrayList<RevCommit>();
+                        addReversed(path, pathStack);
+                        return path;
+                    }
+
+                    nextParent = parents.length - 1;
+                }
+
+                /* Find the next parent that has not been explored yet */
+                final RevCommit[] parents = current.getParents();
+                RevCommit parentCommit = null;
+
+                while (nextParent >= 0 && parentCommit == null) {
+                    if (!parents[nextParent].has(explored)) {
+                        parentCommit = parents[nextParent];
+                    }
+
+                    nextParent--;
+                }
+
+                nextParentStack.set(top, nextParent);
+
+                if (parentCommit != null) {
+                    parentCommit.add(explored);
+                    pathStack.add(parentCommit);
+                    nextParentStack.add(null);
+                } else {
+                    /* None of the parents leads to the end, backtrack */
+                    pathStack.remove(top);
+                    nextParentStack.remove(top);
+                }
+            }
+
+            return null;
+        } finally {
+            walker.disposeFlag(explored);
         }
+    }
 
-        return path;
+    private static void addReversed(List<RevCommit> path, List<RevCommit> pathStack) {
+        for (int i = pathStack.size() - 1; i >= 0; i--) {
+            path.add(pathStack.get(i));
+        }
     }
 
     /**
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.util;
+
+import com.microsoft.tfs.jni.PlatformMiscUtils;
+import com.microsoft.tfs.util.StringHelpers;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.text.MessageFormat;
+
+public final class EnvironmentUtil {
+    private static final Log log = LogFactory.getLog(EnvironmentUtil.class);
+
+    private EnvironmentUtil() {
+    }
+
+    /**
+     * Gets the value of the environment variable specified, or of its
+     * alternate name when the variable is not set
+     *
+     * @param name          the name of the environment variable
+     * @param alternateName the alternate name of the environment variable
+     * @return the value, or null if neither variable is set
+     */
+    public static String getValue(final String name, final String alternateName) {
+        Check.notNullOrEmpty(name, "name");
+
+        String value = PlatformMiscUtils.getInstance().getEnvironmentVariable(name);
+
+        if (StringHelpers.isNullOrEmpty(value) && alternateName != null) {
+            value = PlatformMiscUtils.getInstance().getEnvironmentVariable(alternateName);
+        }
+
+        return StringHelpers.isNullOrEmpty(value) ? null : value;
+    }
+
+    /**
+     * Gets the integer value of the environment variable specified, or of its
+     * alternate name when the variable is not set
+     *
+     * @param name          the name of the environment variable
+     * @param alternateName the alternate name of the environment variable
+     * @param minimumValue  the smallest value accepted
+     * @param defaultValue  the value returned when the variable is not set, is
+     *                      not a number or is smaller than the minimum value
+     * @return the value of the environment variable, or the default value
+     */
+    public static int getIntegerValue(
+            final String name,
+            final String alternateName,
+            final int minimumValue,
+            final int defaultValue) {
+        final String value = getValue(name, alternateName);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            final int parsed = Integer.parseInt(value.trim());
+
+            if (parsed >= minimumValue) {
+                return parsed;
+            }
+        } catch (final NumberFormatException e) {
+            /* fall through to the warning */
+        }
+
+        log.warn(MessageFormat.format("Ignoring the value \"{0}\" of {1}, using {2}", value, name, defaultValue));
+
+        return defaultValue;
+    }
+}
@@ -110,14 +110,40 @@ public final class RepositoryUtil {
      */
     public static Repository findRepository(final String gitDir)
             throws IOException {
-        RepositoryBuilder repoBuilder =
-                new RepositoryBuilder().setGitDir(gitDir != null ? new File(gitDir) : null).readEnvironment().findGitDir();
+        return findRepository(gitDir, null);
+    }
+
+    /**
+     * Creates a repository object in the specified directory, a relative git
+     * directory is resolved against the working directory specified
+     *
+     * @param gitDir
+     * @param workingDirectory the directory to search the repository from, or
+     *                         null to use the current directory of the process
+     * @return
+     * @throws IOException
+     */
+    public static Repository findRepository(final String gitDir, final File workingDirectory)
+            throws IOException {
+        File gitDirFile = gitDir != null ? new File(gitDir) : null;
+
+        if (gitDirFile != null && workingDirectory != null && !gitDirFile.isAbsolute()) {
+            gitDirFile = new File(workingDirectory, gitDir);
+        }
+
+        RepositoryBuilder repoBuilder = new RepositoryBuilder().setGitDir(gitDirFile).readEnvironment();
+
+        if (workingDirectory != null) {
+            repoBuilder.findGitDir(workingDirectory);
+        } else {
+            repoBuilder.findGitDir();
+        }
 
         boolean isBare = false;
 
         if (repoBuilder.getGitDir() == null) {
             isBare = true;
-            repoBuilder.setGitDir(new File("."));
+            repoBuilder.setGitDir(workingDirectory != null ? workingDirectory : new File("."));
         }
 
         Repository repository = repoBuilder.build();
@@ -52,4 +52,58 @@ public final class StringUtil {
     public static boolean isNullOrEmpty(final String s) {
         return s == null || s.length() == 0;
     }
+
+    /**
+     * Converts a value to its JSON representation, numbers and booleans are
+     * written as they are and any other value as an escaped string
+     *
+     * @param value the value to convert, may be null
+     * @return
+     */
+    public static String toJsonValue(final Object value) {
+        if (value == null) {
+            return "null";
+        }
+
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+
+        final String string = value.toString();
+        final StringBuilder json = new StringBuilder(string.length() + 2);
+
+        json.append('"');
+
+        for (int i = 0; i < string.length(); i++) {
+            final char c = string.charAt(i);
+
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        json.append('"');
+
+        return json.toString();
+    }
 }
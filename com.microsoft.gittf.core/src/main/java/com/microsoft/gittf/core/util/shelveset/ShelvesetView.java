@@ -32,12 +32,27 @@ import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
  */
 public interface ShelvesetView {
     /**
-     * Display a list of shelvesets
+     * Starts displaying a list of shelvesets, the shelvesets are then
+     * displayed one by one as they become available
      *
-     * @param shelvesets     the list of shelvesets to display
+     * @param shelvesetCount the number of shelvesets that will be displayed
      * @param displayDetails display the shelvesets details as well
      */
-    void displayShelvesets(Shelveset[] shelvesets, boolean displayDetails);
+    void beginShelvesets(int shelvesetCount, boolean displayDetails);
+
+    /**
+     * Display the next shelveset of the list
+     *
+     * @param shelveset        the shelveset to display
+     * @param shelvesetDetails the shelveset details to display (the pending
+     *                         set), null if details are not displayed
+     */
+    void displayShelveset(Shelveset shelveset, PendingSet[] shelvesetDetails);
+
+    /**
+     * Finishes displaying a list of shelvesets
+     */
+    void endShelvesets();
 
     /**
      * Display a single shelveset
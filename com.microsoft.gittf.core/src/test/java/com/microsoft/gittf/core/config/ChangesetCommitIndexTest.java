@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.config;
+
+import com.microsoft.gittf.core.GitTFConstants;
+import com.microsoft.gittf.core.tasks.ConfigureRepositoryTask;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+
+import java.io.File;
+import java.net.URI;
+import java.text.MessageFormat;
+import java.util.Map;
+
+public class ChangesetCommitIndexTest
+        extends TestCase {
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectId emptyTree;
+    private File gitTfFile;
+    private int commitCount = 0;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        ConfigureRepositoryTask configTask =
+                new ConfigureRepositoryTask(repository, new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/project");
+        assertTrue(configTask.run(new NullTaskProgressMonitor()).isOK());
+
+        inserter = repository.newObjectInserter();
+        emptyTree = inserter.insert(new TreeFormatter());
+
+        gitTfFile = new File(repository.getDirectory(), GitTFConstants.GIT_TF_NAME);
+    }
+
+    protected void tearDown()
+            throws Exception {
+        inserter.release();
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testSharedIndex() {
+        ChangesetCommitIndex index = ChangesetCommitIndex.getIndex(gitTfFile);
+
+        assertSame(index, ChangesetCommitIndex.getIndex(new File(gitTfFile.getPath())));
+        assertNotSame(index, ChangesetCommitIndex.getIndex(new File(gitTfFile.getParentFile(), "other")));
+    }
+
+    public void testLookup()
+            throws Exception {
+        ObjectId first = createCommit();
+        ObjectId second = createCommit(first);
+        ObjectId third = createCommit(second);
+
+        ChangesetCommitMap commitMap = new ChangesetCommitMap(repository);
+        commitMap.setChangesetCommit(10, first);
+        commitMap.setChangesetCommit(20, second);
+        commitMap.setChangesetCommit(30, third);
+
+        /* Changeset 25 maps to the same commit as 20 */
+        commitMap.setChangesetCommit(25, second);
+
+        /* Any map of the repository sees the changes */
+        ChangesetCommitMap otherMap = new ChangesetCommitMap(repository);
+
+        assertEquals(first, otherMap.getCommitID(10, true));
+        assertEquals(second, otherMap.getCommitID(20, true));
+        assertEquals(second, otherMap.getCommitID(25, false));
+        assertNull(otherMap.getCommitID(15, true));
+
+        assertEquals(10, otherMap.getChangesetID(first));
+        assertEquals(25, otherMap.getChangesetID(second));
+        assertEquals(-1, otherMap.getChangesetID(emptyTree));
+
+        assertEquals(30, otherMap.getLastBridgedChangesetID(true));
+        assertEquals(25, otherMap.getPreviousBridgedChangeset(30, true));
+        assertEquals(20, otherMap.getPreviousBridgedChangeset(25, false));
+        assertEquals(10, otherMap.getPreviousBridgedChangeset(15, true));
+        assertEquals(-1, otherMap.getPreviousBridgedChangeset(10, true));
+
+        Map<ObjectId, Integer> bridgedCommits = otherMap.getBridgedCommits();
+        assertEquals(3, bridgedCommits.size());
+        assertEquals(Integer.valueOf(25), bridgedCommits.get(second));
+
+        /* Changeset 30 now refers to another commit */
+        ObjectId replacement = createCommit(second);
+        commitMap.setChangesetCommit(30, replacement);
+
+        assertEquals(replacement, otherMap.getCommitID(30, true));
+        assertEquals(-1, otherMap.getChangesetID(third));
+        assertEquals(30, otherMap.getChangesetID(replacement));
+    }
+
+    public void testExternalChange()
+            throws Exception {
+        ObjectId first = createCommit();
+        ObjectId second = createCommit(first);
+
+        ChangesetCommitMap commitMap = new ChangesetCommitMap(repository);
+        commitMap.setChangesetCommit(10, first);
+
+        assertEquals(10, commitMap.getLastBridgedChangesetID(true));
+        assertNull(commitMap.getCommitID(20, true));
+
+        /* Another process bridges changeset 20 */
+        FileBasedConfig externalConfig = new FileBasedConfig(gitTfFile, FS.DETECTED);
+        externalConfig.load();
+        setEntries(externalConfig, 20, second);
+        externalConfig.setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_HIGHWATER,
+                20);
+        externalConfig.save();
+
+        assertEquals(second, commitMap.getCommitID(20, true));
+        assertEquals(20, commitMap.getChangesetID(second));
+        assertEquals(20, commitMap.getLastBridgedChangesetID(true));
+
+        /* A write through the map keeps the external change */
+        ObjectId third = createCommit(second);
+        commitMap.setChangesetCommit(30, third);
+
+        FileBasedConfig savedConfig = new FileBasedConfig(gitTfFile, FS.DETECTED);
+        savedConfig.load();
+
+        assertEquals(second.getName(), savedConfig.getString(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.COMMIT_SUBSECTION,
+                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, "20")));
+        assertEquals(30, savedConfig.getInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                ConfigurationConstants.CHANGESET_HIGHWATER,
+                -1));
+    }
+
+    public void testCommitsExistCached()
+            throws Exception {
+        ObjectId first = createCommit();
+
+        ChangesetCommitMap commitMap = new ChangesetCommitMap(repository);
+        commitMap.setChangesetCommit(10, first);
+
+        /* Changeset 20 refers to a commit that is not in the repository */
+        CommitBuilder missingCommit = createCommitBuilder(first);
+        ObjectId missing = new ObjectInserter.Formatter().idFor(Constants.OBJ_COMMIT, missingCommit.build());
+
+        FileBasedConfig externalConfig = new FileBasedConfig(gitTfFile, FS.DETECTED);
+        externalConfig.load();
+        setEntries(externalConfig, 20, missing);
+        externalConfig.save();
+
+        /* Make sure the file is not seen as racily modified on every lookup */
+        assertTrue(gitTfFile.setLastModified(System.currentTimeMillis() - 60 * 1000));
+
+        assertNull(commitMap.getCommitID(20, true));
+        assertEquals(missing, commitMap.getCommitID(20, false));
+        assertEquals(10, commitMap.getPreviousBridgedChangeset(30, true));
+        assertEquals(20, commitMap.getPreviousBridgedChangeset(30, false));
+
+        /*
+         * The existence of the commits is checked once per version of the
+         * file and repository object, adding the commit alone is not noticed
+         */
+        assertEquals(missing, inserter.insert(missingCommit));
+        inserter.flush();
+
+        assertNull(commitMap.getCommitID(20, true));
+        assertEquals(10, commitMap.getPreviousBridgedChangeset(30, true));
+
+        /* Any change to the file validates the commits again */
+        commitMap.setChangesetCommit(30, createCommit(missing));
+
+        assertEquals(missing, commitMap.getCommitID(20, true));
+        assertEquals(20, commitMap.getPreviousBridgedChangeset(30, true));
+    }
+
+    public void testCommitsExistCheckedPerRepository()
+            throws Exception {
+        ObjectId first = createCommit();
+
+        /* Changeset 20 refers to a commit that is not in the repository yet */
+        CommitBuilder missingCommit = createCommitBuilder(first);
+        ObjectId missing = new ObjectInserter.Formatter().idFor(Constants.OBJ_COMMIT, missingCommit.build());
+
+        ChangesetCommitMap commitMap = new ChangesetCommitMap(repository);
+        commitMap.setChangesetCommit(10, first);
+        commitMap.setChangesetCommit(20, missing);
+
+        assertTrue(gitTfFile.setLastModified(System.currentTimeMillis() - 60 * 1000));
+
+        assertNull(commitMap.getCommitID(20, true));
+
+        assertEquals(missing, inserter.insert(missingCommit));
+        inserter.flush();
+
+        /* The next command opens the repository again and sees the commit */
+        Repository nextRepository = new RepositoryBuilder().setGitDir(repository.getDirectory()).build();
+
+        try {
+            ChangesetCommitMap nextCommitMap = new ChangesetCommitMap(nextRepository);
+
+            assertEquals(missing, nextCommitMap.getCommitID(20, true));
+            assertEquals(20, nextCommitMap.getPreviousBridgedChangeset(30, true));
+        } finally {
+            nextRepository.close();
+        }
+    }
+
+    private static void setEntries(FileBasedConfig config, int changesetID, ObjectId commitID) {
+        config.setString(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.COMMIT_SUBSECTION,
+                MessageFormat.format(ConfigurationConstants.COMMIT_CHANGESET_FORMAT, Integer.toString(changesetID)),
+                commitID.getName());
+
+        config.setInt(
+                ConfigurationConstants.CONFIGURATION_SECTION,
+                ConfigurationConstants.CHANGESET_SUBSECTION,
+                MessageFormat.format(ConfigurationConstants.CHANGESET_COMMIT_FORMAT, commitID.getName()),
+                changesetID);
+    }
+
+    private ObjectId createCommit(ObjectId... parents)
+            throws Exception {
+        ObjectId commitID = inserter.insert(createCommitBuilder(parents));
+        inserter.flush();
+
+        return commitID;
+    }
+
+    private CommitBuilder createCommitBuilder(ObjectId... parents) {
+        PersonIdent ident = new PersonIdent("user", "user@example.com", 0, 0);
+
+        CommitBuilder commitBuilder = new CommitBuilder();
+        commitBuilder.setTreeId(emptyTree);
+        commitBuilder.setParentIds(parents);
+        commitBuilder.setAuthor(ident);
+        commitBuilder.setCommitter(ident);
+        commitBuilder.setMessage("commit " + (commitCount++));
+
+        return commitBuilder;
+    }
+}
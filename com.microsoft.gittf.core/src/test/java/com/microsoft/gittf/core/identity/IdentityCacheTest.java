@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.identity;
+
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class IdentityCacheTest
+        extends TestCase {
+    private static final long MINUTE = 60L * 1000L;
+
+    private File cacheFile;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        cacheFile = IdentityCache.getCacheFile(new File(Util.getTemporaryTestFilesLocation(getName()), "users"));
+    }
+
+    protected void tearDown()
+            throws Exception {
+        Util.tearDown(getName());
+    }
+
+    public void testPersistedFormatRoundTrip()
+            throws Exception {
+        final List<TfsUser> users =
+                Arrays.asList(new TfsUser("DOMAIN\\user", "User Name"), new TfsUser("DOMAIN\\user2", "User Name"));
+
+        IdentityCache cache = new IdentityCache(cacheFile, 60);
+        cache.put("general", "User Name", users);
+        cache.put("general", "nobody", null);
+        cache.put("mail", "user@example.com", Arrays.asList(new TfsUser("DOMAIN\\user", "User Name")));
+        assertTrue(cache.isChanged());
+
+        cache.save();
+        assertFalse(cache.isChanged());
+        assertTrue(cacheFile.exists());
+        assertEquals(3, readCacheFile().size());
+
+        cache = new IdentityCache(cacheFile, 60);
+
+        /* Search values are case insensitive, search factors are not */
+        assertEquals(users, cache.get("general", "user name"));
+        assertEquals(0, cache.get("general", "nobody").size());
+        assertEquals(1, cache.get("mail", "user@example.com").size());
+        assertNull(cache.get("mail", "User Name"));
+        assertNull(cache.get("general", "somebody"));
+
+        final TfsUser user = cache.get("general", "User Name").get(1);
+        assertEquals("DOMAIN\\user2", user.getName());
+        assertEquals("User Name", user.getDisplayName());
+    }
+
+    public void testExpiry()
+            throws Exception {
+        final long now = System.currentTimeMillis();
+
+        writeCacheFile(
+                "general\tfresh\t" + (now - 2 * 60 * MINUTE) + "\tDOMAIN\\fresh\tFresh",
+                "general\tstale\t" + (now - 4 * 60 * MINUTE) + "\tDOMAIN\\stale\tStale",
+                "general\tfuture\t" + (now + 60 * MINUTE) + "\tDOMAIN\\future\tFuture");
+
+        final IdentityCache cache = new IdentityCache(cacheFile, 3 * 60);
+
+        assertEquals(1, cache.get("general", "fresh").size());
+        assertNull(cache.get("general", "stale"));
+        assertNull(cache.get("general", "future"));
+    }
+
+    public void testNegativeExpiry()
+            throws Exception {
+        final long now = System.currentTimeMillis();
+
+        writeCacheFile(
+                "general\tmissing\t" + (now - 30 * MINUTE),
+                "general\tlong missing\t" + (now - 90 * MINUTE),
+                "general\tfound\t" + (now - 90 * MINUTE) + "\tDOMAIN\\found\tFound");
+
+        /* Searches that found nothing live for an hour at most */
+        IdentityCache cache = new IdentityCache(cacheFile, 24 * 60);
+
+        assertEquals(0, cache.get("general", "missing").size());
+        assertNull(cache.get("general", "long missing"));
+        assertEquals(1, cache.get("general", "found").size());
+
+        /* And never longer than the other entries */
+        cache = new IdentityCache(cacheFile, 20);
+
+        assertNull(cache.get("general", "missing"));
+        assertNull(cache.get("general", "found"));
+    }
+
+    public void testSaveDropsExpiredEntries()
+            throws Exception {
+        final long now = System.currentTimeMillis();
+
+        writeCacheFile(
+                "general\tfresh\t" + (now - MINUTE) + "\tDOMAIN\\fresh\tFresh",
+                "general\tstale\t" + (now - 120 * MINUTE) + "\tDOMAIN\\stale\tStale");
+
+        final IdentityCache cache = new IdentityCache(cacheFile, 60);
+        cache.put("general", "new", Arrays.asList(new TfsUser("DOMAIN\\new", "New")));
+        cache.save();
+
+        final List<String> lines = readCacheFile();
+
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("general\tfresh\t") || lines.get(1).startsWith("general\tfresh\t"));
+        assertTrue(lines.get(0).startsWith("general\tnew\t") || lines.get(1).startsWith("general\tnew\t"));
+    }
+
+    public void testMalformedLinesIgnored()
+            throws Exception {
+        final long now = System.currentTimeMillis();
+
+        writeCacheFile(
+                "general\tbad timestamp\tyesterday",
+                "general\tmissing display name\t" + now + "\tDOMAIN\\user",
+                "general",
+                "general\tgood\t" + now + "\tDOMAIN\\good\tGood");
+
+        final IdentityCache cache = new IdentityCache(cacheFile, 60);
+
+        assertNull(cache.get("general", "bad timestamp"));
+        assertNull(cache.get("general", "missing display name"));
+        assertEquals(1, cache.get("general", "good").size());
+    }
+
+    public void testValuesThatCannotBeStored()
+            throws Exception {
+        final IdentityCache cache = new IdentityCache(cacheFile, 60);
+
+        cache.put("general", "tab\tvalue", null);
+        cache.put("general", "", null);
+        cache.put("general", "partial", Arrays.asList(new TfsUser("DOMAIN\\user", "User"), new TfsUser(
+                "DOMAIN\\other",
+                "Line\nbreak")));
+
+        assertFalse(cache.isChanged());
+        assertNull(cache.get("general", "partial"));
+    }
+
+    public void testDisabled()
+            throws Exception {
+        final IdentityCache cache = new IdentityCache(cacheFile, 0);
+
+        cache.put("general", "user", Arrays.asList(new TfsUser("DOMAIN\\user", "User")));
+        assertNull(cache.get("general", "user"));
+
+        cache.save();
+        assertFalse(cacheFile.exists());
+    }
+
+    private void writeCacheFile(final String... lines)
+            throws Exception {
+        cacheFile.getParentFile().mkdirs();
+
+        final BufferedWriter writer =
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), "UTF-8"));
+        try {
+            for (final String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private List<String> readCacheFile()
+            throws Exception {
+        final List<String> lines = new ArrayList<String>();
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+
+        return lines;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ServiceCallMetricsTest
+        extends TestCase {
+    private static final long MILLISECOND = 1000000L;
+
+    private ServiceCallMetrics metrics;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        metrics = ServiceCallMetrics.start();
+    }
+
+    protected void tearDown()
+            throws Exception {
+        metrics.stop();
+
+        Util.tearDown(getName());
+    }
+
+    public void testHistogramBuckets()
+            throws Exception {
+        /* Each bucket counts the calls below its bound and at or above the previous one */
+        metrics.record("Service.call", 0, 0, false);
+        metrics.record("Service.call", MILLISECOND - 1, 0, false);
+        metrics.record("Service.call", MILLISECOND, 0, false);
+        metrics.record("Service.call", 4 * MILLISECOND, 0, false);
+        metrics.record("Service.call", 5 * MILLISECOND, 0, false);
+        metrics.record("Service.call", 29999 * MILLISECOND, 0, false);
+        metrics.record("Service.call", 30000 * MILLISECOND, 0, false);
+        metrics.record("Service.call", 90000 * MILLISECOND, 0, false);
+
+        long[] histogram = getHistogram(writeJson(), "Service.call");
+
+        assertEquals(15, histogram.length);
+        assertEquals(2, histogram[0]);
+        assertEquals(1, histogram[1]);
+        assertEquals(1, histogram[2]);
+        assertEquals(1, histogram[3]);
+        assertEquals(1, histogram[13]);
+        assertEquals(2, histogram[14]);
+
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+
+        assertEquals(8, total);
+    }
+
+    public void testPercentileBucket() {
+        /* 9 out of 10 calls are fast, the p90 is in their bucket */
+        for (int i = 0; i < 9; i++) {
+            metrics.record("Service.fast", 3 * MILLISECOND, 0, false);
+        }
+        metrics.record("Service.fast", 700 * MILLISECOND, 0, false);
+
+        /* 8 out of 10 calls are fast, the p90 is in the slow bucket */
+        for (int i = 0; i < 8; i++) {
+            metrics.record("Service.slow", 3 * MILLISECOND, 0, false);
+        }
+        metrics.record("Service.slow", 700 * MILLISECOND, 0, false);
+        metrics.record("Service.slow", 800 * MILLISECOND, 0, false);
+
+        /* Slower than the last bound */
+        metrics.record("Service.slowest", 60000 * MILLISECOND, 0, false);
+
+        assertEquals("<5", getSummaryColumn("Service.fast", 5));
+        assertEquals("<1000", getSummaryColumn("Service.slow", 5));
+        assertEquals(">30000", getSummaryColumn("Service.slowest", 5));
+
+        assertEquals("10", getSummaryColumn("Service.slow", 1));
+        assertEquals("800", getSummaryColumn("Service.slow", 6));
+    }
+
+    public void testJsonShape()
+            throws Exception {
+        metrics.record("Service.b", 2 * MILLISECOND, 10, false);
+        metrics.record("Service.a \"quoted\"", 3 * MILLISECOND, 0, true);
+        metrics.record("Service.b", 4 * MILLISECOND, 20, false);
+
+        String json = writeJson();
+
+        assertTrue(json, json.startsWith(
+                "{\"latencyBucketsMs\":[1,2,5,10,20,50,100,200,500,1000,2000,5000,10000,30000],\"calls\":[\n"));
+        assertTrue(json, json.endsWith("}\n]}\n"));
+
+        /* One line per method, sorted by name */
+        String[] lines = json.split("\n");
+        assertEquals(4, lines.length);
+
+        assertEquals(
+                "{\"method\":\"Service.a \\\"quoted\\\"\",\"calls\":1,\"errors\":1,\"totalMs\":3,\"maxMs\":3,"
+                        + "\"bytesDownloaded\":0,\"latencyHistogram\":[0,0,1,0,0,0,0,0,0,0,0,0,0,0,0]},",
+                lines[1]);
+        assertEquals(
+                "{\"method\":\"Service.b\",\"calls\":2,\"errors\":0,\"totalMs\":6,\"maxMs\":4,"
+                        + "\"bytesDownloaded\":30,\"latencyHistogram\":[0,0,2,0,0,0,0,0,0,0,0,0,0,0,0]}",
+                lines[2]);
+    }
+
+    public void testEmptyJson()
+            throws Exception {
+        assertEquals(
+                "{\"latencyBucketsMs\":[1,2,5,10,20,50,100,200,500,1000,2000,5000,10000,30000],\"calls\":[\n]}\n",
+                writeJson());
+    }
+
+    public void testInstrumentedCalls()
+            throws Exception {
+        File downloadFolder = Util.getTemporaryTestFilesLocation(getName());
+        assertTrue(downloadFolder.isDirectory() || downloadFolder.mkdirs());
+
+        File downloadFile = new File(downloadFolder, "download.bin");
+        TestService service = ServiceCallMetrics.instrument(TestService.class, new TestServiceImpl());
+
+        assertTrue(service instanceof java.lang.reflect.Proxy);
+        assertSame(service, ServiceCallMetrics.instrument(TestService.class, service));
+
+        assertEquals("echo", service.echo("echo"));
+        assertEquals("again", service.echo("again"));
+
+        try {
+            service.fail();
+            fail("the exception of the service should be thrown");
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        service.download(downloadFile.getAbsolutePath());
+
+        String json = writeJson();
+
+        assertTrue(json, json.contains("{\"method\":\"TestService.echo\",\"calls\":2,\"errors\":0,"));
+        assertTrue(json, json.contains("{\"method\":\"TestService.fail\",\"calls\":1,\"errors\":1,"));
+        assertTrue(json, json.contains("{\"method\":\"TestService.download\",\"calls\":1,\"errors\":0,"));
+        assertTrue(json, Pattern.compile("\"TestService.download\".*\"bytesDownloaded\":42,").matcher(json).find());
+
+        /* Object methods are not recorded */
+        service.toString();
+        assertFalse(writeJson().contains("toString"));
+    }
+
+    public void testStopped() {
+        metrics.stop();
+
+        TestService service = new TestServiceImpl();
+
+        assertSame(service, ServiceCallMetrics.instrument(TestService.class, service));
+    }
+
+    private String writeJson()
+            throws IOException {
+        StringWriter json = new StringWriter();
+        metrics.writeJson(json);
+
+        return json.toString();
+    }
+
+    private static long[] getHistogram(String json, String method) {
+        Matcher matcher =
+                Pattern.compile("\"method\":\"" + Pattern.quote(method) + "\".*\"latencyHistogram\":\\[([0-9,]*)\\]")
+                        .matcher(json);
+        assertTrue(json, matcher.find());
+
+        String[] counts = matcher.group(1).split(",");
+        long[] histogram = new long[counts.length];
+
+        for (int i = 0; i < counts.length; i++) {
+            histogram[i] = Long.parseLong(counts[i]);
+        }
+
+        return histogram;
+    }
+
+    private String getSummaryColumn(String method, int column) {
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        metrics.printSummary(new PrintStream(summary, true));
+
+        for (String line : summary.toString().split("\r?\n")) {
+            String[] columns = line.trim().split("\\s+");
+
+            if (columns[0].equals(method)) {
+                return columns[column];
+            }
+        }
+
+        fail(summary.toString());
+        return null;
+    }
+
+    public interface TestService {
+        String echo(String value);
+
+        void fail()
+                throws IOException;
+
+        void download(String downloadTo)
+                throws IOException;
+    }
+
+    private static class TestServiceImpl
+            implements TestService {
+        public String echo(String value) {
+            return value;
+        }
+
+        public void fail()
+                throws IOException {
+            throw new IOException("failed");
+        }
+
+        public void download(String downloadTo)
+                throws IOException {
+            FileOutputStream out = new FileOutputStream(downloadTo);
+
+            try {
+                out.write(new byte[42]);
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.impl;
+
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class ServiceReplayTest
+        extends TestCase {
+    private File testFolder;
+    private File archiveFile;
+    private ServiceReplay replay;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        testFolder = Util.getTemporaryTestFilesLocation(getName());
+        assertTrue(testFolder.isDirectory() || testFolder.mkdirs());
+
+        archiveFile = new File(testFolder, "services.zip");
+    }
+
+    protected void tearDown()
+            throws Exception {
+        if (replay != null) {
+            replay.close();
+        }
+
+        Util.tearDown(getName());
+    }
+
+    public void testRoundTrip()
+            throws Exception {
+        ServiceRecorder recorder = ServiceRecorder.start(archiveFile);
+
+        TestService service = ServiceRecorder.record(TestService.class, new TestServiceImpl());
+        assertTrue(service instanceof java.lang.reflect.Proxy);
+
+        assertEquals("item-1", service.getItem(1));
+        assertEquals("item-2", service.getItem(2));
+        assertEquals(3, service.count("$/project"));
+        assertTrue(Arrays.equals(new String[]
+                {
+                        "a", null, "c"
+                }, service.list(new String[]
+                {
+                        "a", null, "c"
+                })));
+        assertEquals(Color.GREEN, service.getColor(true));
+        assertNull(service.getItem(-1));
+
+        try {
+            service.fail("message");
+            fail("the exception of the service should be thrown");
+        } catch (IOException e) {
+            assertEquals("message", e.getMessage());
+        }
+
+        recorder.stop();
+
+        /* Recording stopped, services are no longer wrapped */
+        TestService unrecorded = new TestServiceImpl();
+        assertSame(unrecorded, ServiceRecorder.record(TestService.class, unrecorded));
+
+        replay = ServiceReplay.open(archiveFile, 0);
+        TestService replayed = replay.getService(TestService.class);
+
+        /* Answered by arguments, not by order */
+        assertEquals("item-2", replayed.getItem(2));
+        assertEquals("item-1", replayed.getItem(1));
+        assertNull(replayed.getItem(-1));
+        assertEquals(3, replayed.count("$/project"));
+        assertTrue(Arrays.equals(new String[]
+                {
+                        "a", null, "c"
+                }, replayed.list(new String[]
+                {
+                        "a", null, "c"
+                })));
+        assertSame(Color.GREEN, replayed.getColor(true));
+
+        try {
+            replayed.fail("message");
+            fail("the recorded exception should be thrown");
+        } catch (IOException e) {
+            assertEquals("message", e.getMessage());
+        }
+
+        /* A call repeated more often than recorded gets the last answer again */
+        assertEquals("item-1", replayed.getItem(1));
+
+        /* Different arguments get the recorded calls of the method */
+        assertEquals(3, replayed.count("$/other"));
+
+        assertEquals(9, replay.getCallCount());
+        assertEquals(0, replay.getMissedCallCount());
+
+        /* A method that was never called is missed */
+        try {
+            replayed.download("never", new File(testFolder, "never.txt").getAbsolutePath());
+            fail("a call that was not recorded should fail");
+        } catch (IllegalStateException e) {
+        }
+
+        assertEquals(1, replay.getMissedCallCount());
+    }
+
+    public void testDownloadedContentShared()
+            throws Exception {
+        ServiceRecorder recorder = ServiceRecorder.start(archiveFile);
+        TestService service = ServiceRecorder.record(TestService.class, new TestServiceImpl());
+
+        File downloads = new File(testFolder, "record");
+        assertTrue(downloads.mkdirs());
+
+        /* Two items have the same content */
+        service.download("same", new File(downloads, "1.txt").getAbsolutePath());
+        service.download("other", new File(downloads, "2.txt").getAbsolutePath());
+        service.download("same", new File(downloads, "3.txt").getAbsolutePath());
+
+        recorder.stop();
+
+        List<String> contentEntries = new ArrayList<String>();
+        ZipFile archive = new ZipFile(archiveFile);
+        try {
+            for (Enumeration<? extends ZipEntry> entries = archive.entries(); entries.hasMoreElements(); ) {
+                String name = entries.nextElement().getName();
+
+                if (name.startsWith(ServiceArchive.CONTENT_ENTRY_PREFIX)) {
+                    contentEntries.add(name);
+                }
+            }
+
+            assertNotNull(archive.getEntry(ServiceArchive.CALLS_ENTRY));
+        } finally {
+            archive.close();
+        }
+
+        /* The content is stored once per SHA-1 */
+        assertEquals(2, contentEntries.size());
+        assertTrue(contentEntries.contains(ServiceArchive.CONTENT_ENTRY_PREFIX + sha1(TestServiceImpl.getContent("same"))));
+        assertTrue(contentEntries.contains(ServiceArchive.CONTENT_ENTRY_PREFIX + sha1(TestServiceImpl.getContent("other"))));
+
+        replay = ServiceReplay.open(archiveFile, 0);
+        TestService replayed = replay.getService(TestService.class);
+
+        File replayDownloads = new File(testFolder, "replay");
+        assertTrue(replayDownloads.mkdirs());
+
+        /* The local path is not part of the arguments matched */
+        File same = new File(replayDownloads, "same.txt");
+        File other = new File(replayDownloads, "other.txt");
+        replayed.download("same", same.getAbsolutePath());
+        replayed.download("other", other.getAbsolutePath());
+
+        assertTrue(Arrays.equals(TestServiceImpl.getContent("same"), readFile(same)));
+        assertTrue(Arrays.equals(TestServiceImpl.getContent("other"), readFile(other)));
+
+        assertEquals(2, replay.getDownloadCount());
+        assertEquals(
+                TestServiceImpl.getContent("same").length + TestServiceImpl.getContent("other").length,
+                replay.getBytesDownloaded());
+
+        replay.resetCounters();
+        assertEquals(0, replay.getCallCount());
+        assertEquals(0, replay.getBytesDownloaded());
+    }
+
+    public void testConcurrentDownloads()
+            throws Exception {
+        ServiceRecorder recorder = ServiceRecorder.start(archiveFile);
+        final TestService service = ServiceRecorder.record(TestService.class, new TestServiceImpl());
+
+        final File downloads = new File(testFolder, "record");
+        assertTrue(downloads.mkdirs());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+
+            for (int i = 0; i < 8; i++) {
+                final int thread = i;
+
+                futures.add(executor.submit(new Callable<Void>() {
+                    public Void call()
+                            throws Exception {
+                        service.download("same", new File(downloads, thread + "-same.txt").getAbsolutePath());
+                        service.download("item-" + thread, new File(downloads, thread + ".txt").getAbsolutePath());
+
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        recorder.stop();
+
+        int contentEntries = 0;
+        ZipFile archive = new ZipFile(archiveFile);
+        try {
+            for (Enumeration<? extends ZipEntry> entries = archive.entries(); entries.hasMoreElements(); ) {
+                if (entries.nextElement().getName().startsWith(ServiceArchive.CONTENT_ENTRY_PREFIX)) {
+                    contentEntries++;
+                }
+            }
+        } finally {
+            archive.close();
+        }
+
+        /* The shared content is stored once */
+        assertEquals(9, contentEntries);
+
+        replay = ServiceReplay.open(archiveFile, 0);
+        TestService replayed = replay.getService(TestService.class);
+
+        File replayDownloads = new File(testFolder, "replay");
+        assertTrue(replayDownloads.mkdirs());
+
+        for (int i = 0; i < 8; i++) {
+            File downloaded = new File(replayDownloads, i + ".txt");
+            replayed.download("item-" + i, downloaded.getAbsolutePath());
+
+            assertTrue(Arrays.equals(TestServiceImpl.getContent("item-" + i), readFile(downloaded)));
+        }
+    }
+
+    public void testUnsupportedValue()
+            throws Exception {
+        ServiceRecorder recorder = ServiceRecorder.start(archiveFile);
+        TestService service = ServiceRecorder.record(TestService.class, new TestServiceImpl());
+
+        assertNotNull(service.getUnsupported());
+
+        recorder.stop();
+
+        replay = ServiceReplay.open(archiveFile, 0);
+
+        try {
+            replay.getService(TestService.class).getUnsupported();
+            fail("a value that could not be recorded should not be replayed");
+        } catch (IllegalStateException e) {
+            assertEquals("Unsupported recorded value " + Object.class.getName(), e.getMessage());
+        }
+    }
+
+    public void testNotAnArchive()
+            throws Exception {
+        ServiceRecorder.start(archiveFile).stop();
+
+        ZipFile archive = new ZipFile(archiveFile);
+        try {
+            assertNotNull(archive.getEntry(ServiceArchive.CALLS_ENTRY));
+        } finally {
+            archive.close();
+        }
+
+        replay = ServiceReplay.open(archiveFile, 0);
+        assertEquals(0, replay.getCallCount());
+
+        File notAnArchive = new File(testFolder, "empty.zip");
+        FileOutputStream output = new FileOutputStream(notAnArchive);
+        try {
+            output.write(new byte[]
+                    {
+                            'P', 'K', 5, 6, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0
+                    });
+        } finally {
+            output.close();
+        }
+
+        try {
+            ServiceReplay.open(notAnArchive, 0);
+            fail("an archive without calls should not be opened");
+        } catch (IOException e) {
+        }
+    }
+
+    private static String sha1(byte[] content)
+            throws Exception {
+        StringBuilder name = new StringBuilder();
+
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(content)) {
+            name.append(String.format("%02x", b & 0xff));
+        }
+
+        return name.toString();
+    }
+
+    private static byte[] readFile(File file)
+            throws IOException {
+        byte[] content = new byte[(int) file.length()];
+
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < content.length) {
+                offset += input.read(content, offset, content.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+
+        return content;
+    }
+
+    public enum Color {
+        RED, GREEN
+    }
+
+    public interface TestService {
+        String getItem(int id);
+
+        int count(String path);
+
+        String[] list(String[] values);
+
+        Color getColor(boolean green);
+
+        Object getUnsupported();
+
+        void fail(String message)
+                throws IOException;
+
+        void download(String item, String downloadTo)
+                throws IOException;
+    }
+
+    private static class TestServiceImpl
+            implements TestService {
+        public static byte[] getContent(String item) {
+            try {
+                return ("Content of " + item + "\n").getBytes("UTF-8");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public String getItem(int id) {
+            return id >= 0 ? "item-" + id : null;
+        }
+
+        public int count(String path) {
+            return 3;
+        }
+
+        public String[] list(String[] values) {
+            return values;
+        }
+
+        public Color getColor(boolean green) {
+            return green ? Color.GREEN : Color.RED;
+        }
+
+        public Object getUnsupported() {
+            return new Object();
+        }
+
+        public void fail(String message)
+                throws IOException {
+            throw new IOException(message);
+        }
+
+        public void download(String item, String downloadTo)
+                throws IOException {
+            FileOutputStream output = new FileOutputStream(downloadTo);
+
+            try {
+                output.write(getContent(item));
+            } finally {
+                output.close();
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 
 public class MockVersionControlService
         implements VersionControlService {
@@ -46,6 +47,7 @@ public class MockVersionControlService
 
     private HashMap<Integer, HashSet<String>> itemData = new HashMap<Integer, HashSet<String>>();
     private HashMap<Integer, MockChangesetProperties> changesetData = new HashMap<Integer, MockChangesetProperties>();
+    private LinkedHashMap<Shelveset, PendingSet[]> shelvesetData = new LinkedHashMap<Shelveset, PendingSet[]>();
 
     private int latestChangeset;
 
@@ -123,11 +125,15 @@ public class MockVersionControlService
     }
 
     public void downloadShelvedFile(PendingChange shelvedChange, String downloadTo) {
-
+        writeFile(downloadTo, generateShelvedFileContent(shelvedChange.getServerItem()));
     }
 
     public void downloadBaseFile(PendingChange pendingChange, String downloadTo) {
+        String serverItem =
+                pendingChange.getSourceServerItem() != null ? pendingChange.getSourceServerItem()
+                        : pendingChange.getServerItem();
 
+        writeFile(downloadTo, generateFileContent(serverItem, pendingChange.getVersion()));
     }
 
     public Changeset getChangeset(int changesetID) {
@@ -248,6 +254,14 @@ public class MockVersionControlService
         return Util.verifyFileContent(localFile, generateFileContent(serverPath, changesetId));
     }
 
+    public void AddShelveset(Shelveset shelveset, PendingSet[] pendingSets) {
+        shelvesetData.put(shelveset, pendingSets);
+    }
+
+    public boolean verifyShelvedFileContent(byte[] fileContent, String serverPath) {
+        return new String(fileContent).equals(generateShelvedFileContent(serverPath));
+    }
+
     private void UpdateChangesetOption(Changeset change) {
         if (changesetData.containsKey(new Integer(change.getChangesetID()))) {
             MockChangesetProperties properties = changesetData.get(new Integer(change.getChangesetID()));
@@ -287,6 +301,22 @@ public class MockVersionControlService
         return sb.toString();
     }
 
+    private String generateShelvedFileContent(String path) {
+        return String.format("Shelved FilePath : %s .", path) + OutputConstants.NEW_LINE;//$NON-NLS-1$
+    }
+
+    private void writeFile(String path, String content) {
+        try {
+            FileWriter fw = new FileWriter(new File(path));
+
+            fw.write(content);
+
+            fw.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private boolean DoesChangesetDataHasServerPath(HashSet<String> changesetData, String serverOrLocalPath) {
         String serverPath = serverOrLocalPath.replace('*', ' ').trim();
         serverPath =
@@ -330,14 +360,43 @@ public class MockVersionControlService
     }
 
     public Shelveset[] queryShelvesets(String shelvesetName, String shelvesetOwner) {
-        return null;
+        // names and owners are matched exactly, null matches all
+
+        ArrayList<Shelveset> toReturn = new ArrayList<Shelveset>();
+
+        for (Shelveset shelveset : shelvesetData.keySet()) {
+            if ((shelvesetName == null || shelvesetName.equals(shelveset.getName()))
+                    && (shelvesetOwner == null || shelvesetOwner.equals(shelveset.getOwnerName()))) {
+                toReturn.add(shelveset);
+            }
+        }
+
+        Shelveset[] shelvesets = new Shelveset[toReturn.size()];
+        return toReturn.toArray(shelvesets);
     }
 
     public PendingSet[] queryShelvesetChanges(Shelveset shelveset, boolean includeDownloadInfo) {
-        return null;
+        Shelveset existingShelveset = findShelveset(shelveset);
+
+        return existingShelveset != null ? shelvesetData.get(existingShelveset) : null;
     }
 
     public void deleteShelveset(Shelveset shelveset) {
+        Shelveset existingShelveset = findShelveset(shelveset);
 
+        if (existingShelveset != null) {
+            shelvesetData.remove(existingShelveset);
+        }
+    }
+
+    private Shelveset findShelveset(Shelveset shelveset) {
+        for (Shelveset existingShelveset : shelvesetData.keySet()) {
+            if (existingShelveset.getName().equals(shelveset.getName())
+                    && existingShelveset.getOwnerName().equals(shelveset.getOwnerName())) {
+                return existingShelveset;
+            }
+        }
+
+        return null;
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks;
+
+import com.microsoft.gittf.core.interfaces.WorkspaceService;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.tasks.pendDiff.CheckinAnalysisChangeCollection;
+import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class CheckinMultiRepositoriesHeadCommitsTaskTest
+        extends TestCase {
+    private Repository repository;
+    private RevCommit commit;
+    private File workingFolder;
+    private ExecutorService repositoryExecutor;
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        ConfigureRepositoryTask configTask =
+                new ConfigureRepositoryTask(repository, new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/project");
+        assertTrue(configTask.run(new NullTaskProgressMonitor()).isOK());
+
+        commit = createCommit();
+
+        workingFolder = new File(Util.getTemporaryTestFilesLocation(getName()), "working");
+        workingFolder.mkdirs();
+
+        repositoryExecutor = Executors.newFixedThreadPool(2);
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repositoryExecutor.shutdownNow();
+
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testRepositoriesAnalyzedBeforeFirstPend()
+            throws Exception {
+        /* The first repository cannot finish its analysis before the second one started */
+        final CountDownLatch secondStarted = new CountDownLatch(1);
+
+        final List<PendDifferenceTask> firstTasks = Arrays.<PendDifferenceTask>asList(
+                new RecordingTask("first0", null, secondStarted, null),
+                new RecordingTask("first1"));
+        final List<PendDifferenceTask> secondTasks = Arrays.<PendDifferenceTask>asList(
+                new RecordingTask("second0", secondStarted, null, null),
+                new RecordingTask("second1"));
+
+        /* Without --pipeline, as the checkin does before its pend loop */
+        CheckinMultiRepositoriesHeadCommitsTask.analyzeRepositories(
+                Arrays.asList(firstTasks, secondTasks), repositoryExecutor, new NullTaskProgressMonitor());
+
+        for (final List<PendDifferenceTask> pendTasks : Arrays.asList(firstTasks, secondTasks)) {
+            for (final PendDifferenceTask pendTask : pendTasks) {
+                assertTrue(pendTask.run(new NullTaskProgressMonitor()).isOK());
+            }
+        }
+
+        assertEquals(8, events.size());
+
+        /* Both repositories are analyzed before the first pend */
+        final int firstPend = events.indexOf("pend first0");
+        assertEquals(4, firstPend);
+
+        for (final String name : new String[]
+                {
+                        "first0", "first1", "second0", "second1"
+                }) {
+            assertTrue(events.indexOf("analyze " + name) < firstPend);
+        }
+
+        /* The commits of a repository are analyzed in order */
+        assertTrue(events.indexOf("analyze first0") < events.indexOf("analyze first1"));
+        assertTrue(events.indexOf("analyze second0") < events.indexOf("analyze second1"));
+
+        assertEquals(Arrays.asList("pend first0", "pend first1", "pend second0", "pend second1"), events.subList(4, 8));
+    }
+
+    public void testAnalysisFailureReported()
+            throws Exception {
+        final Exception failure = new Exception("analysis failed");
+
+        final List<PendDifferenceTask> firstTasks = Arrays.<PendDifferenceTask>asList(new RecordingTask("first0"));
+        final List<PendDifferenceTask> secondTasks = Arrays.<PendDifferenceTask>asList(
+                new RecordingTask("second0", null, null, failure),
+                new RecordingTask("second1"));
+
+        try {
+            CheckinMultiRepositoriesHeadCommitsTask.analyzeRepositories(
+                    Arrays.asList(firstTasks, secondTasks), repositoryExecutor, new NullTaskProgressMonitor());
+            fail("the analysis failure was not reported");
+        } catch (Exception e) {
+            assertSame(failure, e);
+        }
+
+        /* The commits after the failed one are not analyzed */
+        assertFalse(events.contains("analyze second1"));
+    }
+
+    private RevCommit createCommit()
+            throws Exception {
+        ObjectInserter inserter = repository.newObjectInserter();
+        RevWalk revWalk = new RevWalk(repository);
+
+        try {
+            TreeFormatter tree = new TreeFormatter();
+            tree.append("file.txt", FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, Constants.encode("content")));
+
+            PersonIdent ident = new PersonIdent("user", "user@example.com");
+
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(inserter.insert(tree));
+            commitBuilder.setAuthor(ident);
+            commitBuilder.setCommitter(ident);
+            commitBuilder.setMessage("commit");
+
+            ObjectId commitId = inserter.insert(commitBuilder);
+            inserter.flush();
+
+            return revWalk.parseCommit(commitId);
+        } finally {
+            revWalk.release();
+            inserter.release();
+        }
+    }
+
+    private static WorkspaceService createWorkspace() {
+        /* The analysis never talks to the server */
+        return (WorkspaceService) Proxy.newProxyInstance(
+                WorkspaceService.class.getClassLoader(),
+                new Class[]
+                        {
+                                WorkspaceService.class
+                        },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * A pend task that records when it is analyzed and pended
+     */
+    private class RecordingTask
+            extends PendDifferenceTask {
+        private final String name;
+        private final CountDownLatch started;
+        private final CountDownLatch awaited;
+        private final Exception failure;
+
+        public RecordingTask(String name) {
+            this(name, null, null, null);
+        }
+
+        public RecordingTask(String name, CountDownLatch started, CountDownLatch awaited, Exception failure) {
+            super(repository, null, commit, createWorkspace(), "$/project", workingFolder);
+
+            this.name = name;
+            this.started = started;
+            this.awaited = awaited;
+            this.failure = failure;
+        }
+
+        @Override
+        public CheckinAnalysisChangeCollection analyze(TaskProgressMonitor progressMonitor)
+                throws Exception {
+            if (started != null) {
+                started.countDown();
+            }
+
+            if (awaited != null && !awaited.await(30, TimeUnit.SECONDS)) {
+                throw new Exception("the repositories were not analyzed concurrently");
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            events.add("analyze " + name);
+
+            return new CheckinAnalysisChangeCollection();
+        }
+
+        @Override
+        public TaskStatus run(TaskProgressMonitor progressMonitor) {
+            events.add("pend " + name);
+
+            return TaskStatus.OK_STATUS;
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks;
+
+import com.microsoft.gittf.core.mock.MockChangesetProperties;
+import com.microsoft.gittf.core.mock.MockVersionControlService;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.test.Util;
+import com.microsoft.gittf.core.util.RepositoryUtil;
+import com.microsoft.tfs.core.clients.versioncontrol.PropertyConstants;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ItemType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PropertyValue;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import junit.framework.TestCase;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.net.URI;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class CreateCommitForShelvesetTaskTest
+        extends TestCase {
+    private MockVersionControlService mockVersionControlService;
+    private Repository repository;
+    private RevCommit headCommit;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        mockVersionControlService = new MockVersionControlService();
+
+        mockVersionControlService.AddFile("$/project/src/a.txt", 1);
+        mockVersionControlService.AddFile("$/project/src/b.txt", 1);
+        mockVersionControlService.AddFile("$/project/src/sub/c.txt", 1);
+        mockVersionControlService.AddFile("$/project/src/sub/deep/d.txt", 1);
+        mockVersionControlService.AddFile("$/project/lib/e.txt", 1);
+        mockVersionControlService.AddFile("$/project/lib/util/f.txt", 1);
+        mockVersionControlService.AddFile("$/project/docs/g.txt", 1);
+        mockVersionControlService.AddFile("$/project/docs/img/h.txt", 1);
+        mockVersionControlService.updateChangesetInformation(new MockChangesetProperties(
+                "ownerDisplayName",
+                "ownerName",
+                "committerDisplayName",
+                "committerName",
+                "comment",
+                Calendar.getInstance()), 1);
+
+        repository = RepositoryUtil.createNewRepository(Util.getRepositoryFile(getName()).getAbsolutePath(), false);
+
+        CloneTask cloneTask =
+                new CloneTask(
+                        new URI("http://fakeCollection:8080/tfs/DefaultCollection"),
+                        mockVersionControlService,
+                        "$/project",
+                        repository);
+        assertTrue(cloneTask.run(new NullTaskProgressMonitor()).isOK());
+
+        new Git(repository).checkout().setName("master").call();
+
+        RevWalk walk = new RevWalk(repository);
+        try {
+            headCommit = walk.parseCommit(repository.resolve(Constants.HEAD));
+        } finally {
+            walk.release();
+        }
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repository.close();
+
+        Util.tearDown(getName());
+    }
+
+    public void testRenameIntoExistingFolder()
+            throws Exception {
+        RevCommit stash = unshelve(change(ChangeType.RENAME, ItemType.FOLDER, "$/project/lib/sub", "$/project/src/sub"));
+
+        Map<String, ObjectId> expected = readTree(headCommit);
+        move(expected, "src/sub/c.txt", "lib/sub/c.txt");
+        move(expected, "src/sub/deep/d.txt", "lib/sub/deep/d.txt");
+
+        assertEquals(expected, readTree(stash));
+        assertEquals(headCommit.getTree().getId(), stash.getParent(0).getTree().getId());
+    }
+
+    public void testDeleteFolderWithSubfolders()
+            throws Exception {
+        RevCommit stash = unshelve(change(ChangeType.DELETE, ItemType.FOLDER, "$/project/src", null));
+
+        Map<String, ObjectId> expected = readTree(headCommit);
+        expected.remove("src/a.txt");
+        expected.remove("src/b.txt");
+        expected.remove("src/sub/c.txt");
+        expected.remove("src/sub/deep/d.txt");
+
+        assertEquals(expected, readTree(stash));
+        assertNull(TreeWalk.forPath(repository, "src", stash.getTree()));
+        assertEquals(headCommit.getTree().getId(), stash.getParent(0).getTree().getId());
+    }
+
+    public void testNestedFolderRename()
+            throws Exception {
+        RevCommit stash =
+                unshelve(
+                        change(ChangeType.RENAME, ItemType.FOLDER, "$/project/source", "$/project/src"),
+                        change(ChangeType.RENAME, ItemType.FOLDER, "$/project/source/subfolder", "$/project/src/sub"));
+
+        Map<String, ObjectId> expected = readTree(headCommit);
+        move(expected, "src/a.txt", "source/a.txt");
+        move(expected, "src/b.txt", "source/b.txt");
+        move(expected, "src/sub/c.txt", "source/subfolder/c.txt");
+        move(expected, "src/sub/deep/d.txt", "source/subfolder/deep/d.txt");
+
+        assertEquals(expected, readTree(stash));
+        assertEquals(headCommit.getTree().getId(), stash.getParent(0).getTree().getId());
+    }
+
+    public void testAddUnderRenamedParent()
+            throws Exception {
+        RevCommit stash =
+                unshelve(
+                        change(ChangeType.RENAME, ItemType.FOLDER, "$/project/source", "$/project/src"),
+                        change(ChangeType.ADD, ItemType.FILE, "$/project/source/sub/new.txt", null));
+
+        Map<String, ObjectId> actual = readTree(stash);
+        ObjectId newFile = actual.remove("source/sub/new.txt");
+
+        assertNotNull(newFile);
+        assertTrue(mockVersionControlService.verifyShelvedFileContent(
+                repository.open(newFile).getBytes(),
+                "$/project/source/sub/new.txt"));
+
+        Map<String, ObjectId> expected = readTree(headCommit);
+        move(expected, "src/a.txt", "source/a.txt");
+        move(expected, "src/b.txt", "source/b.txt");
+        move(expected, "src/sub/c.txt", "source/sub/c.txt");
+        move(expected, "src/sub/deep/d.txt", "source/sub/deep/d.txt");
+
+        assertEquals(expected, actual);
+        assertEquals(headCommit.getTree().getId(), stash.getParent(0).getTree().getId());
+    }
+
+    public void testUnchangedSiblingSubtreesReused()
+            throws Exception {
+        RevCommit stash = unshelve(change(ChangeType.EDIT, ItemType.FILE, "$/project/src/a.txt", null));
+
+        Map<String, ObjectId> actual = readTree(stash);
+
+        assertTrue(mockVersionControlService.verifyShelvedFileContent(
+                repository.open(actual.remove("src/a.txt")).getBytes(),
+                "$/project/src/a.txt"));
+
+        Map<String, ObjectId> expected = readTree(headCommit);
+        expected.remove("src/a.txt");
+
+        assertEquals(expected, actual);
+
+        /* The subtrees without changes are the ones of the base tree */
+        for (String folder : new String[]
+                {
+                        "docs", "docs/img", "lib", "lib/util", "src/sub"
+                }) {
+            assertEquals(folder, treeId(headCommit, folder), treeId(stash, folder));
+        }
+
+        assertFalse(treeId(headCommit, "src").equals(treeId(stash, "src")));
+
+        /* The base content of the edit is downloaded, the rest is reused */
+        assertEquals(readTree(headCommit), readTree(stash.getParent(0)));
+        assertEquals(treeId(headCommit, "docs"), treeId(stash.getParent(0), "docs"));
+    }
+
+    private RevCommit unshelve(PendingChange... changes)
+            throws Exception {
+        Shelveset shelveset =
+                new Shelveset(
+                        getName(),
+                        "ownerName",
+                        "ownerDisplayName",
+                        "comment",
+                        null,
+                        null,
+                        null,
+                        Calendar.getInstance(),
+                        false,
+                        null);
+
+        PendingSet pendingSet = new PendingSet();
+        pendingSet.setPendingChanges(changes);
+
+        mockVersionControlService.AddShelveset(shelveset, new PendingSet[]
+                {
+                        pendingSet
+                });
+
+        CreateCommitForShelvesetTask unshelveTask =
+                new CreateCommitForShelvesetTask(repository, mockVersionControlService, shelveset, headCommit);
+        TaskStatus unshelveStatus = unshelveTask.run(new NullTaskProgressMonitor());
+
+        assertTrue(unshelveStatus.isOK());
+
+        RevWalk walk = new RevWalk(repository);
+        try {
+            RevCommit stash = walk.parseCommit(unshelveTask.getCommitID());
+            walk.parseHeaders(stash.getParent(0));
+
+            return stash;
+        } finally {
+            walk.release();
+        }
+    }
+
+    private static PendingChange change(
+            ChangeType changeType,
+            ItemType itemType,
+            String serverItem,
+            String sourceServerItem) {
+        PendingChange change = new PendingChange();
+        change.setChangeType(changeType);
+        change.setItemType(itemType);
+        change.setServerItem(serverItem);
+        change.setSourceServerItem(sourceServerItem);
+        change.setVersion(1);
+        change.setPropertyValues(new PropertyValue[]
+                {
+                        PropertyConstants.EXECUTABLE_DISABLED_VALUE
+                });
+
+        return change;
+    }
+
+    private Map<String, ObjectId> readTree(RevCommit commit)
+            throws Exception {
+        Map<String, ObjectId> entries = new TreeMap<String, ObjectId>();
+
+        TreeWalk treeWalk = new TreeWalk(repository);
+        try {
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(commit.getTree());
+
+            while (treeWalk.next()) {
+                entries.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        } finally {
+            treeWalk.release();
+        }
+
+        return entries;
+    }
+
+    private ObjectId treeId(RevCommit commit, String path)
+            throws Exception {
+        TreeWalk treeWalk = TreeWalk.forPath(repository, path, commit.getTree());
+        assertNotNull(path, treeWalk);
+
+        try {
+            return treeWalk.getObjectId(0);
+        } finally {
+            treeWalk.release();
+        }
+    }
+
+    private static void move(Map<String, ObjectId> entries, String from, String to) {
+        ObjectId id = entries.remove(from);
+        assertNotNull(from, id);
+
+        entries.put(to, id);
+    }
+}
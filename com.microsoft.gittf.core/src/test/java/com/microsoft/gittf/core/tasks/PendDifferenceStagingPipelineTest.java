@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks;
+
+import com.microsoft.gittf.core.interfaces.WorkspaceService;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.pendDiff.CheckinAnalysisChangeCollection;
+import com.microsoft.gittf.core.tasks.pendDiff.PendDifferenceTask;
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class PendDifferenceStagingPipelineTest
+        extends TestCase {
+    private Repository repository;
+    private RevCommit commit;
+    private File workingFolder;
+    private File stagingRoot;
+
+    private final List<String> analyzed = Collections.synchronizedList(new ArrayList<String>());
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        ConfigureRepositoryTask configTask =
+                new ConfigureRepositoryTask(repository, new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/project");
+        assertTrue(configTask.run(new NullTaskProgressMonitor()).isOK());
+
+        commit = createCommit();
+
+        workingFolder = new File(Util.getTemporaryTestFilesLocation(getName()), "working");
+        workingFolder.mkdirs();
+
+        stagingRoot = new File(Util.getTemporaryTestFilesLocation(getName()), "staging");
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testTasksReturnedInCommitOrder()
+            throws Exception {
+        List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+
+        for (int count = 0; count < 5; count++) {
+            pendTasks.add(new StagingTask("commit" + count));
+        }
+
+        PendDifferenceStagingPipeline pipeline = new PendDifferenceStagingPipeline(pendTasks, stagingRoot);
+
+        try {
+            for (int count = 0; count < pendTasks.size(); count++) {
+                StagingTask pendTask = (StagingTask) pipeline.next(new NullTaskProgressMonitor());
+
+                assertSame(pendTasks.get(count), pendTask);
+                assertTrue(new File(pendTask.stagingFolder, pendTask.name).isFile());
+
+                /* The items of the previous task have been pended by now */
+                if (count > 0) {
+                    assertFalse(((StagingTask) pendTasks.get(count - 1)).stagingFolder.exists());
+                }
+            }
+        } finally {
+            pipeline.close();
+        }
+
+        assertEquals(5, analyzed.size());
+
+        for (int count = 0; count < analyzed.size(); count++) {
+            assertEquals("commit" + count, analyzed.get(count));
+        }
+
+        assertFalse(stagingRoot.exists());
+    }
+
+    public void testAnalysisFailureReported()
+            throws Exception {
+        Exception failure = new Exception("analysis failed");
+
+        List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+        pendTasks.add(new StagingTask("commit0"));
+        pendTasks.add(new StagingTask("commit1", failure, null));
+        pendTasks.add(new StagingTask("commit2"));
+
+        PendDifferenceStagingPipeline pipeline = new PendDifferenceStagingPipeline(pendTasks, stagingRoot);
+
+        try {
+            assertSame(pendTasks.get(0), pipeline.next(new NullTaskProgressMonitor()));
+
+            try {
+                pipeline.next(new NullTaskProgressMonitor());
+                fail("the analysis failure was not reported");
+            } catch (Exception e) {
+                assertSame(failure, e);
+            }
+        } finally {
+            pipeline.close();
+        }
+
+        /* Nothing is analyzed after the failure */
+        assertEquals(2, analyzed.size());
+        assertFalse(stagingRoot.exists());
+    }
+
+    public void testAnalysisWarningsReplayed()
+            throws Exception {
+        List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+        pendTasks.add(new StagingTask("commit0", "first warning"));
+        pendTasks.add(new StagingTask("commit1"));
+        pendTasks.add(new StagingTask("commit2", "second warning"));
+
+        final List<String> warnings = new ArrayList<String>();
+        TaskProgressMonitor progressMonitor = new NullTaskProgressMonitor() {
+            @Override
+            public void displayWarning(String message) {
+                warnings.add(message);
+            }
+        };
+
+        PendDifferenceStagingPipeline pipeline = new PendDifferenceStagingPipeline(pendTasks, stagingRoot);
+
+        try {
+            /* The warnings of the analysis show up when its task is handed out */
+            pipeline.next(progressMonitor);
+            assertEquals(1, warnings.size());
+            assertEquals("first warning", warnings.get(0));
+
+            pipeline.next(progressMonitor);
+            assertEquals(1, warnings.size());
+
+            pipeline.next(progressMonitor);
+            assertEquals(2, warnings.size());
+            assertEquals("second warning", warnings.get(1));
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    public void testStagingCleanedUpOnCancel()
+            throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+        pendTasks.add(new StagingTask("commit0"));
+        pendTasks.add(new StagingTask("commit1", null, blocked));
+
+        PendDifferenceStagingPipeline pipeline = new PendDifferenceStagingPipeline(pendTasks, stagingRoot);
+
+        StagingTask stagedTask = (StagingTask) pipeline.next(new NullTaskProgressMonitor());
+        assertTrue(stagedTask.stagingFolder.isDirectory());
+
+        /* Close while the second task is still being analyzed */
+        assertTrue(blocked.await(30, TimeUnit.SECONDS));
+        pipeline.close();
+
+        assertTrue(((StagingTask) pendTasks.get(1)).interrupted.await(30, TimeUnit.SECONDS));
+        assertFalse(stagingRoot.exists());
+    }
+
+    public void testStagingCleanedUpOnCancelWithSharedExecutor()
+            throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        List<PendDifferenceTask> pendTasks = new ArrayList<PendDifferenceTask>();
+        pendTasks.add(new StagingTask("commit0"));
+        pendTasks.add(new StagingTask("commit1", null, blocked));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            PendDifferenceStagingPipeline pipeline =
+                    new PendDifferenceStagingPipeline(pendTasks, stagingRoot, executor);
+
+            pipeline.next(new NullTaskProgressMonitor());
+
+            /* Closing waits for the cancelled staging to stop, the executor keeps running */
+            assertTrue(blocked.await(30, TimeUnit.SECONDS));
+            pipeline.close();
+
+            assertEquals(0, ((StagingTask) pendTasks.get(1)).interrupted.getCount());
+            assertTrue(((StagingTask) pendTasks.get(1)).stopped);
+            assertFalse(stagingRoot.exists());
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RevCommit createCommit()
+            throws Exception {
+        ObjectInserter inserter = repository.newObjectInserter();
+        RevWalk revWalk = new RevWalk(repository);
+
+        try {
+            TreeFormatter tree = new TreeFormatter();
+            tree.append("file.txt", FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, Constants.encode("content")));
+
+            PersonIdent ident = new PersonIdent("user", "user@example.com");
+
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(inserter.insert(tree));
+            commitBuilder.setAuthor(ident);
+            commitBuilder.setCommitter(ident);
+            commitBuilder.setMessage("commit");
+
+            ObjectId commitId = inserter.insert(commitBuilder);
+            inserter.flush();
+
+            return revWalk.parseCommit(commitId);
+        } finally {
+            revWalk.release();
+            inserter.release();
+        }
+    }
+
+    private static WorkspaceService createWorkspace() {
+        /* The pipeline never talks to the server */
+        return (WorkspaceService) Proxy.newProxyInstance(
+                WorkspaceService.class.getClassLoader(),
+                new Class[]
+                        {
+                                WorkspaceService.class
+                        },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * A pend task that records the order it is analyzed in and stages a single
+     * marker file instead of the content of the commit
+     */
+    private class StagingTask
+            extends PendDifferenceTask {
+        private final String name;
+        private final Exception failure;
+        private final CountDownLatch blocked;
+        private final String warning;
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+
+        private volatile File stagingFolder;
+        private volatile boolean stopped = false;
+
+        public StagingTask(String name) {
+            this(name, null, null, null);
+        }
+
+        public StagingTask(String name, String warning) {
+            this(name, null, null, warning);
+        }
+
+        public StagingTask(String name, Exception failure, CountDownLatch blocked) {
+            this(name, failure, blocked, null);
+        }
+
+        private StagingTask(String name, Exception failure, CountDownLatch blocked, String warning) {
+            super(repository, null, commit, createWorkspace(), "$/project", workingFolder);
+
+            this.name = name;
+            this.failure = failure;
+            this.blocked = blocked;
+            this.warning = warning;
+        }
+
+        @Override
+        public CheckinAnalysisChangeCollection analyze(TaskProgressMonitor progressMonitor)
+                throws Exception {
+            analyzed.add(name);
+
+            if (warning != null) {
+                /* As the rename detection does on the analysis monitor */
+                progressMonitor.newSubTask(1).displayWarning(warning);
+            }
+
+            if (blocked != null) {
+                blocked.countDown();
+
+                try {
+                    /* Blocks until the pipeline is closed */
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+
+                    /* Still busy for a while after the interrupt */
+                    Thread.sleep(200);
+                    stopped = true;
+
+                    throw e;
+                }
+            }
+
+            if (failure != null) {
+                throw failure;
+            }
+
+            return new CheckinAnalysisChangeCollection();
+        }
+
+        @Override
+        public void stage(File stagingFolder)
+                throws Exception {
+            assertTrue(stagingFolder.mkdirs());
+            assertTrue(new File(stagingFolder, name).createNewFile());
+
+            this.stagingFolder = stagingFolder;
+        }
+    }
+}
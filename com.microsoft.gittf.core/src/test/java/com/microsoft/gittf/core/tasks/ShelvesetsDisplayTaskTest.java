@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks;
+
+import com.microsoft.gittf.core.mock.MockVersionControlService;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.tasks.framework.TaskStatus;
+import com.microsoft.gittf.core.util.shelveset.ShelvesetSortOption;
+import com.microsoft.gittf.core.util.shelveset.ShelvesetView;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.ChangeType;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingChange;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.PendingSet;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.Shelveset;
+import com.microsoft.tfs.core.clients.versioncontrol.soapextensions.WorkItemCheckinInfo;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+public class ShelvesetsDisplayTaskTest
+        extends TestCase {
+    private MockVersionControlService mockVersionControlService;
+    private RecordingShelvesetView view;
+
+    protected void setUp()
+            throws Exception {
+        mockVersionControlService = new MockVersionControlService();
+        view = new RecordingShelvesetView();
+
+        /* Added out of date order, shelveset-N is N days old */
+        for (int age : new int[]
+                {
+                        3, 1, 5, 2, 4
+                }) {
+            addShelveset("shelveset-" + age, age);
+        }
+    }
+
+    public void testDetailsPage()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(true);
+        task.setOffset(1);
+        task.setLimit(2);
+
+        assertTrue(task.run(new NullTaskProgressMonitor()).isOK());
+
+        /* Oldest first, the first shelveset is skipped */
+        assertEquals("begin 2 details", view.events.get(0));
+        assertEquals("shelveset-4 $/project/shelveset-4.txt", view.events.get(1));
+        assertEquals("shelveset-3 $/project/shelveset-3.txt", view.events.get(2));
+        assertEquals("end", view.events.get(3));
+        assertEquals(4, view.events.size());
+    }
+
+    public void testDetailsPageWithSingleShelveset()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(true);
+        task.setOffset(4);
+        task.setLimit(2);
+
+        assertTrue(task.run(new NullTaskProgressMonitor()).isOK());
+
+        assertEquals(1, view.events.size());
+        assertEquals("details shelveset-1 $/project/shelveset-1.txt", view.events.get(0));
+    }
+
+    public void testDetailsDateRange()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(true);
+        task.setCreatedAfter(daysAgo(4));
+        task.setCreatedBefore(daysAgo(1));
+        task.setLimit(10);
+
+        assertTrue(task.run(new NullTaskProgressMonitor()).isOK());
+
+        assertEquals("begin 3 details", view.events.get(0));
+        assertEquals("shelveset-4 $/project/shelveset-4.txt", view.events.get(1));
+        assertEquals("shelveset-3 $/project/shelveset-3.txt", view.events.get(2));
+        assertEquals("shelveset-2 $/project/shelveset-2.txt", view.events.get(3));
+        assertEquals("end", view.events.get(4));
+    }
+
+    public void testDetailsWithoutLimit()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(true);
+        task.setOffset(3);
+
+        assertTrue(task.run(new NullTaskProgressMonitor()).isOK());
+
+        /* Without a limit the changes of each shelveset are not queried */
+        assertEquals("begin 2 details", view.events.get(0));
+        assertEquals("shelveset-2", view.events.get(1));
+        assertEquals("shelveset-1", view.events.get(2));
+        assertEquals("end", view.events.get(3));
+        assertEquals(4, view.events.size());
+    }
+
+    public void testPageWithoutDetails()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(false);
+        task.setLimit(3);
+
+        assertTrue(task.run(new NullTaskProgressMonitor()).isOK());
+
+        assertEquals("begin 3", view.events.get(0));
+        assertEquals("shelveset-5", view.events.get(1));
+        assertEquals("shelveset-4", view.events.get(2));
+        assertEquals("shelveset-3", view.events.get(3));
+        assertEquals("end", view.events.get(4));
+    }
+
+    public void testPageOutOfRange()
+            throws Exception {
+        ShelvesetsDisplayTask task = createTask(true);
+        task.setOffset(5);
+
+        TaskStatus status = task.run(new NullTaskProgressMonitor());
+
+        assertFalse(status.isOK());
+        assertEquals(0, view.events.size());
+    }
+
+    private ShelvesetsDisplayTask createTask(boolean displayDetails) {
+        ShelvesetsDisplayTask task = new ShelvesetsDisplayTask(mockVersionControlService, view, null, null);
+        task.setDisplayDetails(displayDetails);
+        task.setSortOption(ShelvesetSortOption.DATE);
+
+        return task;
+    }
+
+    private void addShelveset(String name, int age) {
+        Shelveset shelveset =
+                new Shelveset(
+                        name,
+                        "ownerName",
+                        "ownerDisplayName",
+                        "comment",
+                        null,
+                        null,
+                        new WorkItemCheckinInfo[0],
+                        daysAgo(age),
+                        false,
+                        null);
+
+        PendingChange change = new PendingChange();
+        change.setChangeType(ChangeType.EDIT);
+        change.setServerItem("$/project/" + name + ".txt");
+
+        PendingSet pendingSet = new PendingSet();
+        pendingSet.setPendingChanges(new PendingChange[]
+                {
+                        change
+                });
+
+        mockVersionControlService.AddShelveset(shelveset, new PendingSet[]
+                {
+                        pendingSet
+                });
+    }
+
+    private static Calendar daysAgo(int days) {
+        Calendar date = Calendar.getInstance();
+        date.set(2013, Calendar.JANUARY, 10, 12, 0, 0);
+        date.set(Calendar.MILLISECOND, 0);
+        date.add(Calendar.DAY_OF_MONTH, -days);
+
+        return date;
+    }
+
+    private static String describe(Shelveset shelveset, PendingSet[] shelvesetDetails) {
+        StringBuilder description = new StringBuilder(shelveset.getName());
+
+        for (PendingSet pendingSet : shelvesetDetails) {
+            for (PendingChange pendingChange : pendingSet.getPendingChanges()) {
+                description.append(' ').append(pendingChange.getServerItem());
+            }
+        }
+
+        return description.toString();
+    }
+
+    private static class RecordingShelvesetView
+            implements ShelvesetView {
+        private final List<String> events = new ArrayList<String>();
+
+        public void beginShelvesets(int shelvesetCount, boolean displayDetails) {
+            events.add("begin " + shelvesetCount + (displayDetails ? " details" : ""));
+        }
+
+        public void displayShelveset(Shelveset shelveset, PendingSet[] shelvesetDetails) {
+            events.add(shelvesetDetails == null ? shelveset.getName() : describe(shelveset, shelvesetDetails));
+        }
+
+        public void endShelvesets() {
+            events.add("end");
+        }
+
+        public void displayShelvesetDetails(Shelveset shelveset, PendingSet[] shelvesetDetails) {
+            events.add("details " + describe(shelveset, shelvesetDetails));
+        }
+    }
+}
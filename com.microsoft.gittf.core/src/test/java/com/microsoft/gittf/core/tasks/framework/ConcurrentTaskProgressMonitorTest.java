@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.framework;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+public class ConcurrentTaskProgressMonitorTest
+        extends TestCase {
+    private static final int THREAD_COUNT = 8;
+
+    private RecordingProgressMonitor parent;
+    private ConcurrentTaskProgressMonitor monitor;
+
+    protected void setUp()
+            throws Exception {
+        parent = new RecordingProgressMonitor();
+        monitor = new ConcurrentTaskProgressMonitor(parent);
+    }
+
+    public void testSubTasksSumToTotal()
+            throws Exception {
+        monitor.beginTask("task", 1000, TaskProgressDisplay.NONE);
+
+        /* 125 / 64 is exact in binary, so is the sum of the work */
+        runConcurrently(new Worker() {
+            public void run(int thread)
+                    throws Exception {
+                TaskProgressMonitor subTask = monitor.newSubTask(125);
+                subTask.beginTask("sub task", 64, TaskProgressDisplay.NONE);
+
+                for (int i = 0; i < 64; i++) {
+                    subTask.worked(1);
+                }
+
+                subTask.endTask();
+            }
+        });
+
+        assertEquals(1000.0, parent.worked);
+        assertEquals(THREAD_COUNT * 64, parent.workedCalls);
+
+        monitor.endTask();
+
+        assertEquals(1000.0, parent.worked);
+        assertEquals(1, parent.endTaskCalls);
+    }
+
+    public void testWorkClampedToTotal()
+            throws Exception {
+        monitor.beginTask("task", 1000, TaskProgressDisplay.NONE);
+
+        /* Twice as much work as the total is reported */
+        runConcurrently(new Worker() {
+            public void run(int thread) {
+                for (int i = 0; i < 2000 / THREAD_COUNT; i++) {
+                    monitor.worked(1);
+                }
+            }
+        });
+
+        assertEquals(1000.0, parent.worked);
+
+        monitor.endTask();
+
+        assertEquals(1000.0, parent.worked);
+    }
+
+    public void testEndTaskTopsUp()
+            throws Exception {
+        monitor.beginTask("task", 100, TaskProgressDisplay.NONE);
+
+        /* Uneven shares that do not add up exactly */
+        runConcurrently(new Worker() {
+            public void run(int thread) {
+                TaskProgressMonitor subTask = monitor.newSubTask(10);
+                subTask.beginTask("sub task", 3 + thread, TaskProgressDisplay.NONE);
+
+                subTask.worked(1);
+                subTask.worked(1.5);
+            }
+        });
+
+        assertTrue(parent.worked < 100);
+
+        monitor.endTask();
+
+        assertEquals(100.0, parent.worked, 1e-9);
+
+        /* The work reported after the end of the task is ignored */
+        monitor.worked(10);
+
+        assertEquals(100.0, parent.worked, 1e-9);
+    }
+
+    public void testIndeterminateSubTasks()
+            throws Exception {
+        monitor.beginTask("task", 80, TaskProgressDisplay.NONE);
+
+        runConcurrently(new Worker() {
+            public void run(int thread) {
+                TaskProgressMonitor subTask = monitor.newSubTask(10);
+                subTask.beginTask("sub task", TaskProgressMonitor.INDETERMINATE, TaskProgressDisplay.NONE);
+
+                /* Ignored until the sub task ends */
+                subTask.worked(5);
+
+                subTask.endTask();
+            }
+        });
+
+        assertEquals(80.0, parent.worked);
+    }
+
+    public void testSubTaskDetail() {
+        monitor.beginTask("task", 2, TaskProgressDisplay.DISPLAY_SUBTASK_DETAIL);
+
+        TaskProgressMonitor first = monitor.newSubTask(1);
+        first.beginTask("first", 1, TaskProgressDisplay.NONE);
+
+        TaskProgressMonitor second = monitor.newSubTask(1);
+        second.beginTask("second", 1, TaskProgressDisplay.NONE);
+
+        first.setDetail("a.txt");
+        assertEquals("a.txt", parent.detail);
+
+        second.setDetail("b.txt");
+        assertEquals("b.txt (and 1 more)", parent.detail);
+
+        first.endTask();
+        assertEquals("b.txt", parent.detail);
+
+        monitor.setDetail("repository");
+        second.setDetail("c.txt");
+        assertEquals("repository: c.txt", parent.detail);
+
+        second.endTask();
+        assertEquals("repository", parent.detail);
+
+        monitor.endTask();
+        assertEquals(2.0, parent.worked);
+    }
+
+    private static void runConcurrently(final Worker worker)
+            throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        final Thread[] threads = new Thread[THREAD_COUNT];
+
+        for (int i = 0; i < threads.length; i++) {
+            final int thread = i;
+
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        worker.run(thread);
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (!failures.isEmpty()) {
+            throw new Exception(failures.get(0));
+        }
+    }
+
+    private interface Worker {
+        void run(int thread)
+                throws Exception;
+    }
+
+    /**
+     * Records the calls of the concurrent monitor, which only calls it while
+     * holding its lock
+     */
+    private static class RecordingProgressMonitor
+            extends BaseTaskProgressMonitor {
+        private double worked = 0;
+        private int workedCalls = 0;
+        private int endTaskCalls = 0;
+        private int work = 0;
+        private String detail;
+
+        public void beginTask(String task, int work, TaskProgressDisplay displayOptions) {
+            this.work = work;
+        }
+
+        public String getTask() {
+            return null;
+        }
+
+        public int getWork() {
+            return work;
+        }
+
+        public void setWork(int work) {
+            this.work = work;
+        }
+
+        public TaskProgressDisplay getTaskProgressDisplayOptions() {
+            return TaskProgressDisplay.NONE;
+        }
+
+        public TaskProgressMonitor newSubTask(int subWork) {
+            return new NullTaskProgressMonitor();
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public void setDetail(String detail) {
+            this.detail = detail;
+        }
+
+        public void worked(double amount) {
+            assertTrue(amount > 0);
+
+            worked += amount;
+            workedCalls++;
+        }
+
+        public void downloaded(long bytes) {
+        }
+
+        public void displayMessage(String message) {
+        }
+
+        public void displayWarning(String message) {
+        }
+
+        public void displayVerbose(String message) {
+        }
+
+        public void endTask() {
+            endTaskCalls++;
+        }
+
+        public void dispose() {
+        }
+    }
+}
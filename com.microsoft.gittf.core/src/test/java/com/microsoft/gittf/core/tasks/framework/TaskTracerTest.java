@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.framework;
+
+import junit.framework.TestCase;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TaskTracerTest
+        extends TestCase {
+    private TaskTracer tracer;
+
+    protected void setUp()
+            throws Exception {
+        tracer = TaskTracer.start();
+    }
+
+    protected void tearDown()
+            throws Exception {
+        tracer.stop();
+    }
+
+    public void testNestedSpans()
+            throws Exception {
+        assertTrue(new TaskExecutor(new NullTaskProgressMonitor()).execute(new OuterTask()).isOK());
+
+        List<String> events = getEvents();
+
+        /* The inner task completes first */
+        int inner = indexOf(events, "\"name\":\"InnerTask\"");
+        int outer = indexOf(events, "\"name\":\"OuterTask\"");
+        assertTrue(inner >= 0);
+        assertTrue(outer > inner);
+
+        String innerEvent = events.get(inner);
+        String outerEvent = events.get(outer);
+
+        assertTrue(innerEvent.contains("\"ph\":\"X\""));
+        assertEquals(getLong(outerEvent, "tid"), getLong(innerEvent, "tid"));
+
+        /* The inner span lies within the outer span */
+        long outerStart = getLong(outerEvent, "ts");
+        long innerStart = getLong(innerEvent, "ts");
+
+        assertTrue(innerStart >= outerStart);
+        assertTrue(innerStart + getLong(innerEvent, "dur") <= outerStart + getLong(outerEvent, "dur"));
+
+        assertTrue(outerEvent.contains("\"class\":\"" + OuterTask.class.getName() + "\""));
+        assertTrue(outerEvent.contains("\"status\":\"ok\""));
+    }
+
+    public void testThreads()
+            throws Exception {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                new TaskExecutor(new NullTaskProgressMonitor()).execute(new InnerTask());
+            }
+        }, "tracer \"worker\"");
+
+        thread.start();
+        thread.join();
+
+        new TaskExecutor(new NullTaskProgressMonitor()).execute(new InnerTask());
+
+        List<String> events = getEvents();
+
+        /* The name of each thread is recorded once, escaped */
+        int metadata = indexOf(events, "\"args\":{\"name\":\"tracer \\\"worker\\\"\"}");
+        assertTrue(metadata >= 0);
+        assertTrue(events.get(metadata).contains("\"ph\":\"M\""));
+
+        List<Long> threadIDs = new ArrayList<Long>();
+        for (String event : events) {
+            if (event.contains("\"name\":\"InnerTask\"")) {
+                threadIDs.add(getLong(event, "tid"));
+            }
+        }
+
+        assertEquals(2, threadIDs.size());
+        assertFalse(threadIDs.get(0).equals(threadIDs.get(1)));
+        assertEquals(Long.valueOf(thread.getId()), threadIDs.get(0));
+    }
+
+    public void testArgumentsEscaped()
+            throws Exception {
+        Map<String, Object> arguments = new LinkedHashMap<String, Object>();
+        arguments.put("path", "dir\\file \"name\"\n\ttab\u0001");
+        arguments.put("count", 3);
+        arguments.put("deep", Boolean.TRUE);
+        arguments.put("missing", null);
+        arguments.put("key \"quoted\"", "value");
+
+        new TaskExecutor(new NullTaskProgressMonitor()).execute(new ArgumentsTask(arguments));
+
+        String event = getEvents().get(indexOf(getEvents(), "\"name\":\"ArgumentsTask\""));
+
+        assertTrue(event, event.contains(",\"path\":\"dir\\\\file \\\"name\\\"\\n\\ttab\\u0001\""));
+        assertTrue(event, event.contains(",\"count\":3"));
+        assertTrue(event, event.contains(",\"deep\":true"));
+        assertTrue(event, event.contains(",\"missing\":null"));
+        assertTrue(event, event.contains(",\"key \\\"quoted\\\"\":\"value\""));
+        assertTrue(event, event.endsWith("}}"));
+    }
+
+    public void testStatus()
+            throws Exception {
+        new TaskExecutor(new NullTaskProgressMonitor()).execute(new FailingTask());
+
+        String event = getEvents().get(indexOf(getEvents(), "\"name\":\"FailingTask\""));
+
+        assertTrue(event.contains("\"status\":\"error\""));
+    }
+
+    public void testStop()
+            throws Exception {
+        tracer.stop();
+
+        new TaskExecutor(new NullTaskProgressMonitor()).execute(new InnerTask());
+
+        StringWriter trace = new StringWriter();
+        tracer.writeChromeTrace(trace);
+
+        assertEquals("{\"traceEvents\":[\n],\"displayTimeUnit\":\"ms\"}\n", trace.toString());
+    }
+
+    public void testTraceShape()
+            throws Exception {
+        new TaskExecutor(new NullTaskProgressMonitor()).execute(new OuterTask());
+
+        StringWriter trace = new StringWriter();
+        tracer.writeChromeTrace(trace);
+
+        String json = trace.toString();
+
+        assertTrue(json.startsWith("{\"traceEvents\":[\n{"));
+        assertTrue(json.endsWith("}\n],\"displayTimeUnit\":\"ms\"}\n"));
+        assertBalanced(json);
+
+        for (String event : getEvents()) {
+            assertBalanced(event);
+        }
+    }
+
+    private List<String> getEvents()
+            throws Exception {
+        StringWriter trace = new StringWriter();
+        tracer.writeChromeTrace(trace);
+
+        /* Every event is written on its own line */
+        String[] lines = trace.toString().split("\n");
+        List<String> events = new ArrayList<String>();
+
+        for (int i = 1; i < lines.length - 1; i++) {
+            String line = lines[i];
+            events.add(line.endsWith(",") ? line.substring(0, line.length() - 1) : line);
+        }
+
+        return events;
+    }
+
+    private static int indexOf(List<String> events, String text) {
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i).contains(text)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static long getLong(String event, String name) {
+        Matcher matcher = Pattern.compile("\"" + name + "\":(\\d+)").matcher(event);
+        assertTrue(event, matcher.find());
+
+        return Long.parseLong(matcher.group(1));
+    }
+
+    /**
+     * Checks that the braces and brackets outside of the strings match
+     */
+    private static void assertBalanced(String json) {
+        StringBuilder open = new StringBuilder();
+        boolean inString = false;
+
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                } else {
+                    assertTrue(json, c >= 0x20);
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                open.append(c);
+            } else if (c == '}' || c == ']') {
+                assertTrue(json, open.length() > 0);
+                assertEquals(json, c == '}' ? '{' : '[', open.charAt(open.length() - 1));
+                open.setLength(open.length() - 1);
+            }
+        }
+
+        assertFalse(json, inString);
+        assertEquals(json, 0, open.length());
+    }
+
+    private static class OuterTask
+            extends Task {
+        @Override
+        public TaskStatus run(TaskProgressMonitor progressMonitor)
+                throws Exception {
+            return new TaskExecutor(new NullTaskProgressMonitor()).execute(new InnerTask());
+        }
+    }
+
+    private static class InnerTask
+            extends Task {
+        @Override
+        public TaskStatus run(TaskProgressMonitor progressMonitor)
+                throws Exception {
+            Thread.sleep(2);
+
+            return TaskStatus.OK_STATUS;
+        }
+    }
+
+    private static class FailingTask
+            extends Task {
+        @Override
+        public TaskStatus run(TaskProgressMonitor progressMonitor)
+                throws Exception {
+            throw new Exception("failed");
+        }
+    }
+
+    private static class ArgumentsTask
+            extends Task {
+        private final Map<String, Object> arguments;
+
+        public ArgumentsTask(Map<String, Object> arguments) {
+            this.arguments = arguments;
+        }
+
+        @Override
+        public TaskStatus run(TaskProgressMonitor progressMonitor) {
+            return TaskStatus.OK_STATUS;
+        }
+
+        @Override
+        public Map<String, Object> getTraceArguments() {
+            return arguments;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.util.List;
+
+public class BoundedRenameDetectorTest
+        extends TestCase {
+    private Repository repository = null;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testExactRename()
+            throws Exception {
+        List<DiffEntry> result = compute(new BoundedRenameDetector(repository),
+                tree("root/folder1/file1.txt", "content"),
+                tree("root/folder2/file1.txt", "content"));
+
+        assertEquals(1, result.size());
+        assertEquals(ChangeType.RENAME, result.get(0).getChangeType());
+        assertEquals("root/folder1/file1.txt", result.get(0).getOldPath());
+        assertEquals("root/folder2/file1.txt", result.get(0).getNewPath());
+    }
+
+    public void testExactRenamePrefersSameFileName()
+            throws Exception {
+        BoundedRenameDetector detector = new BoundedRenameDetector(repository);
+        List<DiffEntry> result = compute(detector,
+                tree("root/folder1/file1.txt", "content", "root/folder1/file2.txt", "content"),
+                tree("root/folder2/file2.txt", "content"));
+
+        assertEquals(1, detector.getExactRenameCount());
+        assertEquals(2, result.size());
+
+        assertEquals(ChangeType.DELETE, result.get(0).getChangeType());
+        assertEquals("root/folder1/file1.txt", result.get(0).getOldPath());
+
+        assertEquals(ChangeType.RENAME, result.get(1).getChangeType());
+        assertEquals("root/folder1/file2.txt", result.get(1).getOldPath());
+        assertEquals("root/folder2/file2.txt", result.get(1).getNewPath());
+    }
+
+    public void testRenameLimitExceeded()
+            throws Exception {
+        BoundedRenameDetector detector = new BoundedRenameDetector(repository);
+        detector.setRenameLimit(1);
+
+        List<DiffEntry> result = compute(detector,
+                tree("root/file1.txt", "content1", "root/file2.txt", "content2"),
+                tree("root/file3.txt", "content3", "root/file4.txt", "content4"));
+
+        assertTrue(detector.isBudgetExceeded());
+        assertEquals(4, result.size());
+
+        for (DiffEntry entry : result) {
+            assertTrue(entry.getChangeType() == ChangeType.ADD || entry.getChangeType() == ChangeType.DELETE);
+        }
+    }
+
+    public void testExactRenamesWithinRenameLimit()
+            throws Exception {
+        BoundedRenameDetector detector = new BoundedRenameDetector(repository);
+        detector.setRenameLimit(1);
+
+        List<DiffEntry> result = compute(detector,
+                tree("root/file1.txt", "content1", "root/file2.txt", "content2"),
+                tree("root/file3.txt", "content1", "root/file4.txt", "content2"));
+
+        assertFalse(detector.isBudgetExceeded());
+        assertEquals(2, detector.getExactRenameCount());
+        assertEquals(2, result.size());
+    }
+
+    /**
+     * Computes the renames between two trees, the differences are scanned the
+     * same way the checkin analysis scans them
+     */
+    private List<DiffEntry> compute(BoundedRenameDetector detector, ObjectId fromTree, ObjectId toTree)
+            throws Exception {
+        TreeWalk treeWalk = new TreeWalk(repository);
+
+        try {
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(fromTree);
+            treeWalk.addTree(toTree);
+
+            detector.addAll(DiffEntry.scan(treeWalk));
+        } finally {
+            treeWalk.release();
+        }
+
+        return detector.compute();
+    }
+
+    /**
+     * Creates a tree from pairs of item paths and item content
+     */
+    private ObjectId tree(String... pathsAndContent)
+            throws Exception {
+        ObjectInserter inserter = repository.newObjectInserter();
+
+        try {
+            DirCache dirCache = DirCache.newInCore();
+            DirCacheBuilder builder = dirCache.builder();
+
+            for (int index = 0; index < pathsAndContent.length; index += 2) {
+                DirCacheEntry entry = new DirCacheEntry(pathsAndContent[index]);
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, Constants.encode(pathsAndContent[index + 1])));
+
+                builder.add(entry);
+            }
+
+            builder.finish();
+
+            ObjectId treeId = dirCache.writeTree(inserter);
+            inserter.flush();
+
+            return treeId;
+        } finally {
+            inserter.release();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+public class CaseSensitivityValidatorTest
+        extends TestCase {
+    private Repository repository = null;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testInitialCommitWithDuplicateItems()
+            throws Exception {
+        RevCommit commit = commit("root/file1.txt", "root/FILE1.txt");
+
+        assertInvalid(new CaseSensitivityValidator(repository), commit);
+    }
+
+    public void testInitialCommitWithDuplicateFolders()
+            throws Exception {
+        RevCommit commit = commit("root/folder/file1.txt", "root/Folder/file2.txt");
+
+        assertInvalid(new CaseSensitivityValidator(repository), commit);
+    }
+
+    public void testIncrementalAddOfDuplicateItem()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/file1.txt", "root/file2.txt"));
+
+        assertInvalid(validator, commit("root/file1.txt", "root/file2.txt", "root/File2.txt"));
+    }
+
+    public void testIncrementalAddOfDuplicateFolder()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/folder/file1.txt"));
+
+        assertInvalid(validator, commit("root/folder/file1.txt", "root/FOLDER/file2.txt"));
+    }
+
+    public void testIncrementalCaseRename()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/folder/file1.txt", "root/file2.txt"));
+        validator.validate(commit("root/Folder/file1.txt", "root/FILE2.txt"));
+        validator.validate(commit("root/folder/file1.txt", "root/file2.txt"));
+    }
+
+    public void testIncrementalDeleteThenAdd()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/file1.txt", "root/folder/file2.txt"));
+        validator.validate(commit("root/file1.txt"));
+        validator.validate(commit("root/file1.txt", "root/FOLDER/file2.txt"));
+    }
+
+    public void testFileReplacedByFolder()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/item", "root/file1.txt"));
+        validator.validate(commit("root/item/file2.txt", "root/file1.txt"));
+
+        assertInvalid(validator, commit("root/item/file2.txt", "root/ITEM/file3.txt", "root/file1.txt"));
+    }
+
+    public void testValidatorRecoversAfterFailure()
+            throws Exception {
+        CaseSensitivityValidator validator = new CaseSensitivityValidator(repository);
+
+        validator.validate(commit("root/file1.txt"));
+        assertInvalid(validator, commit("root/file1.txt", "root/File1.txt"));
+
+        validator.validate(commit("root/file1.txt", "root/file2.txt"));
+        assertInvalid(validator, commit("root/file1.txt", "root/file2.txt", "root/FILE2.txt"));
+    }
+
+    private void assertInvalid(CaseSensitivityValidator validator, RevCommit commit) {
+        try {
+            validator.validate(commit);
+            fail("Expected a case sensitivity violation in " + commit.getName());
+        } catch (Exception e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    private RevCommit commit(String... paths)
+            throws Exception {
+        final ObjectInserter inserter = repository.newObjectInserter();
+        final RevWalk revWalk = new RevWalk(repository);
+
+        try {
+            final DirCache dirCache = DirCache.newInCore();
+            final DirCacheBuilder builder = dirCache.builder();
+
+            for (String path : paths) {
+                final DirCacheEntry entry = new DirCacheEntry(path);
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, Constants.encode(Util.generateContentForFileInGit(path))));
+
+                builder.add(entry);
+            }
+
+            builder.finish();
+
+            final CommitBuilder commitBuilder = new CommitBuilder();
+            final PersonIdent ident = new PersonIdent("author", "author@example.com");
+
+            commitBuilder.setTreeId(dirCache.writeTree(inserter));
+            commitBuilder.setAuthor(ident);
+            commitBuilder.setCommitter(ident);
+            commitBuilder.setMessage("commit");
+
+            final ObjectId commitId = inserter.insert(commitBuilder);
+            inserter.flush();
+
+            return revWalk.parseCommit(commitId);
+        } finally {
+            revWalk.release();
+            inserter.release();
+        }
+    }
+}
@@ -408,6 +408,146 @@ public class CheckinAnalysisChangeCollectionTest
                 "root/parent/child/grandChild/greatGrandChild/subFolder/file2.txt")).isEdit());
     }
 
+    /* Rename Batch Tests */
+
+    public void testNestedFolderRenameBatches()
+            throws Exception {
+        new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild-rename"));
+
+        new File(repository.getWorkTree(), "root/parent/child/grandChild")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild-rename"));
+
+        new File(repository.getWorkTree(), "root/parent")
+                .renameTo(new File(repository.getWorkTree(), "root/parent-rename"));
+
+        add("root");
+
+        RevCommit newCommit = commit();
+
+        assertRenameBatches(new String[][]
+                {
+                        {},
+                        {
+                                "root/parent -> root/parent-rename"
+                        },
+                        {},
+                        {
+                                "root/parent-rename/child/grandChild -> root/parent-rename/child/grandChild-rename"
+                        },
+                        {
+                                "root/parent-rename/child/grandChild-rename/greatGrandChild -> root/parent-rename/child/grandChild-rename/greatGrandChild-rename"
+                        }
+                }, buildRenameBatches(newCommit));
+    }
+
+    public void testFolderRenameWithEditBatches()
+            throws Exception {
+        new File(repository.getWorkTree(), "root/parent/child/grandChild")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild-rename"));
+
+        Util.touchFile(new File(repository.getWorkTree(), "root/parent/child/grandChild-rename/file2.txt"));
+
+        add("root/parent/child");
+
+        RevCommit newCommit = commit();
+
+        assertRenameBatches(new String[][]
+                {
+                        {},
+                        {},
+                        {},
+                        {
+                                "root/parent/child/grandChild -> root/parent/child/grandChild-rename"
+                        },
+                        {
+                                "root/parent/child/grandChild-rename/file2.txt -> root/parent/child/grandChild-rename/file2.txt (edit)"
+                        }
+                }, buildRenameBatches(newCommit));
+    }
+
+    public void testFileRenameWithEditInSameFolderBatches()
+            throws Exception {
+        new File(repository.getWorkTree(), "root/parent/child/file1.txt")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/file1-rename.txt"));
+
+        new File(repository.getWorkTree(), "root/parent/child/file2.txt")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/file2-rename.txt"));
+
+        Util.touchFile(new File(repository.getWorkTree(), "root/parent/child/file2-rename.txt"));
+        Util.touchFile(new File(repository.getWorkTree(), "root/parent/child/file3.txt"));
+
+        add("root/parent/child");
+
+        RevCommit newCommit = commit();
+
+        assertRenameBatches(new String[][]
+                {
+                        {},
+                        {},
+                        {},
+                        {
+                                "root/parent/child/file1.txt -> root/parent/child/file1-rename.txt",
+                                "root/parent/child/file2.txt -> root/parent/child/file2-rename.txt (edit)"
+                        }
+                }, buildRenameBatches(newCommit));
+    }
+
+    public void testPartiallyOverlappingFolderRenameBatches()
+            throws Exception {
+        /* Two of the three files move to a new folder, the third one stays */
+        new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild-moved").mkdirs();
+
+        new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild/file1.txt")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild-moved/file1.txt"));
+
+        new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild/file2.txt")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild/greatGrandChild-moved/file2.txt"));
+
+        add("root/parent/child/grandChild");
+
+        RevCommit newCommit = commit();
+
+        /* The old folder still exists so the files are renamed one by one */
+        assertRenameBatches(new String[][]
+                {
+                        {},
+                        {},
+                        {},
+                        {},
+                        {},
+                        {
+                                "root/parent/child/grandChild/greatGrandChild/file1.txt -> root/parent/child/grandChild/greatGrandChild-moved/file1.txt",
+                                "root/parent/child/grandChild/greatGrandChild/file2.txt -> root/parent/child/grandChild/greatGrandChild-moved/file2.txt"
+                        }
+                }, buildRenameBatches(newCommit));
+    }
+
+    public void testPartiallyOverlappingNestedFolderRenameBatches()
+            throws Exception {
+        /* The folder is renamed and one of its files moves out to the parent */
+        new File(repository.getWorkTree(), "root/parent/child/grandChild")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/grandChild-rename"));
+
+        new File(repository.getWorkTree(), "root/parent/child/grandChild-rename/file1.txt")
+                .renameTo(new File(repository.getWorkTree(), "root/parent/child/file1-moved.txt"));
+
+        add("root/parent/child");
+
+        RevCommit newCommit = commit();
+
+        assertRenameBatches(new String[][]
+                {
+                        {},
+                        {},
+                        {},
+                        {
+                                "root/parent/child/grandChild/file1.txt -> root/parent/child/file1-moved.txt",
+                                "root/parent/child/grandChild -> root/parent/child/grandChild-rename"
+                        }
+                }, buildRenameBatches(newCommit));
+    }
+
     /* Utility */
     private void initRepository()
             throws Exception {
@@ -503,6 +643,47 @@ public class CheckinAnalysisChangeCollectionTest
         return folderRenameDetector.getRenames();
     }
 
+    private List<List<RenameChange>> buildRenameBatches(RevCommit newCommit)
+            throws Exception {
+        RevTree fromTree = initialCommit.getTree();
+        RevTree toTree = newCommit.getTree();
+
+        CheckinAnalysisChangeCollection analysis =
+                PendDifferenceTask.analyzeDifferences(
+                        repository,
+                        fromTree,
+                        toTree,
+                        RenameMode.ALL,
+                        new NullTaskProgressMonitor());
+
+        TfsFolderRenameDetector folderRenameDetector = analysis.createFolderRenameDetector();
+        folderRenameDetector.compute();
+
+        return folderRenameDetector.getRenameBatches();
+    }
+
+    /**
+     * Asserts the rename batches, every batch lists its renames in order as
+     * "oldPath -> newPath" with an " (edit)" suffix for renames with an edit
+     */
+    private static void assertRenameBatches(String[][] expected, List<List<RenameChange>> batches) {
+        assertEquals(expected.length, batches.size());
+
+        for (int depth = 0; depth < expected.length; depth++) {
+            List<RenameChange> batch = batches.get(depth);
+
+            assertEquals(expected[depth].length, batch.size());
+
+            for (int index = 0; index < batch.size(); index++) {
+                assertEquals(expected[depth][index], describe(batch.get(index)));
+            }
+        }
+    }
+
+    private static String describe(RenameChange rename) {
+        return rename.getOldPath() + " -> " + rename.getNewPath() + (rename.isEdit() ? " (edit)" : "");
+    }
+
     private CheckinAnalysisChangeCollection buildCheckinAnalysis(RevCommit newCommit)
             throws Exception {
         RevTree fromTree = initialCommit.getTree();
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.tasks.pendDiff;
+
+import com.microsoft.gittf.core.interfaces.WorkspaceService;
+import com.microsoft.gittf.core.tasks.ConfigureRepositoryTask;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.test.Util;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+
+public class PendDifferenceTaskTest
+        extends TestCase {
+    private static final String ITEM_PATH = "folder/file.txt";
+    private static final String ITEM_CONTENT = "content";
+
+    private Repository repository;
+    private RevCommit commit;
+    private File workingFolder;
+    private File stagingFolder;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        ConfigureRepositoryTask configTask =
+                new ConfigureRepositoryTask(repository, new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/project");
+        assertTrue(configTask.run(new NullTaskProgressMonitor()).isOK());
+
+        commit = createCommit();
+
+        workingFolder = new File(Util.getTemporaryTestFilesLocation(getName()), "working");
+        workingFolder.mkdirs();
+
+        stagingFolder = new File(Util.getTemporaryTestFilesLocation(getName()), "staging");
+    }
+
+    protected void tearDown()
+            throws Exception {
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testStageExtractsAdds()
+            throws Exception {
+        PendDifferenceTask pendTask = createTask(false);
+
+        CheckinAnalysisChangeCollection analysis = pendTask.analyze(new NullTaskProgressMonitor());
+        assertEquals(1, analysis.getAdds().size());
+
+        pendTask.stage(stagingFolder);
+
+        assertTrue(Util.verifyFileContent(new File(stagingFolder, ITEM_PATH), ITEM_CONTENT));
+    }
+
+    public void testStagedItemMovedToWorkingFolder()
+            throws Exception {
+        PendDifferenceTask pendTask = createTask(false);
+
+        CheckinAnalysisChangeCollection analysis = pendTask.analyze(new NullTaskProgressMonitor());
+        pendTask.stage(stagingFolder);
+
+        pendTask.extractToWorkingFolder(ITEM_PATH, analysis.getAdds().get(0).getObjectID());
+
+        assertFalse(new File(stagingFolder, ITEM_PATH).exists());
+        assertTrue(Util.verifyFileContent(new File(workingFolder, ITEM_PATH), ITEM_CONTENT));
+    }
+
+    public void testStagedItemExtractedWhenMoveFails()
+            throws Exception {
+        PendDifferenceTask pendTask = createTask(true);
+
+        CheckinAnalysisChangeCollection analysis = pendTask.analyze(new NullTaskProgressMonitor());
+        pendTask.stage(stagingFolder);
+
+        /* Corrupt the staged item, the content must come from git instead */
+        FileWriter writer = new FileWriter(new File(stagingFolder, ITEM_PATH));
+        writer.write("staged");
+        writer.close();
+
+        pendTask.extractToWorkingFolder(ITEM_PATH, analysis.getAdds().get(0).getObjectID());
+
+        assertTrue(new File(stagingFolder, ITEM_PATH).exists());
+        assertTrue(Util.verifyFileContent(new File(workingFolder, ITEM_PATH), ITEM_CONTENT));
+    }
+
+    private PendDifferenceTask createTask(boolean failMoves) {
+        WorkspaceService workspace = (WorkspaceService) Proxy.newProxyInstance(
+                WorkspaceService.class.getClassLoader(),
+                new Class[]
+                        {
+                                WorkspaceService.class
+                        },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        if (!failMoves) {
+            return new PendDifferenceTask(repository, null, commit, workspace, "$/project", workingFolder);
+        }
+
+        return new PendDifferenceTask(repository, null, commit, workspace, "$/project", workingFolder) {
+            @Override
+            boolean moveStagedItem(File stagedFile, File workingFile) {
+                return false;
+            }
+        };
+    }
+
+    private RevCommit createCommit()
+            throws Exception {
+        ObjectInserter inserter = repository.newObjectInserter();
+        RevWalk revWalk = new RevWalk(repository);
+
+        try {
+            TreeFormatter folder = new TreeFormatter();
+            folder.append("file.txt", FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, Constants.encode(ITEM_CONTENT)));
+
+            TreeFormatter root = new TreeFormatter();
+            root.append("folder", FileMode.TREE, inserter.insert(folder));
+
+            PersonIdent ident = new PersonIdent("user", "user@example.com");
+
+            CommitBuilder commitBuilder = new CommitBuilder();
+            commitBuilder.setTreeId(inserter.insert(root));
+            commitBuilder.setAuthor(ident);
+            commitBuilder.setCommitter(ident);
+            commitBuilder.setMessage("commit");
+
+            ObjectId commitId = inserter.insert(commitBuilder);
+            inserter.flush();
+
+            return revWalk.parseCommit(commitId);
+        } finally {
+            revWalk.release();
+            inserter.release();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+/*
+ * Copyright (c) Microsoft Corporation All rights reserved.
+ *
+ * MIT License:
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.microsoft.gittf.core.util;
+
+import com.microsoft.gittf.core.config.ChangesetCommitMap;
+import com.microsoft.gittf.core.tasks.ConfigureRepositoryTask;
+import com.microsoft.gittf.core.tasks.framework.NullTaskProgressMonitor;
+import com.microsoft.gittf.core.test.Util;
+import com.microsoft.gittf.core.util.CommitWalker.CommitDelta;
+import junit.framework.TestCase;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class CommitWalkerTest
+        extends TestCase {
+    private Repository repository;
+    private ObjectInserter inserter;
+    private ObjectId emptyTree;
+    private int commitCount = 0;
+
+    protected void setUp()
+            throws Exception {
+        Util.setUp(getName());
+
+        repository = Util.initializeGitRepo(getName());
+        repository.create(true);
+
+        inserter = repository.newObjectInserter();
+        emptyTree = inserter.insert(new TreeFormatter());
+    }
+
+    protected void tearDown()
+            throws Exception {
+        inserter.release();
+        repository.close();
+        repository = null;
+
+        Util.tearDown(getName());
+    }
+
+    public void testLongLinearHistory()
+            throws Exception {
+        final int length = 10000;
+
+        ObjectId[] commits = new ObjectId[length];
+        commits[0] = createCommit();
+
+        for (int i = 1; i < length; i++) {
+            commits[i] = createCommit(commits[i - 1]);
+        }
+
+        inserter.flush();
+
+        /* The path to the initial commit */
+        List<CommitDelta> deltas = CommitWalker.getAutoSquashedCommitList(repository, null, commits[length - 1]);
+
+        assertEquals(length, deltas.size());
+        assertNull(deltas.get(0).getFromCommit());
+
+        for (int i = 0; i < length; i++) {
+            assertEquals(commits[i], deltas.get(i).getToCommit().getId());
+        }
+
+        /* The path to a commit in the history */
+        deltas = CommitWalker.getAutoSquashedCommitList(repository, commits[1], commits[length - 1]);
+
+        assertEquals(length - 2, deltas.size());
+        assertEquals(commits[1], deltas.get(0).getFromCommit().getId());
+        assertEquals(commits[length - 1], deltas.get(length - 3).getToCommit().getId());
+    }
+
+    public void testMergeHeavyPathMatchesRecursiveSearch()
+            throws Exception {
+        Random random = new Random(1234);
+
+        /* Three unrelated roots so that some paths lead to the wrong root */
+        List<ObjectId> commits = new ArrayList<ObjectId>();
+        commits.add(createCommit());
+        commits.add(createCommit());
+        commits.add(createCommit());
+
+        for (int i = 3; i < 60; i++) {
+            int parentCount = random.nextInt(4) == 0 ? 1 : 2 + random.nextInt(2);
+
+            ObjectId[] parents = new ObjectId[parentCount];
+            parents[0] = commits.get(i - 1);
+
+            for (int p = 1; p < parentCount; p++) {
+                parents[p] = commits.get(random.nextInt(i - 1));
+            }
+
+            commits.add(createCommit(parents));
+        }
+
+        inserter.flush();
+
+        ObjectId head = commits.get(commits.size() - 1);
+
+        assertSamePath(null, head);
+
+        /* Every commit from the third root on is an ancestor of the head */
+        for (int i = 0; i < 20; i++) {
+            assertSamePath(commits.get(2 + random.nextInt(commits.size() - 3)), head);
+        }
+    }
+
+    public void testFindLatestBridgedAncestor()
+            throws Exception {
+        ConfigureRepositoryTask configTask =
+                new ConfigureRepositoryTask(repository, new URI("http://fakeCollection:8080/tfs/DefaultCollection"), "$/project");
+        assertTrue(configTask.run(new NullTaskProgressMonitor()).isOK());
+
+        /*
+         * main: c0 - c1 - c2 - c3 - c4 - c5 - c6 - c7
+         * topic:           \ t0 - t1 - t2
+         * merge: c7 + t2
+         */
+        ObjectId[] main = new ObjectId[8];
+        main[0] = createCommit();
+
+        for (int i = 1; i < main.length; i++) {
+            main[i] = createCommit(main[i - 1]);
+        }
+
+        ObjectId[] topic = new ObjectId[3];
+        topic[0] = createCommit(main[2]);
+        topic[1] = createCommit(topic[0]);
+        topic[2] = createCommit(topic[1]);
+
+        ObjectId merge = createCommit(main[7], topic[2]);
+
+        inserter.flush();
+
+        ChangesetCommitMap changesetCommitMap = new ChangesetCommitMap(repository);
+        changesetCommitMap.setChangesetCommit(10, main[1]);
+        changesetCommitMap.setChangesetCommit(20, main[4]);
+        changesetCommitMap.setChangesetCommit(21, main[5]);
+        changesetCommitMap.setChangesetCommit(22, main[5]);
+        changesetCommitMap.setChangesetCommit(30, topic[1]);
+
+        Map<ObjectId, Integer> bridgedCommits = changesetCommitMap.getBridgedCommits();
+
+        assertEquals(4, bridgedCommits.size());
+        assertEquals(Integer.valueOf(10), bridgedCommits.get(main[1]));
+        assertEquals(Integer.valueOf(20), bridgedCommits.get(main[4]));
+        assertEquals(Integer.valueOf(22), bridgedCommits.get(main[5]));
+        assertEquals(Integer.valueOf(30), bridgedCommits.get(topic[1]));
+
+        assertEquals(main[5], findLatestBridgedAncestor(main[7], bridgedCommits));
+        assertEquals(main[5], findLatestBridgedAncestor(main[5], bridgedCommits));
+        assertEquals(main[1], findLatestBridgedAncestor(main[3], bridgedCommits));
+        assertEquals(topic[1], findLatestBridgedAncestor(topic[2], bridgedCommits));
+        assertEquals(topic[1], findLatestBridgedAncestor(merge, bridgedCommits));
+        assertNull(findLatestBridgedAncestor(main[0], bridgedCommits));
+    }
+
+    private ObjectId findLatestBridgedAncestor(ObjectId start, Map<ObjectId, Integer> bridgedCommits)
+            throws Exception {
+        RevWalk walker = new RevWalk(repository);
+
+        try {
+            RevCommit ancestor =
+                    CommitWalker.findLatestBridgedAncestor(walker, walker.lookupCommit(start), bridgedCommits);
+
+            return ancestor != null ? ancestor.getId() : null;
+        } finally {
+            walker.release();
+        }
+    }
+
+    private void assertSamePath(ObjectId source, ObjectId target)
+            throws Exception {
+        List<ObjectId> expected = new ArrayList<ObjectId>();
+        RevWalk walker = new RevWalk(repository);
+
+        try {
+            List<RevCommit> path =
+                    detectPathRecursively(walker, walker.lookupCommit(target), source != null
+                            ? walker.lookupCommit(source) : null);
+
+            assertNotNull(path);
+
+            for (RevCommit commit : path) {
+                expected.add(commit != null ? commit.getId() : null);
+            }
+        } finally {
+            walker.release();
+        }
+
+        List<CommitDelta> deltas = CommitWalker.getAutoSquashedCommitList(repository, source, target);
+        List<ObjectId> actual = new ArrayList<ObjectId>();
+
+        actual.add(deltas.get(0).getFromCommit() != null ? deltas.get(0).getFromCommit().getId() : null);
+
+        for (CommitDelta delta : deltas) {
+            actual.add(delta.getToCommit().getId());
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * The recursive path search the walker used to do, following the last
+     * parent first
+     */
+    private static List<RevCommit> detectPathRecursively(RevWalk walker, RevCommit start, RevCommit end)
+            throws Exception {
+        List<RevCommit> path = null;
+
+        walker.parseHeaders(start);
+        RevCommit[] parents = start.getParents();
+
+        if (end == null && parents.length == 0) {
+            path = new ArrayList<RevCommit>();
+            path.add(null);
+        } else if (end != null && start.getId().equals(end.getId())) {
+            path = new ArrayList<RevCommit>();
+        } else {
+            for (int parentIdx = parents.length - 1; parentIdx >= 0; parentIdx--) {
+                path = detectPathRecursively(walker, parents[parentIdx], end);
+
+                if (path != null) {
+                    break;
+                }
+            }
+        }
+
+        if (path != null) {
+            path.add(start);
+        }
+
+        return path;
+    }
+
+    private ObjectId createCommit(ObjectId... parents)
+            throws Exception {
+        PersonIdent ident = new PersonIdent("user", "user@example.com");
+
+        CommitBuilder commitBuilder = new CommitBuilder();
+        commitBuilder.setTreeId(emptyTree);
+        commitBuilder.setParentIds(parents);
+        commitBuilder.setAuthor(ident);
+        commitBuilder.setCommitter(ident);
+        commitBuilder.setMessage("commit " + (commitCount++));
+
+        return inserter.insert(commitBuilder);
+    }
+}